@@ -117,6 +117,7 @@ public class SchemaValidators {
             // TODO: When is this the case? Remove?
             if ("jar".equals(u.getProtocol())) {
                 JarURLConnection jarConnection = (JarURLConnection) u.openConnection();
+                jarConnection.setUseCaches(false); // The jar file is closed below, and a cached one may be in use by others
                 JarFile jarFile = jarConnection.getJarFile();
                 for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
                     JarEntry je = entries.nextElement();
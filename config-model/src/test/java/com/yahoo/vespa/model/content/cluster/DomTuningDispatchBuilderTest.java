@@ -88,6 +88,18 @@ public class DomTuningDispatchBuilderTest {
                         "</content>");
         assertTrue(TuningDispatch.DispatchPolicy.ADAPTIVE == dispatch.getDispatchPolicy());
     }
+    @Test
+    public void requireThatTuningDispatchPolicyBestOfRandom2() throws Exception {
+        TuningDispatch dispatch = newTuningDispatch(
+                "<content>" +
+                        "  <tuning>" +
+                        "    <dispatch>" +
+                        "      <dispatch-policy>best-of-random-2</dispatch-policy>" +
+                        "    </dispatch>" +
+                        "  </tuning>" +
+                        "</content>");
+        assertTrue(TuningDispatch.DispatchPolicy.BEST_OF_RANDOM_2 == dispatch.getDispatchPolicy());
+    }
 
     private static TuningDispatch newTuningDispatch(String xml) throws Exception {
         return DomTuningDispatchBuilder.build(
@@ -8,6 +8,7 @@ import com.yahoo.vespa.config.ErrorCode;
 import com.yahoo.vespa.config.protocol.JRTConfigRequestFactory;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequestV3;
+import com.yahoo.vespa.config.protocol.JRTServerMultiConfigRequest;
 
 import java.util.Arrays;
 import java.util.Iterator;
@@ -58,6 +59,7 @@ public class ConfigProxyRpcServer implements Runnable, TargetWatcher, RpcServer
 
     private void declareConfigMethods() {
         supervisor.addMethod(JRTMethods.createConfigV3GetConfigMethod(this, "getConfigV3"));
+        supervisor.addMethod(JRTMethods.createConfigV3GetConfigsMethod(this, "getConfigsV3"));
         supervisor.addMethod(new Method("ping", "", "i",
                 this, "ping")
                 .methodDesc("ping")
@@ -118,6 +120,26 @@ public class ConfigProxyRpcServer implements Runnable, TargetWatcher, RpcServer
         }
     }
 
+    /**
+     * Handles RPC method "config.v3.getConfigs" requests. The request for each config is handled as a
+     * "config.v3.getConfig" request, and the request is returned when the first of them is returned.
+     *
+     * @param req a Request
+     */
+    @SuppressWarnings({"UnusedDeclaration"})
+    public final void getConfigsV3(Request req) {
+        log.log(LogLevel.SPAM, () -> "getConfigsV3");
+        JRTServerMultiConfigRequest request = JRTServerMultiConfigRequest.createFromRequest(req);
+        preHandle(req);
+        for (JRTServerConfigRequest part : request.getParts()) {
+            if (isProtocolVersionSupported(part))
+                getConfigImpl(part);
+            else
+                part.returnRequest();
+        }
+        request.processed();
+    }
+
     /**
      * Returns 0 if server is alive.
      *
@@ -303,7 +325,7 @@ public class ConfigProxyRpcServer implements Runnable, TargetWatcher, RpcServer
         for (Iterator<DelayedResponse> it = proxyServer.delayedResponses.responses().iterator(); it.hasNext(); ) {
             DelayedResponse delayed = it.next();
             JRTServerConfigRequest request = delayed.getRequest();
-            if (request.getRequest().target().equals(target)) {
+            if (request.getTarget().equals(target)) {
                 log.log(LogLevel.DEBUG, () -> "Removing " + request.getShortDescription());
                 it.remove();
             }
@@ -323,7 +345,7 @@ public class ConfigProxyRpcServer implements Runnable, TargetWatcher, RpcServer
         // TODO Catch exception for now, since the request might have been returned in CheckDelayedResponse
         // TODO Move logic so that all requests are returned in CheckDelayedResponse
         try {
-            request.getRequest().returnRequest();
+            request.returnRequest();
         } catch (IllegalStateException e) {
             log.log(LogLevel.DEBUG, () -> "Something bad happened when sending response for '" + request.getShortDescription() + "':" + e.getMessage());
         }
@@ -332,6 +354,6 @@ public class ConfigProxyRpcServer implements Runnable, TargetWatcher, RpcServer
     public void returnErrorResponse(JRTServerConfigRequest request, int errorCode, String message) {
         request.getRequestTrace().trace(TRACELEVEL, "Config proxy returnErrorResponse()");
         request.addErrorResponse(errorCode, message);
-        request.getRequest().returnRequest();
+        request.returnRequest();
     }
 }
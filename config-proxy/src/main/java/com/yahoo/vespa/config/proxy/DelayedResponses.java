@@ -23,8 +23,10 @@ class DelayedResponses {
     }
 
     boolean remove(DelayedResponse response) {
-        statistics.decDelayedResponses();
-        return delayedResponses.remove(response);
+        boolean removed = delayedResponses.remove(response);
+        if (removed)
+            statistics.decDelayedResponses();
+        return removed;
     }
 
     DelayQueue<DelayedResponse> responses() {
@@ -115,6 +115,7 @@ class RpcConfigSourceClient implements ConfigSourceClient {
         // happens at the same time
         DelayedResponse delayedResponse = new DelayedResponse(request);
         delayedResponses.add(delayedResponse);
+        request.whenAbandoned(() -> delayedResponses.remove(delayedResponse));
 
         final ConfigCacheKey configCacheKey = new ConfigCacheKey(input.getKey(), input.getDefMd5());
         RawConfig cachedConfig = memoryCache.get(configCacheKey);
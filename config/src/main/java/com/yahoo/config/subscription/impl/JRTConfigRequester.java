@@ -4,6 +4,10 @@ package com.yahoo.config.subscription.impl;
 import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -24,6 +28,7 @@ import com.yahoo.vespa.config.ErrorCode;
 import com.yahoo.vespa.config.ErrorType;
 import com.yahoo.vespa.config.TimingValues;
 import com.yahoo.vespa.config.protocol.JRTClientConfigRequest;
+import com.yahoo.vespa.config.protocol.JRTClientMultiConfigRequest;
 import com.yahoo.yolean.Exceptions;
 import com.yahoo.vespa.config.protocol.JRTConfigRequestFactory;
 import com.yahoo.vespa.config.protocol.Trace;
@@ -33,6 +38,10 @@ import com.yahoo.vespa.config.protocol.Trace;
  * It uses the {@link JRTConfigSubscription} and {@link JRTClientConfigRequest}
  * as context, and puts the requests objects on a queue on the subscription,
  * for handling by the user thread.
+ * <p>
+ * When multiplexing is enabled (see {@link JRTConfigRequestFactory#useMultiplexedRequests}), the requests waiting
+ * for config changes which are due at about the same time are sent together in a single request,
+ * unless the server does not support that.
  *
  * @author Vegard Havdal
  */
@@ -53,6 +62,12 @@ public class JRTConfigRequester implements RequestWaiter {
     /* Time to be added to server timeout to create client timeout. This is the time allowed for the server to respond after serverTimeout has elapsed. */
     private static final Double additionalTimeForClientTimeout = 5.0;
 
+    /** Whether to send requests for config changes in a single multi config request */
+    private volatile boolean multiplex;
+    /** The requests to send in the next multi config request, by subscription. Guarded by this map */
+    private final Map<JRTConfigSubscription<?>, JRTClientConfigRequest> pendingRequests = new LinkedHashMap<>();
+    private boolean multiRequestScheduled = false;
+
     private static final SimpleDateFormat yyyyMMddz;
 
     static {
@@ -76,8 +91,13 @@ public class JRTConfigRequester implements RequestWaiter {
      * @param timingValues timeouts and delays used when sending JRT config requests
      */
     JRTConfigRequester(ConnectionPool connectionPool, TimingValues timingValues) {
+        this(connectionPool, timingValues, JRTConfigRequestFactory.useMultiplexedRequests());
+    }
+
+    JRTConfigRequester(ConnectionPool connectionPool, TimingValues timingValues, boolean multiplex) {
         this.connectionPool = connectionPool;
         this.timingValues = timingValues;
+        this.multiplex = multiplex;
     }
 
     /**
@@ -109,6 +129,10 @@ public class JRTConfigRequester implements RequestWaiter {
     @SuppressWarnings("unchecked")
     @Override
     public void handleRequestDone(Request req) {
+        if (req.getContext() instanceof MultiRequestContext) {
+            handleMultiRequestDone((MultiRequestContext) req.getContext());
+            return;
+        }
         JRTConfigSubscription<ConfigInstance> sub = null;
         try {
             RequestContext context = (RequestContext) req.getContext();
@@ -145,6 +169,74 @@ public class JRTConfigRequester implements RequestWaiter {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private void handleMultiRequestDone(MultiRequestContext context) {
+        try {
+            JRTClientMultiConfigRequest multiReq = context.multiReq;
+            if (multiReq.validateResponse()) {
+                handleOKMultiRequest(context);
+            } else if (multiReq.getRequest().errorCode() == com.yahoo.jrt.ErrorCode.NO_SUCH_METHOD) {
+                log.log(LogLevel.INFO, "Config source " + context.connection.getAddress() +
+                        " does not support multiple configs per request, will request configs one by one");
+                multiplex = false;
+                for (int i = 0; i < multiReq.getParts().size(); i++)
+                    doRequest(context.subs.get(i), multiReq.getParts().get(i), multiReq.getParts().get(i).getTimeout());
+            } else {
+                handleFailedMultiRequest(context);
+            }
+        } catch (RuntimeException e) {
+            // Sets this field, it will get thrown from the user threads
+            for (JRTConfigSubscription<?> sub : context.subs)
+                sub.setException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handleOKMultiRequest(MultiRequestContext context) {
+        List<JRTClientConfigRequest> responded = context.multiReq.respondedParts();
+        for (int i = 0; i < context.multiReq.getParts().size(); i++) {
+            JRTClientConfigRequest part = context.multiReq.getParts().get(i);
+            JRTConfigSubscription<ConfigInstance> sub = (JRTConfigSubscription<ConfigInstance>) context.subs.get(i);
+            if (responded.contains(part)) {
+                doHandle(sub, part, context.connection);
+            } else {
+                // Unchanged, and not timed out yet at the server, so just request it again
+                sub.setLastCallBackOKTS(System.currentTimeMillis());
+                if (sub.getState() == ConfigSubscription.State.OPEN)
+                    scheduleNextRequest(part, sub, calculateSuccessDelay(), calculateSuccessTimeout());
+            }
+        }
+    }
+
+    /** Handles an error for all the requests in a multi request, as a single failure */
+    @SuppressWarnings("unchecked")
+    private void handleFailedMultiRequest(MultiRequestContext context) {
+        Request multiRequest = context.multiReq.getRequest();
+        List<JRTClientConfigRequest> parts = context.multiReq.getParts();
+        for (JRTClientConfigRequest part : parts)
+            part.getRequest().setError(multiRequest.errorCode(), multiRequest.errorMessage());
+
+        boolean configured = false;
+        for (JRTConfigSubscription<?> sub : context.subs)
+            configured |= sub.getConfigState().getConfig() != null;
+        logWhenErrorResponse(parts.get(0), context.connection);
+        ErrorType errorType = ErrorType.getErrorType(multiRequest.errorCode());
+        connectionPool.setError(context.connection, multiRequest.errorCode());
+        long delay = calculateFailedRequestDelay(errorType, transientFailures, fatalFailures, timingValues, configured);
+        if (errorType == ErrorType.TRANSIENT)
+            transientFailures++;
+        else
+            fatalFailures++;
+        log.log(configured ? LogLevel.INFO : LogLevel.DEBUG,
+                "Request for " + parts.size() + " configs failed with error code " + multiRequest.errorCode() +
+                " (" + multiRequest.errorMessage() + "), scheduling new request in " + delay + " ms");
+        for (int i = 0; i < parts.size(); i++) {
+            JRTConfigSubscription<ConfigInstance> sub = (JRTConfigSubscription<ConfigInstance>) context.subs.get(i);
+            if (sub.getState() == ConfigSubscription.State.OPEN)
+                scheduleNextRequest(parts.get(i), sub, delay, calculateErrorTimeout());
+        }
+    }
+
     private void logWhenErrorResponse(JRTClientConfigRequest jrtReq, Connection connection) {
         switch (jrtReq.errorCode()) {
             case com.yahoo.jrt.ErrorCode.CONNECTION:
@@ -276,7 +368,61 @@ public class JRTConfigRequester implements RequestWaiter {
             log.log(LogLevel.DEBUG, "My timing values: " + timingValues);
             log.log(LogLevel.DEBUG, "Scheduling new request " + delay + " millis from now for " + jrtReqNew.getConfigKey());
         }
-        scheduler.schedule(new GetConfigTask(jrtReqNew, sub), delay, TimeUnit.MILLISECONDS);
+        if (multiplex)
+            addToMultiRequest(jrtReqNew, sub, delay);
+        else
+            scheduler.schedule(new GetConfigTask(jrtReqNew, sub), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds the given request to the next multi config request, which is scheduled to be sent after the given delay
+     * unless it is already scheduled.
+     */
+    private void addToMultiRequest(JRTClientConfigRequest jrtReq, JRTConfigSubscription<?> sub, long delay) {
+        synchronized (pendingRequests) {
+            pendingRequests.put(sub, jrtReq);
+            if (multiRequestScheduled) return;
+            multiRequestScheduled = true;
+        }
+        scheduler.schedule(this::sendMultiRequest, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void sendMultiRequest() {
+        List<JRTConfigSubscription<?>> subs = new ArrayList<>();
+        List<JRTClientConfigRequest> parts = new ArrayList<>();
+        synchronized (pendingRequests) {
+            for (Map.Entry<JRTConfigSubscription<?>, JRTClientConfigRequest> pending : pendingRequests.entrySet()) {
+                if (pending.getKey().getState() != ConfigSubscription.State.OPEN) continue;
+                subs.add(pending.getKey());
+                parts.add(pending.getValue());
+            }
+            pendingRequests.clear();
+            multiRequestScheduled = false;
+        }
+        // This runs in the scheduler, so errors must be set on the subscriptions, to be thrown from the user threads
+        for (int i = 0; i < parts.size(); ) {
+            if (parts.get(i).validateParameters()) {
+                i++;
+                continue;
+            }
+            subs.remove(i).setException(new ConfigurationRuntimeException("Error in parameters for config request: " + parts.remove(i)));
+        }
+        if (parts.isEmpty()) return;
+
+        try {
+            JRTClientMultiConfigRequest multiReq = new JRTClientMultiConfigRequest(parts);
+            Connection connection = connectionPool.getCurrent();
+            multiReq.getRequest().setContext(new MultiRequestContext(subs, multiReq, connection));
+            double jrtClientTimeout = getClientTimeout(multiReq.getTimeout());
+            if (log.isLoggable(LogLevel.DEBUG)) {
+                log.log(LogLevel.DEBUG, "Requesting " + parts.size() + " configs on connection " + connection +
+                        " with RPC timeout " + jrtClientTimeout);
+            }
+            connection.invokeAsync(multiReq.getRequest(), jrtClientTimeout, this);
+        } catch (RuntimeException e) {
+            for (JRTConfigSubscription<?> sub : subs)
+                sub.setException(e);
+        }
     }
 
     /**
@@ -330,6 +476,18 @@ public class JRTConfigRequester implements RequestWaiter {
         }
     }
 
+    private static class MultiRequestContext {
+        final List<JRTConfigSubscription<?>> subs;
+        final JRTClientMultiConfigRequest multiReq;
+        final Connection connection;
+
+        private MultiRequestContext(List<JRTConfigSubscription<?>> subs, JRTClientMultiConfigRequest multiReq, Connection connection) {
+            this.subs = subs;
+            this.multiReq = multiReq;
+            this.connection = connection;
+        }
+    }
+
     int getTransientFailures() {
         return transientFailures;
     }
@@ -14,6 +14,10 @@ public class JRTMethods {
     private static final String configV3GetConfigRequestTypes = "s";
     private static final String configV3GetConfigResponseTypes = "sx";
 
+    public static final String configV3getConfigsMethodName = "config.v3.getConfigs";
+    private static final String configV3GetConfigsRequestTypes = "S";
+    private static final String configV3GetConfigsResponseTypes = "ISXIS";
+
     public static Method createConfigV3GetConfigMethod(Object handler, String handlerMethod) {
         return addDescriptions(
                 new Method(configV3getConfigMethodName, configV3GetConfigRequestTypes, configV3GetConfigResponseTypes, handler, handlerMethod));
@@ -24,6 +28,16 @@ public class JRTMethods {
                 new Method(configV3getConfigMethodName, configV3GetConfigRequestTypes, configV3GetConfigResponseTypes, methodHandler));
     }
 
+    public static Method createConfigV3GetConfigsMethod(Object handler, String handlerMethod) {
+        return addMultiDescriptions(
+                new Method(configV3getConfigsMethodName, configV3GetConfigsRequestTypes, configV3GetConfigsResponseTypes, handler, handlerMethod));
+    }
+
+    public static Method createConfigV3GetConfigsMethod(MethodHandler methodHandler) {
+        return addMultiDescriptions(
+                new Method(configV3getConfigsMethodName, configV3GetConfigsRequestTypes, configV3GetConfigsResponseTypes, methodHandler));
+    }
+
     private static Method addDescriptions(Method method) {
         return method.methodDesc("get config v3")
                 .paramDesc(0, "request", "config request")
@@ -31,7 +45,21 @@ public class JRTMethods {
                 .returnDesc(1, "payload", "config response payload");
     }
 
+    private static Method addMultiDescriptions(Method method) {
+        return method.methodDesc("get multiple configs v3, returns when some of them have changed")
+                .paramDesc(0, "requests", "config requests, as for " + configV3getConfigMethodName)
+                .returnDesc(0, "indices", "the indices of the requests which are responded to")
+                .returnDesc(1, "responses", "config responses, empty for requests which failed")
+                .returnDesc(2, "payloads", "config response payloads, empty for requests which failed")
+                .returnDesc(3, "errorCodes", "error codes of the requests, 0 for requests which succeeded")
+                .returnDesc(4, "errorMessages", "error messages of the requests, empty for requests which succeeded");
+    }
+
     public static boolean checkV3ReturnTypes(Request request) {
         return request.checkReturnTypes(JRTMethods.configV3GetConfigResponseTypes);
     }
+
+    public static boolean checkV3MultiReturnTypes(Request request) {
+        return request.checkReturnTypes(JRTMethods.configV3GetConfigsResponseTypes);
+    }
 }
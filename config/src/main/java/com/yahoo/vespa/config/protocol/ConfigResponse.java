@@ -39,4 +39,9 @@ public interface ConfigResponse {
 
     CompressionInfo getCompressionInfo();
 
+    /** Returns the payload of this with the given compression */
+    default Payload getPayload(CompressionType compressionType) {
+        return Payload.from(getPayload(), getCompressionInfo()).withCompression(compressionType);
+    }
+
 }
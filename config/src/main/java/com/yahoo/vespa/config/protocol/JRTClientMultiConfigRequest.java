@@ -0,0 +1,88 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.protocol;
+
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringArray;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.vespa.config.JRTMethods;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A request for several configs in one RPC, sent by a client, see {@link JRTMethods#configV3getConfigsMethodName}.
+ * The configs are requested by a list of regular client config requests, which are never sent themselves:
+ * The responses to them are instead set on them from the response to this by {@link #respondedParts}.
+ *
+ * @author agent
+ */
+public class JRTClientMultiConfigRequest {
+
+    private final List<JRTClientConfigRequest> parts;
+    private final Request request;
+
+    public JRTClientMultiConfigRequest(List<JRTClientConfigRequest> parts) {
+        this.parts = Collections.unmodifiableList(new ArrayList<>(parts));
+        String[] partRequests = new String[parts.size()];
+        for (int i = 0; i < parts.size(); i++)
+            partRequests[i] = parts.get(i).getRequest().parameters().get(0).asString();
+        this.request = new Request(JRTMethods.configV3getConfigsMethodName);
+        request.parameters().add(new StringArray(partRequests));
+    }
+
+    public Request getRequest() { return request; }
+
+    public List<JRTClientConfigRequest> getParts() { return parts; }
+
+    /** Returns the largest server timeout of the parts of this */
+    public long getTimeout() {
+        long timeout = 0;
+        for (JRTClientConfigRequest part : parts)
+            timeout = Math.max(timeout, part.getTimeout());
+        return timeout;
+    }
+
+    /**
+     * Validates the response given by the server. If none is given, or an error occurred, this returns false.
+     *
+     * @return true if valid response, false if not.
+     */
+    public boolean validateResponse() {
+        return ! request.isError() && JRTMethods.checkV3MultiReturnTypes(request);
+    }
+
+    /**
+     * Sets the responses returned to this on the parts they are responses to, and returns those parts.
+     * Parts which failed get their error set instead. This must only be called once, after a successful response.
+     */
+    public List<JRTClientConfigRequest> respondedParts() {
+        int[] indices = request.returnValues().get(0).asInt32Array();
+        String[] responses = request.returnValues().get(1).asStringArray();
+        byte[][] payloads = request.returnValues().get(2).asDataArray();
+        int[] errorCodes = request.returnValues().get(3).asInt32Array();
+        String[] errorMessages = request.returnValues().get(4).asStringArray();
+        List<JRTClientConfigRequest> responded = new ArrayList<>(indices.length);
+        for (int i = 0; i < indices.length; i++) {
+            if (indices[i] < 0 || indices[i] >= parts.size())
+                throw new IllegalArgumentException("Response to unknown config request " + indices[i] + " of " + parts.size());
+
+            JRTClientConfigRequest part = parts.get(indices[i]);
+            if (errorCodes[i] != 0) {
+                part.getRequest().setError(errorCodes[i], errorMessages[i]);
+            } else {
+                part.getRequest().returnValues().add(new StringValue(responses[i]));
+                part.getRequest().returnValues().add(new DataValue(payloads[i]));
+            }
+            responded.add(part);
+        }
+        return responded;
+    }
+
+    @Override
+    public String toString() {
+        return "request for " + parts.size() + " configs";
+    }
+
+}
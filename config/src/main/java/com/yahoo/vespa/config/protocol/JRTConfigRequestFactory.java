@@ -20,6 +20,7 @@ public class JRTConfigRequestFactory {
     private static final CompressionType compressionType = getCompressionType();
     private static final String VESPA_CONFIG_PROTOCOL_COMPRESSION = "VESPA_CONFIG_PROTOCOL_COMPRESSION";
     public static final String VESPA_VERSION = "VESPA_VERSION";
+    private static final String VESPA_CONFIG_PROTOCOL_MULTIPLEX = "VESPA_CONFIG_PROTOCOL_MULTIPLEX";
 
     public static <T extends ConfigInstance> JRTClientConfigRequest createFromSub(JRTConfigSubscription<T> sub) {
         // TODO: Get trace from caller
@@ -53,6 +54,19 @@ public class JRTConfigRequestFactory {
         return CompressionType.valueOf(ConfigUtils.getEnvValue("LZ4", env, alternateEnv, property));
     }
 
+    /**
+     * Returns whether a client should request all the configs it subscribes to in a single request
+     * ({@link com.yahoo.vespa.config.JRTMethods#configV3getConfigsMethodName}) when waiting for config changes.
+     */
+    public static boolean useMultiplexedRequests() {
+        return useMultiplexedRequests(System.getenv(VESPA_CONFIG_PROTOCOL_MULTIPLEX),
+                System.getProperty(VESPA_CONFIG_PROTOCOL_MULTIPLEX));
+    }
+
+    static boolean useMultiplexedRequests(String env, String property) {
+        return Boolean.parseBoolean(ConfigUtils.getEnvValue("false", env, property));
+    }
+
     static Optional<VespaVersion> getVespaVersion() {
         final String envValue = ConfigUtils.getEnvValue("", System.getenv(VESPA_VERSION), System.getProperty(VESPA_VERSION));
         if (envValue != null && !envValue.isEmpty()) {
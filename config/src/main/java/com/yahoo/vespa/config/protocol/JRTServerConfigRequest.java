@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.config.protocol;
 
+import com.yahoo.jrt.Target;
 import com.yahoo.vespa.config.GetConfigRequest;
 
 /**
@@ -81,4 +82,23 @@ public interface JRTServerConfigRequest extends JRTConfigRequest, GetConfigReque
      */
     Payload payloadFromResponse(ConfigResponse response);
 
+    /**
+     * Returns the target (client connection) this request was received from.
+     *
+     * @throws IllegalStateException if this was not received from a target
+     */
+    Target getTarget();
+
+    /**
+     * Returns this request, with the response or error which has been added to it, to the client.
+     */
+    void returnRequest();
+
+    /**
+     * Runs the given task when a response to this can no longer reach the client, which happens when this is
+     * part of a request for multiple configs which is returned with the responses to other configs.
+     * The task is run right away if this is already the case, and never for requests for a single config.
+     */
+    void whenAbandoned(Runnable task);
+
 }
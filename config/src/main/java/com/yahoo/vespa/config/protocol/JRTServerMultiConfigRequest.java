@@ -0,0 +1,194 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.protocol;
+
+import com.yahoo.jrt.DataArray;
+import com.yahoo.jrt.Int32Array;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringArray;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Target;
+import com.yahoo.vespa.config.JRTMethods;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A request for several configs in one RPC, received by a config server or proxy, see
+ * {@link JRTMethods#configV3getConfigsMethodName}. Each config is requested by a part, which is a
+ * regular server config request with the same parameters as a single config request, and which should
+ * be processed as one: Parts are returned using {@link JRTServerConfigRequest#returnRequest}, which
+ * hands them to this.
+ * <p>
+ * This is returned to the client with the responses of all parts returned so far when all parts have been
+ * processed once (see {@link #processed}) and at least one part has been returned. A part returned with an error
+ * is returned to the client with that error, while the other parts are unaffected by it. Parts returned after this
+ * was returned are ignored, and their abandon tasks (see {@link JRTServerConfigRequest#whenAbandoned}) are run
+ * when this is returned. This is thread safe.
+ *
+ * @author agent
+ */
+public class JRTServerMultiConfigRequest {
+
+    private enum State { processing, waiting, returned }
+
+    private final Request request;
+    private final List<Part> parts;
+    private final List<Part> returnedParts = new ArrayList<>();
+    private State state = State.processing;
+
+    private JRTServerMultiConfigRequest(Request request) {
+        this.request = request;
+        String[] partRequests = request.parameters().get(0).asStringArray();
+        List<Part> parts = new ArrayList<>(partRequests.length);
+        for (int i = 0; i < partRequests.length; i++)
+            parts.add(new Part(partRequests[i], i, this));
+        this.parts = Collections.unmodifiableList(parts);
+    }
+
+    public static JRTServerMultiConfigRequest createFromRequest(Request request) {
+        return new JRTServerMultiConfigRequest(request);
+    }
+
+    public Request getRequest() { return request; }
+
+    /** Returns the requests for each of the configs requested by this */
+    public List<? extends JRTServerConfigRequest> getParts() { return parts; }
+
+    /**
+     * Signals that all parts have been processed once, such that this can be returned to the client
+     * as soon as some part is returned. If some part was returned already, this returns immediately.
+     */
+    public void processed() {
+        synchronized (this) {
+            if (state != State.processing) return;
+
+            if (returnedParts.isEmpty()) {
+                state = State.waiting;
+                return;
+            }
+            returnRequest();
+        }
+        runAbandonTasks();
+    }
+
+    /** Returns whether this has been returned to the client */
+    public synchronized boolean isReturned() { return state == State.returned; }
+
+    private void partReturned(Part part) {
+        synchronized (this) {
+            if (state == State.returned) return;
+
+            returnedParts.add(part);
+            part.returned = true;
+            if (state != State.waiting) return;
+
+            returnRequest();
+        }
+        runAbandonTasks();
+    }
+
+    private void whenAbandoned(Part part, Runnable task) {
+        synchronized (this) {
+            if (part.returned) return;
+            if (state != State.returned) {
+                part.abandonTasks.add(task);
+                return;
+            }
+        }
+        task.run();
+    }
+
+    /** Runs the abandon tasks of the parts which were not returned with this. Must be called after this is returned */
+    private void runAbandonTasks() {
+        List<Runnable> tasks = new ArrayList<>();
+        synchronized (this) {
+            for (Part part : parts) {
+                if ( ! part.returned)
+                    tasks.addAll(part.abandonTasks);
+                part.abandonTasks.clear();
+            }
+        }
+        tasks.forEach(Runnable::run);
+    }
+
+    private void returnRequest() {
+        int[] indices = new int[returnedParts.size()];
+        String[] responses = new String[returnedParts.size()];
+        byte[][] payloads = new byte[returnedParts.size()][];
+        int[] errorCodes = new int[returnedParts.size()];
+        String[] errorMessages = new String[returnedParts.size()];
+        for (int i = 0; i < returnedParts.size(); i++) {
+            Part part = returnedParts.get(i);
+            indices[i] = part.index;
+            if (part.getRequest().isError()) {
+                responses[i] = "";
+                payloads[i] = new byte[0];
+                errorCodes[i] = part.errorCode();
+                errorMessages[i] = part.errorMessage();
+            } else {
+                responses[i] = part.getRequest().returnValues().get(0).asString();
+                payloads[i] = part.getRequest().returnValues().get(1).asData();
+                errorCodes[i] = 0;
+                errorMessages[i] = "";
+            }
+        }
+        request.returnValues().add(new Int32Array(indices));
+        request.returnValues().add(new StringArray(responses));
+        request.returnValues().add(new DataArray(payloads));
+        request.returnValues().add(new Int32Array(errorCodes));
+        request.returnValues().add(new StringArray(errorMessages));
+        state = State.returned;
+        request.returnRequest();
+    }
+
+    @Override
+    public String toString() {
+        return "request for " + parts.size() + " configs from " + (parts.isEmpty() ? "(none)" : parts.get(0).getClientHostName());
+    }
+
+    /** A request for one of the configs of a multi config request */
+    public static class Part extends JRTServerConfigRequestV3 {
+
+        private final int index;
+        private final JRTServerMultiConfigRequest multiRequest;
+        /** Tasks to run if this is not returned with the multi request. Guarded by the multi request */
+        private final List<Runnable> abandonTasks = new ArrayList<>();
+        /** Whether this is returned to the multi request. Guarded by the multi request */
+        private boolean returned = false;
+
+        private Part(String partRequest, int index, JRTServerMultiConfigRequest multiRequest) {
+            super(createPartRequest(partRequest));
+            this.index = index;
+            this.multiRequest = multiRequest;
+        }
+
+        private static Request createPartRequest(String partRequest) {
+            Request request = new Request(JRTMethods.configV3getConfigMethodName);
+            request.parameters().add(new StringValue(partRequest));
+            return request;
+        }
+
+        public JRTServerMultiConfigRequest getMultiRequest() { return multiRequest; }
+
+        /** Returns whether a response to this will not reach the client, as the request it is part of is returned */
+        public boolean isAbandoned() { return multiRequest.isReturned(); }
+
+        @Override
+        public Target getTarget() {
+            return multiRequest.request.target();
+        }
+
+        @Override
+        public void returnRequest() {
+            multiRequest.partReturned(this);
+        }
+
+        @Override
+        public void whenAbandoned(Runnable task) {
+            multiRequest.whenAbandoned(this, task);
+        }
+
+    }
+
+}
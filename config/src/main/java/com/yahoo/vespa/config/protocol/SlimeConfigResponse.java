@@ -26,6 +26,9 @@ public class SlimeConfigResponse implements ConfigResponse {
     private final boolean internalRedeploy;
     private final String configMd5;
 
+    /** The payload with the other compression type than the one this was created with, created on first request */
+    private volatile Payload recompressedPayload = null;
+
     public static SlimeConfigResponse fromConfigPayload(ConfigPayload payload, InnerCNode targetDef, long generation,
                                                         boolean internalRedeploy, String configMd5) {
         Utf8Array data = payload.toUtf8Array(true);
@@ -53,6 +56,21 @@ public class SlimeConfigResponse implements ConfigResponse {
         return payload;
     }
 
+    /**
+     * Returns the payload of this with the given compression. The payload is only compressed or decompressed
+     * the first time it is requested with the other compression type, which may be done by several racing
+     * threads as the result is the same.
+     */
+    @Override
+    public Payload getPayload(CompressionType compressionType) {
+        if (compressionType == compressionInfo.getCompressionType())
+            return Payload.from(payload, compressionInfo);
+        Payload recompressed = recompressedPayload;
+        if (recompressed == null)
+            recompressedPayload = recompressed = Payload.from(payload, compressionInfo).withCompression(compressionType);
+        return recompressed;
+    }
+
     @Override
     public List<String> getLegacyPayload() {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -85,7 +103,7 @@ public class SlimeConfigResponse implements ConfigResponse {
 
     @Override
     public void serialize(OutputStream os, CompressionType type) throws IOException {
-        os.write(Payload.from(payload, compressionInfo).withCompression(type).getData().getBytes());
+        os.write(getPayload(type).getData().getBytes());
     }
 
     @Override
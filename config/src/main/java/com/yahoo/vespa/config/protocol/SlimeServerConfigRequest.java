@@ -71,9 +71,22 @@ abstract class SlimeServerConfigRequest implements JRTServerConfigRequest {
 
     @Override
     public Payload payloadFromResponse(ConfigResponse response) {
-        return Payload.from(response.getPayload(), response.getCompressionInfo());
+        return response.getPayload(getCompressionType());
     }
 
+    @Override
+    public Target getTarget() {
+        return request.target();
+    }
+
+    @Override
+    public void returnRequest() {
+        request.returnRequest();
+    }
+
+    @Override
+    public void whenAbandoned(Runnable task) { }
+
     private DefContent getSchema() {
         return requestData.getSchema();
     }
@@ -3,19 +3,31 @@ package com.yahoo.config.subscription.impl;
 
 import com.yahoo.foo.SimpletypesConfig;
 import com.yahoo.config.subscription.ConfigSubscriber;
+import com.yahoo.jrt.DataArray;
+import com.yahoo.jrt.Int32Array;
 import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringArray;
+import com.yahoo.jrt.StringValue;
 import com.yahoo.vespa.config.ConfigKey;
+import com.yahoo.vespa.config.ConfigPayload;
 import com.yahoo.vespa.config.ErrorCode;
 import com.yahoo.vespa.config.ErrorType;
+import com.yahoo.vespa.config.JRTMethods;
 import com.yahoo.vespa.config.TimingValues;
+import com.yahoo.vespa.config.protocol.JRTClientConfigRequest;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequestV3;
+import com.yahoo.vespa.config.protocol.Payload;
+import com.yahoo.vespa.config.util.ConfigUtils;
 import org.junit.Test;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -276,9 +288,115 @@ public class JRTConfigRequesterTest {
         assertTrue(connection.getNumberOfFailovers() >= 1);
     }
 
+    @Test
+    public void testMultiplexedRequests() {
+        ConfigSubscriber subscriber = new ConfigSubscriber();
+        TimingValues timingValues = getTestTimingValues();
+        JRTConfigSubscription<SimpletypesConfig> sub1 = createSubscription(subscriber, timingValues, "id1");
+        JRTConfigSubscription<SimpletypesConfig> sub2 = createSubscription(subscriber, timingValues, "id2");
+        MultiResponseHandler responses = new MultiResponseHandler();
+        JRTConfigRequester requester = new JRTConfigRequester(new MockConnection(responses), timingValues, true);
+
+        // The first request of each subscription is sent on its own, and the following ones together
+        requester.request(sub1);
+        requester.request(sub2);
+        assertEquals(2, responses.singleRequests.size());
+        waitFor(() -> ! responses.multiRequests.isEmpty());
+        assertEquals(2, responses.multiRequests.get(0).parameters().get(0).asStringArray().length);
+
+        waitFor(() -> hasGeneration(sub1, 2) && hasGeneration(sub2, 2));
+        assertThat(requester.getFatalFailures(), is(0));
+        assertThat(requester.getTransientFailures(), is(0));
+        requester.close();
+    }
+
+    @Test
+    public void testMultiplexedRequestsFallBackToSingleRequests() {
+        ConfigSubscriber subscriber = new ConfigSubscriber();
+        TimingValues timingValues = getTestTimingValues();
+        JRTConfigSubscription<SimpletypesConfig> sub1 = createSubscription(subscriber, timingValues, "id1");
+        JRTConfigSubscription<SimpletypesConfig> sub2 = createSubscription(subscriber, timingValues, "id2");
+        MultiResponseHandler responses = new MultiResponseHandler();
+        responses.multiErrorCode = com.yahoo.jrt.ErrorCode.NO_SUCH_METHOD;
+        JRTConfigRequester requester = new JRTConfigRequester(new MockConnection(responses), timingValues, true);
+
+        requester.request(sub1);
+        requester.request(sub2);
+        waitFor(() -> responses.singleRequests.size() >= 6);
+        assertEquals(1, responses.multiRequests.size());
+        assertThat(requester.getFatalFailures(), is(0));
+        assertThat(requester.getTransientFailures(), is(0));
+        requester.close();
+    }
+
+    @Test
+    public void testErrorInPartOfMultiplexedRequest() {
+        ConfigSubscriber subscriber = new ConfigSubscriber();
+        TimingValues timingValues = getTestTimingValues();
+        JRTConfigSubscription<SimpletypesConfig> sub1 = createSubscription(subscriber, timingValues, "id1");
+        JRTConfigSubscription<SimpletypesConfig> sub2 = createSubscription(subscriber, timingValues, "id2");
+        MultiResponseHandler responses = new MultiResponseHandler();
+        responses.failingConfigId = "id1";
+        JRTConfigRequester requester = new JRTConfigRequester(new MockConnection(responses), timingValues, true);
+
+        requester.request(sub1);
+        requester.request(sub2);
+        waitFor(() -> hasGeneration(sub2, 2));
+        // The failing subscription keeps its config, and is requested again
+        assertTrue(hasGeneration(sub1, 1));
+        int multiRequests = responses.multiRequests.size();
+        waitFor(() -> responses.multiRequests.size() > multiRequests + 1);
+        assertTrue(hasGeneration(sub1, 1));
+        assertTrue(hasGeneration(sub2, 2));
+        requester.close();
+    }
+
+    @Test
+    public void testFailedMultiplexedRequest() {
+        ConfigSubscriber subscriber = new ConfigSubscriber();
+        TimingValues timingValues = getTestTimingValues();
+        JRTConfigSubscription<SimpletypesConfig> sub1 = createSubscription(subscriber, timingValues, "id1");
+        JRTConfigSubscription<SimpletypesConfig> sub2 = createSubscription(subscriber, timingValues, "id2");
+        MultiResponseHandler responses = new MultiResponseHandler();
+        responses.multiErrorCode = com.yahoo.jrt.ErrorCode.TIMEOUT;
+        JRTConfigRequester requester = new JRTConfigRequester(new MockConnection(responses), timingValues, true);
+
+        requester.request(sub1);
+        requester.request(sub2);
+        waitFor(() -> responses.multiRequests.size() >= 2);
+        assertTrue(requester.getTransientFailures() >= 1);
+        assertThat(requester.getFatalFailures(), is(0));
+        // Both subscriptions are requested again in a single request
+        assertEquals(2, responses.multiRequests.get(1).parameters().get(0).asStringArray().length);
+        assertEquals(2, responses.singleRequests.size());
+        requester.close();
+    }
+
     private JRTConfigSubscription<SimpletypesConfig> createSubscription(ConfigSubscriber subscriber, TimingValues timingValues) {
+        return createSubscription(subscriber, timingValues, "testid");
+    }
+
+    private JRTConfigSubscription<SimpletypesConfig> createSubscription(ConfigSubscriber subscriber, TimingValues timingValues,
+                                                                        String configId) {
         return new JRTConfigSubscription<>(
-                new ConfigKey<>(SimpletypesConfig.class, "testid"), subscriber, null, timingValues);
+                new ConfigKey<>(SimpletypesConfig.class, configId), subscriber, null, timingValues);
+    }
+
+    /** Returns whether the latest config received for the given subscription has the given generation */
+    private static boolean hasGeneration(JRTConfigSubscription<?> sub, long generation) {
+        JRTClientConfigRequest latest = sub.getReqQueue().peek();
+        return latest != null && latest.getNewGeneration() == generation;
+    }
+
+    private static void waitFor(BooleanSupplier condition) {
+        for (int i = 0; i < 1000 && ! condition.getAsBoolean(); i++) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+        assertTrue(condition.getAsBoolean());
     }
 
     private SimpletypesConfig config() {
@@ -328,6 +446,69 @@ public class JRTConfigRequesterTest {
         }
     }
 
+    /**
+     * Responds to single config requests with generation 1, and to multi config requests with generation 2,
+     * or with the configured errors
+     */
+    private static class MultiResponseHandler extends MockConnection.AbstractResponseHandler {
+
+        final List<Request> singleRequests = new CopyOnWriteArrayList<>();
+        final List<Request> multiRequests = new CopyOnWriteArrayList<>();
+        /** The error of whole multi config requests, or 0 to respond to them */
+        volatile int multiErrorCode = 0;
+        /** The config id of requests to fail in multi config requests */
+        volatile String failingConfigId = null;
+
+        @Override
+        protected void createResponse() {
+            if ( ! request.methodName().equals(JRTMethods.configV3getConfigsMethodName)) {
+                singleRequests.add(request);
+                addOkResponse(JRTServerConfigRequestV3.createFromRequest(request), 1);
+                return;
+            }
+
+            multiRequests.add(request);
+            if (multiErrorCode != 0) {
+                request.setError(multiErrorCode, "error");
+                return;
+            }
+            String[] partRequests = request.parameters().get(0).asStringArray();
+            int[] indices = new int[partRequests.length];
+            String[] responses = new String[partRequests.length];
+            byte[][] payloads = new byte[partRequests.length][];
+            int[] errorCodes = new int[partRequests.length];
+            String[] errorMessages = new String[partRequests.length];
+            for (int i = 0; i < partRequests.length; i++) {
+                Request partRequest = new Request(JRTMethods.configV3getConfigMethodName);
+                partRequest.parameters().add(new StringValue(partRequests[i]));
+                JRTServerConfigRequestV3 part = JRTServerConfigRequestV3.createFromRequest(partRequest);
+                indices[i] = i;
+                if (part.getConfigKey().getConfigId().equals(failingConfigId)) {
+                    responses[i] = "";
+                    payloads[i] = new byte[0];
+                    errorCodes[i] = ErrorCode.UNKNOWN_DEFINITION;
+                    errorMessages[i] = "error";
+                } else {
+                    addOkResponse(part, 2);
+                    responses[i] = partRequest.returnValues().get(0).asString();
+                    payloads[i] = partRequest.returnValues().get(1).asData();
+                    errorMessages[i] = "";
+                }
+            }
+            request.returnValues().add(new Int32Array(indices));
+            request.returnValues().add(new StringArray(responses));
+            request.returnValues().add(new DataArray(payloads));
+            request.returnValues().add(new Int32Array(errorCodes));
+            request.returnValues().add(new StringArray(errorMessages));
+        }
+
+        private static void addOkResponse(JRTServerConfigRequestV3 request, long generation) {
+            Payload payload = Payload.from(ConfigPayload.empty());
+            request.addOkResponse(payload, generation, false, ConfigUtils.getMd5(payload.getData()));
+        }
+
+    }
+
     private static class DelayedResponseHandler extends MockConnection.OKResponseHandler {
         private final long waitTimeMilliSeconds;
 
@@ -16,7 +16,9 @@ import java.io.StringReader;
 import java.util.List;
 
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -62,4 +64,20 @@ public class ConfigResponseTest {
         assertThat(baos.toString(), is("{\"boolval\":false,\"doubleval\":0.0,\"enumval\":\"VAL1\",\"intval\":0,\"longval\":0,\"stringval\":\"s\"}"));
     }
 
+    @Test
+    public void require_that_slime_response_keeps_payload_in_other_compression() {
+        ConfigPayload configPayload = ConfigPayload.fromInstance(new SimpletypesConfig(new SimpletypesConfig.Builder()));
+        DefParser dParser = new DefParser(SimpletypesConfig.getDefName(), new StringReader(StringUtilities.implode(SimpletypesConfig.CONFIG_DEF_SCHEMA, "\n")));
+        InnerCNode targetDef = dParser.getTree();
+        ConfigResponse response = SlimeConfigResponse.fromConfigPayload(configPayload, targetDef, 3, false, "mymd5");
+
+        Payload uncompressed = response.getPayload(CompressionType.UNCOMPRESSED);
+        assertSame(response.getPayload(), uncompressed.getData());
+
+        Payload compressed = response.getPayload(CompressionType.LZ4);
+        assertEquals(CompressionType.LZ4, compressed.getCompressionInfo().getCompressionType());
+        assertSame(compressed, response.getPayload(CompressionType.LZ4));
+        assertEquals(uncompressed, compressed.withCompression(CompressionType.UNCOMPRESSED));
+    }
+
 }
@@ -0,0 +1,170 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.protocol;
+
+import com.yahoo.jrt.Acceptor;
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.Target;
+import com.yahoo.jrt.Transport;
+import com.yahoo.slime.Slime;
+import com.yahoo.vespa.config.ConfigKey;
+import com.yahoo.vespa.config.ConfigPayload;
+import com.yahoo.vespa.config.ErrorCode;
+import com.yahoo.vespa.config.JRTMethods;
+import com.yahoo.vespa.config.util.ConfigUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests requesting multiple configs in one request, from the client through a server and back.
+ *
+ * @author agent
+ */
+public class JRTMultiConfigRequestTest {
+
+    private final Supervisor server = new Supervisor(new Transport());
+    private final Supervisor client = new Supervisor(new Transport());
+    private Target target;
+    private Consumer<JRTServerMultiConfigRequest> handler;
+    private JRTServerMultiConfigRequest received;
+
+    @Before
+    public void setup() throws ListenFailedException {
+        server.addMethod(JRTMethods.createConfigV3GetConfigsMethod(request -> {
+            request.detach();
+            received = JRTServerMultiConfigRequest.createFromRequest(request);
+            handler.accept(received);
+        }));
+        Acceptor acceptor = server.listen(new Spec(0));
+        target = client.connect(new Spec("localhost", acceptor.port()));
+    }
+
+    @After
+    public void shutdown() {
+        target.close();
+        client.transport().shutdown().join();
+        server.transport().shutdown().join();
+    }
+
+    @Test
+    public void parts_returned_while_processing_are_returned_together() {
+        handler = multi -> {
+            List<? extends JRTServerConfigRequest> parts = multi.getParts();
+            respond(parts.get(0), "foo");
+            respond(parts.get(2), "baz");
+            multi.processed();
+            respond(parts.get(1), "bar");
+        };
+        JRTClientMultiConfigRequest request = invoke("a", "b", "c");
+
+        assertTrue(request.validateResponse());
+        List<JRTClientConfigRequest> responded = request.respondedParts();
+        assertEquals(Arrays.asList(request.getParts().get(0), request.getParts().get(2)), responded);
+        assertPayload("foo", responded.get(0));
+        assertPayload("baz", responded.get(1));
+        assertEquals("b", received.getParts().get(1).getConfigKey().getConfigId());
+        assertTrue(((JRTServerMultiConfigRequest.Part) received.getParts().get(1)).isAbandoned());
+    }
+
+    @Test
+    public void request_is_returned_when_first_part_is_returned_after_processing() {
+        handler = multi -> {
+            multi.processed();
+            assertFalse(multi.isReturned());
+            respond(multi.getParts().get(1), "bar");
+            respond(multi.getParts().get(0), "foo");
+        };
+        JRTClientMultiConfigRequest request = invoke("a", "b");
+
+        assertTrue(request.validateResponse());
+        List<JRTClientConfigRequest> responded = request.respondedParts();
+        assertEquals(1, responded.size());
+        assertEquals(request.getParts().get(1), responded.get(0));
+        assertPayload("bar", responded.get(0));
+        assertEquals(5000, request.getTimeout());
+    }
+
+    @Test
+    public void error_in_part_is_returned_for_that_part_only() {
+        handler = multi -> {
+            respond(multi.getParts().get(0), "foo");
+            multi.getParts().get(1).addErrorResponse(ErrorCode.UNKNOWN_DEFINITION, "unknown definition");
+            multi.getParts().get(1).returnRequest();
+            multi.processed();
+        };
+        JRTClientMultiConfigRequest request = invoke("a", "b", "c");
+
+        assertTrue(request.validateResponse());
+        List<JRTClientConfigRequest> responded = request.respondedParts();
+        assertEquals(Arrays.asList(request.getParts().get(0), request.getParts().get(1)), responded);
+        assertPayload("foo", responded.get(0));
+        assertFalse(responded.get(1).validateResponse());
+        assertEquals(ErrorCode.UNKNOWN_DEFINITION, responded.get(1).errorCode());
+        assertEquals("unknown definition", responded.get(1).errorMessage());
+    }
+
+    @Test
+    public void abandon_tasks_are_run_for_parts_not_returned() {
+        List<String> abandoned = new ArrayList<>();
+        handler = multi -> {
+            multi.getParts().forEach(part -> part.whenAbandoned(() -> abandoned.add(part.getConfigKey().getConfigId())));
+            multi.processed();
+            respond(multi.getParts().get(1), "bar");
+            multi.getParts().get(2).whenAbandoned(() -> abandoned.add("late"));
+            multi.getParts().get(1).whenAbandoned(() -> abandoned.add("returned"));
+        };
+        JRTClientMultiConfigRequest request = invoke("a", "b", "c");
+
+        assertTrue(request.validateResponse());
+        assertEquals(Arrays.asList("a", "c", "late"), abandoned);
+    }
+
+    private JRTClientMultiConfigRequest invoke(String ... configIds) {
+        JRTClientMultiConfigRequest request = new JRTClientMultiConfigRequest(Arrays.stream(configIds)
+                                                                                    .map(this::createPart)
+                                                                                    .collect(Collectors.toList()));
+        target.invokeSync(request.getRequest(), 60);
+        return request;
+    }
+
+    private JRTClientConfigRequest createPart(String configId) {
+        return JRTClientConfigRequestV3.createWithParams(ConfigKey.createFull("mydef", configId, "my.name.space", "595f44fec1e92a71d3e9e77456ba80d1"),
+                                                         DefContent.fromList(Arrays.asList("namespace=my.name.space", "myfield string")),
+                                                         "myhost",
+                                                         "",
+                                                         3,
+                                                         5000,
+                                                         Trace.createNew(),
+                                                         CompressionType.UNCOMPRESSED,
+                                                         Optional.empty());
+    }
+
+    private static void respond(JRTServerConfigRequest part, String value) {
+        Slime slime = new Slime();
+        slime.setObject().setString("myfield", value);
+        Payload payload = Payload.from(new ConfigPayload(slime));
+        part.addOkResponse(payload, 4, false, ConfigUtils.getMd5(payload.getData()));
+        part.returnRequest();
+    }
+
+    private static void assertPayload(String expected, JRTClientConfigRequest part) {
+        assertTrue(part.validateResponse());
+        assertEquals(4, part.getNewGeneration());
+        assertEquals("{\"myfield\":\"" + expected + "\"}",
+                     part.getNewPayload().withCompression(CompressionType.UNCOMPRESSED).getData().toString());
+    }
+
+}
@@ -39,6 +39,7 @@ import com.yahoo.vespa.config.server.configchange.RestartActions;
 import com.yahoo.vespa.config.server.deploy.DeployHandlerLogger;
 import com.yahoo.vespa.config.server.deploy.Deployment;
 import com.yahoo.vespa.config.server.deploy.InfraDeployerProvider;
+import com.yahoo.vespa.config.server.filedistribution.FileDirectory;
 import com.yahoo.vespa.config.server.http.CompressedApplicationInputStream;
 import com.yahoo.vespa.config.server.http.LogRetriever;
 import com.yahoo.vespa.config.server.http.SimpleHttpFetcher;
@@ -385,10 +386,14 @@ public class ApplicationRepository implements com.yahoo.config.provision.Deploye
         log.log(LogLevel.DEBUG, "File references in use : " + fileReferencesInUse);
 
         // Find those on disk that are not in use
+        FileDirectory fileDirectory = new FileDirectory(fileReferencesPath);
         Set<String> fileReferencesOnDisk = new HashSet<>();
         File[] filesOnDisk = fileReferencesPath.listFiles();
         if (filesOnDisk != null)
-            fileReferencesOnDisk.addAll(Arrays.stream(filesOnDisk).map(File::getName).collect(Collectors.toSet()));
+            fileReferencesOnDisk.addAll(Arrays.stream(filesOnDisk)
+                                              .filter(fileDirectory::isFileReference)
+                                              .map(File::getName)
+                                              .collect(Collectors.toSet()));
         log.log(LogLevel.DEBUG, "File references on disk (in " + fileReferencesPath + "): " + fileReferencesOnDisk);
 
         Instant instant = Instant.now().minus(Duration.ofDays(14));
@@ -400,9 +405,8 @@ public class ApplicationRepository implements com.yahoo.config.provision.Deploye
         if (fileReferencesToDelete.size() > 0) {
             log.log(LogLevel.INFO, "Will delete file references not in use: " + fileReferencesToDelete);
             fileReferencesToDelete.forEach(fileReference -> {
-                File file = new File(fileReferencesPath, fileReference);
-                if ( ! IOUtils.recursiveDeleteDir(file))
-                    log.log(LogLevel.WARNING, "Could not delete " + file.getAbsolutePath());
+                if ( ! fileDirectory.delete(new FileReference(fileReference)))
+                    log.log(LogLevel.WARNING, "Could not delete " + new File(fileReferencesPath, fileReference).getAbsolutePath());
             });
         }
         return fileReferencesToDelete;
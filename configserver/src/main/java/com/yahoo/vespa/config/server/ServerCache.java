@@ -1,33 +1,76 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.config.server;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.yahoo.config.model.api.ConfigDefinitionRepo;
 import com.yahoo.vespa.config.ConfigCacheKey;
 import com.yahoo.vespa.config.ConfigDefinitionKey;
 import com.yahoo.vespa.config.buildergen.ConfigDefinition;
 import com.yahoo.vespa.config.protocol.ConfigResponse;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Cache that holds configs and config definitions (builtin and user config definitions).
+ * <p>
+ * The total size of the cached configs is bounded, and the least recently used configs are evicted when
+ * the size exceeds the max size. Each application model has its own cache, so the max size applies per model,
+ * not to all the caches of a config server. The cached responses keep the payload in the compression type requested by
+ * clients, such that cache hits can be written to the client without compressing or decompressing the payload.
+ * The number of key to md5 mappings is bounded by the number of the smallest possible configs which fit in the cache.
+ * <p>
+ * This is thread safe, and lookups do not block each other.
  *
  * @author vegardh
  */
 public class ServerCache {
 
+    /** The default max size of the configs in a cache */
+    public static final long defaultMaxSizeBytes = 64 * 1024 * 1024;
+
+    /** Estimated memory overhead of each config in addition to the payload bytes */
+    private static final int entryOverhead = 256;
+
     private final ConfigDefinitionRepo builtinConfigDefinitions;
     private final ConfigDefinitionRepo userConfigDefinitions;
+    private final long maxSizeBytes;
 
     // NOTE: The reason we do a double mapping here is to de-dupe configs that have the same md5.
-    private final Map<ConfigCacheKey, String> md5Sums = new ConcurrentHashMap<>();
-    private final Map<String, ConfigResponse> md5ToConfig = new ConcurrentHashMap<>();
+    private final Cache<ConfigCacheKey, String> md5Sums;
+
+    /** The configs of this by md5 */
+    private final Cache<String, ConfigResponse> md5ToConfig;
 
+    private final AtomicLong sizeBytes = new AtomicLong(0);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
 
     public ServerCache(ConfigDefinitionRepo builtinConfigDefinitions, ConfigDefinitionRepo userConfigDefinitions) {
+        this(builtinConfigDefinitions, userConfigDefinitions, defaultMaxSizeBytes);
+    }
+
+    public ServerCache(ConfigDefinitionRepo builtinConfigDefinitions, ConfigDefinitionRepo userConfigDefinitions,
+                       long maxSizeBytes) {
         this.builtinConfigDefinitions = builtinConfigDefinitions;
         this.userConfigDefinitions = userConfigDefinitions;
+        this.maxSizeBytes = maxSizeBytes;
+        this.md5Sums = CacheBuilder.newBuilder()
+                                   .maximumSize(Math.max(1, maxSizeBytes / entryOverhead))
+                                   .build();
+        // Configs are rarely written, and a single segment keeps the max size and the eviction order exact
+        this.md5ToConfig = CacheBuilder.newBuilder()
+                                       .concurrencyLevel(1)
+                                       .maximumWeight(maxSizeBytes)
+                                       .weigher((String md5, ConfigResponse config) -> (int)Math.min(sizeOf(config), Integer.MAX_VALUE))
+                                       .removalListener(notification -> {
+                                           sizeBytes.addAndGet(- sizeOf(notification.getValue()));
+                                           if (notification.wasEvicted())
+                                               evictions.increment();
+                                       })
+                                       .build();
     }
 
     // For testing only
@@ -36,14 +79,24 @@ public class ServerCache {
     }
 
     public void put(ConfigCacheKey key, ConfigResponse config, String configMd5) {
-        md5Sums.put(key, configMd5);
+        long size = sizeOf(config);
+        if (size > maxSizeBytes) return;
+
+        sizeBytes.addAndGet(size);
         md5ToConfig.put(configMd5, config);
+        md5Sums.put(key, configMd5);
     }
 
     public ConfigResponse get(ConfigCacheKey key) {
-        String md5 = md5Sums.get(key);
-        if (md5 == null) return null;
-        return md5ToConfig.get(md5);
+        String md5 = md5Sums.getIfPresent(key);
+        ConfigResponse config = md5 == null ? null : md5ToConfig.getIfPresent(md5);
+        if (md5 != null && config == null)
+            md5Sums.asMap().remove(key, md5); // The config was evicted
+        if (config == null)
+            misses.increment();
+        else
+            hits.increment();
+        return config;
     }
 
     @Override
@@ -53,7 +106,8 @@ public class ServerCache {
         sb.append("builtin defs: ").append(builtinConfigDefinitions.getConfigDefinitions().size()).append("\n");
         sb.append("user defs:    ").append(userConfigDefinitions.getConfigDefinitions().size()).append("\n");
         sb.append("md5sums:      ").append(md5Sums.size()).append("\n");
-        sb.append("md5ToConfig:  ").append(md5ToConfig.size()).append("\n");
+        sb.append("md5ToConfig:  ").append(configElems()).append("\n");
+        sb.append("bytes:        ").append(sizeBytes()).append("\n");
 
         return sb.toString();
     }
@@ -68,7 +122,8 @@ public class ServerCache {
      * @return elems
      */
     public int configElems() {
-        return md5ToConfig.size();
+        md5ToConfig.cleanUp();
+        return (int)md5ToConfig.size();
     }
     
     /**
@@ -76,7 +131,34 @@ public class ServerCache {
      * @return elems
      */
     public int checkSumElems() {
-        return md5Sums.size();
+        md5Sums.cleanUp();
+        return (int)md5Sums.size();
+    }
+
+    /** Returns the estimated size of the configs in this in bytes */
+    public long sizeBytes() {
+        md5ToConfig.cleanUp();
+        return sizeBytes.get();
+    }
+
+    /** Returns the number of lookups of configs which were found in this */
+    public long hits() { return hits.sum(); }
+
+    /** Returns the number of lookups of configs which were not found in this */
+    public long misses() { return misses.sum(); }
+
+    /** Returns the number of configs evicted from this to stay within the max size */
+    public long evictions() {
+        md5ToConfig.cleanUp();
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the estimated size of the given config, with the payload in both compression types,
+     * as the cached responses keep the payload in each compression type requested by clients
+     */
+    private static long sizeOf(ConfigResponse config) {
+        return config.getPayload().getByteLength() + config.getCompressionInfo().getUncompressedSize() + entryOverhead;
     }
 
 }
@@ -23,9 +23,12 @@ import com.yahoo.vespa.config.server.rpc.ConfigResponseFactory;
 import com.yahoo.vespa.config.server.rpc.UncompressedConfigResponseFactory;
 import com.yahoo.vespa.config.server.tenant.TenantRepository;
 import com.yahoo.vespa.config.util.ConfigUtils;
+import com.yahoo.yolean.Exceptions;
 
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A Vespa application for a specific version of Vespa. It holds data and metadata associated with
@@ -112,12 +115,14 @@ public class Application implements ModelResult {
         if (useCache(req)) {
             ConfigResponse config = cache.get(cacheKey);
             if (config != null) {
+                metricUpdater.incCacheHits();
                 if (logDebug()) {
                     debug("Found config " + cacheKey + " in cache");
                 }
                 metricUpdater.incrementProcTime(System.currentTimeMillis() - start);
                 return config;
             }
+            metricUpdater.incCacheMisses();
         }
 
         ConfigDefinition def = getTargetDef(req);
@@ -137,13 +142,59 @@ public class Application implements ModelResult {
         ConfigResponse configResponse = responseFactory.createResponse(payload, def.getCNode(), appGeneration, internalRedeploy);
         metricUpdater.incrementProcTime(System.currentTimeMillis() - start);
         if (useCache(req)) {
-            cache.put(cacheKey, configResponse, configResponse.getConfigMd5());
-            metricUpdater.setCacheConfigElems(cache.configElems());
-            metricUpdater.setCacheChecksumElems(cache.checkSumElems());
+            putInCache(cacheKey, configResponse);
         }
         return configResponse;
     }
 
+    /**
+     * Resolves all configs produced by the model in parallel in the given pool and puts them in the cache,
+     * such that requests for them can be served from the cache. Configs which cannot be resolved here
+     * are left to be resolved (and fail) when requested.
+     *
+     * @return the number of configs put in the cache
+     */
+    public long preGenerateConfigs(ForkJoinPool pool, ConfigResponseFactory responseFactory) {
+        Set<ConfigKey<?>> configKeys = allConfigsProduced();
+        try {
+            return pool.submit(() -> configKeys.parallelStream()
+                                               .filter(configKey -> preGenerateConfig(configKey, responseFactory))
+                                               .count())
+                       .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while generating configs for " + this, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed generating configs for " + this, e.getCause());
+        }
+    }
+
+    private boolean preGenerateConfig(ConfigKey<?> configKey, ConfigResponseFactory responseFactory) {
+        ConfigDefinition def = cache.getDef(new ConfigDefinitionKey(configKey.getName(), configKey.getNamespace()));
+        if (def == null) return false;
+
+        try {
+            ConfigPayload payload = model.getConfig(configKey, def);
+            if (payload == null) return false;
+
+            ConfigResponse configResponse = responseFactory.createResponse(payload, def.getCNode(), appGeneration, internalRedeploy);
+            putInCache(new ConfigCacheKey(configKey, def.getCNode().getMd5()), configResponse);
+            return true;
+        } catch (RuntimeException | StackOverflowError e) { // The latter when the model recurses too deep for this config
+            if (logDebug()) {
+                debug("Could not generate config " + configKey + ": " + Exceptions.toMessageString(e));
+            }
+            return false;
+        }
+    }
+
+    private void putInCache(ConfigCacheKey cacheKey, ConfigResponse configResponse) {
+        cache.put(cacheKey, configResponse, configResponse.getConfigMd5());
+        metricUpdater.setCacheConfigElems(cache.configElems());
+        metricUpdater.setCacheChecksumElems(cache.checkSumElems());
+        metricUpdater.setCacheSizeBytes(cache.sizeBytes());
+    }
+
     private boolean useCache(GetConfigRequest request) {
         return !request.noCache();
     }
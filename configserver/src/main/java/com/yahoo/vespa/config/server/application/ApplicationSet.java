@@ -88,6 +88,11 @@ public final class ApplicationSet {
         }
     }
 
+    /** Returns all the applications in this, one per Vespa version */
+    public Collection<Application> getAllApplications() {
+        return Collections.unmodifiableCollection(applications.values());
+    }
+
     public long getApplicationGeneration() {
         return generation;
     }
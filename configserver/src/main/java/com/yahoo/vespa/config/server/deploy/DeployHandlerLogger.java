@@ -32,7 +32,7 @@ public class DeployHandlerLogger implements DeployLogger {
     }
 
     @Override
-    public void log(Level level, String message) {
+    public synchronized void log(Level level, String message) {
         if ((level == LogLevel.FINE ||
              level == LogLevel.DEBUG ||
              level == LogLevel.SPAM) &&
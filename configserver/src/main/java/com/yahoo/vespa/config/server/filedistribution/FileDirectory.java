@@ -25,6 +25,8 @@ import java.util.logging.Logger;
 public class FileDirectory  {
 
     private static final Logger log = Logger.getLogger(FileDirectory.class.getName());
+    private static final String compressedDirectoryName = ".compressed";
+
     private final File root;
 
     public FileDirectory(File rootDir) {
@@ -77,6 +79,29 @@ public class FileDirectory  {
         return root;
     }
 
+    /**
+     * Returns the file which holds the compressed content of the given file reference, if it is a directory.
+     * This is outside the directory of the file reference, and may not exist yet.
+     */
+    File getCompressedFile(FileReference reference) {
+        return new File(new File(root, compressedDirectoryName), reference.value() + ".tar.gz");
+    }
+
+    /** Returns whether the given file in the root directory holds a file reference, and not compressed content */
+    public boolean isFileReference(File file) {
+        return ! file.getName().equals(compressedDirectoryName);
+    }
+
+    /** Deletes the given file reference and its compressed content, and returns whether this succeeded */
+    public boolean delete(FileReference reference) {
+        try {
+            Files.deleteIfExists(getCompressedFile(reference).toPath());
+        } catch (IOException e) {
+            log.log(LogLevel.WARNING, "Failed deleting compressed content of file reference '" + reference.value() + "': " + e.toString());
+        }
+        return IOUtils.recursiveDeleteDir(destinationDir(reference));
+    }
+
     private Long computeHash(File file) throws IOException {
         XXHash64 hasher = XXHashFactory.fastestInstance().hash64();
         if (file.isDirectory()) {
@@ -123,6 +148,7 @@ public class FileDirectory  {
                     "' has content that does not match its hash, deleting everything in " +
                     destinationDir.getAbsolutePath());
             IOUtils.recursiveDeleteDir(destinationDir);
+            Files.deleteIfExists(getCompressedFile(fileReference).toPath());
         }
     }
 
@@ -27,6 +27,8 @@ import com.yahoo.yolean.Exceptions;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
@@ -143,14 +145,35 @@ public class FileServer {
         File file = root.getFile(reference);
 
         if (file.isDirectory()) {
-            //TODO Here we should compress to file, but then we have to clean up too. Pending.
-            byte [] blob = CompressedFileReference.compress(file.getParentFile());
-            return new FileReferenceDataBlob(reference, file.getName(), FileReferenceData.Type.compressed, blob);
+            return new LazyFileReferenceData(reference, file.getName(), FileReferenceData.Type.compressed,
+                                             compressedFile(reference, file));
         } else {
             return new LazyFileReferenceData(reference, file.getName(), FileReferenceData.Type.file, file);
         }
     }
 
+    /**
+     * Returns a file with the compressed content of the given directory, which is created on first use and then
+     * reused for all transfers of the file reference. File references are immutable, so it never needs to be updated.
+     */
+    private File compressedFile(FileReference reference, File directory) throws IOException {
+        File compressed = root.getCompressedFile(reference);
+        if (compressed.exists()) return compressed;
+
+        Files.createDirectories(compressed.getParentFile().toPath());
+        File tempFile = Files.createTempFile(compressed.getParentFile().toPath(), reference.value(), ".writing").toFile();
+        try {
+            CompressedFileReference.compress(directory.getParentFile(), tempFile);
+            // Concurrent servings of the same reference may race here, but they create the same content
+            Files.move(tempFile.toPath(), compressed.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.log(LogLevel.DEBUG, () -> "Compressed reference '" + reference.value() + "' to '" + compressed.getAbsolutePath() + "'");
+            return compressed;
+        }
+        finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
     public void serveFile(String fileReference, boolean downloadFromOtherSourceIfNotFound, Request request, Receiver receiver) {
         pullExecutor.execute(() -> serveFileInternal(fileReference, downloadFromOtherSourceIfNotFound, request, receiver));
     }
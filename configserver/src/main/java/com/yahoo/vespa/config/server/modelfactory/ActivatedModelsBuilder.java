@@ -96,7 +96,8 @@ public class ActivatedModelsBuilder extends ModelsBuilder<Application> {
                 modelFactory.version(),
                 wantedNodeVespaVersion);
         MetricUpdater applicationMetricUpdater = metrics.getOrCreateMetricUpdater(Metrics.createDimensions(applicationId));
-        ServerCache serverCache = new ServerCache(configDefinitionRepo, zkClient.getUserConfigDefinitions());
+        ServerCache serverCache = new ServerCache(configDefinitionRepo, zkClient.getUserConfigDefinitions(),
+                                                  configserverConfig.maxConfigCacheSizeBytes());
         return new Application(modelFactory.createModel(modelContext),
                                serverCache,
                                appGeneration,
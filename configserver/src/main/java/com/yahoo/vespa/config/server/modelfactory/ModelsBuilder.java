@@ -10,9 +10,11 @@ import com.yahoo.config.model.api.ModelFactory;
 import com.yahoo.config.provision.AllocatedHosts;
 import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.config.provision.ApplicationLockException;
+import com.yahoo.config.provision.HostSpec;
 import com.yahoo.config.provision.OutOfCapacityException;
 import com.yahoo.component.Version;
 import com.yahoo.config.provision.Zone;
+import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.lang.SettableOptional;
 import com.yahoo.log.LogLevel;
 import com.yahoo.vespa.config.server.http.InternalServerException;
@@ -25,10 +27,15 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -171,14 +178,23 @@ public abstract class ModelsBuilder<MODELRESULT extends ModelResult> {
 
         // load old model versions
         versions = versionsToBuild(versions, wantedNodeVespaVersion, majorVersion, allocatedHosts.get());
+        List<Version> olderVersions = new ArrayList<>();
+        for (Version version : versions) {
+            if (latest.isPresent() && version.equals(latest.get())) continue; // already loaded
+            olderVersions.add(version);
+        }
+        if (configserverConfig.numParallelModelBuilds() > 1 && olderVersions.size() > 1) {
+            allApplicationVersions.addAll(buildModelVersionsInParallel(olderVersions, applicationId, wantedNodeVespaVersion,
+                                                                       applicationPackage, allocatedHosts, now));
+            return allApplicationVersions;
+        }
+
         // TODO: We use the allocated hosts from the newest version when building older model versions.
         // This is correct except for the case where an old model specifies a cluster which the new version
         // does not. In that case we really want to extend the set of allocated hosts to include those of that
         // cluster as well. To do that, create a new provisioner which uses static provisioning for known
         // clusters and the node repository provisioner as fallback.
-        for (Version version : versions) {
-            if (latest.isPresent() && version.equals(latest.get())) continue; // already loaded
-
+        for (Version version : olderVersions) {
             MODELRESULT modelVersion = buildModelVersion(modelFactoryRegistry.getFactory(version),
                                                          applicationPackage,
                                                          applicationId,
@@ -191,6 +207,56 @@ public abstract class ModelsBuilder<MODELRESULT extends ModelResult> {
         return allApplicationVersions;
     }
 
+    /**
+     * Builds the given model versions concurrently, using at most numParallelModelBuilds threads, and returns them
+     * in the given order. All of them are built with the hosts allocated when this is called, instead of those
+     * allocated by the model built before it, and the allocated hosts are then set to the union of the hosts allocated
+     * by each of them. If building fails, the failure of the first failing version, in the given order, is thrown,
+     * as when building them one at a time.
+     */
+    private List<MODELRESULT> buildModelVersionsInParallel(List<Version> versions,
+                                                           ApplicationId applicationId,
+                                                           Version wantedNodeVespaVersion,
+                                                           ApplicationPackage applicationPackage,
+                                                           SettableOptional<AllocatedHosts> allocatedHosts,
+                                                           Instant now) {
+        Optional<AllocatedHosts> hosts = allocatedHosts.asOptional();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(versions.size(), configserverConfig.numParallelModelBuilds()),
+                                                                new DaemonThreadFactory("model builder for " + applicationId + " "));
+        try {
+            List<Future<MODELRESULT>> futures = new ArrayList<>();
+            for (Version version : versions)
+                futures.add(executor.submit(() -> buildModelVersion(modelFactoryRegistry.getFactory(version),
+                                                                    applicationPackage,
+                                                                    applicationId,
+                                                                    wantedNodeVespaVersion,
+                                                                    hosts,
+                                                                    now)));
+
+            List<MODELRESULT> modelVersions = new ArrayList<>();
+            Set<HostSpec> allHosts = new LinkedHashSet<>();
+            for (Future<MODELRESULT> future : futures) {
+                MODELRESULT modelVersion = future.get();
+                allHosts.addAll(modelVersion.getModel().allocatedHosts().getHosts()); // Add additional clusters allocated
+                modelVersions.add(modelVersion);
+            }
+            allocatedHosts.set(AllocatedHosts.withHosts(allHosts));
+            return modelVersions;
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while building models for " + applicationId, e);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     private Set<Version> versionsToBuild(Set<Version> versions, Version wantedVersion, int majorVersion, AllocatedHosts allocatedHosts) {
         if (configserverConfig.buildMinimalSetOfConfigModels())
             versions = keepThoseUsedOn(allocatedHosts, versions);
@@ -24,6 +24,7 @@ import com.yahoo.vespa.config.server.host.HostValidator;
 import com.yahoo.vespa.config.server.application.PermanentApplicationPackage;
 import com.yahoo.vespa.config.server.deploy.ModelContextImpl;
 import com.yahoo.vespa.config.server.filedistribution.FileDistributionProvider;
+import com.yahoo.vespa.config.server.monitoring.Metrics;
 import com.yahoo.vespa.config.server.provision.HostProvisionerProvider;
 import com.yahoo.vespa.config.server.provision.StaticProvisioner;
 import com.yahoo.vespa.config.server.session.FileDistributionFactory;
@@ -32,6 +33,7 @@ import com.yahoo.vespa.config.server.session.SessionContext;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
@@ -53,6 +55,7 @@ public class PreparedModelsBuilder extends ModelsBuilder<PreparedModelsBuilder.P
     private final FileDistributionFactory fileDistributionFactory;
     private final Optional<ApplicationSet> currentActiveApplicationSet;
     private final ModelContext.Properties properties;
+    private final Metrics metrics;
 
     public PreparedModelsBuilder(ModelFactoryRegistry modelFactoryRegistry,
                                  PermanentApplicationPackage permanentApplicationPackage,
@@ -64,7 +67,8 @@ public class PreparedModelsBuilder extends ModelsBuilder<PreparedModelsBuilder.P
                                  PrepareParams params,
                                  Optional<ApplicationSet> currentActiveApplicationSet,
                                  ModelContext.Properties properties,
-                                 ConfigserverConfig configserverConfig) {
+                                 ConfigserverConfig configserverConfig,
+                                 Metrics metrics) {
         super(modelFactoryRegistry, configserverConfig, properties.zone(), hostProvisionerProvider);
         this.permanentApplicationPackage = permanentApplicationPackage;
         this.configDefinitionRepo = configDefinitionRepo;
@@ -77,6 +81,7 @@ public class PreparedModelsBuilder extends ModelsBuilder<PreparedModelsBuilder.P
         this.currentActiveApplicationSet = currentActiveApplicationSet;
 
         this.properties = properties;
+        this.metrics = metrics;
     }
 
     @Override
@@ -88,6 +93,7 @@ public class PreparedModelsBuilder extends ModelsBuilder<PreparedModelsBuilder.P
                                                     Instant now) {
         Version modelVersion = modelFactory.version();
         log.log(LogLevel.DEBUG, "Building model " + modelVersion + " for " + applicationId);
+        long startNanos = System.nanoTime();
         FileDistributionProvider fileDistributionProvider = fileDistributionFactory.createProvider(context.getServerDBSessionDir());
 
         // Use empty on non-hosted systems, use already allocated hosts if available, create connection to a host provisioner otherwise
@@ -109,7 +115,10 @@ public class PreparedModelsBuilder extends ModelsBuilder<PreparedModelsBuilder.P
                 new ValidationParameters(params.ignoreValidationErrors() ? IgnoreValidationErrors.TRUE : IgnoreValidationErrors.FALSE);
         ModelCreateResult result =  modelFactory.createAndValidateModel(modelContext, validationParameters);
         validateModelHosts(context.getHostValidator(), applicationId, result.getModel());
-        log.log(LogLevel.DEBUG, "Done building model " + modelVersion + " for " + applicationId);
+        Duration buildTime = Duration.ofNanos(System.nanoTime() - startNanos);
+        log.log(LogLevel.DEBUG, "Done building model " + modelVersion + " for " + applicationId + " in " + buildTime.toMillis() + " ms");
+        logger.log(LogLevel.DEBUG, "Built model for Vespa version " + modelVersion + " in " + buildTime.toMillis() + " ms");
+        metrics.getOrCreateMetricUpdater(Metrics.createDimensions(applicationId)).setPrepareModelBuildTime(modelVersion, buildTime);
         return new PreparedModelsBuilder.PreparedModelResult(modelVersion, result.getModel(), fileDistributionProvider, result.getConfigChangeActions());
     }
 
@@ -1,10 +1,13 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.config.server.monitoring;
 
+import com.yahoo.component.Version;
 import com.yahoo.jdisc.Metric;
 import com.yahoo.vespa.config.server.ServerCache;
 import com.yahoo.vespa.config.server.RequestHandler;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -31,8 +34,12 @@ public class MetricUpdater {
     private static final String METRIC_APPLICATIONS = getMetricName("applications");
     private static final String METRIC_CACHE_CONFIG_ELEMENTS = getMetricName("cacheConfigElems");
     private static final String METRIC_CACHE_CONFIG_CHECKSUMS = getMetricName("cacheChecksumElems");
+    private static final String METRIC_CACHE_SIZE_BYTES = getMetricName("cacheSizeBytes");
+    private static final String METRIC_CACHE_HITS = getMetricName("cacheHits");
+    private static final String METRIC_CACHE_MISSES = getMetricName("cacheMisses");
     private static final String METRIC_DELAYED_RESPONSES = getMetricName("delayedResponses");
     private static final String METRIC_RPCSERVER_WORK_QUEUE_SIZE = getMetricName("rpcServerWorkQueueSize");
+    private static final String METRIC_PREPARE_MODEL_BUILD_TIME = getMetricName("prepareModelBuildTime");
 
 
     private final Metrics metrics;
@@ -76,6 +83,29 @@ public class MetricUpdater {
         staticMetrics.put(METRIC_CACHE_CONFIG_CHECKSUMS, elems);
     }
 
+    /**
+     * Sets the estimated size in bytes of the configs in the {@link ServerCache}
+     *
+     * @param bytes size in bytes
+     */
+    public void setCacheSizeBytes(long bytes) {
+        staticMetrics.put(METRIC_CACHE_SIZE_BYTES, bytes);
+    }
+
+    /**
+     * Increment the number of config requests resolved from the {@link ServerCache}.
+     */
+    public void incCacheHits() {
+        metrics.increment(METRIC_CACHE_HITS, metricContext);
+    }
+
+    /**
+     * Increment the number of config requests not found in the {@link ServerCache}.
+     */
+    public void incCacheMisses() {
+        metrics.increment(METRIC_CACHE_MISSES, metricContext);
+    }
+
     /**
      * Sets the number of outstanding responses (unchanged config in long poll)
      *
@@ -96,6 +126,15 @@ public class MetricUpdater {
         metrics.increment(METRIC_UNKNOWN_HOSTS, metricContext);
     }
 
+    /**
+     * Sets the time used to build the model for the given Vespa version when preparing an application.
+     */
+    public void setPrepareModelBuildTime(Version version, Duration duration) {
+        Map<String, String> versionDimensions = new LinkedHashMap<>(dimensions);
+        versionDimensions.put("vespaVersion", version.toFullString());
+        metrics.set(METRIC_PREPARE_MODEL_BUILD_TIME, duration.toMillis(), createContext(metrics, versionDimensions));
+    }
+
     private Metric.Context createContext(Metrics metrics, Map<String, String> dimensions) {
         if (metrics == null) return null;
 
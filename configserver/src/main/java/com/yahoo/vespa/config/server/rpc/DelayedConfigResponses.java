@@ -1,7 +1,6 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.config.server.rpc;
 
-import com.yahoo.concurrent.ThreadFactoryFactory;
 import com.yahoo.jrt.Target;
 import com.yahoo.jrt.TargetWatcher;
 import com.yahoo.log.LogLevel;
@@ -13,21 +12,20 @@ import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.vespa.config.server.tenant.TenantRepository;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
  * Takes care of <i>delayed responses</i> in the config server.
  * A delayed response is a response sent at request (server) timeout
  * for a config which has not changed since the request was initiated.
+ * <p>
+ * Delayed responses are timed by a hashed wheel timer, such that scheduling and cancelling them is cheap
+ * even with a large number of waiting requests, which are all cancelled at once when config is reloaded.
  *
  * @author hmusum
  */
@@ -35,32 +33,36 @@ public class DelayedConfigResponses {
     private static final Logger log = Logger.getLogger(DelayedConfigResponses.class.getName());
     private final RpcServer rpcServer;
 
-    private final ScheduledExecutorService executorService;
+    /** The resolution of the timer of delayed responses */
+    private static final long timerTickMillis = 100;
+
+    /** The number of timer ticks in a round of the timer wheel */
+    private static final int timerWheelSize = 1024;
+
+    private final HashedWheelTimer timer;
     private final boolean useJrtWatcher;
 
     private Map<ApplicationId, MetricUpdater> metrics = new ConcurrentHashMap<>();
     
-    /* Requests that resolve to config that has not changed are put on this queue. When reloading
-       config, all requests on this queue are reprocessed as if they were a new request */
-    private final Map<ApplicationId, BlockingQueue<DelayedConfigResponse>> delayedResponses =
+    /* Requests that resolve to config that has not changed are put in this set. When reloading
+       config, all requests in this set are reprocessed as if they were a new request */
+    private final Map<ApplicationId, Set<DelayedConfigResponse>> delayedResponses =
             new ConcurrentHashMap<>();
             
-    DelayedConfigResponses(RpcServer rpcServer, int numTimerThreads) {
-        this(rpcServer, numTimerThreads, true);
+    DelayedConfigResponses(RpcServer rpcServer) {
+        this(rpcServer, true);
     }
 
     // Since JRT does not allow adding watcher for "fake" requests, we must be able to disable it for unit tests :(
-    DelayedConfigResponses(RpcServer rpcServer, int numTimerThreads, boolean useJrtWatcher) {
+    DelayedConfigResponses(RpcServer rpcServer, boolean useJrtWatcher) {
         this.rpcServer = rpcServer;
-        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(numTimerThreads, ThreadFactoryFactory.getThreadFactory(DelayedConfigResponses.class.getName()));
-        executor.setRemoveOnCancelPolicy(true);
-        this.executorService = executor;
+        this.timer = new HashedWheelTimer(DelayedConfigResponses.class.getName(), timerTickMillis, timerWheelSize);
         this.useJrtWatcher = useJrtWatcher;
     }
 
     List<DelayedConfigResponse> allDelayedResponses() {
         List<DelayedConfigResponse> responses = new ArrayList<>();
-        for (Map.Entry<ApplicationId, BlockingQueue<DelayedConfigResponse>> entry : delayedResponses.entrySet()) {
+        for (Map.Entry<ApplicationId, Set<DelayedConfigResponse>> entry : delayedResponses.entrySet()) {
             responses.addAll(entry.getValue());
         }
         return responses;
@@ -73,11 +75,11 @@ public class DelayedConfigResponses {
     class DelayedConfigResponse implements Runnable, TargetWatcher {
 
         final JRTServerConfigRequest request;
-        private final BlockingQueue<DelayedConfigResponse> delayedResponsesQueue;
+        private final Set<DelayedConfigResponse> delayedResponsesQueue;
         private final ApplicationId app;
-        private ScheduledFuture<?> future;
+        private volatile HashedWheelTimer.Timeout timeout;
 
-        DelayedConfigResponse(JRTServerConfigRequest req, BlockingQueue<DelayedConfigResponse> delayedResponsesQueue, ApplicationId app) {
+        DelayedConfigResponse(JRTServerConfigRequest req, Set<DelayedConfigResponse> delayedResponsesQueue, ApplicationId app) {
             this.request = req;
             this.delayedResponsesQueue = delayedResponsesQueue;
             this.app = app;
@@ -87,6 +89,7 @@ public class DelayedConfigResponses {
         public synchronized void run() {
             removeFromQueue();
             removeWatcher();
+            if (RpcServer.isAbandoned(request)) return;
             rpcServer.addToRequestQueue(request, true, null);
             if (log.isLoggable(LogLevel.DEBUG)) {
                 log.log(LogLevel.DEBUG, logPre()+"DelayedConfigResponse. putting on queue: " + request.getShortDescription());
@@ -115,22 +118,22 @@ public class DelayedConfigResponses {
             return TenantRepository.logPre(app);
         }
 
-        synchronized void cancelAndRemove() {
+        void cancelAndRemove() {
             removeFromQueue();
             cancel();
         }
 
-        synchronized boolean cancel() {
+        boolean cancel() {
             removeWatcher();
-            if (future == null) {
+            if (timeout == null) {
                 throw new IllegalStateException("Cannot cancel a task that has not been scheduled");
             }
-            return future.cancel(false);
+            return timeout.cancel();
         }
 
-        synchronized void schedule(long delay) throws InterruptedException {
-            delayedResponsesQueue.put(this);
-            future = executorService.schedule(this, delay, TimeUnit.MILLISECONDS);
+        synchronized void schedule(long delay) {
+            timeout = timer.schedule(this, delay);
+            delayedResponsesQueue.add(this);
             addWatcher();
         }
 
@@ -147,13 +150,13 @@ public class DelayedConfigResponses {
 
         private void addWatcher() {
             if (useJrtWatcher) {
-                request.getRequest().target().addWatcher(this);
+                request.getTarget().addWatcher(this);
             }
         }
 
         private void removeWatcher() {
             if (useJrtWatcher) {
-                request.getRequest().target().removeWatcher(this);
+                request.getTarget().removeWatcher(this);
             }
         }
     }
@@ -171,40 +174,30 @@ public class DelayedConfigResponses {
         if (request.isDelayedResponse()) {
             log.log(LogLevel.DEBUG, context.logPre()+"Request already delayed");
         } else {            
-            createQueueIfNotExists(context);
-            BlockingQueue<DelayedConfigResponse> delayedResponsesQueue = delayedResponses.get(context.applicationId());
+            Set<DelayedConfigResponse> delayedResponsesQueue =
+                    delayedResponses.computeIfAbsent(context.applicationId(), __ -> ConcurrentHashMap.newKeySet());
             DelayedConfigResponse response = new DelayedConfigResponse(request, delayedResponsesQueue, context.applicationId());
             request.setDelayedResponse(true);
-            try {
-                if (log.isLoggable(LogLevel.DEBUG)) {
-                    log.log(LogLevel.DEBUG, context.logPre()+"Putting on delayedRequests queue (" + delayedResponsesQueue.size() + " elements): " +
-                            response.getRequest().getShortDescription());
-                }
-                // Config will be resolved in the run() method of DelayedConfigResponse,
-                // when the timer expires or config is updated/reloaded.
-                response.schedule(Math.max(0, request.getTimeout()));
-                metricDelayedResponses(context.applicationId(), delayedResponsesQueue.size());
-            } catch (InterruptedException e) {
-                log.log(LogLevel.WARNING, context.logPre()+"Interrupted when putting on delayed requests queue.");
+            if (log.isLoggable(LogLevel.DEBUG)) {
+                log.log(LogLevel.DEBUG, context.logPre()+"Putting on delayedRequests queue (" + delayedResponsesQueue.size() + " elements): " +
+                        response.getRequest().getShortDescription());
             }
+            // Config will be resolved in the run() method of DelayedConfigResponse,
+            // when the timer expires or config is updated/reloaded.
+            response.schedule(Math.max(0, request.getTimeout()));
+            // Stop waiting when this is part of a multi config request which is returned with other configs
+            request.whenAbandoned(response::cancelAndRemove);
+            metricDelayedResponses(context.applicationId(), delayedResponsesQueue.size());
         }
     }
 
-    private synchronized void metricDelayedResponses(ApplicationId app, int elems) {
-        if ( ! metrics.containsKey(app)) {
-            metrics.put(app, rpcServer.metricUpdaterFactory().getOrCreateMetricUpdater(Metrics.createDimensions(app)));
-        }
-        metrics.get(app).setDelayedResponses(elems);
-    }
-
-    private synchronized void createQueueIfNotExists(GetConfigContext context) {
-        if ( ! delayedResponses.containsKey(context.applicationId())) {
-            delayedResponses.put(context.applicationId(), new LinkedBlockingQueue<>());
-        }
+    private void metricDelayedResponses(ApplicationId app, int elems) {
+        metrics.computeIfAbsent(app, __ -> rpcServer.metricUpdaterFactory().getOrCreateMetricUpdater(Metrics.createDimensions(app)))
+               .setDelayedResponses(elems);
     }
 
     void stop() {
-        executorService.shutdown();
+        timer.stop();
     }
 
     /**
@@ -215,9 +208,12 @@ public class DelayedConfigResponses {
     List<DelayedConfigResponse> drainQueue(ApplicationId app) {
         ArrayList<DelayedConfigResponse> ret = new ArrayList<>();
         
-        if (delayedResponses.containsKey(app)) {
-            BlockingQueue<DelayedConfigResponse> queue = delayedResponses.get(app);
-            queue.drainTo(ret);
+        Set<DelayedConfigResponse> queue = delayedResponses.get(app);
+        if (queue != null) {
+            for (Iterator<DelayedConfigResponse> i = queue.iterator(); i.hasNext(); ) {
+                ret.add(i.next());
+                i.remove();
+            }
         }
         metrics.remove(app);
         return ret;
@@ -231,7 +227,7 @@ public class DelayedConfigResponses {
     int size() {
         int totalQueueSize = 0;
         int numQueues = 0;
-        for (Map.Entry<ApplicationId, BlockingQueue<DelayedConfigResponse>> e : delayedResponses.entrySet()) {
+        for (Map.Entry<ApplicationId, Set<DelayedConfigResponse>> e : delayedResponses.entrySet()) {
             numQueues++;
             totalQueueSize+=e.getValue().size();
         }
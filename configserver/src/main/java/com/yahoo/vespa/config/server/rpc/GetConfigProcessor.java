@@ -58,7 +58,7 @@ class GetConfigProcessor implements Runnable {
     private void handleError(JRTServerConfigRequest request, int errorCode, String message) {
         String target = "(unknown)";
         try {
-            target = request.getRequest().target().toString();
+            target = request.getTarget().toString();
         } catch (IllegalStateException e) {
             //ignore when no target
         }
@@ -0,0 +1,176 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.rpc;
+
+import com.yahoo.log.LogLevel;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * A timer which runs tasks after a delay, with a resolution of one tick.
+ * <p>
+ * Timeouts are kept in a wheel of buckets, one bucket for each tick, which is advanced by a single timer thread.
+ * Scheduling and cancelling a timeout is constant time and lock free, as new and cancelled timeouts are handed to the
+ * timer thread through queues, and only the timer thread accesses the wheel. This makes it suitable for large numbers
+ * of timeouts which are mostly cancelled before they expire, like the delayed responses to config requests.
+ * <p>
+ * Tasks are run in the timer thread and must therefore be quick.
+ * This is thread safe.
+ *
+ * @author agent
+ */
+class HashedWheelTimer {
+
+    private static final Logger log = Logger.getLogger(HashedWheelTimer.class.getName());
+
+    private final long tickNanos;
+    private final Set<Timeout>[] wheel;
+    private final int mask;
+    private final long startNanos;
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    /** The last tick processed by the timer thread */
+    private volatile long tick = 0;
+
+    /**
+     * Creates and starts a timer
+     *
+     * @param name the name of the timer thread
+     * @param tickMillis the resolution of this timer
+     * @param wheelSize the number of buckets in the wheel, which will be rounded up to the nearest power of two
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    HashedWheelTimer(String name, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0) throw new IllegalArgumentException("Tick must be positive, but was " + tickMillis);
+        if (wheelSize <= 0 || wheelSize > 1 << 30) throw new IllegalArgumentException("Illegal wheel size " + wheelSize);
+
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = 1;
+        while (size < wheelSize)
+            size <<= 1;
+        this.wheel = new Set[size];
+        for (int i = 0; i < wheel.length; i++)
+            wheel[i] = new HashSet<>();
+        this.mask = wheel.length - 1;
+        this.startNanos = System.nanoTime();
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedules the given task to be run by this timer after the given delay
+     *
+     * @return the timeout of the task, which can be used to cancel it
+     */
+    Timeout schedule(Runnable task, long delayMillis) {
+        long deadlineNanos = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        Timeout timeout = new Timeout(task, Math.max(tick + 1, (deadlineNanos + tickNanos - 1) / tickNanos));
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /** Stops this timer. Tasks which have not expired are not run. */
+    void stop() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            long next = tick + 1;
+            long sleepNanos;
+            while (running && (sleepNanos = startNanos + next * tickNanos - System.nanoTime()) > 0)
+                LockSupport.parkNanos(this, sleepNanos);
+            if ( ! running) return;
+
+            transferScheduled(next);
+            removeCancelled();
+            tick = next;
+            expire(next);
+        }
+    }
+
+    /** Moves timeouts from the scheduled queue to the wheel */
+    private void transferScheduled(long currentTick) {
+        for (Timeout timeout; (timeout = scheduled.poll()) != null; ) {
+            if (timeout.isCancelled()) continue;
+            timeout.deadlineTick = Math.max(timeout.deadlineTick, currentTick);
+            wheel[(int)(timeout.deadlineTick & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        for (Timeout timeout; (timeout = cancelled.poll()) != null; )
+            wheel[(int)(timeout.deadlineTick & mask)].remove(timeout);
+    }
+
+    private void expire(long currentTick) {
+        for (Iterator<Timeout> i = wheel[(int)(currentTick & mask)].iterator(); i.hasNext(); ) {
+            Timeout timeout = i.next();
+            if (timeout.deadlineTick > currentTick) continue; // Due in a later round of the wheel
+
+            i.remove();
+            if ( ! timeout.expire()) continue;
+            try {
+                timeout.task.run();
+            }
+            catch (RuntimeException e) {
+                log.log(LogLevel.WARNING, "Exception running timer task " + timeout.task, e);
+            }
+        }
+    }
+
+    /** A task scheduled to run when a deadline expires */
+    class Timeout {
+
+        private static final int pendingState = 0, cancelledState = 1, expiredState = 2;
+
+        private final Runnable task;
+        private final AtomicInteger state = new AtomicInteger(pendingState);
+
+        /** The tick at which this expires. Only modified by the timer thread before this is added to the wheel */
+        private long deadlineTick;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Cancels this timeout, such that its task will not be run
+         *
+         * @return true if this was cancelled, false if it was already cancelled or expired
+         */
+        boolean cancel() {
+            if ( ! state.compareAndSet(pendingState, cancelledState)) return false;
+            cancelled.add(this);
+            return true;
+        }
+
+        boolean isCancelled() { return state.get() == cancelledState; }
+
+        boolean isExpired() { return state.get() == expiredState; }
+
+        private boolean expire() { return state.compareAndSet(pendingState, expiredState); }
+
+    }
+
+}
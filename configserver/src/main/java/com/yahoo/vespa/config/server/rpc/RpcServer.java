@@ -27,6 +27,7 @@ import com.yahoo.vespa.config.JRTMethods;
 import com.yahoo.vespa.config.protocol.ConfigResponse;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequestV3;
+import com.yahoo.vespa.config.protocol.JRTServerMultiConfigRequest;
 import com.yahoo.vespa.config.protocol.Trace;
 import com.yahoo.vespa.config.server.SuperModelRequestHandler;
 import com.yahoo.vespa.config.server.application.ApplicationSet;
@@ -47,6 +48,7 @@ import com.yahoo.vespa.filedistribution.FileReferenceData;
 import com.yahoo.vespa.filedistribution.FileReferenceDownload;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -65,7 +67,7 @@ import java.util.logging.Logger;
 import java.util.stream.Stream;
 
 /**
- * An RPC server class that handles the config protocol RPC method "getConfigV3".
+ * An RPC server class that handles the config protocol RPC methods "getConfigV3" and "getConfigsV3".
  * Mandatory hooks need to be implemented by subclasses.
  *
  * @author hmusum
@@ -74,12 +76,15 @@ import java.util.stream.Stream;
 public class RpcServer implements Runnable, ReloadListener, TenantListener {
 
     static final String getConfigMethodName = "getConfigV3";
+    static final String getConfigsMethodName = "getConfigsV3";
     
     private static final int TRACELEVEL = 6;
     static final int TRACELEVEL_DEBUG = 9;
     private static final String THREADPOOL_NAME = "rpcserver worker pool";
     private static final long SHUTDOWN_TIMEOUT = 60;
     private static final int JRT_RPC_TRANSPORT_THREADS = 4;
+    // Requests waiting for a config change are answered in at most this many batches per rpc thread
+    private static final int BATCHES_PER_RPC_THREAD = 4;
 
     private final Supervisor supervisor = new Supervisor(new Transport(JRT_RPC_TRANSPORT_THREADS));
     private Spec spec;
@@ -133,7 +138,7 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
                 : config.numRpcThreads();
         executorService = new ThreadPoolExecutor(numberOfRpcThreads, numberOfRpcThreads,
                 0, TimeUnit.SECONDS, workQueue, ThreadFactoryFactory.getThreadFactory(THREADPOOL_NAME));
-        delayedConfigResponses = new DelayedConfigResponses(this, config.numDelayedResponseThreads());
+        delayedConfigResponses = new DelayedConfigResponses(this);
         spec = new Spec(null, config.rpcport());
         hostRegistry = hostRegistries.getTenantHostRegistry();
         this.useRequestVersion = config.useVespaVersionInRequest();
@@ -156,6 +161,34 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
         addToRequestQueue(JRTServerConfigRequestV3.createFromRequest(req));
     }
 
+    /**
+     * Handles RPC method "config.v3.getConfigs" requests, by processing the request for each config
+     * in sequence in a single task, and then leaving the rest to the parts, which are handled as single requests.
+     */
+    public final void getConfigsV3(Request req) {
+        if (log.isLoggable(LogLevel.SPAM)) {
+            log.log(LogLevel.SPAM, getConfigsMethodName);
+        }
+        req.detach();
+        JRTServerMultiConfigRequest request = JRTServerMultiConfigRequest.createFromRequest(req);
+        try {
+            executorService.submit(() -> {
+                for (JRTServerConfigRequest part : request.getParts()) {
+                    try {
+                        new GetConfigProcessor(this, part, false).run();
+                    } catch (RuntimeException e) {
+                        log.log(LogLevel.WARNING, "Failed processing " + part.getShortDescription(), e);
+                    }
+                }
+                request.processed();
+            });
+            updateWorkQueueMetrics();
+        } catch (RejectedExecutionException e) {
+            req.setError(ErrorCode.INTERNAL_ERROR, "getConfig request queue size is larger than configured max limit");
+            req.returnRequest();
+        }
+    }
+
     /**
      * Returns 0 if server is alive.
      */
@@ -207,6 +240,7 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
     private void setUpHandlers() {
         // The getConfig method in this class will handle RPC calls for getting config
         getSupervisor().addMethod(JRTMethods.createConfigV3GetConfigMethod(this::getConfigV3));
+        getSupervisor().addMethod(JRTMethods.createConfigV3GetConfigsMethod(this::getConfigsV3));
         getSupervisor().addMethod(new Method("ping", "", "i", this::ping)
                                   .methodDesc("ping")
                                   .returnDesc(0, "ret code", "return code, 0 is OK"));
@@ -249,33 +283,44 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
         configReloaded(ApplicationId.global());
     }
 
+    /**
+     * Responds to all requests which are waiting for config changes in the given application.
+     * The requests are handed to the rpc threads in batches, and this returns when all have been processed.
+     */
     void configReloaded(ApplicationId applicationId) {
         List<DelayedConfigResponses.DelayedConfigResponse> responses = delayedConfigResponses.drainQueue(applicationId);
         String logPre = TenantRepository.logPre(applicationId);
         if (log.isLoggable(LogLevel.DEBUG)) {
             log.log(LogLevel.DEBUG, logPre + "Start of configReload: " + responses.size() + " requests on delayed requests queue");
         }
-        int responsesSent = 0;
-        CompletionService<Boolean> completionService = new ExecutorCompletionService<>(executorService);
-        while (!responses.isEmpty()) {
-            DelayedConfigResponses.DelayedConfigResponse delayedConfigResponse = responses.remove(0);
+        List<JRTServerConfigRequest> requests = new ArrayList<>(responses.size());
+        for (DelayedConfigResponses.DelayedConfigResponse delayedConfigResponse : responses) {
             // Discard the ones that we have already answered
             // Doing cancel here deals with the case where the timer is already running or has not run, so
             // there is no need for any extra check.
             if (delayedConfigResponse.cancel()) {
+                if (isAbandoned(delayedConfigResponse.request)) continue;
                 if (log.isLoggable(LogLevel.DEBUG)) {
                     logRequestDebug(LogLevel.DEBUG, logPre + "Timer cancelled for ", delayedConfigResponse.request);
                 }
-                // Do not wait for this request if we were unable to execute
-                if (addToRequestQueue(delayedConfigResponse.request, false, completionService)) {
-                    responsesSent++;
-                }
+                requests.add(delayedConfigResponse.request);
             } else {
                 log.log(LogLevel.DEBUG, logPre + "Timer already cancelled or finished or never scheduled");
             }
         }
 
-        for (int i = 0; i < responsesSent; i++) {
+        int maxBatches = BATCHES_PER_RPC_THREAD * executorService.getMaximumPoolSize();
+        int batchSize = Math.max(1, (requests.size() + maxBatches - 1) / maxBatches);
+        int batchesSent = 0;
+        CompletionService<Boolean> completionService = new ExecutorCompletionService<>(executorService);
+        for (int i = 0; i < requests.size(); i += batchSize) {
+            // Do not wait for batches we were unable to execute
+            if (addToRequestQueue(requests.subList(i, Math.min(i + batchSize, requests.size())), completionService)) {
+                batchesSent++;
+            }
+        }
+
+        for (int i = 0; i < batchesSent; i++) {
             try {
                 completionService.take();
             } catch (InterruptedException e) {
@@ -283,7 +328,7 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
             }
         }
 
-        log.log(LogLevel.DEBUG, logPre + "Finished reloading " + responsesSent + " requests");
+        log.log(LogLevel.DEBUG, logPre + "Finished reloading " + requests.size() + " requests in " + batchesSent + " batches");
     }
 
     private void logRequestDebug(LogLevel level, String message, JRTServerConfigRequest request) {
@@ -314,7 +359,12 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
         if (log.isLoggable(LogLevel.DEBUG)) {
             log.log(LogLevel.DEBUG, "Trace at request return:\n" + request.getRequestTrace().toString());
         }
-        request.getRequest().returnRequest();
+        request.returnRequest();
+    }
+
+    /** Returns whether the given request is part of a multi config request which is already returned to the client */
+    static boolean isAbandoned(JRTServerConfigRequest request) {
+        return request instanceof JRTServerMultiConfigRequest.Part && ((JRTServerMultiConfigRequest.Part) request).isAbandoned();
     }
 
     /**
@@ -370,6 +420,32 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
         }
     }
 
+    /** Processes the given requests in sequence in a single task, and returns whether the task was accepted */
+    private boolean addToRequestQueue(List<JRTServerConfigRequest> requests, CompletionService<Boolean> completionService) {
+        // They are no longer delayed if we get here
+        requests.forEach(request -> request.setDelayedResponse(false));
+        try {
+            completionService.submit(() -> {
+                for (JRTServerConfigRequest request : requests) {
+                    try {
+                        new GetConfigProcessor(this, request, false).run();
+                    } catch (RuntimeException e) {
+                        log.log(LogLevel.WARNING, "Failed processing " + request.getShortDescription(), e);
+                    }
+                }
+                return true;
+            });
+            updateWorkQueueMetrics();
+            return true;
+        } catch (RejectedExecutionException e) {
+            for (JRTServerConfigRequest request : requests) {
+                request.addErrorResponse(ErrorCode.INTERNAL_ERROR, "getConfig request queue size is larger than configured max limit");
+                respond(request);
+            }
+            return false;
+        }
+    }
+
     private void updateWorkQueueMetrics() {
         int queued = executorService.getQueue().size();
         metrics.setRpcServerQueueSize(queued);
@@ -410,6 +486,7 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
     }
 
     void delayResponse(JRTServerConfigRequest request, GetConfigContext context) {
+        if (isAbandoned(request)) return;
         delayedConfigResponses.delayResponse(request, context);
     }
 
@@ -463,11 +540,19 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
 
         @Override
         public void receive(FileReferenceData fileData, FileServer.ReplayStatus status) {
-            int session = sendMeta(fileData);
-            sendParts(session, fileData);
+            Request meta = sendMeta(fileData);
+            int session = meta.isError() ? 1 : meta.returnValues().get(1).asInt32();
+            // Receivers supporting resumed transfers return the offset to continue an earlier transfer from
+            long offset = ( ! meta.isError() && meta.returnValues().size() > 2) ? meta.returnValues().get(2).asInt64() : 0;
+            sendParts(session, fileData, offset);
             sendEof(session, fileData, status);
         }
-        private void sendParts(int session, FileReferenceData fileData) {
+        private void sendParts(int session, FileReferenceData fileData, long offset) {
+            if (offset > 0) {
+                log.log(LogLevel.DEBUG, () -> "Resuming transfer of reference '" + fileData.fileReference().value() +
+                                              "' to " + target + " at offset " + offset);
+                fileData.skip(offset);
+            }
             ByteBuffer bb = ByteBuffer.allocate(0x100000);
             for (int partId = 0, read = fileData.nextContent(bb); read >= 0; partId++, read = fileData.nextContent(bb)) {
                 byte [] buf = bb.array();
@@ -480,7 +565,7 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
                 bb.clear();
             }
         }
-        private int sendMeta(FileReferenceData fileData) {
+        private Request sendMeta(FileReferenceData fileData) {
             Request request = new Request(FileReceiver.RECEIVE_META_METHOD);
             request.parameters().add(new StringValue(fileData.fileReference().value()));
             request.parameters().add(new StringValue(fileData.filename()));
@@ -490,13 +575,12 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
             if (request.isError()) {
                 log.warning("Failed delivering meta for reference '" + fileData.fileReference().value() + "' with file '" + fileData.filename() + "' to " +
                         target.toString() + " with error: '" + request.errorMessage() + "'.");
-                return 1;
             } else {
                 if (request.returnValues().get(0).asInt32() != 0) {
                     throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
                 }
-                return request.returnValues().get(1).asInt32();
             }
+            return request;
         }
         private void sendPart(int session, FileReference ref, int partId, byte [] buf) {
             Request request = new Request(FileReceiver.RECEIVE_PART_METHOD);
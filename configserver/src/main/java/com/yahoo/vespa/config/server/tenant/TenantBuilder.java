@@ -129,6 +129,7 @@ public class TenantBuilder {
                                                                  tenant,
                                                                  Collections.singletonList(componentRegistry.getReloadListener()),
                                                                  ConfigResponseFactory.create(componentRegistry.getConfigserverConfig()),
+                                                                 componentRegistry.getConfigserverConfig().numConfigPreGenerationThreads(),
                                                                  componentRegistry.getHostRegistries(),
                                                                  componentRegistry.getCurator());
             if (hostValidator == null) {
@@ -2,12 +2,15 @@
 package com.yahoo.vespa.config.server.tenant;
 
 import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import com.yahoo.component.Version;
 import com.yahoo.log.LogLevel;
@@ -33,6 +36,7 @@ import com.yahoo.vespa.config.server.monitoring.MetricUpdater;
 import com.yahoo.vespa.config.server.monitoring.Metrics;
 import com.yahoo.vespa.curator.Curator;
 import com.yahoo.vespa.curator.Lock;
+import com.yahoo.yolean.Exceptions;
 
 /**
  * A per tenant request handler, for handling reload (activate application) and getConfig requests for
@@ -48,6 +52,8 @@ public class TenantRequestHandler implements RequestHandler, ReloadHandler, Host
     private final TenantName tenant;
     private final List<ReloadListener> reloadListeners;
     private final ConfigResponseFactory responseFactory;
+    /** The pool generating configs before activation, if enabled. Its threads are daemons which end when idle. */
+    private final Optional<ForkJoinPool> configPreGenerationPool;
     private final HostRegistry<ApplicationId> hostRegistry;
     private final ApplicationMapper applicationMapper = new ApplicationMapper();
     private final MetricUpdater tenantMetricUpdater;
@@ -58,12 +64,16 @@ public class TenantRequestHandler implements RequestHandler, ReloadHandler, Host
                                 TenantName tenant,
                                 List<ReloadListener> reloadListeners,
                                 ConfigResponseFactory responseFactory,
+                                int numConfigPreGenerationThreads,
                                 HostRegistries hostRegistries,
                                 Curator curator) { // TODO jvenstad: Merge this class with TenantApplications, and straighten this out.
         this.metrics = metrics;
         this.tenant = tenant;
         this.reloadListeners = List.copyOf(reloadListeners);
         this.responseFactory = responseFactory;
+        this.configPreGenerationPool = numConfigPreGenerationThreads > 0
+                                       ? Optional.of(new ForkJoinPool(numConfigPreGenerationThreads))
+                                       : Optional.empty();
         this.tenantMetricUpdater = metrics.getOrCreateMetricUpdater(Metrics.createDimensions(tenant));
         this.hostRegistry = hostRegistries.createApplicationHostRegistry(tenant);
         this.applications = TenantApplications.create(curator, this, tenant);
@@ -102,6 +112,7 @@ public class TenantRequestHandler implements RequestHandler, ReloadHandler, Host
     @Override
     public void reloadConfig(ApplicationSet applicationSet) {
         ApplicationId id = applicationSet.getId();
+        configPreGenerationPool.ifPresent(pool -> preGenerateConfigs(applicationSet, pool));
         try (Lock lock = applications.lock(id)) {
             if ( ! applications.exists(id))
                 return; // Application was deleted before activation.
@@ -113,6 +124,25 @@ public class TenantRequestHandler implements RequestHandler, ReloadHandler, Host
         }
     }
 
+    /**
+     * Generates all configs of the given applications and puts them in their caches, such that the requests
+     * which follow when the new config generation is announced are served from the caches.
+     * Failures are only logged, as configs which are not generated here are generated when requested.
+     */
+    private void preGenerateConfigs(ApplicationSet applicationSet, ForkJoinPool pool) {
+        for (Application application : applicationSet.getAllApplications()) {
+            Instant start = clock.instant();
+            try {
+                long count = application.preGenerateConfigs(pool, responseFactory);
+                log.log(LogLevel.INFO, TenantRepository.logPre(application.getId()) + "Generated " + count +
+                                       " configs for " + application + " in " + Duration.between(start, clock.instant()));
+            } catch (RuntimeException e) {
+                log.log(LogLevel.WARNING, TenantRepository.logPre(application.getId()) + Exceptions.toMessageString(e) +
+                                          ", configs will be generated when requested");
+            }
+        }
+    }
+
     @Override
     public void removeApplication(ApplicationId applicationId) {
         try (Lock lock = applications.lock(applicationId)) {
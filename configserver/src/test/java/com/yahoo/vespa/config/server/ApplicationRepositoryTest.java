@@ -231,6 +231,14 @@ public class ApplicationRepositoryTest {
         File filereferenceDir = createFilereferenceOnDisk(new File(fileReferencesDir, "foo"), Instant.now().minus(Duration.ofDays(15)));
         // Add file reference that is not in use, but should not be deleted (not older than 14 days)
         File filereferenceDir2 = createFilereferenceOnDisk(new File(fileReferencesDir, "baz"), Instant.now());
+        // Add compressed content of both, which is not a file reference itself, and should be deleted with its reference
+        File compressedDir = new File(fileReferencesDir, ".compressed");
+        File compressedFile = new File(compressedDir, "foo.tar.gz");
+        File compressedFile2 = new File(compressedDir, "baz.tar.gz");
+        assertTrue(compressedDir.mkdir());
+        IOUtils.writeFile(compressedFile, Utf8.toBytes("test"));
+        IOUtils.writeFile(compressedFile2, Utf8.toBytes("test"));
+        assertTrue(compressedDir.setLastModified(Instant.now().minus(Duration.ofDays(15)).toEpochMilli()));
 
         tenantRepository.addTenant(tenant1);
         Provisioner provisioner = new SessionHandlerTest.MockProvisioner();
@@ -245,6 +253,8 @@ public class ApplicationRepositoryTest {
         assertEquals(Collections.singleton("foo"), toBeDeleted);
         assertFalse(filereferenceDir.exists());
         assertTrue(filereferenceDir2.exists());
+        assertFalse(compressedFile.exists());
+        assertTrue(compressedFile2.exists());
     }
 
     private File createFilereferenceOnDisk(File filereferenceDir, Instant lastModifiedTime) {
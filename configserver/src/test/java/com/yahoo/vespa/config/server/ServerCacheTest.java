@@ -12,7 +12,9 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -76,4 +78,49 @@ public class ServerCacheTest {
     public void testThatCacheWorksWithDifferentKeySameMd5() {
         assertTrue(cache.get(fooBarCacheKey) == cache.get(bazQuuxCacheKey));
     }
+
+    @Test
+    public void testThatHitsAndMissesAreCounted() {
+        cache.get(fooBarCacheKey);
+        cache.get(bazQuuxCacheKey);
+        cache.get(new ConfigCacheKey(new ConfigKey<>("foo", "id3", "bar"), defMd5));
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void testThatLeastRecentlyUsedConfigsAreEvictedWhenFull() {
+        ConfigResponse response = SlimeConfigResponse.fromConfigPayload(ConfigPayload.empty(), def.getCNode(), 2, false, configMd5);
+        long configSize = cache.sizeBytes() / 2;
+        cache = new ServerCache(new TestConfigDefinitionRepo(), new UserConfigDefinitionRepo(), 2 * configSize);
+
+        cache.put(fooBarCacheKey, response, configMd5);
+        cache.put(fooBarCacheKeyDifferentMd5, response, configMd5_2);
+        assertEquals(2 * configSize, cache.sizeBytes());
+        cache.get(fooBarCacheKey);
+
+        cache.put(bazQuuxCacheKey, response, "mymd5_3");
+        assertEquals(2, cache.configElems());
+        assertEquals(2 * configSize, cache.sizeBytes());
+        assertEquals(1, cache.evictions());
+        assertNotNull(cache.get(fooBarCacheKey));
+        assertNotNull(cache.get(bazQuuxCacheKey));
+        assertNull(cache.get(fooBarCacheKeyDifferentMd5));
+        assertEquals(2, cache.checkSumElems());
+    }
+
+    @Test
+    public void testThatKeyMappingsAreBoundedWithTheCache() {
+        ConfigResponse response = SlimeConfigResponse.fromConfigPayload(ConfigPayload.empty(), def.getCNode(), 2, false, configMd5);
+        long configSize = cache.sizeBytes() / 2;
+        cache = new ServerCache(new TestConfigDefinitionRepo(), new UserConfigDefinitionRepo(), 2 * configSize);
+        long maxMappings = 2 * configSize / 256; // The number of the smallest possible configs which fit in the cache
+
+        for (int i = 0; i < maxMappings + 10; i++)
+            cache.put(new ConfigCacheKey(new ConfigKey<>("foo", "id" + i, "bar"), defMd5), response, configMd5);
+        assertEquals(1, cache.configElems());
+        assertEquals(maxMappings, cache.checkSumElems());
+        assertNotNull(cache.get(new ConfigCacheKey(new ConfigKey<>("foo", "id" + (maxMappings + 9), "bar"), defMd5)));
+    }
+
 }
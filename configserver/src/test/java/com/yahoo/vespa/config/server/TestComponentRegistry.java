@@ -119,6 +119,11 @@ public class TestComponentRegistry implements GlobalComponentRegistry {
             return this;
         }
 
+        public Builder configDefinitionRepo(ConfigDefinitionRepo defRepo) {
+            this.defRepo = defRepo;
+            return this;
+        }
+
         public Builder modelFactoryRegistry(ModelFactoryRegistry modelFactoryRegistry) {
             this.modelFactoryRegistry = modelFactoryRegistry;
             return this;
@@ -154,7 +159,7 @@ public class TestComponentRegistry implements GlobalComponentRegistry {
             SessionPreparer sessionPreparer = new SessionPreparer(modelFactoryRegistry, fileDistributionFactory,
                                                                   hostProvisionerProvider, permApp,
                                                                   configserverConfig, defRepo, curator,
-                                                                  zone, new InMemoryFlagSource());
+                                                                  zone, new InMemoryFlagSource(), metrics);
             return new TestComponentRegistry(curator, ConfigCurator.create(curator), metrics, modelFactoryRegistry,
                                              permApp, fileDistributionFactory, hostRegistries, configserverConfig,
                                              sessionPreparer, hostProvisioner, defRepo, reloadListener, tenantListener,
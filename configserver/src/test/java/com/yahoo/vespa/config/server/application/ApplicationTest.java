@@ -27,6 +27,7 @@ import com.yahoo.vespa.config.server.TestConfigDefinitionRepo;
 import com.yahoo.vespa.config.server.UnknownConfigDefinitionException;
 import com.yahoo.vespa.config.server.UserConfigDefinitionRepo;
 import com.yahoo.vespa.config.server.monitoring.MetricUpdater;
+import com.yahoo.vespa.config.server.rpc.UncompressedConfigResponseFactory;
 import com.yahoo.vespa.config.server.monitoring.Metrics;
 import com.yahoo.vespa.model.VespaModel;
 import org.junit.Before;
@@ -37,8 +38,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -138,6 +141,28 @@ public class ApplicationTest {
         assertTrue(response == cached_response);
     }
 
+    @Test
+    public void require_that_configs_can_be_generated_into_cache() {
+        ConfigKey<?> slobroks = handler.allConfigsProduced().stream()
+                                       .filter(key -> key.getName().equals(SlobroksConfig.CONFIG_DEF_NAME))
+                                       .findFirst().get();
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            assertTrue(handler.preGenerateConfigs(pool, new UncompressedConfigResponseFactory()) > 0);
+        } finally {
+            pool.shutdown();
+        }
+        long cached = handler.getCache().configElems();
+        assertTrue(cached > 0);
+
+        long hits = handler.getCache().hits();
+        ConfigResponse response = handler.resolveConfig(createRequest(SlobroksConfig.CONFIG_DEF_NAME, SlobroksConfig.CONFIG_DEF_NAMESPACE,
+                                                                      SlobroksConfig.CONFIG_DEF_MD5, emptySchema, slobroks.getConfigId()));
+        assertNotNull(response);
+        assertEquals(hits + 1, handler.getCache().hits());
+        assertEquals(cached, handler.getCache().configElems());
+    }
+
     private static GetConfigRequest createRequest(String name, String namespace, String defMd5, String[] schema, String configId) {
         Request request = JRTClientConfigRequestV3.
                 createWithParams(new ConfigKey<>(name, configId, namespace, defMd5, null), DefContent.fromArray(schema),
@@ -5,7 +5,11 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Files;
 import com.yahoo.cloud.config.ConfigserverConfig;
 import com.yahoo.component.Version;
+import com.yahoo.config.FileReference;
 import com.yahoo.config.model.api.ConfigChangeAction;
+import com.yahoo.config.model.api.FileDistribution;
+import com.yahoo.config.model.api.HostInfo;
+import com.yahoo.config.model.api.Model;
 import com.yahoo.config.model.api.ModelContext;
 import com.yahoo.config.model.api.ModelCreateResult;
 import com.yahoo.config.model.api.ModelFactory;
@@ -14,6 +18,7 @@ import com.yahoo.config.model.api.ValidationParameters;
 import com.yahoo.config.model.provision.Host;
 import com.yahoo.config.model.provision.Hosts;
 import com.yahoo.config.model.provision.InMemoryProvisioner;
+import com.yahoo.config.provision.AllocatedHosts;
 import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.config.provision.ClusterSpec;
 import com.yahoo.config.provision.Environment;
@@ -22,6 +27,9 @@ import com.yahoo.config.provision.RegionName;
 import com.yahoo.config.provision.RotationName;
 import com.yahoo.config.provision.Zone;
 import com.yahoo.test.ManualClock;
+import com.yahoo.vespa.config.ConfigKey;
+import com.yahoo.vespa.config.ConfigPayload;
+import com.yahoo.vespa.config.buildergen.ConfigDefinition;
 import com.yahoo.vespa.config.server.configchange.MockRestartAction;
 import com.yahoo.vespa.config.server.configchange.RestartActions;
 import com.yahoo.vespa.config.server.http.InvalidApplicationException;
@@ -35,11 +43,17 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -231,6 +245,64 @@ public class HostedDeployTest {
         tester.deployApp("src/test/apps/hosted/", "7.1.0", Instant.now());
     }
 
+    @Test
+    public void testCreateNeededModelVersionsInParallel() {
+        List<Host> hosts = Arrays.asList(createHost("host1", "7.0.0"),
+                                         createHost("host2", "7.1.0"),
+                                         createHost("host3", "7.1.0"));
+        InMemoryProvisioner provisioner = new InMemoryProvisioner(new Hosts(hosts), true);
+
+        CountingModelFactory factory700 = DeployTester.createModelFactory(Version.fromString("7.0.0"));
+        CountingModelFactory factory710 = DeployTester.createModelFactory(Version.fromString("7.1.0"));
+        CountingModelFactory factory720 = DeployTester.createModelFactory(Version.fromString("7.2.0"));
+        List<ModelFactory> modelFactories = Arrays.asList(factory700, factory710, factory720);
+
+        DeployTester tester = new DeployTester(modelFactories, createConfigserverConfig(4), Clock.systemUTC(), provisioner);
+        tester.deployApp("src/test/apps/hosted/", "7.2.0", Instant.now());
+        assertEquals(3, tester.getAllocatedHostsOf(tester.applicationId()).getHosts().size());
+        assertTrue(factory700.creationCount() > 0);
+        assertTrue(factory710.creationCount() > 0);
+        assertTrue(factory720.creationCount() > 0);
+    }
+
+    @Test(expected = InvalidApplicationException.class)
+    public void testDeploymentFailsIfNeededModelVersionFailsWhenBuildingInParallel() {
+        List<Host> hosts = Arrays.asList(createHost("host1", "7.0.0"),
+                                         createHost("host2", "7.1.0"),
+                                         createHost("host3", "7.1.0"));
+        InMemoryProvisioner provisioner = new InMemoryProvisioner(new Hosts(hosts), true);
+
+        ModelFactory factory700 = DeployTester.createFailingModelFactory(Version.fromString("7.0.0"));
+        CountingModelFactory factory710 = DeployTester.createModelFactory(Version.fromString("7.1.0"));
+        CountingModelFactory factory720 = DeployTester.createModelFactory(Version.fromString("7.2.0"));
+        List<ModelFactory> modelFactories = Arrays.asList(factory700, factory710, factory720);
+
+        DeployTester tester = new DeployTester(modelFactories, createConfigserverConfig(4), Clock.systemUTC(), provisioner);
+        tester.deployApp("src/test/apps/hosted/", "7.2.0", Instant.now());
+    }
+
+    @Test
+    public void testHostsAllocatedByOlderModelVersionsBuiltInParallelAreAllKept() {
+        List<Host> hosts = Arrays.asList(createHost("host1", "7.0.0"),
+                                         createHost("host2", "7.1.0"),
+                                         createHost("host3", "7.1.0"));
+        InMemoryProvisioner provisioner = new InMemoryProvisioner(new Hosts(hosts), true);
+
+        // The older models may only be built when both are being built at the same time
+        CyclicBarrier olderModelsBuilding = new CyclicBarrier(2);
+        ModelFactory factory700 = new AdditionalHostModelFactory(Version.fromString("7.0.0"), "extra700", olderModelsBuilding);
+        ModelFactory factory710 = new AdditionalHostModelFactory(Version.fromString("7.1.0"), "extra710", olderModelsBuilding);
+        CountingModelFactory factory720 = DeployTester.createModelFactory(Version.fromString("7.2.0"));
+        List<ModelFactory> modelFactories = Arrays.asList(factory700, factory710, factory720);
+
+        DeployTester tester = new DeployTester(modelFactories, createConfigserverConfig(4), Clock.systemUTC(), provisioner);
+        tester.deployApp("src/test/apps/hosted/", "7.2.0", Instant.now());
+        Set<String> allocatedHostnames = tester.getAllocatedHostsOf(tester.applicationId()).getHosts().stream()
+                                               .map(HostSpec::hostname)
+                                               .collect(Collectors.toSet());
+        assertEquals(Set.of("host1", "host2", "host3", "extra700", "extra710"), allocatedHostnames);
+    }
+
     /**
      * Test that deploying an application works when there are no allocated hosts in the system
      * (the bootstrap a new zone case, so deploying the routing app since that is the first deployment
@@ -358,11 +430,16 @@ public class HostedDeployTest {
     }
 
     private static ConfigserverConfig createConfigserverConfig() {
+        return createConfigserverConfig(1);
+    }
+
+    private static ConfigserverConfig createConfigserverConfig(int numParallelModelBuilds) {
         return new ConfigserverConfig(new ConfigserverConfig.Builder()
                                               .configServerDBDir(Files.createTempDir().getAbsolutePath())
                                               .configDefinitionsDir(Files.createTempDir().getAbsolutePath())
                                               .hostedVespa(true)
-                                              .multitenant(true));
+                                              .multitenant(true)
+                                              .numParallelModelBuilds(numParallelModelBuilds));
     }
 
     private Host createHost(String hostname, String version) {
@@ -373,6 +450,85 @@ public class HostedDeployTest {
         return new Host(hostname, Collections.emptyList(), Optional.empty(), Optional.empty());
     }
 
+    /**
+     * A model factory whose models allocate an additional host, as if the application had an additional cluster
+     * in this version. Models are only built when the given barrier is passed.
+     */
+    private static class AdditionalHostModelFactory extends CountingModelFactory {
+
+        private final HostSpec additionalHost;
+        private final CyclicBarrier barrier;
+
+        AdditionalHostModelFactory(Version version, String additionalHostname, CyclicBarrier barrier) {
+            super(version, Clock.systemUTC());
+            this.additionalHost = new HostSpec(additionalHostname, Optional.empty());
+            this.barrier = barrier;
+        }
+
+        @Override
+        public Model createModel(ModelContext modelContext) {
+            awaitBarrier();
+            return new AdditionalHostModel(super.createModel(modelContext), additionalHost);
+        }
+
+        @Override
+        public ModelCreateResult createAndValidateModel(ModelContext modelContext, ValidationParameters validationParameters) {
+            awaitBarrier();
+            ModelCreateResult result = super.createAndValidateModel(modelContext, validationParameters);
+            return new ModelCreateResult(new AdditionalHostModel(result.getModel(), additionalHost),
+                                         result.getConfigChangeActions());
+        }
+
+        private void awaitBarrier() {
+            try {
+                barrier.await(60, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+                throw new IllegalStateException("Models of older versions were not built in parallel", e);
+            }
+        }
+
+    }
+
+    private static class AdditionalHostModel implements Model {
+
+        private final Model wrapped;
+        private final HostSpec additionalHost;
+
+        AdditionalHostModel(Model wrapped, HostSpec additionalHost) {
+            this.wrapped = wrapped;
+            this.additionalHost = additionalHost;
+        }
+
+        @Override
+        public ConfigPayload getConfig(ConfigKey<?> configKey, ConfigDefinition configDefinition) {
+            return wrapped.getConfig(configKey, configDefinition);
+        }
+
+        @Override
+        public Set<ConfigKey<?>> allConfigsProduced() { return wrapped.allConfigsProduced(); }
+
+        @Override
+        public Collection<HostInfo> getHosts() { return wrapped.getHosts(); }
+
+        @Override
+        public Set<String> allConfigIds() { return wrapped.allConfigIds(); }
+
+        @Override
+        public void distributeFiles(FileDistribution fileDistribution) { wrapped.distributeFiles(fileDistribution); }
+
+        @Override
+        public Set<FileReference> fileReferences() { return wrapped.fileReferences(); }
+
+        @Override
+        public AllocatedHosts allocatedHosts() {
+            Set<HostSpec> hosts = new HashSet<>(wrapped.allocatedHosts().getHosts());
+            hosts.add(additionalHost);
+            return AllocatedHosts.withHosts(hosts);
+        }
+
+    }
+
     private static class ConfigChangeActionsModelFactory extends TestModelFactory {
 
         private final ConfigChangeAction action;
@@ -2,6 +2,7 @@
 package com.yahoo.vespa.config.server.filedistribution;
 
 import com.yahoo.cloud.config.ConfigserverConfig;
+import com.yahoo.config.FileReference;
 import com.yahoo.io.IOUtils;
 import com.yahoo.net.HostName;
 import com.yahoo.vespa.filedistribution.FileReferenceData;
@@ -12,11 +13,13 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
@@ -64,6 +67,24 @@ public class FileServerTest {
         assertEquals(new String(content.get()), "dummy-data");
     }
 
+    @Test
+    public void requireThatDirectoryIsServedFromCompressedFile() throws IOException, InterruptedException, ExecutionException {
+        File dir = getFileServerRootDir();
+        IOUtils.writeFile(dir + "/12z/subdir/f1", "dummy-data", true);
+        CompletableFuture<byte []> content = new CompletableFuture<>();
+        fileServer.startFileServing("12z", new FileReceiver(content));
+        byte[] served = content.get();
+        File compressed = fileServer.getRootDir().getCompressedFile(new FileReference("12z"));
+        assertArrayEquals(Files.readAllBytes(compressed.toPath()), served);
+
+        // The compressed file is reused
+        assertTrue(compressed.setLastModified(0));
+        CompletableFuture<byte []> moreContent = new CompletableFuture<>();
+        fileServer.startFileServing("12z", new FileReceiver(moreContent));
+        assertArrayEquals(served, moreContent.get());
+        assertEquals(0, compressed.lastModified());
+    }
+
     @Test
     public void requireThatDifferentNumberOfConfigServersWork() throws IOException {
         // Empty connection pool in tests etc.
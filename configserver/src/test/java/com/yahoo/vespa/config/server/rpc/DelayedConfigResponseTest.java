@@ -38,7 +38,7 @@ public class DelayedConfigResponseTest {
     public void testDelayedConfigResponses() throws IOException {
 
         MockRpc rpc = new MockRpc(13337, temporaryFolder.newFolder());
-        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, 1, false);
+        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, false);
         assertThat(responses.size(), is(0));
         JRTServerConfigRequest req = createRequest("foo", "md5", "myid", "mymd5", 3, 1000000, "bar");
         req.setDelayedResponse(true);
@@ -59,7 +59,7 @@ public class DelayedConfigResponseTest {
     public void testDelayResponseRemove() throws IOException {
         GetConfigContext context = GetConfigContext.testContext(ApplicationId.defaultId());
         MockRpc rpc = new MockRpc(13337, temporaryFolder.newFolder());
-        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, 1, false);
+        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, false);
         responses.delayResponse(createRequest("foolio", "md5", "myid", "mymd5", 3, 100000, "bar"), context);
         assertThat(responses.size(), is(1));
         responses.allDelayedResponses().get(0).cancelAndRemove();
@@ -69,7 +69,7 @@ public class DelayedConfigResponseTest {
     @Test
     public void testDelayedConfigResponse() throws IOException {
         MockRpc rpc = new MockRpc(13337, temporaryFolder.newFolder());
-        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, 1, false);
+        DelayedConfigResponses responses = new DelayedConfigResponses(rpc, false);
         assertThat(responses.size(), is(0));
         assertThat(responses.toString(), is("DelayedConfigResponses. Average Size=0"));
         JRTServerConfigRequest req = createRequest("foo", "md5", "myid", "mymd5", 3, 100, "bar");
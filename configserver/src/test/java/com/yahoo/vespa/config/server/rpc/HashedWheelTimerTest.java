@@ -0,0 +1,57 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.rpc;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class HashedWheelTimerTest {
+
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, 8);
+
+    @After
+    public void stopTimer() {
+        timer.stop();
+    }
+
+    @Test
+    public void testTasksAreRunInDeadlineOrder() throws InterruptedException {
+        List<Integer> runs = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        // Longer delays than a round of the wheel
+        timer.schedule(() -> { runs.add(3); done.countDown(); }, 300);
+        timer.schedule(() -> { runs.add(1); done.countDown(); }, 0);
+        timer.schedule(() -> { runs.add(2); done.countDown(); }, 150);
+
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3), runs);
+    }
+
+    @Test
+    public void testCancelledTasksAreNotRun() throws InterruptedException {
+        List<String> runs = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        HashedWheelTimer.Timeout cancelled = timer.schedule(() -> runs.add("cancelled"), 50);
+        HashedWheelTimer.Timeout expired = timer.schedule(() -> { runs.add("expired"); done.countDown(); }, 100);
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertEquals(List.of("expired"), runs);
+        assertTrue(expired.isExpired());
+        assertFalse(expired.cancel());
+    }
+
+}
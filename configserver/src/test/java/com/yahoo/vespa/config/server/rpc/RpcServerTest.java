@@ -22,6 +22,7 @@ import com.yahoo.vespa.config.protocol.CompressionType;
 import com.yahoo.vespa.config.protocol.ConfigResponse;
 import com.yahoo.vespa.config.protocol.JRTClientConfigRequest;
 import com.yahoo.vespa.config.protocol.JRTClientConfigRequestV3;
+import com.yahoo.vespa.config.protocol.JRTClientMultiConfigRequest;
 import com.yahoo.vespa.config.protocol.SlimeConfigResponse;
 import com.yahoo.vespa.config.protocol.Trace;
 import com.yahoo.vespa.config.server.application.ApplicationSet;
@@ -38,6 +39,8 @@ import org.xml.sax.SAXException;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.core.Is.is;
@@ -56,6 +59,7 @@ public class RpcServerTest {
         try (RpcTester tester = new RpcTester(temporaryFolder)) {
             testPrintStatistics(tester);
             testGetConfig(tester);
+            testGetConfigs(tester);
             testEnabled(tester);
             testApplicationNotLoadedErrorWhenAppDeleted(tester);
             testEmptySentinelConfigWhenAppDeletedOnHostedVespa();
@@ -157,6 +161,23 @@ public class RpcServerTest {
         assertThat(config.intval(), is(123));
     }
 
+    private void testGetConfigs(RpcTester tester) {
+        JRTClientConfigRequest brim = createRequest(new RawConfig(new ConfigKey<>(SimpletypesConfig.class, "brim"), SimpletypesConfig.getDefMd5()));
+        JRTClientConfigRequest brum = createRequest(new RawConfig(new ConfigKey<>(SimpletypesConfig.class, "brum"), SimpletypesConfig.getDefMd5()));
+        JRTClientMultiConfigRequest req = new JRTClientMultiConfigRequest(Arrays.asList(brim, brum));
+        tester.performRequest(req.getRequest());
+        assertThat(req.getRequest().errorCode(), is(0));
+        assertTrue(req.validateResponse());
+        List<JRTClientConfigRequest> responded = req.respondedParts();
+        assertEquals(Arrays.asList(brim, brum), responded);
+        for (JRTClientConfigRequest part : responded) {
+            assertTrue(part.validateResponse());
+            SimpletypesConfig.Builder builder = new SimpletypesConfig.Builder();
+            new ConfigPayloadApplier<>(builder).applyPayload(ConfigPayload.fromUtf8Array(part.getNewPayload().getData()));
+            assertThat(new SimpletypesConfig(builder).intval(), is(123));
+        }
+    }
+
     private ConfigResponse createResponse() {
         SimpletypesConfig.Builder builder = new SimpletypesConfig.Builder();
         builder.intval(123);
@@ -24,6 +24,7 @@ import com.yahoo.vespa.config.protocol.VespaVersion;
 import com.yahoo.vespa.config.server.ReloadListener;
 import com.yahoo.vespa.config.server.ServerCache;
 import com.yahoo.vespa.config.server.TestComponentRegistry;
+import com.yahoo.vespa.config.server.TestConfigDefinitionRepo;
 import com.yahoo.vespa.config.server.application.Application;
 import com.yahoo.vespa.config.server.application.ApplicationSet;
 import com.yahoo.vespa.config.server.deploy.ZooKeeperDeployer;
@@ -93,7 +94,7 @@ public class TenantRequestHandlerTest {
         Metrics sh = Metrics.createTestMetrics();
         List<ReloadListener> listeners = new ArrayList<>();
         listeners.add(listener);
-        server = new TenantRequestHandler(sh, tenant, listeners, new UncompressedConfigResponseFactory(), new HostRegistries(), curator);
+        server = new TenantRequestHandler(sh, tenant, listeners, new UncompressedConfigResponseFactory(), 0, new HostRegistries(), curator);
         componentRegistry = new TestComponentRegistry.Builder()
                 .curator(curator)
                 .modelFactoryRegistry(createRegistry())
@@ -172,6 +173,26 @@ public class TenantRequestHandlerTest {
         }, Optional.empty());
     }
 
+    @Test
+    public void testReloadConfigWhenConfigPreGenerationFails() {
+        componentRegistry = new TestComponentRegistry.Builder()
+                .curator(curator)
+                .modelFactoryRegistry(createRegistry())
+                .configDefinitionRepo(new TestConfigDefinitionRepo())
+                .build();
+        ApplicationId applicationId = defaultApp();
+        TenantRequestHandler handler = new TenantRequestHandler(Metrics.createTestMetrics(), tenant, List.of(listener),
+                                                                (payload, defFile, generation, internalRedeploy) -> {
+                                                                    throw new StackOverflowError();
+                                                                },
+                                                                1, new HostRegistries(), curator);
+        handler.applications().createApplication(applicationId);
+        handler.applications().createPutTransaction(applicationId, 1).commit();
+        handler.reloadConfig(reloadConfig(1));
+        assertThat(listener.reloaded.get(), is(1));
+        assertThat(handler.getApplicationGeneration(applicationId, Optional.of(vespaVersion)), is(1L));
+    }
+
     @Test
     public void testReloadConfig() throws IOException {
         ApplicationId applicationId = new ApplicationId.Builder().applicationName(ApplicationName.defaultName()).tenant(tenant).build();
@@ -0,0 +1,131 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.prelude.query.Item;
+import com.yahoo.search.Query;
+import com.yahoo.search.grouping.vespa.GroupingExecutor;
+import com.yahoo.searchlib.aggregation.Grouping;
+import com.yahoo.vespa.objects.BufferSerializer;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A canonical binary signature of everything in a query which determines its result:
+ * The query tree, rank profile and properties, sorting, location, grouping, sources and restrict,
+ * summary class and fields, the hit window, and all the request parameters except the timeout, as these may be
+ * read by any searcher. Queries which have equal signatures produce equal results (given the same content).
+ *
+ * @author agent
+ */
+final class QuerySignature {
+
+    private static final int initialBufferSize = 1024;
+    private static final int maxBufferSize = 16 * 1024 * 1024;
+
+    private final byte[] signature;
+    private final int hashCode;
+
+    private QuerySignature(byte[] signature) {
+        this.signature = signature;
+        this.hashCode = Arrays.hashCode(signature);
+    }
+
+    /** Returns the size of this signature in bytes */
+    int size() { return signature.length; }
+
+    /** Creates the signature of the given query */
+    static QuerySignature of(Query query) {
+        for (int size = initialBufferSize; ; size *= 2) {
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(size);
+                encode(query, buffer);
+                return new QuerySignature(Arrays.copyOf(buffer.array(), buffer.position()));
+            }
+            catch (BufferOverflowException e) {
+                if (size >= maxBufferSize)
+                    throw new IllegalArgumentException("Query signature of " + query + " is larger than " +
+                                                       maxBufferSize + " bytes");
+            }
+        }
+    }
+
+    private static void encode(Query query, ByteBuffer buffer) {
+        query.getRanking().prepare(); // Adds the rank properties which are otherwise added when sent to the backend
+        buffer.putInt(query.getOffset());
+        buffer.putInt(query.getHits());
+        putString(query.getRanking().getProfile(), buffer);
+        putString(query.getPresentation().getSummary(), buffer);
+        putStrings(query.getPresentation().getSummaryFields(), buffer);
+        putStrings(query.getModel().getSources(), buffer);
+        putStrings(query.getModel().getRestrict(), buffer);
+        query.encodeAsProperties(buffer, true);
+        if (query.getRanking().getSorting() != null)
+            query.getRanking().getSorting().encode(buffer);
+        buffer.put((byte)0);
+        if (query.getRanking().getLocation() != null)
+            query.getRanking().getLocation().encode(buffer);
+        buffer.put((byte)0);
+        putGrouping(GroupingExecutor.getGroupingList(query), buffer);
+        query.encode(buffer);
+        putRequestParameters(query.getHttpRequest(), buffer);
+    }
+
+    private static void putRequestParameters(HttpRequest request, ByteBuffer buffer) {
+        Map<String, String> parameters = new TreeMap<>();
+        if (request != null)
+            request.propertyMap().forEach((name, value) -> {
+                if ( ! name.equalsIgnoreCase(Query.TIMEOUT.toString()))
+                    parameters.put(name, value);
+            });
+        buffer.putInt(parameters.size());
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            Item.putString(parameter.getKey(), buffer);
+            putString(parameter.getValue(), buffer);
+        }
+    }
+
+    private static void putString(String string, ByteBuffer buffer) {
+        buffer.put((byte)(string == null ? 0 : 1));
+        if (string != null)
+            Item.putString(string, buffer);
+    }
+
+    private static void putStrings(Set<String> strings, ByteBuffer buffer) {
+        buffer.putInt(strings == null ? 0 : strings.size());
+        if (strings == null) return;
+        for (String string : new TreeSet<>(strings))
+            Item.putString(string, buffer);
+    }
+
+    private static void putGrouping(List<Grouping> groupingList, ByteBuffer buffer) {
+        BufferSerializer serializer = new BufferSerializer(new GrowableByteBuffer());
+        serializer.putInt(null, groupingList.size());
+        for (Grouping grouping : groupingList)
+            grouping.serialize(serializer);
+        GrowableByteBuffer serialized = serializer.getBuf();
+        serialized.flip();
+        buffer.putInt(serialized.limit());
+        buffer.put(serialized.getByteBuffer());
+    }
+
+    @Override
+    public int hashCode() { return hashCode; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if ( ! (o instanceof QuerySignature)) return false;
+        QuerySignature other = (QuerySignature)o;
+        return hashCode == other.hashCode && Arrays.equals(signature, other.signature);
+    }
+
+}
@@ -0,0 +1,220 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.yahoo.metrics.simple.Counter;
+import com.yahoo.metrics.simple.Gauge;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitGroup;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.searchchain.PhaseNames;
+import com.yahoo.search.yql.MinimalQueryInserter;
+import com.yahoo.yolean.chain.After;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of filled results, keyed on a canonical signature of the query.
+ * This runs after the query is parsed and transformed, and before the searchers whose results should be cached.
+ * <p>
+ * Results are evicted when their total estimated size exceeds the configured max size (least recently used first),
+ * and when they are older than the configured max age, which bounds how long changes to the content
+ * may go unnoticed. Components which know the content has changed can evict all results by calling
+ * {@link #invalidate}.
+ * <p>
+ * Queries which sets noCache, or have tracing turned on, are neither served from nor added to the cache.
+ * Results which contain errors or are produced with less than full or degraded coverage are not cached.
+ * Cached hits do not refer to the query which produced them, and are returned as hits of the query served.
+ * <p>
+ * Metrics: This emits the count metrics result_cache_hits and result_cache_misses (from which the hit rate can be
+ * computed), and the gauges result_cache_bytes and result_cache_entries.
+ *
+ * @author agent
+ */
+@After({MinimalQueryInserter.EXTERNAL_YQL, PhaseNames.TRANSFORMED_QUERY})
+public class ResultCacheSearcher extends Searcher {
+
+    private static final String hitsMetricName = "result_cache_hits";
+    private static final String missesMetricName = "result_cache_misses";
+    private static final String bytesMetricName = "result_cache_bytes";
+    private static final String entriesMetricName = "result_cache_entries";
+
+    /** Estimated fixed memory overhead per hit and field value */
+    private static final int hitOverhead = 128;
+    private static final int fieldOverhead = 48;
+
+    private final Cache<QuerySignature, CachedResult> cache;
+
+    /** The generation of the content, which is incremented each time this is invalidated */
+    private final AtomicLong contentGeneration = new AtomicLong(0);
+
+    private final AtomicLong bytes = new AtomicLong(0);
+
+    private final Counter hitsCounter;
+    private final Counter missesCounter;
+    private final Gauge bytesGauge;
+    private final Gauge entriesGauge;
+
+    @Inject
+    public ResultCacheSearcher(ResultCacheConfig config, MetricReceiver metrics) {
+        this(config, metrics, Clock.systemUTC());
+    }
+
+    /** For testing - allows injection of a clock to avoid depending on the system clock */
+    public ResultCacheSearcher(ResultCacheConfig config, MetricReceiver metrics, Clock clock) {
+        this.cache = CacheBuilder.newBuilder()
+                                 .maximumWeight(config.maxSizeBytes())
+                                 .weigher((QuerySignature signature, CachedResult result) -> result.size())
+                                 .expireAfterWrite((long)(config.maxAgeSeconds() * 1000), TimeUnit.MILLISECONDS)
+                                 .ticker(new Ticker() {
+                                     @Override
+                                     public long read() { return TimeUnit.MILLISECONDS.toNanos(clock.millis()); }
+                                 })
+                                 .removalListener(notification -> bytes.addAndGet(- notification.getValue().size()))
+                                 .build();
+        this.hitsCounter = metrics.declareCounter(hitsMetricName);
+        this.missesCounter = metrics.declareCounter(missesMetricName);
+        this.bytesGauge = metrics.declareGauge(bytesMetricName);
+        this.entriesGauge = metrics.declareGauge(entriesMetricName);
+    }
+
+    @Override
+    public Result search(Query query, Execution execution) {
+        if (query.getNoCache() || query.getTraceLevel() > 0) return execution.search(query);
+
+        QuerySignature signature;
+        try {
+            signature = QuerySignature.of(query);
+        }
+        catch (RuntimeException e) { // Not a query we are able to create a signature of
+            return execution.search(query);
+        }
+
+        long generation = contentGeneration.get();
+        CachedResult cached = cache.getIfPresent(signature);
+        if (cached != null && cached.generation() == generation) {
+            hitsCounter.add();
+            return cached.toResult(query);
+        }
+        missesCounter.add();
+
+        Result result = execution.search(query);
+        if (isCacheable(result)) {
+            execution.fill(result, query.getPresentation().getSummary());
+            if (isCacheable(result)) {
+                CachedResult toCache = new CachedResult(result, generation, signature.size());
+                bytes.addAndGet(toCache.size());
+                cache.put(signature, toCache);
+            }
+        }
+        bytesGauge.sample(bytes.get());
+        entriesGauge.sample(cache.size());
+        return result;
+    }
+
+    /** Invalidates all cached results */
+    public void invalidate() {
+        contentGeneration.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    private boolean isCacheable(Result result) {
+        if (result.hits().getError() != null) return false;
+        Coverage coverage = result.getCoverage(false);
+        return coverage == null || (coverage.getFull() && ! coverage.isDegraded());
+    }
+
+    /**
+     * An immutable copy of a result produced at some content generation.
+     * The hits of this do not refer to the query which produced them, so this does not keep that query alive.
+     */
+    private static class CachedResult {
+
+        private final HitGroup hits;
+        private final long totalHitCount;
+        private final long deepHitCount;
+        private final Coverage coverage;
+        private final long generation;
+        private final int size;
+
+        CachedResult(Result result, long generation, int signatureSize) {
+            this.hits = result.hits().clone();
+            setQuery(hits, null);
+            this.totalHitCount = result.getTotalHitCount();
+            this.deepHitCount = result.getDeepHitCount();
+            this.coverage = copy(result.getCoverage(false));
+            this.generation = generation;
+            this.size = (int)Math.min(Integer.MAX_VALUE, signatureSize + estimateSize(hits));
+        }
+
+        long generation() { return generation; }
+
+        /** Returns the estimated memory size of this in bytes */
+        int size() { return size; }
+
+        /** Returns a new result for the given query containing a copy of this */
+        Result toResult(Query query) {
+            HitGroup hitsCopy = hits.clone();
+            setQuery(hitsCopy, query);
+            for (Iterator<Hit> i = hitsCopy.unorderedDeepIterator(); i.hasNext(); )
+                i.next().setCached(true);
+            hitsCopy.analyze();
+            Result result = new Result(query, hitsCopy);
+            result.setTotalHitCount(totalHitCount);
+            result.setDeepHitCount(deepHitCount);
+            result.setCoverage(copy(coverage));
+            return result;
+        }
+
+        /** Sets the given query, or null, as the query producing the given hits and all hits below it */
+        private static void setQuery(HitGroup hits, Query query) {
+            hits.replaceQuery(query);
+            for (Iterator<Hit> i = hits.unorderedIterator(); i.hasNext(); ) {
+                Hit hit = i.next();
+                if (hit instanceof HitGroup)
+                    setQuery((HitGroup)hit, query);
+                else
+                    hit.replaceQuery(query);
+            }
+        }
+
+        /** Returns a copy of the given full coverage, as results may modify their coverage when merged */
+        private static Coverage copy(Coverage coverage) {
+            if (coverage == null) return null;
+            return new Coverage(coverage.getDocs(), coverage.getActive(), coverage.getNodes(), coverage.getResultSets())
+                           .setSoonActive(coverage.getSoonActive())
+                           .setNodesTried(coverage.getNodesTried());
+        }
+
+        private static long estimateSize(HitGroup hits) {
+            long size = hitOverhead;
+            for (Iterator<Hit> i = hits.unorderedDeepIterator(); i.hasNext(); ) {
+                Hit hit = i.next();
+                long[] hitSize = { hitOverhead };
+                hit.forEachField((name, value) -> hitSize[0] += fieldOverhead + 2L * (name.length() + estimateLength(value)));
+                size += hitSize[0];
+            }
+            return size;
+        }
+
+        private static int estimateLength(Object value) {
+            if (value instanceof Number || value instanceof Boolean) return 8;
+            if (value instanceof byte[]) return ((byte[])value).length / 2;
+            return String.valueOf(value).length();
+        }
+
+    }
+
+}
@@ -20,8 +20,11 @@ import com.yahoo.search.result.ErrorMessage;
 import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
@@ -41,6 +44,7 @@ import java.util.Set;
 public class Dispatcher extends AbstractComponent {
     private static final String FDISPATCH_METRIC = "dispatch_fdispatch";
     private static final String INTERNAL_METRIC = "dispatch_internal";
+    private static final String GROUP_SELECTED_METRIC = "dispatch_group_selected";
 
     private static final int MAX_GROUP_SELECTION_ATTEMPTS = 3;
 
@@ -63,6 +67,7 @@ public class Dispatcher extends AbstractComponent {
 
     private final Metric metric;
     private final Metric.Context metricContext;
+    private final Map<Integer, Metric.Context> groupMetricContexts;
 
     public Dispatcher(String clusterId, DispatchConfig dispatchConfig, FS4ResourcePool fs4ResourcePool, int containerClusterSize,
             VipStatus vipStatus, Metric metric) {
@@ -77,8 +82,7 @@ public class Dispatcher extends AbstractComponent {
     public Dispatcher(SearchCluster searchCluster, DispatchConfig dispatchConfig, FS4InvokerFactory fs4InvokerFactory,
             RpcInvokerFactory rpcInvokerFactory, Metric metric) {
         this.searchCluster = searchCluster;
-        this.loadBalancer = new LoadBalancer(searchCluster,
-                dispatchConfig.distributionPolicy() == DispatchConfig.DistributionPolicy.ROUNDROBIN);
+        this.loadBalancer = new LoadBalancer(searchCluster, dispatchConfig.distributionPolicy());
         this.multilevelDispatch = dispatchConfig.useMultilevelDispatch();
         this.internalDispatchByDefault = !dispatchConfig.useFdispatchByDefault();
         this.dispatchWithProtobuf = dispatchConfig.dispatchWithProtobuf();
@@ -88,6 +92,7 @@ public class Dispatcher extends AbstractComponent {
 
         this.metric = metric;
         this.metricContext = metric.createContext(null);
+        this.groupMetricContexts = createGroupMetricContexts(searchCluster, metric);
 
         searchCluster.startClusterMonitoring(dispatchWithProtobuf ? rpcInvokerFactory : fs4InvokerFactory);
     }
@@ -189,6 +194,7 @@ public class Dispatcher extends AbstractComponent {
                 query.trace(false, 2, "Dispatching internally to search group ", group.id());
                 query.getModel().setSearchPath("/" + group.id());
                 invoker.get().teardown((success, time) -> loadBalancer.releaseGroup(group, success, time));
+                emitGroupSelectedMetric(group);
                 return invoker;
             } else {
                 loadBalancer.releaseGroup(group, false, 0);
@@ -202,6 +208,18 @@ public class Dispatcher extends AbstractComponent {
         return Optional.empty();
     }
 
+    private static Map<Integer, Metric.Context> createGroupMetricContexts(SearchCluster searchCluster, Metric metric) {
+        Map<Integer, Metric.Context> contexts = new HashMap<>();
+        for (Group group : searchCluster.orderedGroups()) {
+            contexts.put(group.id(), metric.createContext(Map.of("groupId", Integer.toString(group.id()))));
+        }
+        return Collections.unmodifiableMap(contexts);
+    }
+
+    private void emitGroupSelectedMetric(Group group) {
+        metric.add(GROUP_SELECTED_METRIC, 1, groupMetricContexts.get(group.id()));
+    }
+
     private void emitDispatchMetric(Optional<SearchInvoker> invoker) {
         if (invoker.isEmpty()) {
             metric.add(FDISPATCH_METRIC, 1, metricContext);
@@ -1,18 +1,24 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.dispatch;
 
+import com.yahoo.prelude.fastsearch.SortDataHitSorter;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.search.query.Sorting;
 import com.yahoo.search.result.Coverage;
 import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
 import com.yahoo.search.searchchain.Execution;
 import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -27,7 +33,9 @@ import static com.yahoo.container.handler.Coverage.DEGRADED_BY_TIMEOUT;
 /**
  * InterleavedSearchInvoker uses multiple {@link SearchInvoker} objects to interface with content
  * nodes in parallel. Operationally it first sends requests to all contained invokers and then
- * collects the results. The user of this class is responsible for merging the results if needed.
+ * collects the results. Concrete hits are merged as the responses arrive, keeping only the best
+ * offset + hits of them in the order given by the query ranking or sorting, while meta hits
+ * (e.g. grouping results) are passed through for the user of this class to merge.
  *
  * @author ollivir
  */
@@ -46,6 +54,10 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     private long deadline = 0;
 
     private Result result = null;
+    private List<Hit> mergedHits = Collections.emptyList();
+    private Comparator<Hit> hitComparator = null;
+    private Sorting sorting = null;
+    private int mergeHits = 0;
 
     private long answeredDocs = 0;
     private long answeredActiveDocs = 0;
@@ -83,6 +95,9 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         query.setHits(query.getHits() + query.getOffset());
         query.setOffset(0);
         trimResult = originalHits != query.getHits() || originalOffset != query.getOffset();
+        mergeHits = query.getHits();
+        sorting = query.getRanking().getSorting();
+        hitComparator = createHitComparator(sorting);
 
         for (SearchInvoker invoker : invokers) {
             invoker.sendSearchRequest(query);
@@ -115,6 +130,11 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         if (result == null) {
             result = new Result(query);
         }
+        result.hits().addAll(mergedHits);
+        if (sorting != null) {
+            result.hits().setSorted(true);
+        }
+        mergedHits = Collections.emptyList();
         insertNetworkErrors();
         result.setCoverage(createCoverage());
         trimResult(execution);
@@ -199,11 +219,64 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         collectCoverage(partialResult.getCoverage(true));
 
         if (result == null) {
-            result = partialResult;
-            return;
+            result = new Result(query);
         }
         result.mergeWith(partialResult);
-        result.hits().addAll(partialResult.hits().asUnorderedHits());
+
+        List<Hit> partialHits = new ArrayList<>(partialResult.hits().size());
+        for (Hit hit : partialResult.hits().asUnorderedHits()) {
+            if (hit.isAuxiliary()) {
+                result.hits().add(hit);
+            } else {
+                partialHits.add(hit);
+            }
+        }
+        // Content nodes return their hits in order, so this is normally a linear pass
+        partialHits.sort(hitComparator);
+        mergedHits = merge(mergedHits, partialHits);
+    }
+
+    /**
+     * Merges two ordered lists of hits, keeping only the best hits up to the number of hits
+     * which are needed to produce the final result. Ties are resolved in favor of the hits
+     * already merged.
+     */
+    private List<Hit> merge(List<Hit> current, List<Hit> partial) {
+        if (partial.isEmpty()) {
+            return current;
+        }
+        if (current.isEmpty() && partial.size() <= mergeHits) {
+            return partial;
+        }
+
+        List<Hit> merged = new ArrayList<>(Math.min(mergeHits, current.size() + partial.size()));
+        int indexCurrent = 0;
+        int indexPartial = 0;
+        while (merged.size() < mergeHits && indexCurrent < current.size() && indexPartial < partial.size()) {
+            Hit fromCurrent = current.get(indexCurrent);
+            Hit fromPartial = partial.get(indexPartial);
+            if (hitComparator.compare(fromCurrent, fromPartial) <= 0) {
+                merged.add(fromCurrent);
+                indexCurrent++;
+            } else {
+                merged.add(fromPartial);
+                indexPartial++;
+            }
+        }
+        while (merged.size() < mergeHits && indexCurrent < current.size()) {
+            merged.add(current.get(indexCurrent++));
+        }
+        while (merged.size() < mergeHits && indexPartial < partial.size()) {
+            merged.add(partial.get(indexPartial++));
+        }
+        return merged;
+    }
+
+    private static Comparator<Hit> createHitComparator(Sorting sorting) {
+        if (sorting == null) {
+            return Comparator.naturalOrder();
+        }
+        return SortDataHitSorter.getComparator(sorting, Comparator.naturalOrder());
     }
 
     private void collectCoverage(Coverage source) {
@@ -3,22 +3,28 @@ package com.yahoo.search.dispatch;
 
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.vespa.config.search.DispatchConfig;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
  * LoadBalancer determines which group of content nodes should be accessed next for each search query when the internal java dispatcher is
- * used.
+ * used. This class is multithread safe.
  *
  * @author ollivir
  */
 public class LoadBalancer {
-    // The implementation here is a simplistic least queries in flight + round-robin load balancer
+    // The implementation here is a simplistic least queries in flight + round-robin load balancer.
+    // It is lock-free: all mutable state is kept in atomics, and group status is looked up by group id.
 
     private static final Logger log = Logger.getLogger(LoadBalancer.class.getName());
 
@@ -28,17 +34,27 @@ public class LoadBalancer {
     private static final double MIN_QUERY_TIME = 0.001;
 
     private final List<GroupStatus> scoreboard;
+    private final GroupStatus[] scoreboardByGroupId;
     private final GroupScheduler scheduler;
 
-    public LoadBalancer(SearchCluster searchCluster, boolean roundRobin) {
+    public LoadBalancer(SearchCluster searchCluster, DispatchConfig.DistributionPolicy.Enum policy) {
         this.scoreboard = new ArrayList<>(searchCluster.groups().size());
+        int maxGroupId = -1;
         for (Group group : searchCluster.orderedGroups()) {
             scoreboard.add(new GroupStatus(group));
+            maxGroupId = Math.max(maxGroupId, group.id());
         }
-        if (roundRobin || scoreboard.size() == 1) {
+        this.scoreboardByGroupId = new GroupStatus[maxGroupId + 1];
+        for (GroupStatus groupStatus : scoreboard) {
+            scoreboardByGroupId[groupStatus.groupId()] = groupStatus;
+        }
+
+        if (policy == DispatchConfig.DistributionPolicy.Enum.ROUNDROBIN || scoreboard.size() == 1) {
             this.scheduler = new RoundRobinScheduler(scoreboard);
+        } else if (policy == DispatchConfig.DistributionPolicy.Enum.BEST_OF_RANDOM_2) {
+            this.scheduler = new BestOfRandom2Scheduler(ThreadLocalRandom::current, scoreboard);
         } else {
-            this.scheduler = new AdaptiveScheduler(new Random(), scoreboard);
+            this.scheduler = new AdaptiveScheduler(ThreadLocalRandom::current, scoreboard);
         }
     }
 
@@ -50,18 +66,16 @@ public class LoadBalancer {
      * @return The node group to target, or <i>empty</i> if the internal dispatch logic cannot be used
      */
     public Optional<Group> takeGroup(Set<Integer> rejectedGroups) {
-        synchronized (this) {
-            Optional<GroupStatus> best = scheduler.takeNextGroup(rejectedGroups);
-
-            if (best.isPresent()) {
-                GroupStatus gs = best.get();
-                gs.allocate();
-                Group ret = gs.group;
-                log.fine(() -> "Offering <" + ret + "> for query connection");
-                return Optional.of(ret);
-            } else {
-                return Optional.empty();
-            }
+        Optional<GroupStatus> best = scheduler.takeNextGroup(rejectedGroups);
+
+        if (best.isPresent()) {
+            GroupStatus gs = best.get();
+            gs.allocate();
+            Group ret = gs.group;
+            log.fine(() -> "Offering <" + ret + "> for query connection");
+            return Optional.of(ret);
+        } else {
+            return Optional.empty();
         }
     }
 
@@ -76,50 +90,52 @@ public class LoadBalancer {
      *            query execution time in milliseconds, used for adaptive load balancing
      */
     public void releaseGroup(Group group, boolean success, double searchTimeMs) {
-        synchronized (this) {
-            for (GroupStatus sched : scoreboard) {
-                if (sched.group.id() == group.id()) {
-                    sched.release(success, (double) searchTimeMs / 1000.0);
-                    break;
-                }
-            }
+        int id = group.id();
+        if (id >= 0 && id < scoreboardByGroupId.length && scoreboardByGroupId[id] != null) {
+            scoreboardByGroupId[id].release(success, searchTimeMs / 1000.0);
         }
     }
 
     static class GroupStatus {
         private final Group group;
-        private int allocations = 0;
-        private long queries = 0;
-        private double averageSearchTime = INITIAL_QUERY_TIME;
+        private final AtomicInteger allocations = new AtomicInteger(0);
+        private final AtomicLong queries = new AtomicLong(0);
+        private final AtomicLong averageSearchTimeBits = new AtomicLong(Double.doubleToLongBits(INITIAL_QUERY_TIME));
 
         GroupStatus(Group group) {
             this.group = group;
         }
 
         void allocate() {
-            allocations++;
+            allocations.incrementAndGet();
         }
 
         void release(boolean success, double searchTime) {
-            allocations--;
-            if (allocations < 0) {
+            int remaining = allocations.decrementAndGet();
+            if (remaining < 0) {
                 log.warning("Double free of query target group detected");
-                allocations = 0;
+                allocations.compareAndSet(remaining, 0);
             }
             if (success) {
-                searchTime = Math.max(searchTime, MIN_QUERY_TIME);
-                double decayRate = Math.min(queries + MIN_LATENCY_DECAY_RATE, DEFAULT_LATENCY_DECAY_RATE);
-                averageSearchTime = (searchTime + (decayRate - 1) * averageSearchTime) / decayRate;
-                queries++;
+                double boundedSearchTime = Math.max(searchTime, MIN_QUERY_TIME);
+                double decayRate = Math.min(queries.getAndIncrement() + MIN_LATENCY_DECAY_RATE, DEFAULT_LATENCY_DECAY_RATE);
+                averageSearchTimeBits.getAndUpdate(bits -> {
+                    double average = Double.longBitsToDouble(bits);
+                    return Double.doubleToLongBits((boundedSearchTime + (decayRate - 1) * average) / decayRate);
+                });
             }
         }
 
+        int allocations() {
+            return allocations.get();
+        }
+
         double averageSearchTime() {
-            return averageSearchTime;
+            return Double.longBitsToDouble(averageSearchTimeBits.get());
         }
 
         double averageSearchTimeInverse() {
-            return 1.0 / averageSearchTime;
+            return 1.0 / averageSearchTime();
         }
 
         int groupId() {
@@ -127,8 +143,8 @@ public class LoadBalancer {
         }
 
         void setQueryStatistics(long queries, double averageSearchTime) {
-            this.queries = queries;
-            this.averageSearchTime = averageSearchTime;
+            this.queries.set(queries);
+            this.averageSearchTimeBits.set(Double.doubleToLongBits(averageSearchTime));
         }
     }
 
@@ -137,7 +153,7 @@ public class LoadBalancer {
     }
 
     private static class RoundRobinScheduler implements GroupScheduler {
-        private int needle = 0;
+        private final AtomicInteger needle = new AtomicInteger(0);
         private final List<GroupStatus> scoreboard;
 
         public RoundRobinScheduler(List<GroupStatus> scoreboard) {
@@ -147,9 +163,10 @@ public class LoadBalancer {
         @Override
         public Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
             GroupStatus bestCandidate = null;
-            int bestIndex = needle;
+            int start = needle.get();
+            int bestIndex = start;
 
-            int index = needle;
+            int index = start;
             for (int i = 0; i < scoreboard.size(); i++) {
                 GroupStatus candidate = scoreboard.get(index);
                 if (rejectedGroups == null || !rejectedGroups.contains(candidate.group.id())) {
@@ -161,7 +178,8 @@ public class LoadBalancer {
                 }
                 index = nextScoreboardIndex(index);
             }
-            needle = nextScoreboardIndex(bestIndex);
+            // A concurrent update may win here, which at worst makes two queries go to the same group
+            needle.compareAndSet(start, nextScoreboardIndex(bestIndex));
             return Optional.ofNullable(bestCandidate);
         }
 
@@ -207,10 +225,14 @@ public class LoadBalancer {
     }
 
     static class AdaptiveScheduler implements GroupScheduler {
-        private final Random random;
+        private final Supplier<Random> random;
         private final List<GroupStatus> scoreboard;
 
         public AdaptiveScheduler(Random random, List<GroupStatus> scoreboard) {
+            this(() -> random, scoreboard);
+        }
+
+        public AdaptiveScheduler(Supplier<Random> random, List<GroupStatus> scoreboard) {
             this.random = random;
             this.scoreboard = scoreboard;
         }
@@ -245,7 +267,7 @@ public class LoadBalancer {
 
         @Override
         public Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
-            double needle = random.nextDouble();
+            double needle = random.get().nextDouble();
             Optional<GroupStatus> gs = selectGroup(needle, true, rejectedGroups);
             if (gs.isPresent()) {
                 return gs;
@@ -254,4 +276,63 @@ public class LoadBalancer {
             return selectGroup(needle, false, rejectedGroups);
         }
     }
+
+    /**
+     * Picks two distinct eligible groups at random and selects the one with the lowest expected
+     * latency, estimated as the number of queries in flight times the decayed average search time.
+     */
+    static class BestOfRandom2Scheduler implements GroupScheduler {
+        private final Supplier<Random> random;
+        private final List<GroupStatus> scoreboard;
+
+        public BestOfRandom2Scheduler(Random random, List<GroupStatus> scoreboard) {
+            this(() -> random, scoreboard);
+        }
+
+        public BestOfRandom2Scheduler(Supplier<Random> random, List<GroupStatus> scoreboard) {
+            this.random = random;
+            this.scoreboard = scoreboard;
+        }
+
+        @Override
+        public Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
+            Optional<GroupStatus> gs = selectGroup(true, rejectedGroups);
+            if (gs.isPresent()) {
+                return gs;
+            }
+            // fallback - any coverage better than none
+            return selectGroup(false, rejectedGroups);
+        }
+
+        private Optional<GroupStatus> selectGroup(boolean requireCoverage, Set<Integer> rejected) {
+            // Coverage may change concurrently, so both candidates are picked from a single snapshot of the eligible groups
+            List<GroupStatus> eligible = new ArrayList<>(scoreboard.size());
+            for (GroupStatus gs : scoreboard) {
+                if (isEligible(gs, requireCoverage, rejected)) {
+                    eligible.add(gs);
+                }
+            }
+            int n = eligible.size();
+            if (n == 0) {
+                return Optional.empty();
+            }
+            Random random = this.random.get();
+            int firstIndex = random.nextInt(n);
+            GroupStatus first = eligible.get(firstIndex);
+            if (n == 1) {
+                return Optional.of(first);
+            }
+            int secondIndex = random.nextInt(n - 1);
+            GroupStatus second = eligible.get(secondIndex == firstIndex ? n - 1 : secondIndex);
+            return Optional.of(expectedLatency(second) < expectedLatency(first) ? second : first);
+        }
+
+        private static boolean isEligible(GroupStatus gs, boolean requireCoverage, Set<Integer> rejected) {
+            return (rejected == null || !rejected.contains(gs.groupId())) && (!requireCoverage || gs.group.hasSufficientCoverage());
+        }
+
+        private static double expectedLatency(GroupStatus gs) {
+            return (gs.allocations() + 1) * gs.averageSearchTime();
+        }
+    }
 }
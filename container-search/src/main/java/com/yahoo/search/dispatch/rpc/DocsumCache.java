@@ -0,0 +1,157 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch.rpc;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.yahoo.collections.ListMap;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.document.GlobalId;
+import com.yahoo.prelude.fastsearch.DocumentDatabase;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.search.Result;
+import com.yahoo.search.result.Hit;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Injector;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.Slime;
+import com.yahoo.slime.SlimeInserter;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the document summaries returned by content nodes, keyed by global id, summary class, rank profile
+ * and document type. The summaries are stored as binary slime, and the least recently used summaries are
+ * evicted when the total size exceeds the configured max size. Summaries are evicted when they are older than
+ * the configured max age, as there is no notification when documents change.
+ * <p>
+ * This must only be used for summaries which do not depend on the query, i.e when summaryNeedsQuery is false.
+ * This is thread safe, and does not synchronize lookups of different summaries.
+ *
+ * @author agent
+ */
+final class DocsumCache {
+
+    /** Estimated memory overhead of each entry in addition to the summary bytes */
+    private static final int entryOverhead = 160;
+
+    private static final DocsumCache disabled = new DocsumCache(0, 0, Clock.systemUTC());
+
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final Cache<Key, byte[]> entries;
+    private final AtomicLong bytes = new AtomicLong(0);
+
+    DocsumCache(long maxBytes, double maxAgeSeconds, Clock clock) {
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = (long)(maxAgeSeconds * 1000);
+        this.entries = CacheBuilder.newBuilder()
+                                   .maximumWeight(Math.max(0, maxBytes))
+                                   .weigher((Key key, byte[] docsum) -> size(docsum))
+                                   .expireAfterWrite(Math.max(0, maxAgeMillis), TimeUnit.MILLISECONDS)
+                                   .ticker(new Ticker() {
+                                       @Override
+                                       public long read() { return TimeUnit.MILLISECONDS.toNanos(clock.millis()); }
+                                   })
+                                   .removalListener(notification -> bytes.addAndGet(- size(notification.getValue())))
+                                   .build();
+    }
+
+    /** Returns a cache which caches nothing */
+    static DocsumCache disabled() { return disabled; }
+
+    boolean isEnabled() { return maxBytes > 0 && maxAgeMillis > 0; }
+
+    /**
+     * Fills the hits of the given result which have the requested summary in this cache,
+     * and returns the other hits by the id of the node to fill them from.
+     */
+    ListMap<Integer, FastHit> fillAndGroupByNode(Result result, String summaryClass, DocumentDatabase documentDb) {
+        String rankProfile = result.getQuery().getRanking().getProfile();
+        ListMap<Integer, FastHit> hitsByNode = new ListMap<>();
+        for (Iterator<Hit> i = result.hits().unorderedDeepIterator(); i.hasNext(); ) {
+            Hit hit = i.next();
+            if ( ! (hit instanceof FastHit)) continue;
+            if (fill((FastHit)hit, summaryClass, rankProfile, documentDb)) continue;
+            hitsByNode.put(((FastHit)hit).getDistributionKey(), (FastHit)hit);
+        }
+        return hitsByNode;
+    }
+
+    /**
+     * Fills the given hit from this cache if it contains the requested summary of the hit.
+     *
+     * @return true if the hit was filled, false if it must be filled from the content node
+     */
+    boolean fill(FastHit hit, String summaryClass, String rankProfile, DocumentDatabase documentDb) {
+        if ( ! isEnabled() || hit.getGlobalId() == null) return false;
+        byte[] docsum = entries.getIfPresent(new Key(hit.getGlobalId(), summaryClass, rankProfile, documentDb.getName()));
+        if (docsum == null) return false;
+
+        hit.setField(Hit.SDDOCNAME_FIELD, documentDb.getName());
+        hit.addSummary(documentDb.getDocsumDefinitionSet().getDocsum(summaryClass),
+                       new SlimeAdapter(BinaryFormat.decode(docsum).get()));
+        hit.setFilled(summaryClass);
+        return true;
+    }
+
+    /** Adds the given summary of the given hit to this cache */
+    void put(FastHit hit, String summaryClass, String rankProfile, DocumentDatabase documentDb, Inspector docsum) {
+        if ( ! isEnabled() || hit.getGlobalId() == null) return;
+
+        Slime slime = new Slime();
+        new Injector().inject(docsum, new SlimeInserter(slime));
+        byte[] encoded = BinaryFormat.encode(slime);
+        if (size(encoded) > maxBytes) return;
+        bytes.addAndGet(size(encoded));
+        entries.put(new Key(hit.getGlobalId(), summaryClass, rankProfile, documentDb.getName()), encoded);
+    }
+
+    /** Returns the number of summaries in this */
+    long size() {
+        entries.cleanUp();
+        return entries.size();
+    }
+
+    /** Returns the estimated memory used by the summaries in this in bytes */
+    long bytes() { return bytes.get(); }
+
+    private static int size(byte[] docsum) { return docsum.length + entryOverhead; }
+
+    private static final class Key {
+
+        private final GlobalId globalId;
+        private final String summaryClass;
+        private final String rankProfile;
+        private final String documentType;
+        private final int hashCode;
+
+        Key(GlobalId globalId, String summaryClass, String rankProfile, String documentType) {
+            this.globalId = globalId;
+            this.summaryClass = summaryClass == null ? "" : summaryClass;
+            this.rankProfile = rankProfile == null ? "" : rankProfile;
+            this.documentType = documentType;
+            this.hashCode = Objects.hash(globalId, this.summaryClass, this.rankProfile, documentType);
+        }
+
+        @Override
+        public int hashCode() { return hashCode; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Key)) return false;
+            Key other = (Key)o;
+            return globalId.equals(other.globalId) &&
+                   summaryClass.equals(other.summaryClass) &&
+                   rankProfile.equals(other.rankProfile) &&
+                   documentType.equals(other.documentType);
+        }
+
+    }
+
+}
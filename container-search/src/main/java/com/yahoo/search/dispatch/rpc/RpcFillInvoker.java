@@ -22,7 +22,6 @@ import com.yahoo.slime.BinaryFormat;
 import com.yahoo.slime.Cursor;
 import com.yahoo.slime.Slime;
 
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
@@ -42,18 +41,21 @@ public class RpcFillInvoker extends FillInvoker {
 
     private final DocumentDatabase documentDb;
     private final RpcResourcePool resourcePool;
+    private final boolean summaryNeedsQuery;
 
     private GetDocsumsResponseReceiver responseReceiver;
 
 
-    RpcFillInvoker(RpcResourcePool resourcePool, DocumentDatabase documentDb) {
+    RpcFillInvoker(RpcResourcePool resourcePool, DocumentDatabase documentDb, boolean summaryNeedsQuery) {
         this.documentDb = documentDb;
         this.resourcePool = resourcePool;
+        this.summaryNeedsQuery = summaryNeedsQuery;
     }
 
     @Override
     protected void sendFillRequest(Result result, String summaryClass) {
-        ListMap<Integer, FastHit> hitsByNode = hitsByNode(result);
+        DocsumCache docsumCache = resourcePool.docsumCache(summaryNeedsQuery);
+        ListMap<Integer, FastHit> hitsByNode = docsumCache.fillAndGroupByNode(result, summaryClass, documentDb);
 
         CompressionType compression = CompressionType
                 .valueOf(result.getQuery().properties().getString(RpcResourcePool.dispatchCompression, "LZ4").toUpperCase());
@@ -61,7 +63,7 @@ public class RpcFillInvoker extends FillInvoker {
         if (result.getQuery().getTraceLevel() >= 3)
             result.getQuery().trace("Sending " + hitsByNode.size() + " summary fetch RPC requests", 3);
 
-        responseReceiver = new GetDocsumsResponseReceiver(hitsByNode.size(), resourcePool.compressor(), result);
+        responseReceiver = new GetDocsumsResponseReceiver(hitsByNode.size(), resourcePool.compressor(), docsumCache, result);
         for (Map.Entry<Integer, List<FastHit>> nodeHits : hitsByNode.entrySet()) {
             sendGetDocsumsRequest(nodeHits.getKey(), nodeHits.getValue(), summaryClass, compression, result, responseReceiver);
         }
@@ -83,20 +85,6 @@ public class RpcFillInvoker extends FillInvoker {
         // nothing to release
     }
 
-    /** Return a map of hits by their search node (partition) id */
-    private static ListMap<Integer, FastHit> hitsByNode(Result result) {
-        ListMap<Integer, FastHit> hitsByNode = new ListMap<>();
-        for (Iterator<Hit> i = result.hits().unorderedDeepIterator(); i.hasNext();) {
-            Hit h = i.next();
-            if (!(h instanceof FastHit))
-                continue;
-            FastHit hit = (FastHit) h;
-
-            hitsByNode.put(hit.getDistributionKey(), hit);
-        }
-        return hitsByNode;
-    }
-
     /** Send a getDocsums request to a node. Responses will be added to the given receiver. */
     private void sendGetDocsumsRequest(int nodeId, List<FastHit> hits, String summaryClass, CompressionType compression,
                                        Result result, GetDocsumsResponseReceiver responseReceiver) {
@@ -145,6 +133,7 @@ public class RpcFillInvoker extends FillInvoker {
 
         private final BlockingQueue<Client.ResponseOrError<GetDocsumsResponse>> responses;
         private final Compressor compressor;
+        private final DocsumCache docsumCache;
         private final Result result;
 
         /** Whether we have already logged/notified about an error - to avoid spamming */
@@ -153,9 +142,10 @@ public class RpcFillInvoker extends FillInvoker {
         /** The number of responses we should receive (and process) before this is complete */
         private int outstandingResponses;
 
-        GetDocsumsResponseReceiver(int requestCount, Compressor compressor, Result result) {
+        GetDocsumsResponseReceiver(int requestCount, Compressor compressor, DocsumCache docsumCache, Result result) {
             this.compressor = compressor;
-            responses = new LinkedBlockingQueue<>(requestCount);
+            this.docsumCache = docsumCache;
+            responses = new LinkedBlockingQueue<>(Math.max(1, requestCount));
             outstandingResponses = requestCount;
             this.result = result;
         }
@@ -243,6 +233,9 @@ public class RpcFillInvoker extends FillInvoker {
                     hits.get(i).setField(Hit.SDDOCNAME_FIELD, documentDb.getName());
                     hits.get(i).addSummary(documentDb.getDocsumDefinitionSet().getDocsum(summaryClass), summary);
                     hits.get(i).setFilled(summaryClass);
+                    if ( ! hasErrors)
+                        docsumCache.put(hits.get(i), summaryClass, result.getQuery().getRanking().getProfile(), documentDb,
+                                        root.field("docsums").entry(i).field("docsum"));
                 } else {
                     skippedHits++;
                 }
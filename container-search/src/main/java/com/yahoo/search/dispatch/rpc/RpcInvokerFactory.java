@@ -53,7 +53,7 @@ public class RpcInvokerFactory extends InvokerFactory {
                 && ! summaryNeedsQuery
                 && query.getRanking().getLocation() == null)
         {
-            return Optional.of(new RpcFillInvoker(rpcResourcePool, searcher.getDocumentDatabase(query)));
+            return Optional.of(new RpcFillInvoker(rpcResourcePool, searcher.getDocumentDatabase(query), summaryNeedsQuery));
         } else {
             return Optional.empty();
         }
@@ -61,7 +61,7 @@ public class RpcInvokerFactory extends InvokerFactory {
 
     // for testing
     public FillInvoker createFillInvoker(DocumentDatabase documentDb) {
-        return new RpcFillInvoker(rpcResourcePool, documentDb);
+        return new RpcFillInvoker(rpcResourcePool, documentDb, false);
     }
 
     public void release() {
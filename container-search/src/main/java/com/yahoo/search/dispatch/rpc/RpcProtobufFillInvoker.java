@@ -22,7 +22,6 @@ import com.yahoo.search.result.Hit;
 import com.yahoo.slime.ArrayTraverser;
 import com.yahoo.slime.BinaryFormat;
 
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
@@ -45,6 +44,7 @@ public class RpcProtobufFillInvoker extends FillInvoker {
     private final DocumentDatabase documentDb;
     private final RpcResourcePool resourcePool;
     private final boolean summaryNeedsQuery;
+    private final DocsumCache docsumCache;
     private final String serverId;
 
     private BlockingQueue<Pair<Client.ResponseOrError<ProtobufResponse>, List<FastHit>>> responses;
@@ -60,16 +60,17 @@ public class RpcProtobufFillInvoker extends FillInvoker {
         this.resourcePool = resourcePool;
         this.serverId = serverId;
         this.summaryNeedsQuery = summaryNeedsQuery;
+        this.docsumCache = resourcePool.docsumCache(summaryNeedsQuery);
     }
 
     @Override
     protected void sendFillRequest(Result result, String summaryClass) {
-        ListMap<Integer, FastHit> hitsByNode = hitsByNode(result);
+        ListMap<Integer, FastHit> hitsByNode = docsumCache.fillAndGroupByNode(result, summaryClass, documentDb);
 
         result.getQuery().trace(false, 5, "Sending ", hitsByNode.size(), " summary fetch requests with jrt/protobuf");
 
         outstandingResponses = hitsByNode.size();
-        responses = new LinkedBlockingQueue<>(outstandingResponses);
+        responses = new LinkedBlockingQueue<>(Math.max(1, outstandingResponses));
 
         var builder = ProtobufSerialization.createDocsumRequestBuilder(result.getQuery(), serverId, summaryClass, summaryNeedsQuery);
         for (Map.Entry<Integer, List<FastHit>> nodeHits : hitsByNode.entrySet()) {
@@ -99,20 +100,6 @@ public class RpcProtobufFillInvoker extends FillInvoker {
         responses.add(new Pair<>(response, hitsContext));
     }
 
-    /** Return a map of hits by their search node (partition) id */
-    private static ListMap<Integer, FastHit> hitsByNode(Result result) {
-        ListMap<Integer, FastHit> hitsByNode = new ListMap<>();
-        for (Iterator<Hit> i = result.hits().unorderedDeepIterator(); i.hasNext();) {
-            Hit h = i.next();
-            if (!(h instanceof FastHit))
-                continue;
-            FastHit hit = (FastHit) h;
-
-            hitsByNode.put(hit.getDistributionKey(), hit);
-        }
-        return hitsByNode;
-    }
-
     /** Send a docsums request to a node. Responses will be added to the given receiver. */
     private void sendDocsumsRequest(int nodeId, List<FastHit> hits, byte[] payload, Result result) {
         Client.NodeConnection node = resourcePool.getConnection(nodeId);
@@ -205,6 +192,9 @@ public class RpcProtobufFillInvoker extends FillInvoker {
                     hits.get(i).setField(Hit.SDDOCNAME_FIELD, documentDb.getName());
                     hits.get(i).addSummary(documentDb.getDocsumDefinitionSet().getDocsum(summaryClass), summary);
                     hits.get(i).setFilled(summaryClass);
+                    if ( ! hasErrors)
+                        docsumCache.put(hits.get(i), summaryClass, result.getQuery().getRanking().getProfile(), documentDb,
+                                        root.field("docsums").entry(i).field("docsum"));
                 } else {
                     skippedHits++;
                 }
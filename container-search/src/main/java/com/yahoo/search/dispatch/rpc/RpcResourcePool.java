@@ -11,6 +11,7 @@ import com.yahoo.search.dispatch.FillInvoker;
 import com.yahoo.search.dispatch.rpc.Client.NodeConnection;
 import com.yahoo.vespa.config.search.DispatchConfig;
 
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -33,10 +34,18 @@ public class RpcResourcePool {
     /** Connections to the search nodes this talks to, indexed by node id ("partid") */
     private final ImmutableMap<Integer, NodeConnectionPool> nodeConnectionPools;
 
+    /** Cache of the query independent document summaries returned by the search nodes */
+    private final DocsumCache docsumCache;
+
     public RpcResourcePool(Map<Integer, NodeConnection> nodeConnections) {
+        this(nodeConnections, DocsumCache.disabled());
+    }
+
+    RpcResourcePool(Map<Integer, NodeConnection> nodeConnections, DocsumCache docsumCache) {
         var builder = new ImmutableMap.Builder<Integer, NodeConnectionPool>();
         nodeConnections.forEach((key, connection) -> builder.put(key, new NodeConnectionPool(Collections.singletonList(connection))));
         this.nodeConnectionPools = builder.build();
+        this.docsumCache = docsumCache;
     }
 
     public RpcResourcePool(DispatchConfig dispatchConfig) {
@@ -53,6 +62,9 @@ public class RpcResourcePool {
             builder.put(node.key(), new NodeConnectionPool(connections));
         }
         this.nodeConnectionPools = builder.build();
+        this.docsumCache = new DocsumCache(dispatchConfig.docsumCacheMaxSizeBytes(),
+                                           dispatchConfig.docsumCacheMaxAgeSeconds(),
+                                           Clock.systemUTC());
     }
 
     public Compressor compressor() {
@@ -64,6 +76,11 @@ public class RpcResourcePool {
         return compressor.compress(compression, payload);
     }
 
+    /** Returns the summary cache to use for a fill, which caches nothing if the summaries depend on the query */
+    DocsumCache docsumCache(boolean summaryNeedsQuery) {
+        return summaryNeedsQuery ? DocsumCache.disabled() : docsumCache;
+    }
+
     public NodeConnection getConnection(int nodeId) {
         var pool = nodeConnectionPools.get(nodeId);
         if (pool == null) {
@@ -320,31 +320,32 @@ public class GroupingExecutor extends Searcher {
 
     /**
      * Merges the grouping content of the given result object. The first grouping hit found by iterating over the result
-     * content is kept, and all consecutive matching hits are merged into this.
+     * content is kept, and all consecutive matching hits are merged into this in a single k-way merge.
      *
      * @param result The result to traverse.
      * @return A map of merged grouping objects.
      */
     private Map<Integer, Grouping> mergeGroupingResults(Result result) {
-        Map<Integer, Grouping> ret = new HashMap<>();
+        Map<Integer, List<Grouping>> partials = new HashMap<>();
         for (Iterator<Hit> i = result.hits().unorderedIterator(); i.hasNext(); ) {
             Hit hit = i.next();
             if (hit instanceof GroupingListHit) {
                 ContextInjector injector = new ContextInjector(hit);
                 for (Grouping grp : ((GroupingListHit)hit).getGroupingList()) {
                     grp.select(injector, injector);
-                    Grouping old = ret.get(grp.getId());
-                    if (old != null) {
-                        old.merge(grp);
-                    } else {
-                        ret.put(grp.getId(), grp);
-                    }
+                    partials.computeIfAbsent(grp.getId(), id -> new ArrayList<>()).add(grp);
                 }
                 i.remove();
             }
         }
-        for (Grouping grouping : ret.values()) {
+        Map<Integer, Grouping> ret = new HashMap<>();
+        for (List<Grouping> groupings : partials.values()) {
+            Grouping grouping = groupings.get(0);
+            if (groupings.size() > 1) {
+                grouping.merge(groupings.subList(1, groupings.size()));
+            }
             grouping.postMerge();
+            ret.put(grouping.getId(), grouping);
         }
         return ret;
     }
@@ -561,6 +561,14 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
         }
     }
 
+    /**
+     * Sets the query which produced this, also if a query is already set.
+     * This is for reusing hits produced by one query as hits of another equivalent query, such as cached hits.
+     */
+    public final void replaceQuery(Query query) {
+        this.query = query;
+    }
+
     /** Attach some data to this hit for this searcher */
     public void setSearcherSpecificMetaData(Searcher searcher, Object data) {
         if (searcherSpecificMetaData == null) {
@@ -0,0 +1,192 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.cache.test;
+
+import com.yahoo.component.chain.Chain;
+import com.yahoo.metrics.simple.Bucket;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.cache.ResultCacheSearcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class ResultCacheSearcherTestCase {
+
+    private final ManualClock clock = new ManualClock();
+    private final MetricReceiver.MockReceiver metrics = new MetricReceiver.MockReceiver();
+    private final BackendSearcher backend = new BackendSearcher();
+    private ResultCacheSearcher cache;
+
+    @Test
+    public void testResultsAreCachedPerQuery() {
+        Chain<Searcher> chain = createChain(new ResultCacheConfig.Builder());
+
+        Result first = search(chain, "?query=foo");
+        assertEquals(1, backend.searchCount);
+        assertFalse(first.isCached());
+
+        Result second = search(chain, "?query=foo");
+        assertEquals("Served from cache", 1, backend.searchCount);
+        assertTrue(second.isCached());
+        assertEquals(first.getTotalHitCount(), second.getTotalHitCount());
+        assertEquals(first.hits().get(0).getId(), second.hits().get(0).getId());
+        assertEquals("value of foo", second.hits().get(0).getField("field"));
+
+        second.hits().get(0).setField("field", "modified");
+        assertEquals("Cached result is not modified", "value of foo", search(chain, "?query=foo").hits().get(0).getField("field"));
+
+        search(chain, "?query=bar");
+        search(chain, "?query=foo&hits=5");
+        search(chain, "?query=foo&ranking=other");
+        assertEquals("Different queries are not served from cache", 4, backend.searchCount);
+
+        search(chain, "?query=foo&nocache");
+        assertEquals("Queries with noCache are not served from cache", 5, backend.searchCount);
+
+        Bucket snapshot = metrics.getSnapshot();
+        assertEquals(2, snapshot.getMapForMetric("result_cache_hits").values().iterator().next().getCount());
+        assertEquals(4, snapshot.getMapForMetric("result_cache_misses").values().iterator().next().getCount());
+    }
+
+    @Test
+    public void testQueriesDifferingOnlyInRequestParametersAreCachedSeparately() {
+        Chain<Searcher> chain = createChain(new ResultCacheConfig.Builder());
+
+        search(chain, "?yql=select%20*%20from%20sources%20*%20where%20title%20contains%20%22foo%22%3B");
+        search(chain, "?yql=select%20*%20from%20sources%20*%20where%20title%20contains%20%22bar%22%3B");
+        assertEquals("Unparsed YQL queries are different queries", 2, backend.searchCount);
+
+        search(chain, "?query=foo&ranking.matchPhase.attribute=a&ranking.matchPhase.maxHits=100");
+        search(chain, "?query=foo&ranking.matchPhase.attribute=a&ranking.matchPhase.maxHits=200");
+        search(chain, "?query=foo&custom.parameter=1");
+        search(chain, "?query=foo&custom.parameter=2");
+        assertEquals(6, backend.searchCount);
+
+        search(chain, "?query=foo&custom.parameter=2&timeout=5s");
+        assertEquals("The timeout is not part of the signature", 6, backend.searchCount);
+    }
+
+    @Test
+    public void testResultsExpire() {
+        Chain<Searcher> chain = createChain(new ResultCacheConfig.Builder().maxAgeSeconds(10));
+
+        search(chain, "?query=foo");
+        clock.advance(Duration.ofSeconds(5));
+        search(chain, "?query=foo");
+        assertEquals(1, backend.searchCount);
+
+        clock.advance(Duration.ofSeconds(6));
+        search(chain, "?query=foo");
+        assertEquals("Expired", 2, backend.searchCount);
+    }
+
+    @Test
+    public void testCachedHitsReferToTheQueryServed() {
+        Chain<Searcher> chain = createChain(new ResultCacheConfig.Builder());
+
+        search(chain, "?query=foo");
+        Query query = new Query("?query=foo");
+        Result cached = new Execution(chain, Execution.Context.createContextStub()).search(query);
+        assertTrue(cached.isCached());
+        assertSame(query, cached.hits().getQuery());
+        assertSame(query, cached.hits().get(0).getQuery());
+    }
+
+    @Test
+    public void testResultsAreInvalidated() {
+        Chain<Searcher> chain = createChain(new ResultCacheConfig.Builder());
+
+        search(chain, "?query=foo");
+        search(chain, "?query=bar");
+        search(chain, "?query=foo");
+        assertEquals(2, backend.searchCount);
+
+        backend.activeDocuments++;
+        search(chain, "?query=foo");
+        assertEquals("Not invalidated by a result reporting a different active document count", 2, backend.searchCount);
+
+        cache.invalidate();
+        search(chain, "?query=foo");
+        assertEquals("Invalidated", 3, backend.searchCount);
+        search(chain, "?query=foo");
+        assertEquals(3, backend.searchCount);
+    }
+
+    @Test
+    public void testIncompleteResultsAreNotCached() {
+        Chain<Searcher> chain = createChain(new ResultCacheConfig.Builder());
+        backend.fullCoverage = false;
+
+        search(chain, "?query=foo");
+        search(chain, "?query=foo");
+        assertEquals(2, backend.searchCount);
+    }
+
+    @Test
+    public void testDegradedResultsAreNotCached() {
+        Chain<Searcher> chain = createChain(new ResultCacheConfig.Builder());
+        backend.degradedReason = Coverage.DEGRADED_BY_MATCH_PHASE;
+
+        search(chain, "?query=foo");
+        search(chain, "?query=foo");
+        assertEquals(2, backend.searchCount);
+    }
+
+    @Test
+    public void testCacheSizeIsBounded() {
+        Chain<Searcher> chain = createChain(new ResultCacheConfig.Builder().maxSizeBytes(100));
+
+        search(chain, "?query=foo");
+        search(chain, "?query=foo");
+        assertEquals("Result is larger than the cache", 2, backend.searchCount);
+    }
+
+    private Chain<Searcher> createChain(ResultCacheConfig.Builder config) {
+        cache = new ResultCacheSearcher(new ResultCacheConfig(config), metrics, clock);
+        return new Chain<>(cache, backend);
+    }
+
+    private Result search(Chain<Searcher> chain, String query) {
+        return new Execution(chain, Execution.Context.createContextStub()).search(new Query(query));
+    }
+
+    private static class BackendSearcher extends Searcher {
+
+        int searchCount = 0;
+        long activeDocuments = 100;
+        boolean fullCoverage = true;
+        int degradedReason = 0;
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            searchCount++;
+            Result result = new Result(query);
+            for (int i = 0; i < query.getHits(); i++) {
+                Hit hit = new Hit(query.getModel().getQueryString() + ":" + i, 1.0 / (i + 1));
+                hit.setField("field", "value of " + query.getModel().getQueryString());
+                result.hits().add(hit);
+            }
+            result.setTotalHitCount(query.getHits() * 10);
+            result.setCoverage(new Coverage(fullCoverage ? activeDocuments : activeDocuments / 2, activeDocuments, 1, 1)
+                                       .setDegradedReason(degradedReason));
+            return result;
+        }
+
+    }
+
+}
@@ -6,6 +6,7 @@ import com.yahoo.search.Result;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
 import com.yahoo.search.result.Coverage;
 import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
 import com.yahoo.test.ManualClock;
 import org.junit.Test;
 
@@ -18,6 +19,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import static com.yahoo.container.handler.Coverage.DEGRADED_BY_MATCH_PHASE;
@@ -204,6 +206,35 @@ public class InterleavedSearchInvokerTest {
         assertThat(cov.isDegradedByTimeout(), is(true));
     }
 
+    @Test
+    public void requireThatOnlyTheBestHitsAreKeptWhenMerging() throws IOException {
+        SearchCluster cluster = new MockSearchCluster("!", 1, 3);
+        invokers.add(new MockInvoker(0, createCoverage(100, 100, 100, 1, 1, 0), hits("a", 9.0, "b", 5.0, "c", 1.0)));
+        invokers.add(new MockInvoker(1, createCoverage(100, 100, 100, 1, 1, 0), hits("d", 8.0, "e", 7.0, "f", 6.0)));
+        invokers.add(new MockInvoker(2, createCoverage(100, 100, 100, 1, 1, 0), hits("g", 10.0, "h", 4.0, "i", 3.0)));
+        SearchInvoker invoker = createInterleavedInvoker(cluster, 0);
+
+        expectedEvents.add(new Event(null, 100, 0));
+        expectedEvents.add(new Event(null, 100, 1));
+        expectedEvents.add(new Event(null, 100, 2));
+
+        query.setHits(3);
+        query.setOffset(1);
+        Result result = invoker.search(query, null);
+
+        assertEquals("Only offset + hits are kept, and the offset is trimmed away",
+                     List.of("a", "d", "e"),
+                     result.hits().asList().stream().map(hit -> hit.getId().toString()).collect(Collectors.toList()));
+    }
+
+    private static List<Hit> hits(Object ... idsAndRelevances) {
+        List<Hit> hits = new ArrayList<>();
+        for (int i = 0; i < idsAndRelevances.length; i += 2) {
+            hits.add(new Hit((String) idsAndRelevances[i], (Double) idsAndRelevances[i + 1]));
+        }
+        return hits;
+    }
+
     private InterleavedSearchInvoker createInterleavedInvoker(SearchCluster searchCluster, int numInvokers) {
         for (int i = 0; i < numInvokers; i++) {
             invokers.add(new MockInvoker(i));
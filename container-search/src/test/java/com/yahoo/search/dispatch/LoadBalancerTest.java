@@ -2,10 +2,12 @@
 package com.yahoo.search.dispatch;
 
 import com.yahoo.search.dispatch.LoadBalancer.AdaptiveScheduler;
+import com.yahoo.search.dispatch.LoadBalancer.BestOfRandom2Scheduler;
 import com.yahoo.search.dispatch.LoadBalancer.GroupStatus;
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.vespa.config.search.DispatchConfig;
 import junit.framework.AssertionFailedError;
 import org.junit.Test;
 
@@ -14,6 +16,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 
 import static com.yahoo.search.dispatch.MockSearchCluster.createDispatchConfig;
 import static org.hamcrest.Matchers.closeTo;
@@ -21,6 +24,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author ollivir
@@ -30,7 +34,7 @@ public class LoadBalancerTest {
     public void requireThatLoadBalancerServesSingleNodeSetups() {
         Node n1 = new Node(0, "test-node1", 0, 0);
         SearchCluster cluster = new SearchCluster("a", createDispatchConfig(n1), 1, null);
-        LoadBalancer lb = new LoadBalancer(cluster, true);
+        LoadBalancer lb = new LoadBalancer(cluster, DispatchConfig.DistributionPolicy.Enum.ROUNDROBIN);
 
         Optional<Group> grp = lb.takeGroup(null);
         Group group = grp.orElseGet(() -> {
@@ -44,7 +48,7 @@ public class LoadBalancerTest {
         Node n1 = new Node(0, "test-node1", 0, 0);
         Node n2 = new Node(1, "test-node2", 1, 1);
         SearchCluster cluster = new SearchCluster("a", createDispatchConfig(n1, n2), 1, null);
-        LoadBalancer lb = new LoadBalancer(cluster, true);
+        LoadBalancer lb = new LoadBalancer(cluster, DispatchConfig.DistributionPolicy.Enum.ROUNDROBIN);
 
         Optional<Group> grp = lb.takeGroup(null);
         Group group = grp.orElseGet(() -> {
@@ -60,7 +64,7 @@ public class LoadBalancerTest {
         Node n3 = new Node(0, "test-node3", 0, 1);
         Node n4 = new Node(1, "test-node4", 1, 1);
         SearchCluster cluster = new SearchCluster("a", createDispatchConfig(n1, n2, n3, n4), 2, null);
-        LoadBalancer lb = new LoadBalancer(cluster, true);
+        LoadBalancer lb = new LoadBalancer(cluster, DispatchConfig.DistributionPolicy.Enum.ROUNDROBIN);
 
         Optional<Group> grp = lb.takeGroup(null);
         assertThat(grp.isPresent(), is(true));
@@ -71,7 +75,7 @@ public class LoadBalancerTest {
         Node n1 = new Node(0, "test-node1", 0, 0);
         Node n2 = new Node(1, "test-node2", 1, 1);
         SearchCluster cluster = new SearchCluster("a", createDispatchConfig(n1, n2), 1, null);
-        LoadBalancer lb = new LoadBalancer(cluster, true);
+        LoadBalancer lb = new LoadBalancer(cluster, DispatchConfig.DistributionPolicy.Enum.ROUNDROBIN);
 
         // get first group
         Optional<Group> grp = lb.takeGroup(null);
@@ -156,6 +160,57 @@ public class LoadBalancerTest {
         assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(4));
     }
 
+    @Test
+    public void requireThatBestOfRandom2SchedulerPrefersTheGroupWithLowestExpectedLatency() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            GroupStatus gs = newGroupStatus(i);
+            gs.setQueryStatistics(1, 0.1 * (i + 1));
+            scoreboard.add(gs);
+        }
+        BestOfRandom2Scheduler sched = new BestOfRandom2Scheduler(intSequence(0, 0, 2, 1, 1, 0), scoreboard);
+
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(0)); // 0 vs 2
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(1)); // 2 vs 1
+        scoreboard.get(1).allocate();
+        scoreboard.get(1).allocate();
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(0)); // 1 vs 0, where 1 has queries in flight
+    }
+
+    @Test
+    public void requireThatBestOfRandom2SchedulerRespectsRejectedGroups() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            scoreboard.add(newGroupStatus(i));
+        }
+        BestOfRandom2Scheduler sched = new BestOfRandom2Scheduler(new Random(1), scoreboard);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(sched.takeNextGroup(Set.of(0, 2)).get().groupId(), equalTo(1));
+        }
+        assertThat(sched.takeNextGroup(Set.of(0, 1, 2)).isPresent(), is(false));
+    }
+
+    @Test
+    public void requireThatBestOfRandom2SchedulerDistributesQueriesByExpectedLatency() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            GroupStatus gs = newGroupStatus(i);
+            gs.setQueryStatistics(1, i == 2 ? 0.3 : 0.1);
+            scoreboard.add(gs);
+        }
+        BestOfRandom2Scheduler sched = new BestOfRandom2Scheduler(new Random(1), scoreboard);
+
+        int[] selections = new int[3];
+        for (int i = 0; i < 3000; i++) {
+            selections[sched.takeNextGroup(null).get().groupId()]++;
+        }
+        // The slow group is only selected when both candidates are the fast groups, which never happens
+        assertThat(selections[2], equalTo(0));
+        assertTrue(selections[0] > 1000);
+        assertTrue(selections[1] > 1000);
+    }
+
     private static void updateSearchTime(GroupStatus gs, double time) {
         gs.allocate();
         gs.release(true, time);
@@ -171,6 +226,22 @@ public class LoadBalancerTest {
         return new GroupStatus(dummyGroup);
     }
 
+    private Random intSequence(int... values) {
+        return new Random() {
+            private int index = 0;
+
+            @Override
+            public int nextInt(int bound) {
+                int retv = values[index];
+                index++;
+                if (index >= values.length) {
+                    index = 0;
+                }
+                return retv;
+            }
+        };
+    }
+
     private Random sequence(double... values) {
         return new Random() {
             private int index = 0;
@@ -11,8 +11,10 @@ import com.yahoo.search.Result;
 import com.yahoo.search.dispatch.rpc.Client;
 import com.yahoo.search.dispatch.rpc.RpcInvokerFactory;
 import com.yahoo.search.dispatch.rpc.RpcResourcePool;
+import com.yahoo.test.ManualClock;
 import org.junit.Test;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -21,6 +23,7 @@ import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests using a dispatcher to fill a result
@@ -108,6 +111,150 @@ public class FillTestCase {
         assertEquals("Missing hit summary data for summary summaryClass1 for 2 hits", result.hits().getError().getDetailedMessage());
     }
 
+    @Test
+    public void testFillingFromSummaryCache() {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        nodes.put(1, client.createConnection("host1", 123));
+        ManualClock clock = new ManualClock();
+        DocsumCache cache = new DocsumCache(1024 * 1024, 10.0, clock);
+        RpcResourcePool rpcResourcePool = new RpcResourcePool(nodes, cache);
+        RpcInvokerFactory factory = new RpcInvokerFactory(rpcResourcePool, null, true);
+
+        client.setDocsumReponse("host0", 0, "summaryClass1", map("field1", "s.0.0", "field2", 0));
+        client.setDocsumReponse("host1", 1, "summaryClass1", map("field1", "s.1.1", "field2", 1));
+        client.setDocsumReponse("host1", 2, "summaryClass1", new HashMap<>());
+
+        Result result = new Result(new Query());
+        result.hits().add(createHit(0, 0));
+        result.hits().add(createHit(1, 1));
+        result.hits().add(createHit(1, 2));
+        factory.createFillInvoker(db()).fill(result, "summaryClass1");
+        assertEquals("Non-empty summaries are cached", 2, cache.size());
+
+        // Cached summaries are filled without sending requests to the nodes
+        client.setMalfunctioning(true);
+        Result cachedResult = new Result(new Query());
+        cachedResult.hits().add(createHit(0, 0));
+        cachedResult.hits().add(createHit(1, 1));
+        factory.createFillInvoker(db()).fill(cachedResult, "summaryClass1");
+        assertNull(cachedResult.hits().getError());
+        assertEquals("s.0.0", cachedResult.hits().get("hit:0").getField("field1").toString());
+        assertEquals(1L, cachedResult.hits().get("hit:1").getField("field2"));
+        assertTrue(cachedResult.hits().get("hit:1").isFilled("summaryClass1"));
+
+        // Other summary classes are not cached
+        Result otherClassResult = new Result(new Query());
+        otherClassResult.hits().add(createHit(0, 0));
+        factory.createFillInvoker(db()).fill(otherClassResult, "summaryClass2");
+        assertEquals("Malfunctioning", otherClassResult.hits().getError().getDetailedMessage());
+
+        // Expired summaries are fetched from the nodes again
+        clock.advance(Duration.ofSeconds(11));
+        Result expiredResult = new Result(new Query());
+        expiredResult.hits().add(createHit(0, 0));
+        factory.createFillInvoker(db()).fill(expiredResult, "summaryClass1");
+        assertEquals("Malfunctioning", expiredResult.hits().getError().getDetailedMessage());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testFillingFromSummaryCacheWithProtobuf() {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        nodes.put(1, client.createConnection("host1", 123));
+        DocsumCache cache = new DocsumCache(1024 * 1024, 10.0, new ManualClock());
+        RpcResourcePool rpcResourcePool = new RpcResourcePool(nodes, cache);
+
+        client.setDocsumReponse("host0", 0, "summaryClass1", map("field1", "s.0.0", "field2", 0));
+        client.setDocsumReponse("host1", 1, "summaryClass1", map("field1", "s.1.1", "field2", 1));
+
+        Result result = new Result(new Query());
+        result.hits().add(createHit(0, 0));
+        result.hits().add(createHit(1, 1));
+        new RpcProtobufFillInvoker(rpcResourcePool, db(), "container.0", false).fill(result, "summaryClass1");
+        assertNull(result.hits().getError());
+        assertEquals("s.0.0", result.hits().get("hit:0").getField("field1").toString());
+        assertEquals(2, cache.size());
+
+        // Cached summaries are filled without sending requests to the nodes
+        client.setMalfunctioning(true);
+        Result cachedResult = new Result(new Query());
+        cachedResult.hits().add(createHit(0, 0));
+        cachedResult.hits().add(createHit(1, 1));
+        new RpcProtobufFillInvoker(rpcResourcePool, db(), "container.0", false).fill(cachedResult, "summaryClass1");
+        assertNull(cachedResult.hits().getError());
+        assertEquals("s.1.1", cachedResult.hits().get("hit:1").getField("field1").toString());
+
+        // Summaries which need the query are not cached
+        client.setMalfunctioning(false);
+        client.setDocsumReponse("host0", 2, "summaryClass1", map("field1", "s.0.2", "field2", 2));
+        Result queryDependentResult = new Result(new Query("?query=foo"));
+        queryDependentResult.hits().add(createHit(0, 2));
+        new RpcProtobufFillInvoker(rpcResourcePool, db(), "container.0", true).fill(queryDependentResult, "summaryClass1");
+        assertEquals("s.0.2", queryDependentResult.hits().get("hit:2").getField("field1").toString());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testSummaryCacheIsKeyedOnRankProfile() {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        DocsumCache cache = new DocsumCache(1024 * 1024, 10.0, new ManualClock());
+        RpcInvokerFactory factory = new RpcInvokerFactory(new RpcResourcePool(nodes, cache), null, true);
+        client.setDocsumReponse("host0", 0, "summaryClass1", map("field1", "s.0.0", "field2", 0));
+
+        Result result = new Result(new Query("?ranking=profile1"));
+        result.hits().add(createHit(0, 0));
+        factory.createFillInvoker(db()).fill(result, "summaryClass1");
+        assertEquals(1, cache.size());
+
+        client.setMalfunctioning(true);
+        Result otherProfileResult = new Result(new Query("?ranking=profile2"));
+        otherProfileResult.hits().add(createHit(0, 0));
+        factory.createFillInvoker(db()).fill(otherProfileResult, "summaryClass1");
+        assertEquals("Malfunctioning", otherProfileResult.hits().getError().getDetailedMessage());
+    }
+
+    @Test
+    public void testSummaryCacheIsNotUsedWhenSummaryNeedsQuery() {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        DocsumCache cache = new DocsumCache(1024 * 1024, 10.0, new ManualClock());
+        RpcResourcePool rpcResourcePool = new RpcResourcePool(nodes, cache);
+        client.setDocsumReponse("host0", 0, "summaryClass1", map("field1", "s.0.0", "field2", 0));
+
+        Result result = new Result(new Query());
+        result.hits().add(createHit(0, 0));
+        new RpcFillInvoker(rpcResourcePool, db(), true).fill(result, "summaryClass1");
+        assertEquals("s.0.0", result.hits().get("hit:0").getField("field1").toString());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSummaryCacheEvictsLeastRecentlyUsed() {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        DocsumCache cache = new DocsumCache(2000, 10.0, new ManualClock());
+        RpcInvokerFactory factory = new RpcInvokerFactory(new RpcResourcePool(nodes, cache), null, true);
+        for (int i = 0; i < 20; i++)
+            client.setDocsumReponse("host0", i, "summaryClass1", map("field1", "s.0." + i, "field2", i));
+
+        for (int i = 0; i < 20; i++) {
+            Result result = new Result(new Query());
+            result.hits().add(createHit(0, i));
+            factory.createFillInvoker(db()).fill(result, "summaryClass1");
+            assertTrue(cache.bytes() <= 2000);
+        }
+        assertTrue(cache.size() < 20);
+
+        client.setMalfunctioning(true);
+        Result result = new Result(new Query());
+        result.hits().add(createHit(0, 19));
+        factory.createFillInvoker(db()).fill(result, "summaryClass1");
+        assertNull("The most recently used summary is cached", result.hits().getError());
+    }
+
     @Test
     public void testErrorHandling() {
         client.setMalfunctioning(true);
@@ -1,6 +1,9 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.dispatch.rpc;
 
+import ai.vespa.searchlib.searchprotocol.protobuf.SearchProtocol;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
 import com.yahoo.compress.CompressionType;
 import com.yahoo.compress.Compressor;
 import com.yahoo.document.GlobalId;
@@ -62,11 +65,20 @@ public class MockClient implements Client {
 
             Inspector request = BinaryFormat.decode(compressor.decompress(compressedSlime, compression, uncompressedSize)).get();
             String docsumClass = request.field("class").asString();
+            List<GlobalId> globalIds = new ArrayList<>();
+            request.field("gids").traverse((ArrayTraverser) (index, gid) -> globalIds.add(new GlobalId(gid.asData())));
+            byte[] slimeBytes = docsumsSlime(docsumClass, globalIds);
+            CompressionType responseCompressionType = compression == CompressionType.INCOMPRESSIBLE ? CompressionType.NONE : compression;
+            Compressor.Compression compressionResult = compressor.compress(responseCompressionType, slimeBytes);
+            GetDocsumsResponse response = new GetDocsumsResponse(compressionResult.type().getCode(), slimeBytes.length,
+                    compressionResult.data(), hitsContext);
+            responseReceiver.receive(ResponseOrError.fromResponse(response));
+        }
+
+        private byte[] docsumsSlime(String docsumClass, List<GlobalId> globalIds) {
             List<Map<String, Object>> docsumsToReturn = new ArrayList<>();
-            request.field("gids").traverse((ArrayTraverser) (index, gid) -> {
-                GlobalId docId = new GlobalId(gid.asData());
+            for (GlobalId docId : globalIds)
                 docsumsToReturn.add(docsums.get(new DocsumKey(toString(), docId, docsumClass)));
-            });
             Slime responseSlime = new Slime();
             Cursor root = responseSlime.setObject();
             Cursor docsums = root.setArray("docsums");
@@ -82,12 +94,7 @@ public class MockClient implements Client {
                         throw new RuntimeException();
                 }
             }
-            byte[] slimeBytes = BinaryFormat.encode(responseSlime);
-            CompressionType responseCompressionType = compression == CompressionType.INCOMPRESSIBLE ? CompressionType.NONE : compression;
-            Compressor.Compression compressionResult = compressor.compress(responseCompressionType, slimeBytes);
-            GetDocsumsResponse response = new GetDocsumsResponse(compressionResult.type().getCode(), slimeBytes.length,
-                    compressionResult.data(), hitsContext);
-            responseReceiver.receive(ResponseOrError.fromResponse(response));
+            return BinaryFormat.encode(responseSlime);
         }
 
         @Override
@@ -98,6 +105,10 @@ public class MockClient implements Client {
                 return;
             }
 
+            if (rpcMethod.equals("vespa.searchprotocol.getDocsums")) {
+                respondWithDocsums(compression, uncompressedLength, compressedPayload, responseReceiver);
+                return;
+            }
             if(searchResult == null) {
                 responseReceiver.receive(ResponseOrError.fromError("No result defined"));
                 return;
@@ -108,6 +119,28 @@ public class MockClient implements Client {
             responseReceiver.receive(ResponseOrError.fromResponse(response));
         }
 
+        private void respondWithDocsums(CompressionType compression, int uncompressedLength, byte[] compressedPayload,
+                                        ResponseReceiver responseReceiver) {
+            try {
+                var request = SearchProtocol.DocsumRequest.parseFrom(compressor.decompress(compressedPayload, compression,
+                                                                                           uncompressedLength));
+                List<GlobalId> globalIds = new ArrayList<>();
+                for (ByteString gid : request.getGlobalIdsList())
+                    globalIds.add(new GlobalId(gid.toByteArray()));
+                var payload = SearchProtocol.DocsumReply.newBuilder()
+                                                        .setSlimeSummaries(ByteString.copyFrom(docsumsSlime(request.getSummaryClass(), globalIds)))
+                                                        .build().toByteArray();
+                CompressionType responseCompressionType = compression == CompressionType.INCOMPRESSIBLE ? CompressionType.NONE : compression;
+                var compressionResult = compressor.compress(responseCompressionType, payload);
+                responseReceiver.receive(ResponseOrError.fromResponse(new ProtobufResponse(compressionResult.type().getCode(),
+                                                                                           payload.length,
+                                                                                           compressionResult.data())));
+            }
+            catch (InvalidProtocolBufferException e) {
+                responseReceiver.receive(ResponseOrError.fromError(e.getMessage()));
+            }
+        }
+
         @Override
         public void close() { }
 
@@ -5,6 +5,7 @@ import com.yahoo.collections.Hashlet;
 import com.yahoo.document.*;
 import com.yahoo.document.serialization.FieldReader;
 import com.yahoo.document.serialization.FieldWriter;
+import com.yahoo.document.serialization.SerializedFieldValue;
 import com.yahoo.document.serialization.XmlSerializationHelper;
 import com.yahoo.document.serialization.XmlStream;
 import com.yahoo.vespa.objects.Ids;
@@ -12,27 +13,94 @@ import com.yahoo.vespa.objects.Ids;
 import java.util.*;
 
 /**
+ * A struct field value.
+ *
+ * A struct read by a lazy deserializer may be read by multiple threads, like any other struct:
+ * fields are deserialized under a lock on first access, and published in a new map of values
+ * which is not modified after it is visible to readers. Modifying a struct while others read it is not safe.
+ *
  * @author Håkon Humberset
  */
 public class Struct extends StructuredFieldValue {
 
     public static final int classId = registerClass(Ids.document + 33, Struct.class);
-    private Hashlet<Integer, FieldValue> values = new Hashlet<>();
-    private int [] order = null;
+    private volatile Hashlet<Integer, FieldValue> values = new Hashlet<>();
+    /**
+     * Field values which are not yet deserialized, when this is read by a lazy deserializer.
+     * A value in this is only valid if there is no value for the same field id in values.
+     */
+    private Hashlet<Integer, SerializedFieldValue> serializedValues = null;
+    private volatile int [] order = null;
 
     private int version;
 
     private int [] getInOrder() {
+        int [] order = this.order;
         if (order == null) {
-            order = new int[values.size()];
+            Hashlet<Integer, FieldValue> values = this.values;
+            order = new int[getFieldCount(values)];
+            int count = 0;
             for (int i = 0; i < values.size(); i++) {
-                order[i] = values.key(i);
+                order[count++] = values.key(i);
+            }
+            if (serializedValues != null) {
+                for (int i = 0; i < serializedValues.size(); i++) {
+                    if (values.getIndexOfKey(serializedValues.key(i)) == -1) {
+                        order[count++] = serializedValues.key(i);
+                    }
+                }
             }
             Arrays.sort(order);
+            this.order = order;
         }
         return order;
     }
 
+    /** Returns the value of the given field id, deserializing it first if it is not yet deserialized */
+    private FieldValue get(int id) {
+        FieldValue value = values.get(id);
+        if (value == null && serializedValues != null) {
+            value = deserialize(id);
+        }
+        return value;
+    }
+
+    private synchronized FieldValue deserialize(int id) {
+        FieldValue value = values.get(id);
+        if (value != null || serializedValues == null) return value;
+
+        SerializedFieldValue serialized = serializedValues.get(id);
+        if (serialized == null) return null;
+
+        value = serialized.deserialize();
+        Hashlet<Integer, FieldValue> copy = copyOfValues(1);
+        copy.put(id, value);
+        values = copy;
+        return value;
+    }
+
+    private synchronized void deserializeAll() {
+        if (serializedValues == null) return;
+
+        Hashlet<Integer, FieldValue> copy = copyOfValues(serializedValues.size());
+        for (int i = 0; i < serializedValues.size(); i++) {
+            if (copy.getIndexOfKey(serializedValues.key(i)) == -1) {
+                copy.put(serializedValues.key(i), serializedValues.value(i).deserialize());
+            }
+        }
+        values = copy;
+    }
+
+    /** Returns a copy of values which can hold the given number of additional values without growing */
+    private Hashlet<Integer, FieldValue> copyOfValues(int additional) {
+        Hashlet<Integer, FieldValue> copy = new Hashlet<>();
+        copy.reserve(values.size() + additional);
+        for (int i = 0; i < values.size(); i++) {
+            copy.put(values.key(i), values.value(i));
+        }
+        return copy;
+    }
+
     private void invalidateOrder() {
         order = null;
     }
@@ -84,12 +152,20 @@ public class Struct extends StructuredFieldValue {
         for (int i = 0; i < values.size(); i++) {
             struct.values.put(values.key(i), values.value(i).clone());
         }
+        if (serializedValues != null) {
+            struct.serializedValues = new Hashlet<>();
+            struct.serializedValues.reserve(serializedValues.size());
+            for (int i = 0; i < serializedValues.size(); i++) {
+                struct.serializedValues.put(serializedValues.key(i), serializedValues.value(i));
+            }
+        }
         return struct;
     }
 
     @Override
     public void clear() {
         values = new Hashlet<>();
+        serializedValues = null;
         invalidateOrder();
     }
 
@@ -117,7 +193,36 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public FieldValue getFieldValue(Field field) {
-        return values.get(field.getId());
+        return get(field.getId());
+    }
+
+    /**
+     * Returns the serialized value of the given field if this was read by a lazy deserializer and the value
+     * has not been accessed or set since, or null otherwise. An untouched serialized value
+     * can be written unchanged when this is serialized again.
+     */
+    public SerializedFieldValue getSerializedFieldValue(Field field) {
+        Hashlet<Integer, SerializedFieldValue> serializedValues = this.serializedValues;
+        if (serializedValues == null || values.getIndexOfKey(field.getId()) != -1) return null;
+        return serializedValues.get(field.getId());
+    }
+
+    /** Sets a field value which will be deserialized from the given serialized value when first accessed */
+    public void setSerializedFieldValue(SerializedFieldValue value) {
+        int id = value.getField().getId();
+        if (values.getIndexOfKey(id) != -1) {
+            removeFieldValue(value.getField());
+        }
+        if (serializedValues == null) {
+            serializedValues = new Hashlet<>();
+        }
+        int index = serializedValues.getIndexOfKey(id);
+        if (index == -1) {
+            serializedValues.put(id, value);
+            invalidateOrder();
+        } else {
+            serializedValues.setValue(index, value);
+        }
     }
 
 
@@ -128,7 +233,19 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public int getFieldCount() {
-        return values.size();
+        return getFieldCount(values);
+    }
+
+    private int getFieldCount(Hashlet<Integer, FieldValue> values) {
+        int count = values.size();
+        if (serializedValues != null) {
+            for (int i = 0; i < serializedValues.size(); i++) {
+                if (values.getIndexOfKey(serializedValues.key(i)) == -1) {
+                    count++;
+                }
+            }
+        }
+        return count;
     }
 
     @Override
@@ -165,7 +282,18 @@ public class Struct extends StructuredFieldValue {
 
     @Override
     public FieldValue removeFieldValue(Field field) {
-        FieldValue found = values.get(field.getId());
+        FieldValue found = get(field.getId());
+        if (serializedValues != null && serializedValues.getIndexOfKey(field.getId()) != -1) {
+            Hashlet<Integer, SerializedFieldValue> copy = new Hashlet<>();
+            copy.reserve(serializedValues.size() - 1);
+            for (int i=0; i < serializedValues.size(); i++) {
+                if (serializedValues.key(i) != field.getId()) {
+                    copy.put(serializedValues.key(i), serializedValues.value(i));
+                }
+            }
+            serializedValues = copy;
+            invalidateOrder();
+        }
         if (found != null) {
             Hashlet<Integer, FieldValue> copy = new Hashlet<>();
             copy.reserve(values.size() - 1);
@@ -213,11 +341,14 @@ public class Struct extends StructuredFieldValue {
         if (!super.equals(o)) return false;
 
         Struct struct = (Struct) o;
+        deserializeAll();
+        struct.deserializeAll();
         return values.equals(struct.values);
     }
 
     @Override
     public int hashCode() {
+        deserializeAll();
         int result = super.hashCode();
         result = 31 * result + values.hashCode();
         return result;
@@ -230,7 +361,7 @@ public class Struct extends StructuredFieldValue {
         int [] increasing = getInOrder();
         for (int i = 0; i < increasing.length; i++) {
             int id = increasing[i];
-            retVal.append(getDataType().getField(id)).append("=").append(values.get(id)).append(", ");
+            retVal.append(getDataType().getField(id)).append("=").append(get(id)).append(", ");
         }
         return retVal.toString();
     }
@@ -247,7 +378,7 @@ public class Struct extends StructuredFieldValue {
             return cmp;
         }
         Struct rhs = (Struct)obj;
-        cmp = values.size() - rhs.values.size();
+        cmp = getFieldCount() - rhs.getFieldCount();
         if (cmp != 0) {
             return cmp;
         }
@@ -288,7 +419,7 @@ public class Struct extends StructuredFieldValue {
         }
 
         public FieldValue getValue() {
-            return values.get(id);
+            return get(id);
         }
 
         public FieldValue setValue(FieldValue value) {
@@ -296,13 +427,12 @@ public class Struct extends StructuredFieldValue {
                 throw new NullPointerException("Null values in Struct not supported, use removeFieldValue() to remove value instead.");
             }
 
+            FieldValue retVal = get(id);
             int index = values.getIndexOfKey(id);
-            FieldValue retVal = null;
             if (index == -1) {
                 values.put(id, value);
                 invalidateOrder();
             } else {
-                retVal = values.value(index);
                 values.setValue(index, value);
             }
 
@@ -325,7 +455,7 @@ public class Struct extends StructuredFieldValue {
     private class FieldSet extends AbstractSet<Map.Entry<Field, FieldValue>> {
         @Override
         public int size() {
-            return values.size();
+            return getFieldCount();
         }
 
         @Override
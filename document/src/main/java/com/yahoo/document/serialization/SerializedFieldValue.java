@@ -0,0 +1,54 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.io.GrowableByteBuffer;
+
+/**
+ * The serialized form of a struct field value, as read by a deserializer doing lazy field deserialization.
+ * The value is only deserialized when first accessed, and the bytes are written through unchanged
+ * when the owning struct is serialized again without the field being accessed.
+ *
+ * Instances are immutable and refer to (not copy) the decompressed struct data they were read from.
+ *
+ * @author agent
+ */
+public final class SerializedFieldValue {
+
+    private final DocumentTypeManager manager;
+    private final Field field;
+    private final byte[] data;
+    private final int offset;
+    private final int length;
+
+    SerializedFieldValue(DocumentTypeManager manager, Field field, byte[] data, int offset, int length) {
+        this.manager = manager;
+        this.field = field;
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /** Returns the field this is a value of */
+    public Field getField() { return field; }
+
+    /** Returns the size of the serialized value in bytes */
+    public int getSize() { return length; }
+
+    /** Deserializes and returns a new field value from the data of this */
+    public FieldValue deserialize() {
+        VespaDocumentDeserializer6 deserializer =
+                new VespaDocumentDeserializerHead(manager, GrowableByteBuffer.wrap(data, offset, length), true);
+        FieldValue value = field.getDataType().createFieldValue();
+        value.deserialize(field, deserializer);
+        return value;
+    }
+
+    /** Writes the serialized value to the given buffer */
+    void writeTo(GrowableByteBuffer buffer) {
+        buffer.put(data, offset, length);
+    }
+
+}
@@ -88,11 +88,21 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
     private List<SpanNode> spanNodes;
     private List<Annotation> annotations;
     private int[] stringPositions;
+    private final boolean lazyFields;
 
     VespaDocumentDeserializer6(DocumentTypeManager manager, GrowableByteBuffer buf) {
+        this(manager, buf, false);
+    }
+
+    /**
+     * Creates a deserializer which, if lazyFields is true, does not deserialize struct fields up front,
+     * but keeps them as {@link SerializedFieldValue}s which are deserialized on first access.
+     */
+    VespaDocumentDeserializer6(DocumentTypeManager manager, GrowableByteBuffer buf, boolean lazyFields) {
         super(buf);
         this.manager = manager;
         this.version = Document.SERIALIZED_VERSION;
+        this.lazyFields = lazyFields;
     }
 
     final public DocumentTypeManager getDocumentTypeManager() { return manager; }
@@ -358,9 +368,7 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
                 position(position() + fieldIdsAndLengths.get(i).second.intValue());
             } else {
                 int posBefore = position();
-                FieldValue value = structField.getDataType().createFieldValue();
-                value.deserialize(structField, this);
-                s.setFieldValue(structField, value);
+                readStructField(s, structField, destination, fieldIdsAndLengths.get(i).second.intValue());
                 //jump to beginning of next field:
                 position(posBefore + fieldIdsAndLengths.get(i).second.intValue());
             }
@@ -446,9 +454,7 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
                 }
             }
             if (s != null) {
-              FieldValue value = structField.getDataType().createFieldValue();
-              value.deserialize(structField, this);
-              s.setFieldValue(structField, value);
+              readStructField(s, structField, destination, fieldIdsAndLengths.get(i).second.intValue());
             }
             //jump to beginning of next field:
             position(posBefore + fieldIdsAndLengths.get(i).second.intValue());
@@ -458,6 +464,22 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
         buf = bigBuf;
     }
 
+    /**
+     * Reads the value of the given field at the current position of the decompressed struct data,
+     * or just records where it is if fields are deserialized lazily.
+     * Lazy deserialization is only done for the current version as the serialized data is written
+     * through unchanged if the field is not accessed.
+     */
+    private void readStructField(Struct s, Field structField, byte[] data, int length) {
+        if (lazyFields && version == Document.SERIALIZED_VERSION) {
+            s.setSerializedFieldValue(new SerializedFieldValue(manager, structField, data, position(), length));
+        } else {
+            FieldValue value = structField.getDataType().createFieldValue();
+            value.deserialize(structField, this);
+            s.setFieldValue(structField, value);
+        }
+    }
+
     public void read(FieldBase field, StructuredFieldValue value) {
         throw new IllegalArgumentException("read not implemented yet.");
     }
@@ -341,7 +341,13 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
         for (Map.Entry<Field, FieldValue> value : s.getFields()) {
 
             int startPos = buffer.position();
-            value.getValue().serialize(value.getKey(), this);
+            SerializedFieldValue serialized = s.getSerializedFieldValue(value.getKey());
+            if (serialized != null) {
+                // Not accessed since deserialized: Write through without deserializing
+                serialized.writeTo(buffer);
+            } else {
+                value.getValue().serialize(value.getKey(), this);
+            }
 
             fieldLengths.add(buffer.position() - startPos);
             fieldIds.add(value.getKey().getId(s.getVersion()));
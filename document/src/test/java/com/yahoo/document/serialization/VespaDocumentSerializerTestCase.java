@@ -11,6 +11,7 @@ import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.Field;
 import com.yahoo.document.MapDataType;
 import com.yahoo.document.StructDataType;
+import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.document.datatypes.IntegerFieldValue;
 import com.yahoo.document.datatypes.MapFieldValue;
 import com.yahoo.document.datatypes.PredicateFieldValue;
@@ -20,7 +21,17 @@ import com.yahoo.io.GrowableByteBuffer;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -129,4 +140,72 @@ public class VespaDocumentSerializerTestCase {
         // rounded up to 4096 bytes.
         assertTrue(buf.remaining() < 4096);
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void lazily_deserialized_fields_are_deserialized_on_access_and_written_through_when_untouched() {
+        CompressionFixture fixture = new CompressionFixture();
+        Field mapField = fixture.docType.getField("map");
+
+        Document doc = new Document(fixture.docType, "id:foo:map_of_structs::flarn");
+        Struct nested = new Struct(fixture.nestedType);
+        nested.setFieldValue("str", new StringFieldValue(CompressionFixture.COMPRESSABLE_STRING));
+        MapFieldValue<StringFieldValue, Struct> map = new MapFieldValue<StringFieldValue, Struct>(fixture.mapType);
+        map.put(new StringFieldValue("foo"), nested);
+        map.put(new StringFieldValue("bar"), nested);
+        doc.setFieldValue(mapField, map);
+        byte[] serialized = toBytes(CompressionFixture.asSerialized(doc));
+
+        Document lazy = new Document(DocumentDeserializerFactory.createLazyHead(fixture.manager, GrowableByteBuffer.wrap(serialized)));
+        assertNotNull(lazy.getHeader().getSerializedFieldValue(mapField));
+        assertEquals(1, lazy.getHeader().getFieldCount());
+        assertArrayEquals(serialized, toBytes(CompressionFixture.asSerialized(lazy)));
+        assertNotNull(lazy.getHeader().getSerializedFieldValue(mapField));
+
+        assertEquals(map, lazy.getFieldValue(mapField));
+        assertNull(lazy.getHeader().getSerializedFieldValue(mapField));
+        assertEquals(doc, lazy);
+
+        ((MapFieldValue<StringFieldValue, Struct>)lazy.getFieldValue(mapField)).remove(new StringFieldValue("bar"));
+        Document result = fixture.roundtripSerialize(lazy);
+        assertEquals(1, ((MapFieldValue<?, ?>)result.getFieldValue(mapField)).size());
+    }
+
+    @Test
+    public void lazily_deserialized_fields_can_be_read_concurrently() throws Exception {
+        CompressionFixture fixture = new CompressionFixture();
+        Field mapField = fixture.docType.getField("map");
+
+        Document doc = new Document(fixture.docType, "id:foo:map_of_structs::flarn");
+        Struct nested = new Struct(fixture.nestedType);
+        nested.setFieldValue("str", new StringFieldValue(CompressionFixture.COMPRESSABLE_STRING));
+        MapFieldValue<StringFieldValue, Struct> map = new MapFieldValue<StringFieldValue, Struct>(fixture.mapType);
+        map.put(new StringFieldValue("foo"), nested);
+        doc.setFieldValue(mapField, map);
+        byte[] serialized = toBytes(CompressionFixture.asSerialized(doc));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 100; i++) {
+                Document lazy = new Document(DocumentDeserializerFactory.createLazyHead(fixture.manager, GrowableByteBuffer.wrap(serialized)));
+                List<Future<FieldValue>> values = new ArrayList<>();
+                for (int j = 0; j < 4; j++) {
+                    values.add(executor.submit(() -> lazy.getFieldValue(mapField)));
+                }
+                for (Future<FieldValue> value : values) {
+                    assertSame(values.get(0).get(), value.get());
+                }
+                assertEquals(map, values.get(0).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static byte[] toBytes(GrowableByteBuffer buf) {
+        byte[] bytes = new byte[buf.remaining()];
+        buf.get(bytes);
+        return bytes;
+    }
+
 }
@@ -18,6 +18,7 @@ import com.yahoo.messagebus.routing.RoutingContext;
 import com.yahoo.messagebus.routing.RoutingNodeIterator;
 import com.yahoo.messagebus.routing.VerbatimDirective;
 import com.yahoo.vdslib.distribution.Distribution;
+import com.yahoo.vdslib.distribution.IdealDistributorTable;
 import com.yahoo.vdslib.state.ClusterState;
 import com.yahoo.vdslib.state.Node;
 import com.yahoo.vdslib.state.NodeType;
@@ -345,6 +346,8 @@ public class StoragePolicy extends SlobrokPolicy {
         private final Distribution distribution;
         private final InstabilityChecker persistentFailureChecker;
         private final AtomicReference<ClusterState> safeCachedClusterState = new AtomicReference<>(null);
+        /** Ideal distributors by superbucket in the cached cluster state */
+        private final AtomicReference<IdealDistributorTable> idealDistributorTable = new AtomicReference<>(null);
         private final AtomicInteger oldClusterVersionGottenCount = new AtomicInteger(0);
         private final int maxOldClusterVersionBeforeSendingRandom; // Reset cluster version protection
 
@@ -375,7 +378,7 @@ public class StoragePolicy extends SlobrokPolicy {
 
             if (cachedClusterState != null) { // If we have a cached cluster state (regular case), we use that to calculate correct node.
                 try{
-                    Integer target = distribution.getIdealDistributorNode(cachedClusterState, bucketId, owningBucketStates);
+                    Integer target = idealDistributorTable(cachedClusterState).getIdealDistributorNode(bucketId);
                     // If we have had too many failures towards existing node, reset failure count and send to random
                     if (persistentFailureChecker.tooManyFailures(target)) {
                         sendRandomReason = "Too many failures detected versus distributor " + target + ". Sending to random instead of using cached state.";
@@ -419,6 +422,16 @@ public class StoragePolicy extends SlobrokPolicy {
             return hostFetcher.getRandomTargetSpec(context);
         }
 
+        /** Returns the table of ideal distributors in the given state, creating a new one if the state has changed */
+        private IdealDistributorTable idealDistributorTable(ClusterState clusterState) {
+            IdealDistributorTable table = idealDistributorTable.get();
+            if (table == null || ! table.isValidFor(distribution, clusterState)) {
+                table = new IdealDistributorTable(distribution, clusterState, owningBucketStates);
+                idealDistributorTable.set(table);
+            }
+            return table;
+        }
+
         private static Optional<ClusterState> clusterStateFromReply(final WrongDistributionReply reply) {
             try {
                 return Optional.of(new ClusterState(reply.getSystemState()));
@@ -5,6 +5,7 @@ package com.yahoo.vespa.filedistribution;
 import com.yahoo.config.FileReference;
 import com.yahoo.io.IOUtils;
 import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
 import com.yahoo.jrt.Method;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.Supervisor;
@@ -14,11 +15,15 @@ import net.jpountz.xxhash.XXHashFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -44,6 +49,8 @@ public class FileReceiver {
     // Should be on same partition as downloadDirectory to make sure moving files from tmpDirectory
     // to downloadDirectory is atomic
     private final File tmpDirectory;
+    /** The time a session may be idle before it is considered abandoned, and its data is discarded */
+    private final Duration sessionTimeout;
     private final AtomicInteger nextSessionId = new AtomicInteger(1);
     private final Map<Integer, Session> sessions = new HashMap<>();
 
@@ -60,6 +67,11 @@ public class FileReceiver {
         private final File fileReferenceDir;
         private final File tmpDir;
         private final File inprogressFile;
+        private final FileChannel inprogressChannel;
+        /** Set when another session has resumed this transfer. Guarded by inprogressChannel, which is shared with that session */
+        private boolean resumed = false;
+        /** The time this session was created or last received a part, in milliseconds since epoch */
+        private volatile long lastActivityMillis = System.currentTimeMillis();
 
         Session(File downloadDirectory, File tmpDirectory, int sessionId, FileReference reference,
                 FileReferenceData.Type fileType, String fileName, long fileSize)
@@ -78,6 +90,7 @@ public class FileReceiver {
 
             try {
                 inprogressFile = Files.createTempFile(tmpDirectory.toPath(), fileName, ".inprogress").toFile();
+                inprogressChannel = FileChannel.open(inprogressFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
             } catch (IOException e) {
                 String msg = "Failed creating temp file for inprogress file for " + fileName + " in '" + tmpDirectory.toPath() + "': ";
                 log.log(LogLevel.ERROR, msg + e.getMessage(), e);
@@ -85,27 +98,94 @@ public class FileReceiver {
             }
         }
 
-        void addPart(int partId, byte [] part) {
-            if (partId != currentPartId) {
-                throw new IllegalStateException("Received partid " + partId + " while expecting " + currentPartId);
+        /**
+         * Creates a session which resumes the transfer of the given session, which was abandoned by its sender.
+         * The data received so far is kept, and the new sender continues from {@link #offset()}, with part ids from zero.
+         */
+        Session(int sessionId, Session abandoned) {
+            this.hasher = abandoned.hasher;
+            this.sessionId = sessionId;
+            this.reference = abandoned.reference;
+            this.fileType = abandoned.fileType;
+            this.fileName = abandoned.fileName;
+            this.fileSize = abandoned.fileSize;
+            synchronized (abandoned.inprogressChannel) {
+                abandoned.resumed = true;
+                currentFileSize = abandoned.currentFileSize;
             }
-            if (fileSize < currentFileSize + part.length) {
-                throw new IllegalStateException("Received part would extend the file from " + currentFileSize + " to " +
-                                                (currentFileSize + part.length) + ", but " + fileSize + " is max.");
+            currentPartId = 0;
+            currentHash = 0;
+            fileReferenceDir = abandoned.fileReferenceDir;
+            tmpDir = abandoned.tmpDir;
+            inprogressFile = abandoned.inprogressFile;
+            inprogressChannel = abandoned.inprogressChannel;
+        }
+
+        /** Returns whether this is a transfer of the same file as described by the given parameters */
+        boolean isTransferOf(FileReference reference, FileReferenceData.Type fileType, String fileName, long fileSize) {
+            return this.reference.equals(reference) && this.fileType == fileType &&
+                   this.fileName.equals(fileName) && this.fileSize == fileSize;
+        }
+
+        /** Returns whether the data received in this session is intact, so that the transfer can be resumed */
+        boolean isResumable() {
+            return inprogressChannel.isOpen();
+        }
+
+        /** Returns the number of bytes received so far, which is where the transfer continues */
+        long offset() {
+            return currentFileSize;
+        }
+
+        void addPart(int partId, byte [] part) {
+            synchronized (inprogressChannel) {
+                if (resumed) {
+                    throw new IllegalStateException("Transfer in session " + sessionId + " has been resumed in another session");
+                }
+                if (partId != currentPartId) {
+                    throw new IllegalStateException("Received partid " + partId + " while expecting " + currentPartId);
+                }
+                if (fileSize < currentFileSize + part.length) {
+                    throw new IllegalStateException("Received part would extend the file from " + currentFileSize + " to " +
+                                                    (currentFileSize + part.length) + ", but " + fileSize + " is max.");
+                }
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(part);
+                    while (buffer.hasRemaining())
+                        inprogressChannel.write(buffer);
+                } catch (IOException e) {
+                    log.log(LogLevel.ERROR, "Failed writing to file(" + inprogressFile.toPath() + "): " + e.getMessage(), e);
+                    closeChannel();
+                    inprogressFile.delete();
+                    throw new RuntimeException("Failed writing to file(" + inprogressFile.toPath() + "): ", e);
+                }
+                currentFileSize += part.length;
+                currentPartId++;
+                hasher.update(part, 0, part.length);
+                lastActivityMillis = System.currentTimeMillis();
             }
-            try {
-                Files.write(inprogressFile.toPath(), part, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
-            } catch (IOException e) {
-                log.log(LogLevel.ERROR, "Failed writing to file(" + inprogressFile.toPath() + "): " + e.getMessage(), e);
-                inprogressFile.delete();
-                throw new RuntimeException("Failed writing to file(" + inprogressFile.toPath() + "): ", e);
+        }
+
+        /** Returns whether this session has not received any parts during the given time before now */
+        boolean isIdleFor(Duration duration) {
+            return System.currentTimeMillis() - lastActivityMillis >= duration.toMillis();
+        }
+
+        /** Closes and deletes the file of this session, unless its transfer has been resumed in another session */
+        void discard() {
+            synchronized (inprogressChannel) {
+                if (resumed) return;
+                closeChannel();
+                try {
+                    Files.deleteIfExists(inprogressFile.toPath());
+                } catch (IOException e) {
+                    log.log(LogLevel.WARNING, "Failed deleting " + inprogressFile.getAbsolutePath() + ": " + e.getMessage());
+                }
             }
-            currentFileSize += part.length;
-            currentPartId++;
-            hasher.update(part, 0, part.length);
         }
 
         File close(long hash) {
+            closeChannel();
             if (hasher.getValue() != hash) {
                 throw new RuntimeException("xxhash from content (" + currentHash + ") is not equal to xxhash in request (" + hash + ")");
             }
@@ -142,16 +222,26 @@ public class FileReceiver {
             return file;
         }
 
+        private void closeChannel() {
+            try {
+                inprogressChannel.close();
+            } catch (IOException e) {
+                log.log(LogLevel.WARNING, "Failed closing " + inprogressFile.getAbsolutePath() + ": " + e.getMessage());
+            }
+        }
+
         double percentageReceived() {
             return (double)currentFileSize/(double)fileSize;
         }
     }
 
-    FileReceiver(Supervisor supervisor, FileReferenceDownloader downloader, File downloadDirectory, File tmpDirectory) {
+    FileReceiver(Supervisor supervisor, FileReferenceDownloader downloader, File downloadDirectory, File tmpDirectory,
+                 Duration sessionTimeout) {
         this.supervisor = supervisor;
         this.downloader = downloader;
         this.downloadDirectory = downloadDirectory;
         this.tmpDirectory = tmpDirectory;
+        this.sessionTimeout = sessionTimeout;
         registerMethods();
     }
 
@@ -163,13 +253,14 @@ public class FileReceiver {
     // receiveFile after getting a serveFile method call). handler needs to implement receiveFile* methods
     private List<Method> receiveFileMethod(Object handler) {
         List<Method> methods = new ArrayList<>();
-        methods.add(new Method(RECEIVE_META_METHOD, "sssl", "ii", handler,"receiveFileMeta")
+        methods.add(new Method(RECEIVE_META_METHOD, "sssl", "iil", handler,"receiveFileMeta")
                 .paramDesc(0, "filereference", "file reference to download")
                 .paramDesc(1, "filename", "filename")
                 .paramDesc(2, "type", "'file' or 'compressed'")
                 .paramDesc(3, "filelength", "length in bytes of file")
                 .returnDesc(0, "ret", "0 if success, 1 otherwise")
-                .returnDesc(1, "session-id", "Session id to be used for this transfer"));
+                .returnDesc(1, "session-id", "Session id to be used for this transfer")
+                .returnDesc(2, "offset", "Offset in bytes to send the file from, non-zero when resuming an earlier transfer"));
         methods.add(new Method(RECEIVE_PART_METHOD, "siix", "i", handler,"receiveFilePart")
                 .paramDesc(0, "filereference", "file reference to download")
                 .paramDesc(1, "session-id", "Session id to be used for this transfer")
@@ -218,14 +309,24 @@ public class FileReceiver {
         long fileSize = req.parameters().get(3).asInt64();
         int sessionId = nextSessionId.getAndIncrement();
         int retval = 0;
+        long offset = 0;
         synchronized (sessions) {
             if (sessions.containsKey(sessionId)) {
                 retval = 1;
                 log.severe("Session id " + sessionId + " already exist, impossible. Request from(" + req.target() + ")");
             } else {
                 try {
-                    sessions.put(sessionId, new Session(downloadDirectory, tmpDirectory, sessionId, reference,
-                                                        FileReferenceData.Type.valueOf(type),fileName, fileSize));
+                    removeIdleSessions();
+                    FileReferenceData.Type fileType = FileReferenceData.Type.valueOf(type);
+                    Session abandoned = removeSessionTransferring(reference, fileType, fileName, fileSize);
+                    Session session = abandoned != null
+                            ? new Session(sessionId, abandoned)
+                            : new Session(downloadDirectory, tmpDirectory, sessionId, reference, fileType, fileName, fileSize);
+                    sessions.put(sessionId, session);
+                    offset = session.offset();
+                    if (abandoned != null)
+                        log.log(LogLevel.DEBUG, "Resuming transfer of '" + reference.value() + "' from session " +
+                                                abandoned.sessionId + " at offset " + offset);
                 } catch (Exception e) {
                     retval = 1;
                 }
@@ -233,6 +334,48 @@ public class FileReceiver {
         }
         req.returnValues().add(new Int32Value(retval));
         req.returnValues().add(new Int32Value(sessionId));
+        req.returnValues().add(new Int64Value(offset));
+    }
+
+    /**
+     * Removes and returns any earlier session transferring the given file. A new transfer of the same file means
+     * that the sender of the earlier session has given up, so the new transfer continues where it stopped.
+     */
+    private Session removeSessionTransferring(FileReference reference, FileReferenceData.Type fileType, String fileName, long fileSize) {
+        for (Iterator<Session> i = sessions.values().iterator(); i.hasNext(); ) {
+            Session session = i.next();
+            if (session.isTransferOf(reference, fileType, fileName, fileSize)) {
+                i.remove();
+                if (session.isResumable()) return session;
+                session.discard();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /** Removes the sessions which have been idle for longer than the session timeout, and discards their data */
+    private void removeIdleSessions() {
+        for (Iterator<Session> i = sessions.values().iterator(); i.hasNext(); ) {
+            Session session = i.next();
+            if (session.isIdleFor(sessionTimeout)) {
+                i.remove();
+                session.discard();
+                log.log(LogLevel.DEBUG, () -> "Discarded transfer of '" + session.reference.value() + "' in session " +
+                                              session.sessionId + ", which has been idle for more than " + sessionTimeout);
+            }
+        }
+    }
+
+    /** Removes the sessions other than the given one which transfer the given reference, and discards their data */
+    private void removeOtherSessionsTransferring(FileReference reference, int sessionId) {
+        for (Iterator<Session> i = sessions.values().iterator(); i.hasNext(); ) {
+            Session session = i.next();
+            if (session.sessionId != sessionId && session.reference.equals(reference)) {
+                i.remove();
+                session.discard();
+            }
+        }
     }
 
     @SuppressWarnings({"UnusedDeclaration"})
@@ -245,6 +388,10 @@ public class FileReceiver {
         byte [] part = req.parameters().get(3).asData();
         Session session = getSession(sessionId);
         int retval = verifySession(session, sessionId, reference);
+        if (retval != 0) {
+            req.returnValues().add(new Int32Value(retval));
+            return;
+        }
         try {
             session.addPart(partId, part);
         } catch (Exception e) {
@@ -265,10 +412,15 @@ public class FileReceiver {
         long xxhash = req.parameters().get(2).asInt64();
         Session session = getSession(sessionId);
         int retval = verifySession(session, sessionId, reference);
+        if (retval != 0) {
+            req.returnValues().add(new Int32Value(retval));
+            return;
+        }
         File file = session.close(xxhash);
         downloader.completedDownloading(reference, file);
         synchronized (sessions) {
             sessions.remove(sessionId);
+            removeOtherSessionsTransferring(reference, sessionId);
         }
         req.returnValues().add(new Int32Value(retval));
     }
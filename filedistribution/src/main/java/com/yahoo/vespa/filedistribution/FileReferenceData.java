@@ -15,6 +15,8 @@ public abstract class FileReferenceData {
 
     public enum Type {file, compressed}
 
+    private static final int skipBufferSize = 0x10000;
+
     private final FileReference fileReference;
     private final String filename;
     private final Type type;
@@ -52,6 +54,26 @@ public abstract class FileReferenceData {
      */
     public abstract int nextContent(ByteBuffer bb);
 
+    /**
+     * Skips content from the start, e.g. when resuming a transfer at the given offset.
+     * The skipped content is still included in the xxhash.
+     *
+     * @param bytes the number of bytes to skip
+     * @return the number of bytes skipped, which is less than requested only if the content is shorter
+     */
+    public long skip(long bytes) {
+        ByteBuffer bb = ByteBuffer.allocate((int)Math.min(bytes, skipBufferSize));
+        long skipped = 0;
+        while (skipped < bytes) {
+            bb.clear();
+            bb.limit((int)Math.min(bytes - skipped, bb.capacity()));
+            int read = nextContent(bb);
+            if (read < 0) break;
+            skipped += read;
+        }
+        return skipped;
+    }
+
     /**
      * Only guaranteed to be valid after all content has been consumed.
      * @return xx64hash of content
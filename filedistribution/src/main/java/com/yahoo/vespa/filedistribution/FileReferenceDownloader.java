@@ -49,7 +49,7 @@ public class FileReferenceDownloader {
         this.downloadTimeout = timeout;
         this.sleepBetweenRetries = sleepBetweenRetries;
         // Needed to receive RPC calls receiveFile* from server after asking for files
-        new FileReceiver(connectionPool.getSupervisor(), this, downloadDirectory, tmpDirectory);
+        new FileReceiver(connectionPool.getSupervisor(), this, downloadDirectory, tmpDirectory, timeout);
     }
 
     private void startDownload(Duration timeout, FileReferenceDownload fileReferenceDownload) {
@@ -3,6 +3,11 @@ package com.yahoo.vespa.filedistribution;
 
 import com.yahoo.config.FileReference;
 import com.yahoo.io.IOUtils;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.Transport;
 import com.yahoo.text.Utf8;
 import net.jpountz.xxhash.XXHash64;
 import net.jpountz.xxhash.XXHashFactory;
@@ -12,12 +17,17 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Arrays;
 
 public class FileReceiverTest {
     private File root;
@@ -66,6 +76,67 @@ public class FileReceiverTest {
         assertEquals("2", IOUtils.readFile(new File(downloadDir, "b")));
     }
 
+    @Test
+    public void resumeAbandonedTransfer() throws IOException {
+        byte[] allContent = Utf8.toBytes("first part\nsecond part\nthird part\n");
+        FileReference ref = new FileReference("ref-b");
+        FileReceiver.Session abandoned = new FileReceiver.Session(root, tempDir, 1, ref, FileReferenceData.Type.file,
+                                                                  "myfile", allContent.length);
+        abandoned.addPart(0, Arrays.copyOfRange(allContent, 0, 11));
+        assertTrue(abandoned.isTransferOf(ref, FileReferenceData.Type.file, "myfile", allContent.length));
+        assertFalse(abandoned.isTransferOf(ref, FileReferenceData.Type.file, "myfile", allContent.length + 1));
+        assertTrue(abandoned.isResumable());
+
+        FileReceiver.Session session = new FileReceiver.Session(2, abandoned);
+        assertEquals(11, session.offset());
+        try {
+            abandoned.addPart(1, Arrays.copyOfRange(allContent, 11, 23));
+            fail("Expected parts to the abandoned session to be rejected");
+        } catch (IllegalStateException expected) {}
+        session.addPart(0, Arrays.copyOfRange(allContent, 11, 23));
+        session.addPart(1, Arrays.copyOfRange(allContent, 23, allContent.length));
+        File file = session.close(hasher.hash(ByteBuffer.wrap(allContent), 0));
+        assertEquals(Utf8.toString(allContent), Utf8.toString(Files.readAllBytes(file.toPath())));
+    }
+
+    @Test
+    public void discardIdleSessions() {
+        Transport transport = new Transport();
+        FileReceiver receiver = new FileReceiver(new Supervisor(transport), null, root, tempDir, Duration.ZERO);
+        assertEquals(0, receiveFileMeta(receiver, "ref-c", "myfile", 10));
+        assertEquals(1, inprogressFiles().length);
+
+        // The first session has been idle for the session timeout when the next transfer starts
+        assertEquals(0, receiveFileMeta(receiver, "ref-d", "myfile", 10));
+        assertEquals(1, inprogressFiles().length);
+        transport.shutdown().join();
+    }
+
+    @Test
+    public void discardSession() {
+        FileReceiver.Session session = new FileReceiver.Session(root, tempDir, 1, new FileReference("ref-e"),
+                                                                FileReferenceData.Type.file, "myfile", 10);
+        session.addPart(0, Utf8.toBytes("first"));
+        assertEquals(1, inprogressFiles().length);
+        session.discard();
+        assertFalse(session.isResumable());
+        assertEquals(0, inprogressFiles().length);
+    }
+
+    private static int receiveFileMeta(FileReceiver receiver, String reference, String fileName, long fileSize) {
+        Request request = new Request(FileReceiver.RECEIVE_META_METHOD);
+        request.parameters().add(new StringValue(reference));
+        request.parameters().add(new StringValue(fileName));
+        request.parameters().add(new StringValue(FileReferenceData.Type.file.name()));
+        request.parameters().add(new Int64Value(fileSize));
+        receiver.receiveFileMeta(request);
+        return request.returnValues().get(0).asInt32();
+    }
+
+    private File[] inprogressFiles() {
+        return tempDir.listFiles((dir, name) -> name.endsWith(".inprogress"));
+    }
+
     private void transferPartsAndAssert(FileReference ref, String fileName, String all, int numParts) throws IOException {
         byte [] allContent = Utf8.toBytes(all);
 
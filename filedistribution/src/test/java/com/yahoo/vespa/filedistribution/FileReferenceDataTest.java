@@ -3,15 +3,24 @@ package com.yahoo.vespa.filedistribution;
 
 import com.yahoo.config.FileReference;
 import com.yahoo.text.Utf8;
+import net.jpountz.xxhash.XXHashFactory;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
 
 public class FileReferenceDataTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void testDataBlob() {
         String content = "blob";
@@ -41,4 +50,22 @@ public class FileReferenceDataTest {
         assertEquals(-1, fileReferenceData.nextContent(byteBuffer));
     }
 
+    @Test
+    public void testSkipIsIncludedInHash() throws IOException {
+        String content = "blobbblubbblabb";
+        File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), Utf8.toBytes(content));
+        FileReferenceData fileReferenceData =
+                new LazyFileReferenceData(new FileReference("ref"), "foo", FileReferenceData.Type.file, file);
+        assertEquals(10, fileReferenceData.skip(10));
+        ByteBuffer byteBuffer = ByteBuffer.allocate(100);
+        assertEquals(5, fileReferenceData.nextContent(byteBuffer));
+        assertEquals(content.substring(10), Utf8.toString(Arrays.copyOfRange(byteBuffer.array(), 0, 5)));
+        assertEquals(-1, fileReferenceData.nextContent(byteBuffer));
+        assertEquals(XXHashFactory.fastestInstance().hash64().hash(ByteBuffer.wrap(Utf8.toBytes(content)), 0),
+                     fileReferenceData.xxhash());
+        assertEquals(0, fileReferenceData.skip(10));
+        fileReferenceData.close();
+    }
+
 }
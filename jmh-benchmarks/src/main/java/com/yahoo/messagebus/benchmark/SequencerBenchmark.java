@@ -0,0 +1,123 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.benchmark;
+
+import com.yahoo.messagebus.EmptyReply;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.Sequencer;
+import com.yahoo.messagebus.test.SimpleMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of sequenced messages through a {@link Sequencer}. Messages are replied to by a pool
+ * of "network" threads, and each sending thread has a bounded number of messages pending, as in a feed client.
+ * Run with "-t" to vary the number of sending threads.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SequencerBenchmark {
+
+    private static final int PENDING_PER_THREAD = 128;
+    private static final int SEQUENCE_IDS = 100_000;
+    private static final int REPLY_THREADS = 4;
+
+    private final BlockingQueue<Message> network = new LinkedBlockingQueue<>();
+    private final List<Thread> repliers = new ArrayList<>();
+    private Sequencer sequencer;
+
+    @Setup
+    public void setup() {
+        sequencer = new Sequencer(network::add);
+        for (int i = 0; i < REPLY_THREADS; i++) {
+            Thread replier = new Thread(this::reply);
+            replier.setDaemon(true);
+            replier.start();
+            repliers.add(replier);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        repliers.forEach(Thread::interrupt);
+        sequencer.destroy();
+    }
+
+    private void reply() {
+        try {
+            while (true) {
+                Message msg = network.take();
+                Reply reply = new EmptyReply();
+                reply.swapState(msg);
+                reply.setMessage(msg);
+                reply.popHandler().handleReply(reply);
+            }
+        }
+        catch (InterruptedException e) {
+            // Done
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Sender {
+
+        private final Semaphore pending = new Semaphore(PENDING_PER_THREAD);
+        private final Random random = new Random();
+
+        @TearDown
+        public void awaitPending() {
+            pending.acquireUninterruptibly(PENDING_PER_THREAD);
+            pending.release(PENDING_PER_THREAD);
+        }
+
+    }
+
+    @Benchmark
+    public void sendSequenced(Sender sender) {
+        sender.pending.acquireUninterruptibly();
+        Message msg = new SequencedMessage(sender.random.nextInt(SEQUENCE_IDS));
+        msg.pushHandler(reply -> sender.pending.release());
+        sequencer.handleMessage(msg);
+    }
+
+    private static class SequencedMessage extends SimpleMessage {
+
+        private final long sequenceId;
+
+        SequencedMessage(long sequenceId) {
+            super("foo");
+            this.sequenceId = sequenceId;
+        }
+
+        @Override
+        public boolean hasSequenceId() { return true; }
+
+        @Override
+        public long getSequenceId() { return sequenceId; }
+
+    }
+
+}
@@ -0,0 +1,73 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple.benchmark;
+
+import com.yahoo.metrics.simple.BoundCounter;
+import com.yahoo.metrics.simple.BoundGauge;
+import com.yahoo.metrics.simple.Counter;
+import com.yahoo.metrics.simple.Gauge;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.metrics.simple.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares updating simplemetrics counters and gauges through a declared metric with a default point,
+ * which creates a sample for each update, to updating bound metrics, which do not allocate.
+ * Run with "-prof gc" to see the allocation rate of each, and with "-t" to vary the number of updating threads.
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricUpdateBenchmark {
+
+    private Counter counter;
+    private BoundCounter boundCounter;
+    private Gauge gauge;
+    private BoundGauge boundGauge;
+
+    @Setup
+    public void setup() {
+        MetricReceiver receiver = new MetricReceiver.MockReceiver();
+        Point point = receiver.pointBuilder().set("chain", "default").set("handler", "search").build();
+        counter = receiver.declareCounter("requests", point);
+        boundCounter = receiver.bindCounter("requests.bound", point);
+        gauge = receiver.declareGauge("latency", point);
+        boundGauge = receiver.bindGauge("latency.bound", point);
+    }
+
+    @Benchmark
+    public void counterAdd() {
+        counter.add();
+    }
+
+    @Benchmark
+    public void boundCounterAdd() {
+        boundCounter.add();
+    }
+
+    @Benchmark
+    public void gaugeSample() {
+        gauge.sample(17.0);
+    }
+
+    @Benchmark
+    public void boundGaugeSample() {
+        boundGauge.sample(17.0);
+    }
+
+}
@@ -0,0 +1,102 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.benchmark;
+
+import com.yahoo.document.predicate.Predicate;
+import com.yahoo.search.predicate.Config;
+import com.yahoo.search.predicate.PredicateIndex;
+import com.yahoo.search.predicate.PredicateIndexBuilder;
+import com.yahoo.search.predicate.PredicateQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks searching a predicate index held on the heap and the same index memory-mapped from a file.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredicateSearchBenchmark {
+
+    private static final String[] countries = { "no", "se", "dk", "fi", "de", "fr", "us", "jp" };
+    private static final String[] genders = { "male", "female" };
+
+    @Param({"10000", "100000"})
+    public int documents;
+
+    @Param({"false", "true"})
+    public boolean mapped;
+
+    private PredicateIndex.Searcher searcher;
+    private PredicateQuery[] queries;
+    private int nextQuery = 0;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(new Config.Builder().setArity(8).build());
+        for (int id = 0; id < documents; ++id) {
+            int low = random.nextInt(80);
+            builder.indexDocument(id, Predicate.fromString(
+                    "country in ['" + pick(countries, random) + "', '" + pick(countries, random) + "'] and " +
+                    "gender not in ['" + pick(genders, random) + "'] and " +
+                    "age in [" + low + ".." + (low + random.nextInt(20)) + "]"));
+        }
+        PredicateIndex index = builder.build();
+        if (mapped) {
+            file = Files.createTempFile("predicate-index", ".mapped");
+            index.writeToMappedFile(file);
+            index = PredicateIndex.fromMappedFile(file);
+        }
+        index.rebuildPostingListCache();
+        searcher = index.searcher();
+
+        queries = new PredicateQuery[64];
+        for (int i = 0; i < queries.length; ++i) {
+            queries[i] = new PredicateQuery();
+            queries[i].addFeature("country", pick(countries, random));
+            queries[i].addFeature("gender", pick(genders, random));
+            queries[i].addRangeFeature("age", random.nextInt(100));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        if (file != null) {
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public long search() {
+        PredicateQuery query = queries[nextQuery++ % queries.length];
+        return searcher.search(query).count();
+    }
+
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+
+}
@@ -0,0 +1,107 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.benchmark;
+
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.evaluation.MapEvaluationContext;
+import com.yahoo.tensor.evaluation.VariableTensor;
+import com.yahoo.tensor.functions.Join;
+import com.yahoo.tensor.functions.Matmul;
+import com.yahoo.tensor.functions.Reduce;
+import com.yahoo.tensor.functions.ReduceJoin;
+import com.yahoo.tensor.functions.TensorFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the vector and matrix specializations of ReduceJoin against the equivalent
+ * unoptimized reduce of a join, and matrix multiplication through Matmul.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReduceJoinBenchmark {
+
+    @Param({"32", "256", "1024"})
+    public int size;
+
+    private MapEvaluationContext vectorVector, matrixVector, matrixMatrix;
+
+    private final TensorFunction dotProduct = reduceJoin("x");
+    private final TensorFunction dotProductUnoptimized = reduceOfJoin("x");
+    private final TensorFunction matrixProduct = new Matmul(new VariableTensor("a"), new VariableTensor("b"), "x");
+
+    @Setup
+    public void setup() {
+        Tensors tensors = new Tensors();
+
+        vectorVector = new MapEvaluationContext();
+        vectorVector.put("a", tensors.vector("x", size));
+        vectorVector.put("b", tensors.vector("x", size));
+
+        matrixVector = new MapEvaluationContext();
+        matrixVector.put("a", tensors.matrix("y", 16, "x", size));
+        matrixVector.put("b", tensors.vector("x", size));
+
+        matrixMatrix = new MapEvaluationContext();
+        matrixMatrix.put("a", tensors.matrix("y", 16, "x", size));
+        matrixMatrix.put("b", tensors.matrix("x", size, "z", 16));
+    }
+
+    @Benchmark
+    public Tensor vectorDotProduct() {
+        return dotProduct.evaluate(vectorVector);
+    }
+
+    @Benchmark
+    public Tensor vectorDotProductUnoptimized() {
+        return dotProductUnoptimized.evaluate(vectorVector);
+    }
+
+    @Benchmark
+    public Tensor matrixVectorProduct() {
+        return dotProduct.evaluate(matrixVector);
+    }
+
+    @Benchmark
+    public Tensor matrixVectorProductUnoptimized() {
+        return dotProductUnoptimized.evaluate(matrixVector);
+    }
+
+    @Benchmark
+    public Tensor matrixMatrixProduct() {
+        return dotProduct.evaluate(matrixMatrix);
+    }
+
+    @Benchmark
+    public Tensor matmul() {
+        return matrixProduct.evaluate(matrixMatrix);
+    }
+
+    private static TensorFunction reduceJoin(String dimension) {
+        return new ReduceJoin(new VariableTensor("a"), new VariableTensor("b"),
+                              (a, b) -> a * b, Reduce.Aggregator.sum, List.of(dimension));
+    }
+
+    private static TensorFunction reduceOfJoin(String dimension) {
+        return new Reduce(new Join(new VariableTensor("a"), new VariableTensor("b"), (a, b) -> a * b),
+                          Reduce.Aggregator.sum, List.of(dimension));
+    }
+
+}
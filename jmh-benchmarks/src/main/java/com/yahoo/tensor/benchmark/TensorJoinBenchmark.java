@@ -0,0 +1,86 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.benchmark;
+
+import com.yahoo.tensor.Tensor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks joins of dense, sparse and mixed tensors.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TensorJoinBenchmark {
+
+    @Param({"32", "256", "1024"})
+    public int size;
+
+    private Tensor denseVectorA, denseVectorB;
+    private Tensor denseMatrix, denseVectorY;
+    private Tensor sparseVectorA, sparseVectorB;
+    private Tensor sparseMatrix, sparseVectorY;
+    private Tensor mixed, denseVectorX;
+
+    @Setup
+    public void setup() {
+        Tensors tensors = new Tensors();
+        denseVectorA = tensors.vector("x", size);
+        denseVectorB = tensors.vector("x", size);
+        denseMatrix = tensors.matrix("x", 16, "y", size);
+        denseVectorY = tensors.vector("y", size);
+        sparseVectorA = tensors.sparseVector("x", size, size * 2);
+        sparseVectorB = tensors.sparseVector("x", size, size * 2);
+        sparseMatrix = tensors.sparseMatrix("x", 16, "y", size);
+        sparseVectorY = tensors.sparseVector("y", size, size);
+        mixed = tensors.mixed("key", 16, "x", size);
+        denseVectorX = tensors.vector("x", size);
+    }
+
+    /** Join of two dense tensors of the same type */
+    @Benchmark
+    public Tensor denseSameDimensions() {
+        return denseVectorA.multiply(denseVectorB);
+    }
+
+    /** Join of a dense matrix with a dense vector in one of its dimensions */
+    @Benchmark
+    public Tensor denseSubspace() {
+        return denseMatrix.multiply(denseVectorY);
+    }
+
+    /** Join of two sparse tensors of the same type, where about half the cells match */
+    @Benchmark
+    public Tensor sparseSameDimensions() {
+        return sparseVectorA.multiply(sparseVectorB);
+    }
+
+    /** Join of a sparse matrix with a sparse vector in one of its dimensions */
+    @Benchmark
+    public Tensor sparseSubspace() {
+        return sparseMatrix.multiply(sparseVectorY);
+    }
+
+    /** Join of a mixed tensor with a dense vector in its indexed dimension */
+    @Benchmark
+    public Tensor mixedWithDense() {
+        return mixed.multiply(denseVectorX);
+    }
+
+}
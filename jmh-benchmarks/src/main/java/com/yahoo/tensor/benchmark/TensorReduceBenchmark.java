@@ -0,0 +1,78 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.benchmark;
+
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.functions.Reduce;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reduce over dense, sparse and mixed tensors.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TensorReduceBenchmark {
+
+    @Param({"32", "256", "1024"})
+    public int size;
+
+    private Tensor denseMatrix;
+    private Tensor sparseMatrix;
+    private Tensor mixed;
+
+    @Setup
+    public void setup() {
+        Tensors tensors = new Tensors();
+        denseMatrix = tensors.matrix("x", 16, "y", size);
+        sparseMatrix = tensors.sparseMatrix("x", 16, "y", size);
+        mixed = tensors.mixed("key", 16, "x", size);
+    }
+
+    @Benchmark
+    public Tensor denseReduceAll() {
+        return denseMatrix.reduce(Reduce.Aggregator.sum);
+    }
+
+    @Benchmark
+    public Tensor denseReduceOneDimension() {
+        return denseMatrix.reduce(Reduce.Aggregator.sum, "y");
+    }
+
+    @Benchmark
+    public Tensor sparseReduceAll() {
+        return sparseMatrix.reduce(Reduce.Aggregator.sum);
+    }
+
+    @Benchmark
+    public Tensor sparseReduceOneDimension() {
+        return sparseMatrix.reduce(Reduce.Aggregator.max, "y");
+    }
+
+    @Benchmark
+    public Tensor mixedReduceMapped() {
+        return mixed.reduce(Reduce.Aggregator.sum, "key");
+    }
+
+    @Benchmark
+    public Tensor mixedReduceIndexed() {
+        return mixed.reduce(Reduce.Aggregator.sum, "x");
+    }
+
+}
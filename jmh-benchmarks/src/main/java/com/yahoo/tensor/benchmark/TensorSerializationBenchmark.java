@@ -0,0 +1,78 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.benchmark;
+
+import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.serialization.JsonFormat;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks binary and JSON serialization of dense, sparse and mixed tensors.
+ * JsonFormat only supports encoding, so only the binary format is benchmarked for decoding.
+ *
+ * @author agent
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TensorSerializationBenchmark {
+
+    @Param({"dense", "sparse", "mixed"})
+    public String kind;
+
+    @Param({"256", "4096"})
+    public int cells;
+
+    private Tensor tensor;
+    private byte[] binary;
+
+    @Setup
+    public void setup() {
+        Tensors tensors = new Tensors();
+        switch (kind) {
+            case "dense": tensor = tensors.vector("x", cells); break;
+            case "sparse": tensor = tensors.sparseVector("x", cells, cells); break;
+            case "mixed": tensor = tensors.mixed("key", cells / 16, "x", 16); break;
+            default: throw new IllegalArgumentException("Unknown tensor kind '" + kind + "'");
+        }
+        binary = TypedBinaryFormat.encode(tensor);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return TypedBinaryFormat.encode(tensor);
+    }
+
+    @Benchmark
+    public Tensor binaryDecode() {
+        return TypedBinaryFormat.decode(Optional.of(tensor.type()), GrowableByteBuffer.wrap(binary));
+    }
+
+    @Benchmark
+    public Tensor binaryDecodeWithoutType() {
+        return TypedBinaryFormat.decode(Optional.empty(), GrowableByteBuffer.wrap(binary));
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() {
+        return JsonFormat.encode(tensor);
+    }
+
+}
@@ -0,0 +1,88 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.benchmark;
+
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+
+import java.util.Random;
+
+/**
+ * Generates tensors with random cell values for benchmarks.
+ *
+ * @author agent
+ */
+class Tensors {
+
+    private final Random random;
+
+    /** Creates a generator with a fixed seed so that runs are comparable */
+    Tensors() {
+        this(1234);
+    }
+
+    Tensors(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /** Returns a dense vector tensor(dimension[size]) */
+    Tensor vector(String dimension, int size) {
+        Tensor.Builder builder = Tensor.Builder.of(TensorType.fromSpec("tensor(" + dimension + "[" + size + "])"));
+        for (int i = 0; i < size; i++)
+            builder.cell().label(dimension, i).value(random.nextDouble());
+        return builder.build();
+    }
+
+    /** Returns a dense matrix tensor(d1[size1],d2[size2]) */
+    Tensor matrix(String d1, int size1, String d2, int size2) {
+        Tensor.Builder builder = Tensor.Builder.of(TensorType.fromSpec("tensor(" + d1 + "[" + size1 + "]," + d2 + "[" + size2 + "])"));
+        for (int i = 0; i < size1; i++)
+            for (int j = 0; j < size2; j++)
+                builder.cell().label(d1, i).label(d2, j).value(random.nextDouble());
+        return builder.build();
+    }
+
+    /** Returns a sparse tensor(dimension{}) with the given number of cells, drawing labels from [0, labelSpace) */
+    Tensor sparseVector(String dimension, int cells, int labelSpace) {
+        Tensor.Builder builder = Tensor.Builder.of(TensorType.fromSpec("tensor(" + dimension + "{})"));
+        int[] labels = distinctLabels(cells, labelSpace);
+        for (int label : labels)
+            builder.cell().label(dimension, String.valueOf(label)).value(random.nextDouble());
+        return builder.build();
+    }
+
+    /** Returns a sparse tensor(d1{},d2{}) with size1 x size2 cells */
+    Tensor sparseMatrix(String d1, int size1, String d2, int size2) {
+        Tensor.Builder builder = Tensor.Builder.of(TensorType.fromSpec("tensor(" + d1 + "{}," + d2 + "{})"));
+        for (int i = 0; i < size1; i++)
+            for (int j = 0; j < size2; j++)
+                builder.cell().label(d1, String.valueOf(i)).label(d2, String.valueOf(j)).value(random.nextDouble());
+        return builder.build();
+    }
+
+    /** Returns a mixed tensor(mapped{},indexed[denseSize]) with the given number of dense subspaces */
+    Tensor mixed(String mapped, int subspaces, String indexed, int denseSize) {
+        Tensor.Builder builder = Tensor.Builder.of(TensorType.fromSpec("tensor(" + mapped + "{}," + indexed + "[" + denseSize + "])"));
+        for (int i = 0; i < subspaces; i++)
+            for (int j = 0; j < denseSize; j++)
+                builder.cell().label(mapped, String.valueOf(i)).label(indexed, j).value(random.nextDouble());
+        return builder.build();
+    }
+
+    private int[] distinctLabels(int count, int labelSpace) {
+        if (count > labelSpace)
+            throw new IllegalArgumentException("Cannot draw " + count + " distinct labels from " + labelSpace);
+        int[] all = new int[labelSpace];
+        for (int i = 0; i < labelSpace; i++)
+            all[i] = i;
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(labelSpace - i);
+            int tmp = all[i];
+            all[i] = all[j];
+            all[j] = tmp;
+        }
+        int[] labels = new int[count];
+        System.arraycopy(all, 0, labels, 0, count);
+        return labels;
+    }
+
+}
@@ -9,12 +9,20 @@ class Buffer {
 
     static final int MAX_IO = 65000;
 
+    private final BufferPool pool;
     private ByteBuffer buf;
     private int        readPos;
     private int        writePos;
     private boolean    readMode;
 
+    private void checkNotReleased() {
+        if (buf == null) {
+            throw new IllegalStateException("jrt: buffer used after release");
+        }
+    }
+
     private void setReadMode() {
+        checkNotReleased();
         if (readMode) {
             buf.limit(writePos);
             return;
@@ -26,6 +34,7 @@ class Buffer {
     }
 
     private void setWriteMode() {
+        checkNotReleased();
         if (!readMode) {
             buf.limit(buf.capacity());
             return;
@@ -54,35 +63,77 @@ class Buffer {
             if (buf.capacity() + free < minFree) {
                 size = buf.capacity() + minFree;
             }
-            ByteBuffer tmp = ByteBuffer.allocate(size);
+            ByteBuffer tmp = allocate(size);
             tmp.order(buf.order());
             buf.position(readPos);
             buf.limit(writePos);
             tmp.put(buf);
+            free(buf);
             buf = tmp;
             readPos = 0;
         }
     }
 
+    private ByteBuffer allocate(int size) {
+        return (pool != null) ? pool.acquire(size) : ByteBuffer.allocate(size);
+    }
+
+    private void free(ByteBuffer old) {
+        if (pool != null) {
+            pool.release(old);
+        }
+    }
+
     public Buffer(int size) {
-        buf = ByteBuffer.allocate(size);
+        this(size, null);
+    }
+
+    /**
+     * Create a buffer which uses direct byte buffers from the given
+     * pool. Such a buffer must be {@link #release released} when no
+     * longer used, to make its memory available for reuse.
+     *
+     * @param size the initial size of the buffer
+     * @param pool the pool to allocate from, or null to use heap buffers
+     **/
+    public Buffer(int size, BufferPool pool) {
+        this.pool = pool;
+        buf = allocate(size);
         readPos = 0;
         writePos = 0;
         readMode = false;
     }
 
+    /**
+     * Return the memory of this buffer to its pool, if any. The
+     * buffer cannot be used afterwards. Releasing a buffer more than
+     * once has no effect.
+     **/
+    public void release() {
+        if (buf == null) {
+            return;
+        }
+        free(buf);
+        buf = null;
+    }
+
     public boolean shrink(int size) {
+        checkNotReleased();
         int rpos = readMode? buf.position() : readPos;
         int wpos = readMode? writePos : buf.position();
         int used = wpos - rpos;
         if (used > size || buf.capacity() <= size) {
             return false;
         }
-        ByteBuffer tmp = ByteBuffer.allocate(size);
+        if (pool != null && BufferPool.capacityFor(size) >= buf.capacity()) {
+            return false;
+        }
+        ByteBuffer tmp = allocate(size);
         tmp.order(buf.order());
         buf.position(rpos);
         buf.limit(wpos);
         tmp.put(buf);
+        free(buf);
         buf = tmp;
         readPos = 0;
         writePos = used;
@@ -92,6 +143,7 @@ class Buffer {
     }
 
     public int bytes() {
+        checkNotReleased();
         return (readMode)
             ? (writePos - buf.position())
             : (buf.position() - readPos);
@@ -0,0 +1,162 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A pool of direct byte buffers used for connection read and write
+ * buffers. Direct buffers avoid the temporary direct buffer copy the
+ * JDK does when a heap buffer is read from or written to a socket
+ * channel, and pooling them avoids paying for allocating and freeing
+ * direct memory as connections come and go and buffers grow and
+ * shrink.
+ *
+ * Buffers are pooled in power of two size classes. Buffers larger
+ * than the largest size class are heap buffers which are not pooled,
+ * as the memory of a direct buffer is only freed when the buffer is
+ * garbage collected, which may take long for rarely used large
+ * buffers. Buffers which have stayed unused in the pool for a full
+ * trim interval are released by {@link #trim}.
+ *
+ * This class is multithread safe.
+ *
+ * @author agent
+ **/
+class BufferPool {
+
+    static final int MIN_SIZE = 4096;
+    static final int MAX_SIZE = 4 * 1024 * 1024;
+
+    /** The max number of bytes of free buffers kept per size class */
+    private static final int MAX_FREE_BYTES = 16 * 1024 * 1024;
+
+    private static class SizeClass {
+
+        final int size;
+        final int maxFree;
+        final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+        /** The smallest number of free buffers since the last trim */
+        int lowWater = 0;
+
+        SizeClass(int size) {
+            this.size = size;
+            this.maxFree = Math.max(1, MAX_FREE_BYTES / size);
+        }
+    }
+
+    private final SizeClass[] sizeClasses;
+    private final TransportMetrics metrics;
+
+    BufferPool(TransportMetrics metrics) {
+        int n = Integer.numberOfTrailingZeros(MAX_SIZE) - Integer.numberOfTrailingZeros(MIN_SIZE) + 1;
+        sizeClasses = new SizeClass[n];
+        for (int i = 0; i < n; i++) {
+            sizeClasses[i] = new SizeClass(MIN_SIZE << i);
+        }
+        this.metrics = metrics;
+    }
+
+    private static int sizeClassIndex(int size) {
+        if (size <= MIN_SIZE) {
+            return 0;
+        }
+        int rounded = Integer.highestOneBit(size - 1) << 1;
+        return Integer.numberOfTrailingZeros(rounded) - Integer.numberOfTrailingZeros(MIN_SIZE);
+    }
+
+    /**
+     * Returns the capacity of the buffers handed out when asking for
+     * the given minimum size.
+     *
+     * @return buffer capacity
+     * @param minSize the minimum buffer size
+     **/
+    static int capacityFor(int minSize) {
+        if (minSize > MAX_SIZE) {
+            return minSize;
+        }
+        return MIN_SIZE << sizeClassIndex(minSize);
+    }
+
+    /**
+     * Obtain a cleared buffer with a capacity of at least the given
+     * size. This is a direct buffer unless the size is larger than
+     * the largest size class.
+     *
+     * @return a buffer
+     * @param minSize the minimum buffer size
+     **/
+    ByteBuffer acquire(int minSize) {
+        if (minSize > MAX_SIZE) {
+            metrics.incrementBufferPoolMisses();
+            return ByteBuffer.allocate(minSize);
+        }
+        SizeClass sizeClass = sizeClasses[sizeClassIndex(minSize)];
+        ByteBuffer buf;
+        synchronized (sizeClass) {
+            buf = sizeClass.free.pollLast();
+            if (buf != null) {
+                sizeClass.lowWater = Math.min(sizeClass.lowWater, sizeClass.free.size());
+            }
+        }
+        if (buf == null) {
+            metrics.incrementBufferPoolMisses();
+            return ByteBuffer.allocateDirect(sizeClass.size);
+        }
+        metrics.incrementBufferPoolHits();
+        buf.clear();
+        return buf;
+    }
+
+    /**
+     * Return a buffer obtained from {@link #acquire} to this pool.
+     * The caller must not use the buffer afterwards.
+     *
+     * @param buf the buffer to return
+     **/
+    void release(ByteBuffer buf) {
+        if (!buf.isDirect() || buf.capacity() > MAX_SIZE) {
+            return;
+        }
+        SizeClass sizeClass = sizeClasses[sizeClassIndex(buf.capacity())];
+        if (sizeClass.size != buf.capacity()) {
+            return;
+        }
+        synchronized (sizeClass) {
+            if (sizeClass.free.size() < sizeClass.maxFree) {
+                sizeClass.free.addLast(buf);
+            }
+        }
+    }
+
+    /**
+     * Release the buffers which have not been needed since the
+     * previous invocation of this method. This is invoked
+     * periodically to shrink the pool after bursts of activity.
+     **/
+    void trim() {
+        for (SizeClass sizeClass : sizeClasses) {
+            synchronized (sizeClass) {
+                for (int i = 0; i < sizeClass.lowWater; i++) {
+                    sizeClass.free.pollFirst();
+                }
+                sizeClass.lowWater = sizeClass.free.size();
+            }
+        }
+    }
+
+    /**
+     * @return the number of free buffers in this pool
+     **/
+    int freeBuffers() {
+        int count = 0;
+        for (SizeClass sizeClass : sizeClasses) {
+            synchronized (sizeClass) {
+                count += sizeClass.free.size();
+            }
+        }
+        return count;
+    }
+}
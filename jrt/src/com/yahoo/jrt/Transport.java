@@ -26,6 +26,7 @@ public class Transport {
     private final Connector         connector;
     private final Worker            worker;
     private final AtomicInteger     runCnt;
+    private final boolean           directBuffers;
 
     private final TransportMetrics metrics = TransportMetrics.getInstance();
     private final ArrayList<TransportThread> threads = new ArrayList<TransportThread>();
@@ -40,12 +41,15 @@ public class Transport {
      * @param fatalHandler fatal error handler
      * @param cryptoEngine crypto engine to use
      * @param numThreads number of {@link TransportThread}s.
+     * @param directBuffers whether connections read and write using
+     *                      pooled direct buffers rather than heap buffers
      **/
-    public Transport(FatalErrorHandler fatalHandler, CryptoEngine cryptoEngine, int numThreads) {
+    public Transport(FatalErrorHandler fatalHandler, CryptoEngine cryptoEngine, int numThreads, boolean directBuffers) {
         synchronized (this) {
             this.fatalHandler = fatalHandler; // NB: this must be set first
         }
         this.cryptoEngine = cryptoEngine;
+        this.directBuffers = directBuffers;
         connector = new Connector(this);
         worker = new Worker(this);
         runCnt = new AtomicInteger(numThreads);
@@ -53,6 +57,7 @@ public class Transport {
             threads.add(new TransportThread(this));
         }
     }
+    public Transport(FatalErrorHandler fatalHandler, CryptoEngine cryptoEngine, int numThreads) { this(fatalHandler, cryptoEngine, numThreads, false); }
     public Transport(CryptoEngine cryptoEngine, int numThreads) { this(null, cryptoEngine, numThreads); }
     public Transport(FatalErrorHandler fatalHandler, int numThreads) { this(fatalHandler, CryptoEngine.createDefault(), numThreads); }
     public Transport(int numThreads) { this(null, CryptoEngine.createDefault(), numThreads); }
@@ -186,6 +191,10 @@ public class Transport {
         }
     }
 
+    boolean useDirectBuffers() {
+        return directBuffers;
+    }
+
     public TransportMetrics metrics() {
         return metrics;
     }
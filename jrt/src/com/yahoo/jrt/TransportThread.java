@@ -17,6 +17,9 @@ import java.util.logging.Logger;
  **/
 public class TransportThread {
 
+    /** How often buffers which have been unused in the buffer pool are released */
+    private static final double BUFFER_POOL_TRIM_INTERVAL = 30.0;
+
     private static final int OPEN    = 1;
     private static final int CLOSING = 2;
     private static final int CLOSED  = 3;
@@ -77,6 +80,8 @@ public class TransportThread {
     private final Scheduler scheduler;
     private int             state;
     private final Selector  selector;
+    private final BufferPool bufferPool;
+    private final Task      bufferPoolTrimTask;
 
     private void handleAddConnection(Connection conn) {
         if (conn.isClosed()) {
@@ -119,6 +124,11 @@ public class TransportThread {
         }
     }
 
+    private void handleTrimBufferPool() {
+        bufferPool.trim();
+        bufferPoolTrimTask.schedule(BUFFER_POOL_TRIM_INTERVAL);
+    }
+
     private boolean postCommand(Runnable cmd) {
         boolean wakeup;
         synchronized (this) {
@@ -179,6 +189,14 @@ public class TransportThread {
         } catch (Exception e) {
             throw new Error("Could not open transport selector", e);
         }
+        if (transport.useDirectBuffers()) {
+            bufferPool = new BufferPool(transport.metrics());
+            bufferPoolTrimTask = createTask(this::handleTrimBufferPool);
+            bufferPoolTrimTask.schedule(BUFFER_POOL_TRIM_INTERVAL);
+        } else {
+            bufferPool = null;
+            bufferPoolTrimTask = null;
+        }
         thread.setDaemon(true);
         thread.start();
     }
@@ -187,6 +205,14 @@ public class TransportThread {
         return parent;
     }
 
+    /**
+     * @return the pool of direct buffers used by the connections of
+     * this thread, or null if connections should use heap buffers
+     **/
+    BufferPool bufferPool() {
+        return bufferPool;
+    }
+
     /**
      * Proxy method used to dispatch fatal errors to the enclosing
      * Transport.
@@ -0,0 +1,148 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class BufferPoolTest {
+
+    private final TransportMetrics metrics = TransportMetrics.getInstance();
+
+    @Test
+    public void requireThatBuffersAreRoundedUpToSizeClasses() {
+        assertEquals(BufferPool.MIN_SIZE, BufferPool.capacityFor(1));
+        assertEquals(BufferPool.MIN_SIZE, BufferPool.capacityFor(BufferPool.MIN_SIZE));
+        assertEquals(2 * BufferPool.MIN_SIZE, BufferPool.capacityFor(BufferPool.MIN_SIZE + 1));
+        assertEquals(65536, BufferPool.capacityFor(65000));
+        assertEquals(BufferPool.MAX_SIZE, BufferPool.capacityFor(BufferPool.MAX_SIZE));
+        assertEquals(BufferPool.MAX_SIZE + 1, BufferPool.capacityFor(BufferPool.MAX_SIZE + 1));
+
+        BufferPool pool = new BufferPool(metrics);
+        ByteBuffer buf = pool.acquire(10000);
+        assertTrue(buf.isDirect());
+        assertEquals(16384, buf.capacity());
+    }
+
+    @Test
+    public void requireThatReleasedBuffersAreReused() {
+        BufferPool pool = new BufferPool(metrics);
+        TransportMetrics.Snapshot before = metrics.snapshot();
+        ByteBuffer first = pool.acquire(32768);
+        first.put((byte)1);
+        pool.release(first);
+        ByteBuffer second = pool.acquire(20000);
+        ByteBuffer third = pool.acquire(20000);
+        TransportMetrics.Snapshot changes = metrics.snapshot().changesSince(before);
+
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(second.capacity(), second.limit());
+        assertNotSame(second, third);
+        assertEquals(1, changes.bufferPoolHits());
+        assertEquals(2, changes.bufferPoolMisses());
+    }
+
+    @Test
+    public void requireThatHeapAndOversizedBuffersAreNotPooled() {
+        BufferPool pool = new BufferPool(metrics);
+        pool.release(ByteBuffer.allocate(BufferPool.MIN_SIZE));
+        pool.release(pool.acquire(BufferPool.MAX_SIZE + 1));
+        assertEquals(0, pool.freeBuffers());
+    }
+
+    @Test
+    public void requireThatIdleBuffersAreTrimmed() {
+        BufferPool pool = new BufferPool(metrics);
+        ByteBuffer a = pool.acquire(4096);
+        ByteBuffer b = pool.acquire(4096);
+        pool.release(a);
+        pool.release(b);
+        pool.trim();
+        assertEquals(2, pool.freeBuffers());
+
+        pool.release(pool.acquire(4096));
+        pool.trim();
+        assertEquals("only the buffer used since the last trim is kept", 1, pool.freeBuffers());
+        pool.trim();
+        assertEquals(0, pool.freeBuffers());
+    }
+
+    @Test
+    public void requireThatPooledBufferGrowsShrinksAndReleases() {
+        BufferPool pool = new BufferPool(metrics);
+        Buffer buf = new Buffer(1024, pool);
+        byte[] x = new byte[100000];
+        byte[] y = new byte[100000];
+        Arrays.fill(x, (byte)10);
+
+        ByteBuffer b = buf.getWritable(x.length);
+        assertTrue(b.isDirect());
+        assertEquals(131072, b.capacity());
+        b.put(x);
+        assertEquals("smaller buffers were returned to the pool", 1, pool.freeBuffers());
+        buf.getReadable().get(y, 0, 90000);
+        assertFalse(buf.shrink(70000));
+        assertTrue(buf.shrink(20000));
+        assertEquals(32768, buf.getReadable().capacity());
+        buf.getReadable().get(y, 90000, 10000);
+        assertTrue(Arrays.equals(x, y));
+        assertEquals(2, pool.freeBuffers());
+
+        buf.release();
+        assertEquals(3, pool.freeBuffers());
+        buf.release();
+        assertEquals(3, pool.freeBuffers());
+        try {
+            buf.getWritable(10);
+            fail("released buffer was usable");
+        } catch (IllegalStateException e) {
+            assertEquals(3, pool.freeBuffers());
+        }
+    }
+
+    @Test
+    public void requireThatOversizedBuffersAreHeapBuffers() {
+        BufferPool pool = new BufferPool(metrics);
+        ByteBuffer buf = pool.acquire(BufferPool.MAX_SIZE + 1);
+        assertFalse(buf.isDirect());
+        assertEquals(BufferPool.MAX_SIZE + 1, buf.capacity());
+    }
+
+    @Test
+    public void requireThatBuffersArePooledOnlyWhenDirectBuffersAreEnabled() throws ListenFailedException {
+        Transport heapTransport = new Transport();
+        Transport directTransport = new Transport(null, CryptoEngine.createDefault(), 1, true);
+        try {
+            assertNull(heapTransport.selectThread().bufferPool());
+            assertNotNull(directTransport.selectThread().bufferPool());
+
+            Supervisor server = new Supervisor(heapTransport);
+            Supervisor client = new Supervisor(directTransport);
+            Acceptor acceptor = server.listen(new Spec(0));
+            Target target = client.connect(new Spec("localhost", acceptor.port()));
+            Request request = new Request("frt.rpc.ping");
+            target.invokeSync(request, 5.0);
+            assertFalse(request.errorMessage(), request.isError());
+            target.close();
+            acceptor.shutdown().join();
+        } finally {
+            heapTransport.shutdown().join();
+            directTransport.shutdown().join();
+        }
+    }
+
+}
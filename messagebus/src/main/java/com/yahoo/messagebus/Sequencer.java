@@ -1,10 +1,9 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.ArrayDeque;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -12,6 +11,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * linked message handlers. Each message that carries a sequencing id is queued in an internal list of messages for that
  * id, and messages are only sent when they are at the front of their list. When a reply arrives, the current front of
  * the list is removed and the next message, if any, is sent.
+ * <p>
+ * The sequencing state is kept in a concurrent map where each id is updated atomically, so messages with
+ * different sequencing ids do not contend with each other.
  *
  * @author Simon Thoresen Hult
  */
@@ -19,7 +21,12 @@ public class Sequencer implements MessageHandler, ReplyHandler {
 
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final MessageHandler sender;
-    private final Map<Long, Queue<Message>> seqMap = new HashMap<>();
+
+    /** The messages waiting to be sent, by sequencing id. Ids are present when a message with the id is pending */
+    private final ConcurrentHashMap<Long, Queue<Message>> seqMap = new ConcurrentHashMap<>();
+
+    /** The value of ids which have a pending message and no queued messages. This is never modified. */
+    private static final Queue<Message> noQueue = new ArrayDeque<>(0);
 
     /**
      * Constructs a new sequencer on top of the given async sender.
@@ -38,15 +45,13 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      */
     public boolean destroy() {
         if (!destroyed.getAndSet(true)) {
-            synchronized (this) {
-                for (Queue<Message> queue : seqMap.values()) {
-                    if (queue != null) {
-                        for (Message msg : queue) {
-                            msg.discard();
-                        }
+            for (Long seqId : seqMap.keySet()) {
+                Queue<Message> queue = seqMap.remove(seqId);
+                if (queue != null) {
+                    for (Message msg : queue) {
+                        msg.discard();
                     }
                 }
-                seqMap.clear();
             }
             return true;
         }
@@ -65,23 +70,22 @@ public class Sequencer implements MessageHandler, ReplyHandler {
     private boolean filter(Message msg) {
         long seqId = msg.getSequenceId();
         msg.setContext(seqId);
-        synchronized (this) {
-            if (seqMap.containsKey(seqId)) {
-                Queue<Message> queue = seqMap.get(seqId);
-                if (queue == null) {
-                    queue = new LinkedList<>();
-                    seqMap.put(seqId, queue);
-                }
-                if (msg.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
-                    msg.getTrace().trace(TraceLevel.COMPONENT,
-                                         "Sequencer queued message with sequence id '" + seqId + "'.");
-                }
-                queue.add(msg);
-                return false;
-            }
-            seqMap.put(seqId, null);
+        if (seqMap.putIfAbsent(seqId, noQueue) == null) return true; // Fast path: Nothing pending for this id
+
+        boolean[] queued = new boolean[1];
+        seqMap.compute(seqId, (id, queue) -> {
+            if (queue == null) return noQueue; // The pending message got its reply meanwhile
+            if (queue == noQueue)
+                queue = new ArrayDeque<>();
+            queue.add(msg);
+            queued[0] = true;
+            return queue;
+        });
+        if (queued[0] && msg.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
+            msg.getTrace().trace(TraceLevel.COMPONENT,
+                                 "Sequencer queued message with sequence id '" + seqId + "'.");
         }
-        return true;
+        return ! queued[0];
     }
 
     /**
@@ -137,17 +141,14 @@ public class Sequencer implements MessageHandler, ReplyHandler {
             reply.getTrace().trace(TraceLevel.COMPONENT,
                                    "Sequencer received reply with sequence id '" + seqId + "'.");
         }
-        Message msg = null;
-        synchronized (this) {
-            Queue<Message> queue = seqMap.get(seqId);
-            if (queue == null || queue.isEmpty()) {
-                seqMap.remove(seqId);
-            } else {
-                msg = queue.remove();
-            }
-        }
-        if (msg != null) {
-            sequencedSend(msg);
+        Message[] next = new Message[1];
+        seqMap.computeIfPresent(seqId, (id, queue) -> {
+            if (queue.isEmpty()) return null; // Nothing more to send for this id
+            next[0] = queue.remove();
+            return queue;
+        });
+        if (next[0] != null) {
+            sequencedSend(next[0]);
         }
         ReplyHandler handler = reply.popHandler();
         handler.handleReply(reply);
@@ -38,6 +38,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -62,11 +64,14 @@ public class RPCNetwork implements Network, MethodHandler {
     private final TreeMap<Version, RPCSendAdapter> sendAdapters = new TreeMap<>();
     private NetworkOwner owner;
     private final SlobrokConfigSubscriber slobroksConfig;
+    private final double maxBatchDelaySecs;
+    private final int maxBatchSize;
     private final LinkedHashMap<String, Route> lruRouteMap = new LinkedHashMap<>(10000, 0.5f, true);
     private final ExecutorService executor =
             new ThreadPoolExecutor(getNumThreads(), getNumThreads(), 0L, TimeUnit.SECONDS,
                                    new SynchronousQueue<>(false),
                                    ThreadFactoryFactory.getDaemonThreadFactory("mbus.net"), new ThreadPoolExecutor.CallerRunsPolicy());
+    private final ScheduledExecutorService scheduler = createScheduler();
     private static int getNumThreads() {
         return Math.max(2, Runtime.getRuntime().availableProcessors()/2);
     }
@@ -82,6 +87,8 @@ public class RPCNetwork implements Network, MethodHandler {
     public RPCNetwork(RPCNetworkParams params, SlobrokConfigSubscriber slobrokConfig) {
         this.slobroksConfig = slobrokConfig;
         identity = params.getIdentity();
+        maxBatchDelaySecs = params.getMaxBatchDelaySecs();
+        maxBatchSize = params.getMaxBatchSize();
         orb = new Supervisor(new Transport(2));
         orb.setMaxInputBufferSize(params.getMaxInputBufferSize());
         orb.setMaxOutputBufferSize(params.getMaxOutputBufferSize());
@@ -179,9 +186,16 @@ public class RPCNetwork implements Network, MethodHandler {
         this.owner = owner;
 
         RPCSendAdapter adapter1 = new RPCSendV1();
-        RPCSendAdapter adapter2 = new RPCSendV2();
+        RPCSendV2 adapter2 = new RPCSendV2();
         addSendAdapter(new Version(5), adapter1);
         addSendAdapter(new Version(6,149), adapter2);
+
+        // Batches are always received, but only sent when a batch delay is set
+        RPCSendBatch batchAdapter = new RPCSendBatch(adapter2, maxBatchDelaySecs, maxBatchSize);
+        batchAdapter.attach(this);
+        if (maxBatchDelaySecs > 0) {
+            sendAdapters.put(new Version(6,149), batchAdapter);
+        }
     }
 
     @Override
@@ -275,6 +289,7 @@ public class RPCNetwork implements Network, MethodHandler {
             orb.transport().shutdown().join();
             targetPool.flushTargets(true);
             executor.shutdown();
+            scheduler.shutdownNow();
             return true;
         }
         return false;
@@ -400,6 +415,21 @@ public class RPCNetwork implements Network, MethodHandler {
         return executor;
     }
 
+    /**
+     * Returns the scheduler of delayed network tasks. Unlike tasks scheduled on the jrt transport, which run at
+     * 100 ms ticks, these run at the requested delay.
+     */
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor scheduler =
+                new ScheduledThreadPoolExecutor(1, ThreadFactoryFactory.getDaemonThreadFactory("mbus.net.scheduler"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
     private class SendTask implements Runnable {
 
         final Protocol protocol;
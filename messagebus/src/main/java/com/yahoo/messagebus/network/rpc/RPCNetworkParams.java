@@ -19,6 +19,8 @@ public class RPCNetworkParams {
     private int maxInputBufferSize = 256 * 1024;
     private int maxOutputBufferSize = 256 * 1024;
     private double connectionExpireSecs = 30;
+    private double maxBatchDelaySecs = 0;
+    private int maxBatchSize = 64 * 1024;
 
     /**
      * Constructs a new instance of this class with reasonable default values.
@@ -40,6 +42,8 @@ public class RPCNetworkParams {
         connectionExpireSecs = params.connectionExpireSecs;
         maxInputBufferSize = params.maxInputBufferSize;
         maxOutputBufferSize = params.maxOutputBufferSize;
+        maxBatchDelaySecs = params.maxBatchDelaySecs;
+        maxBatchSize = params.maxBatchSize;
     }
 
     /**
@@ -185,4 +189,48 @@ public class RPCNetworkParams {
         this.maxOutputBufferSize = maxOutputBufferSize;
         return this;
     }
+
+    /**
+     * Returns the max number of seconds a message may wait to be sent in a batch with other messages to the same
+     * target. If this is 0, messages are sent one by one.
+     *
+     * @return The number of seconds.
+     */
+    public double getMaxBatchDelaySecs() {
+        return maxBatchDelaySecs;
+    }
+
+    /**
+     * Sets the max number of seconds a message may wait to be sent in a batch with other messages to the same
+     * target. Batching saves the overhead of a separate RPC request and reply per message, which dominates for
+     * small messages, at the cost of added latency. Targets which do not support batches are sent to one message
+     * at the time regardless. The default is 0, which disables batching.
+     *
+     * @param secs The number of seconds.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setMaxBatchDelaySecs(double secs) {
+        this.maxBatchDelaySecs = secs;
+        return this;
+    }
+
+    /**
+     * Returns the payload size in bytes at which a batch is sent without waiting for more messages.
+     *
+     * @return The number of bytes.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the payload size in bytes at which a batch is sent without waiting for more messages.
+     *
+     * @param maxBatchSize The number of bytes.
+     * @return This, to allow chaining.
+     */
+    public RPCNetworkParams setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
 }
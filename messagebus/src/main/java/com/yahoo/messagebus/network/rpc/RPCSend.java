@@ -116,22 +116,8 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         Reply reply;
         Error error = null;
         if (!req.checkReturnTypes(getReturnSpec())) {
-            // Map all known JRT errors to the appropriate message bus error.
             reply = new EmptyReply();
-            switch (req.errorCode()) {
-                case com.yahoo.jrt.ErrorCode.TIMEOUT:
-                    error = new Error(ErrorCode.TIMEOUT,
-                            "A timeout occured while waiting for '" + serviceName + "' (" +
-                                    ctx.timeout + " seconds expired); " + req.errorMessage());
-                    break;
-                case com.yahoo.jrt.ErrorCode.CONNECTION:
-                    error = new Error(ErrorCode.CONNECTION_ERROR,
-                            "A connection error occured for '" + serviceName + "'; " + req.errorMessage());
-                    break;
-                default:
-                    error = new Error(ErrorCode.NETWORK_ERROR,
-                            "A network error occured for '" + serviceName + "'; " + req.errorMessage());
-            }
+            error = toError(req, serviceName, ctx.timeout);
         } else {
             reply = createReply(req.returnValues(), serviceName, ctx.trace);
         }
@@ -146,6 +132,22 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         net.getOwner().deliverReply(reply, ctx.recipient);
     }
 
+    /** Maps all known JRT errors of the given failed request to the appropriate message bus error */
+    static Error toError(Request req, String serviceName, double timeout) {
+        switch (req.errorCode()) {
+            case com.yahoo.jrt.ErrorCode.TIMEOUT:
+                return new Error(ErrorCode.TIMEOUT,
+                        "A timeout occured while waiting for '" + serviceName + "' (" +
+                                timeout + " seconds expired); " + req.errorMessage());
+            case com.yahoo.jrt.ErrorCode.CONNECTION:
+                return new Error(ErrorCode.CONNECTION_ERROR,
+                        "A connection error occured for '" + serviceName + "'; " + req.errorMessage());
+            default:
+                return new Error(ErrorCode.NETWORK_ERROR,
+                        "A network error occured for '" + serviceName + "'; " + req.errorMessage());
+        }
+    }
+
     protected final class Params {
         Version version;
         String route;
@@ -169,33 +171,42 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
 
         request.discardParameters(); // allow garbage collection of request parameters
 
+        Error error = deliverMessage(p, this, new ReplyContext(request, p.version));
+        if (error != null) {
+            replyError(request, p.version, p.traceLevel, error);
+        }
+    }
+
+    /**
+     * Decodes the message of the given parameters and delivers it to its session.
+     *
+     * @param p            The parameters of the received message.
+     * @param replyHandler The handler which will receive the reply to the message.
+     * @param replyContext The context to set in the message, which is available to the reply handler.
+     * @return The error preventing delivery, or null if the message was delivered.
+     */
+    final Error deliverMessage(Params p, ReplyHandler replyHandler, Object replyContext) {
         // Make sure that the owner understands the protocol.
         Protocol protocol = net.getOwner().getProtocol(p.protocolName);
         if (protocol == null) {
-            replyError(request, p.version, p.traceLevel,
-                    new Error(ErrorCode.UNKNOWN_PROTOCOL,
-                            "Protocol '" + p.protocolName + "' is not known by " + serverIdent + "."));
-            return;
+            return new Error(ErrorCode.UNKNOWN_PROTOCOL,
+                    "Protocol '" + p.protocolName + "' is not known by " + serverIdent + ".");
         }
         Routable routable = protocol.decode(p.version, p.payload);
         if (routable == null) {
-            replyError(request, p.version, p.traceLevel,
-                    new Error(ErrorCode.DECODE_ERROR,
-                            "Protocol '" + protocol.getName() + "' failed to decode routable."));
-            return;
+            return new Error(ErrorCode.DECODE_ERROR,
+                    "Protocol '" + protocol.getName() + "' failed to decode routable.");
         }
         if (routable instanceof Reply) {
-            replyError(request, p.version, p.traceLevel,
-                    new Error(ErrorCode.DECODE_ERROR,
-                            "Payload decoded to a reply when expecting a message."));
-            return;
+            return new Error(ErrorCode.DECODE_ERROR,
+                    "Payload decoded to a reply when expecting a message.");
         }
         Message msg = (Message)routable;
         if (p.route != null && p.route.length() > 0) {
             msg.setRoute(net.getRoute(p.route));
         }
-        msg.setContext(new ReplyContext(request, p.version));
-        msg.pushHandler(this);
+        msg.setContext(replyContext);
+        msg.pushHandler(replyHandler);
         msg.setRetryEnabled(p.retryEnabled);
         msg.setRetry(p.retry);
         msg.setTimeReceivedNow();
@@ -206,6 +217,7 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
                     "Message (type " + msg.getType() + ") received at " + serverIdent + " for session '" + p.session + "'.");
         }
         net.getOwner().deliverMessage(msg, p.session);
+        return null;
     }
 
     @Override
@@ -213,26 +225,38 @@ public abstract class RPCSend implements MethodHandler, ReplyHandler, RequestWai
         ReplyContext ctx = (ReplyContext)reply.getContext();
         reply.setContext(null);
 
-        // Add trace information.
+        // Encode and return the reply through the RPC request.
+        byte[] payload = encodeReply(reply, ctx.version);
+        createResponse(ctx.request.returnValues(), reply, ctx.version, payload);
+        ctx.request.returnRequest();
+    }
+
+    /**
+     * Adds trace information to the given reply and returns its encoded payload. If encoding fails, an error is
+     * added to the reply.
+     *
+     * @param reply   The reply to encode.
+     * @param version The version to serialize for.
+     * @return The encoded reply payload, which is empty for empty replies.
+     */
+    final byte[] encodeReply(Reply reply, Version version) {
         if (reply.getTrace().shouldTrace(TraceLevel.SEND_RECEIVE)) {
             reply.getTrace().trace(TraceLevel.SEND_RECEIVE,
-                    "Sending reply (version " + ctx.version + ") from " + serverIdent + ".");
+                    "Sending reply (version " + version + ") from " + serverIdent + ".");
         }
 
-        // Encode and return the reply through the RPC request.
         byte[] payload = new byte[0];
         if (reply.getType() != 0) {
             Protocol protocol = net.getOwner().getProtocol(reply.getProtocol());
             if (protocol != null) {
-                payload = protocol.encode(ctx.version, reply);
+                payload = protocol.encode(version, reply);
             }
             if (payload == null || payload.length == 0) {
                 reply.addError(new Error(ErrorCode.ENCODE_ERROR,
                         "An error occured while encoding the reply."));
             }
         }
-        createResponse(ctx.request.returnValues(), reply, ctx.version, payload);
-        ctx.request.returnRequest();
+        return payload;
     }
 
     /**
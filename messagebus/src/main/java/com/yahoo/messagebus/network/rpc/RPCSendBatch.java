@@ -0,0 +1,442 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.component.Version;
+import com.yahoo.compress.CompressionType;
+import com.yahoo.concurrent.SystemTimer;
+import com.yahoo.compress.Compressor;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int8Value;
+import com.yahoo.jrt.Method;
+import com.yahoo.jrt.MethodHandler;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.RequestWaiter;
+import com.yahoo.jrt.Values;
+import com.yahoo.messagebus.EmptyReply;
+import com.yahoo.messagebus.Error;
+import com.yahoo.messagebus.ErrorCode;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.ReplyHandler;
+import com.yahoo.messagebus.Trace;
+import com.yahoo.messagebus.TraceLevel;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.routing.RoutingNode;
+import com.yahoo.slime.BinaryFormat;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.Slime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implements the request adapter for method "mbus.slime.batch", which sends a batch of messages to the same target
+ * in a single request, and gets their replies back in a single response. Each message and reply is encoded as in
+ * "mbus.slime", and the entire batch is compressed as one payload.
+ * <p>
+ * Messages are added to the pending batch of their target, which is sent when its payload reaches the max batch size,
+ * or when its first message has waited for the max batch delay. The time remaining of each message is computed when
+ * the batch is sent, and each message times out individually, regardless of the other messages in its batch.
+ * Both the batch delay and these timeouts are timed by the scheduler of the network, as tasks scheduled on the jrt
+ * transport only run at 100 ms ticks.
+ * Targets which do not support this method (older versions and other implementations) are sent to one message at
+ * the time using "mbus.slime", until they report a different version.
+ *
+ * @author agent
+ */
+public class RPCSendBatch implements MethodHandler, ReplyHandler, RequestWaiter, RPCSendAdapter {
+
+    private final static String METHOD_NAME = "mbus.slime.batch";
+    private final static String METHOD_PARAMS = "bix";
+    private final static String METHOD_RETURN = "bix";
+
+    private static final String MESSAGES_F = "messages";
+    private static final String REPLIES_F = "replies";
+
+    private final Compressor compressor = new Compressor(CompressionType.LZ4, 3, 0.90, 1024);
+    private final RPCSendV2 single;
+    private final double maxDelaySecs;
+    private final int maxSize;
+
+    /** The batches which are not yet sent, by target. Synchronize on this when accessing. */
+    private final Map<RPCTarget, Batch> pending = new HashMap<>();
+
+    /**
+     * The connection specs of targets which have failed to receive batches because they do not support them,
+     * with the version they reported at the time
+     */
+    private final Map<String, Version> unsupportedTargets = new ConcurrentHashMap<>();
+
+    private RPCNetwork net = null;
+
+    /**
+     * Creates a batching adapter.
+     *
+     * @param single       The adapter used to encode messages and replies, and to send to targets which do not
+     *                     support batches.
+     * @param maxDelaySecs The max time a message waits for other messages to be batched with it.
+     * @param maxSize      The size of message payloads at which a batch is sent without waiting for more messages.
+     */
+    RPCSendBatch(RPCSendV2 single, double maxDelaySecs, int maxSize) {
+        this.single = single;
+        this.maxDelaySecs = maxDelaySecs;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public void attach(RPCNetwork net) {
+        this.net = net;
+        Method method = new Method(METHOD_NAME, METHOD_PARAMS, METHOD_RETURN, this);
+        method.methodDesc("Send a batch of message bus requests and get their replies back.");
+        method.paramDesc(0, "encoding", "Encoding type of the messages.")
+              .paramDesc(1, "decodedSize", "Number of bytes after decoding.")
+              .paramDesc(2, "payload", "Slime encoded messages.");
+        method.returnDesc(0, "encoding", "Encoding type of the replies.")
+              .returnDesc(1, "decodedSize", "Number of bytes after decoding.")
+              .returnDesc(2, "payload", "Slime encoded replies, in the order of the messages.");
+        net.getSupervisor().addMethod(method);
+    }
+
+    @Override
+    public void send(RoutingNode recipient, Version version, byte[] payload, long timeRemaining) {
+        RPCServiceAddress address = (RPCServiceAddress)recipient.getServiceAddress();
+        if (recipient.getRoute().getHop(0).getIgnoreResult() ||
+            version.equals(unsupportedTargets.get(address.getConnectionSpec().toString()))) {
+            single.send(recipient, version, payload, timeRemaining);
+            return;
+        }
+
+        Batch newBatch = null;
+        Batch fullBatch = null;
+        synchronized (pending) {
+            Batch batch = pending.get(address.getTarget());
+            if (batch == null) {
+                batch = newBatch = new Batch(address.getTarget(), address.getConnectionSpec().toString());
+                pending.put(batch.target, batch);
+            }
+            batch.add(new Entry(recipient, version, payload));
+            if (batch.size >= maxSize) {
+                pending.remove(batch.target);
+                fullBatch = batch;
+            }
+        }
+        if (fullBatch != null) {
+            sendBatch(fullBatch);
+        } else if (newBatch != null) {
+            Batch batch = newBatch;
+            net.getScheduler().schedule(() -> sendIfPending(batch),
+                                        (long)(maxDelaySecs * 1_000_000_000), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Sends the given batch unless it is already sent */
+    private void sendIfPending(Batch batch) {
+        synchronized (pending) {
+            if (pending.get(batch.target) != batch) return;
+            pending.remove(batch.target);
+        }
+        net.getExecutor().execute(() -> sendBatch(batch));
+    }
+
+    private void sendBatch(Batch batch) {
+        long now = SystemTimer.INSTANCE.milliTime();
+        for (Iterator<Entry> it = batch.entries.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            long timeRemaining = entry.recipient.getMessage().getTimeRemainingNow();
+            if (timeRemaining <= 0) {
+                it.remove();
+                Reply reply = new EmptyReply();
+                reply.addError(new Error(ErrorCode.TIMEOUT, "Aborting transmission because zero time remains."));
+                deliverReply(reply, entry);
+                continue;
+            }
+            entry.timeRemaining = timeRemaining;
+            entry.deadline = now + timeRemaining;
+            batch.deadline = Math.max(batch.deadline, entry.deadline);
+        }
+        if (batch.entries.isEmpty()) return;
+
+        Slime slime = new Slime();
+        Cursor messages = slime.setObject().setArray(MESSAGES_F);
+        for (Entry entry : batch.entries) {
+            RPCServiceAddress address = (RPCServiceAddress)entry.recipient.getServiceAddress();
+            Route route = new Route(entry.recipient.getRoute());
+            route.removeHop(0);
+            single.encodeRequest(messages.addObject(), entry.version, route, address, entry.recipient.getMessage(),
+                                 entry.timeRemaining, entry.payload, entry.trace.getLevel());
+            if (entry.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
+                entry.trace.trace(TraceLevel.SEND_RECEIVE,
+                        "Sending message (version " + entry.version + ") in a batch of " + batch.entries.size() +
+                        " to '" + address.getServiceName() + "' with " + entry.timeout() + " seconds timeout.");
+            }
+        }
+        byte[] serializedSlime = BinaryFormat.encode(slime);
+        Compressor.Compression compressionResult = compressor.compress(serializedSlime);
+
+        Request req = new Request(METHOD_NAME);
+        Values v = req.parameters();
+        v.add(new Int8Value(compressionResult.type().getCode()));
+        v.add(new Int32Value(compressionResult.uncompressedSize()));
+        v.add(new DataValue(compressionResult.data()));
+        req.setContext(batch);
+        scheduleTimeout(batch, now);
+        batch.target.getJRTTarget().invokeAsync(req, (batch.deadline - now) * 0.001, this);
+        req.discardParameters(); // allow garbage collection of request parameters
+    }
+
+    /** Schedules timing out the messages of the given batch which expire before the batch request itself does */
+    private void scheduleTimeout(Batch batch, long now) {
+        long next = batch.deadline;
+        for (Entry entry : batch.entries) {
+            if ( ! entry.replied.get()) {
+                next = Math.min(next, entry.deadline);
+            }
+        }
+        if (next >= batch.deadline) return;
+
+        if (batch.timeoutTask != null) {
+            batch.timeoutTask.cancel(false);
+        }
+        batch.timeoutTask = net.getScheduler().schedule(() -> net.getExecutor().execute(() -> timeOutExpired(batch)),
+                                                        Math.max(0, next - now), TimeUnit.MILLISECONDS);
+    }
+
+    /** Replies with a timeout to the messages of the given batch which have expired */
+    private void timeOutExpired(Batch batch) {
+        long now = SystemTimer.INSTANCE.milliTime();
+        for (Entry entry : batch.entries) {
+            if (entry.deadline <= now && ! entry.replied.get()) {
+                Reply reply = new EmptyReply();
+                reply.addError(new Error(ErrorCode.TIMEOUT,
+                        "A timeout occured while waiting for '" + entry.serviceName + "' (" + entry.timeout() +
+                        " seconds expired); Request timed out in a batch of " + batch.entries.size()));
+                deliverReply(reply, entry);
+            }
+        }
+        scheduleTimeout(batch, now);
+    }
+
+    @Override
+    public void handleRequestDone(Request req) {
+        net.getExecutor().execute(() -> doRequestDone(req));
+    }
+
+    private void doRequestDone(Request req) {
+        Batch batch = (Batch)req.getContext();
+        ScheduledFuture<?> timeoutTask = batch.timeoutTask;
+        if (timeoutTask != null) {
+            timeoutTask.cancel(false);
+        }
+        if ( ! req.checkReturnTypes(METHOD_RETURN)) {
+            if (req.errorCode() == com.yahoo.jrt.ErrorCode.NO_SUCH_METHOD) { // Send to this target one by one instead
+                unsupportedTargets.put(batch.connectionSpec, batch.entries.get(0).version);
+                for (Entry entry : batch.entries) {
+                    long timeRemaining = entry.recipient.getMessage().getTimeRemainingNow();
+                    if (timeRemaining <= 0) {
+                        Reply reply = new EmptyReply();
+                        reply.addError(new Error(ErrorCode.TIMEOUT, "Aborting transmission because zero time remains."));
+                        deliverReply(reply, entry);
+                    }
+                    else if (entry.replied.compareAndSet(false, true)) {
+                        single.send(entry.recipient, entry.version, entry.payload, timeRemaining);
+                    }
+                }
+                return;
+            }
+            for (Entry entry : batch.entries) {
+                Reply reply = new EmptyReply();
+                reply.addError(RPCSend.toError(req, entry.serviceName, entry.timeout()));
+                deliverReply(reply, entry);
+            }
+            return;
+        }
+
+        Values ret = req.returnValues();
+        CompressionType compression = CompressionType.valueOf(ret.get(0).asInt8());
+        byte[] slimeBytes = compressor.decompress(ret.get(2).asData(), compression, ret.get(1).asInt32());
+        Inspector replies = BinaryFormat.decode(slimeBytes).get().field(REPLIES_F);
+        for (int i = 0; i < batch.entries.size(); i++) {
+            Entry entry = batch.entries.get(i);
+            if (entry.replied.get()) continue; // timed out
+
+            Reply reply;
+            if (i < replies.entries()) {
+                reply = single.createReply(replies.entry(i), entry.serviceName, entry.trace);
+            } else {
+                reply = new EmptyReply();
+                reply.addError(new Error(ErrorCode.NETWORK_ERROR,
+                        "A network error occured for '" + entry.serviceName + "'; Missing reply in batch response"));
+            }
+            deliverReply(reply, entry);
+        }
+    }
+
+    /** Delivers the given reply to the sender of the given entry, unless it has already been replied to */
+    private void deliverReply(Reply reply, Entry entry) {
+        if ( ! entry.replied.compareAndSet(false, true)) return;
+
+        if (entry.trace.shouldTrace(TraceLevel.SEND_RECEIVE)) {
+            entry.trace.trace(TraceLevel.SEND_RECEIVE,
+                    "Reply (type " + reply.getType() + ") received in a batch response.");
+        }
+        reply.getTrace().swap(entry.trace);
+        net.getOwner().deliverReply(reply, entry.recipient);
+    }
+
+    @Override
+    public void invoke(Request request) {
+        request.detach();
+        net.getExecutor().execute(() -> doInvoke(request));
+    }
+
+    private void doInvoke(Request request) {
+        Values args = request.parameters();
+        CompressionType compression = CompressionType.valueOf(args.get(0).asInt8());
+        byte[] slimeBytes = compressor.decompress(args.get(2).asData(), compression, args.get(1).asInt32());
+        request.discardParameters(); // allow garbage collection of request parameters
+
+        Inspector messages = BinaryFormat.decode(slimeBytes).get().field(MESSAGES_F);
+        BatchResponse response = new BatchResponse(request, messages.entries());
+        if (messages.entries() == 0) {
+            returnResponse(response);
+            return;
+        }
+        for (int i = 0; i < messages.entries(); i++) {
+            RPCSend.Params p = single.toParams(messages.entry(i));
+            ReplyContext context = new ReplyContext(response, i, p.version);
+            Error error = single.deliverMessage(p, this, context);
+            if (error != null) {
+                Reply reply = new EmptyReply();
+                reply.setContext(context);
+                reply.getTrace().setLevel(p.traceLevel);
+                reply.addError(error);
+                handleReply(reply);
+            }
+        }
+    }
+
+    @Override
+    public void handleReply(Reply reply) {
+        ReplyContext context = (ReplyContext)reply.getContext();
+        reply.setContext(null);
+        byte[] payload = single.encodeReply(reply, context.version);
+        if (context.response.setReply(context.index, reply, payload, context.version)) {
+            returnResponse(context.response);
+        }
+    }
+
+    private void returnResponse(BatchResponse response) {
+        Slime slime = new Slime();
+        Cursor replies = slime.setObject().setArray(REPLIES_F);
+        for (int i = 0; i < response.replies.length; i++) {
+            single.createResponse(replies.addObject(), response.replies[i], response.versions[i], response.payloads[i]);
+        }
+        byte[] serializedSlime = BinaryFormat.encode(slime);
+        Compressor.Compression compressionResult = compressor.compress(serializedSlime);
+
+        Values ret = response.request.returnValues();
+        ret.add(new Int8Value(compressionResult.type().getCode()));
+        ret.add(new Int32Value(compressionResult.uncompressedSize()));
+        ret.add(new DataValue(compressionResult.data()));
+        response.request.returnRequest();
+    }
+
+    /** A batch of messages to send to a target */
+    private static class Batch {
+
+        final RPCTarget target;
+        final String connectionSpec;
+        final List<Entry> entries = new ArrayList<>();
+        int size = 0;
+        long deadline = 0;
+        volatile ScheduledFuture<?> timeoutTask = null;
+
+        Batch(RPCTarget target, String connectionSpec) {
+            this.target = target;
+            this.connectionSpec = connectionSpec;
+        }
+
+        void add(Entry entry) {
+            entries.add(entry);
+            size += entry.payload.length;
+        }
+
+    }
+
+    /** A message in a batch */
+    private static class Entry {
+
+        final RoutingNode recipient;
+        final Version version;
+        final byte[] payload;
+        final String serviceName;
+        final Trace trace;
+        final AtomicBoolean replied = new AtomicBoolean();
+        long timeRemaining;
+        long deadline;
+
+        Entry(RoutingNode recipient, Version version, byte[] payload) {
+            this.recipient = recipient;
+            this.version = version;
+            this.payload = payload;
+            this.serviceName = ((RPCServiceAddress)recipient.getServiceAddress()).getServiceName();
+            this.trace = new Trace(recipient.getTrace().getLevel());
+        }
+
+        double timeout() {
+            return timeRemaining * 0.001;
+        }
+
+    }
+
+    /** The replies to a received batch, which is returned when all messages in it are replied to */
+    private static class BatchResponse {
+
+        final Request request;
+        final Reply[] replies;
+        final byte[][] payloads;
+        final Version[] versions;
+        final AtomicInteger pendingReplies;
+
+        BatchResponse(Request request, int size) {
+            this.request = request;
+            this.replies = new Reply[size];
+            this.payloads = new byte[size][];
+            this.versions = new Version[size];
+            this.pendingReplies = new AtomicInteger(size);
+        }
+
+        /** Sets a reply and returns whether this was the last pending reply */
+        boolean setReply(int index, Reply reply, byte[] payload, Version version) {
+            replies[index] = reply;
+            payloads[index] = payload;
+            versions[index] = version;
+            return pendingReplies.decrementAndGet() == 0;
+        }
+
+    }
+
+    private static class ReplyContext {
+
+        final BatchResponse response;
+        final int index;
+        final Version version;
+
+        ReplyContext(BatchResponse response, int index, Version version) {
+            this.response = response;
+            this.index = index;
+            this.version = version;
+        }
+
+    }
+
+}
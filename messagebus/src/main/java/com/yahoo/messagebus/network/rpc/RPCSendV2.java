@@ -86,17 +86,7 @@ public class RPCSendV2 extends RPCSend {
         v.add(new DataValue(new byte[0]));
 
         Slime slime = new Slime();
-        Cursor root = slime.setObject();
-
-        root.setString(VERSION_F, version.toString());
-        root.setString(ROUTE_F, route.toString());
-        root.setString(SESSION_F, address.getSessionName());
-        root.setString(PROTOCOL_F, msg.getProtocol().toString());
-        root.setBool(USERETRY_F, msg.getRetryEnabled());
-        root.setLong(RETRY_F, msg.getRetry());
-        root.setLong(TIMEREMAINING_F, msg.getTimeRemaining());
-        root.setLong(TRACELEVEL_F, traceLevel);
-        root.setData(BLOB_F, payload);
+        encodeRequest(slime.setObject(), version, route, address, msg, msg.getTimeRemaining(), payload, traceLevel);
 
         byte[] serializedSlime = BinaryFormat.encode(slime);
         Compressor.Compression compressionResult = compressor.compress(serializedSlime);
@@ -108,13 +98,30 @@ public class RPCSendV2 extends RPCSend {
         return req;
     }
 
+    /** Encodes the given message and its sending parameters into the given slime object */
+    void encodeRequest(Cursor root, Version version, Route route, RPCServiceAddress address, Message msg,
+                       long timeRemaining, byte[] payload, int traceLevel) {
+        root.setString(VERSION_F, version.toString());
+        root.setString(ROUTE_F, route.toString());
+        root.setString(SESSION_F, address.getSessionName());
+        root.setString(PROTOCOL_F, msg.getProtocol().toString());
+        root.setBool(USERETRY_F, msg.getRetryEnabled());
+        root.setLong(RETRY_F, msg.getRetry());
+        root.setLong(TIMEREMAINING_F, timeRemaining);
+        root.setLong(TRACELEVEL_F, traceLevel);
+        root.setData(BLOB_F, payload);
+    }
+
     @Override
     protected Reply createReply(Values ret, String serviceName, Trace trace) {
         CompressionType compression = CompressionType.valueOf(ret.get(3).asInt8());
         byte[] slimeBytes = compressor.decompress(ret.get(5).asData(), compression, ret.get(4).asInt32());
         Slime slime = BinaryFormat.decode(slimeBytes);
-        Inspector root = slime.get();
+        return createReply(slime.get(), serviceName, trace);
+    }
 
+    /** Decodes the reply in the given slime object */
+    Reply createReply(Inspector root, String serviceName, Trace trace) {
         Version version = new Version(root.field(VERSION_F).asString());
         byte[] payload = root.field(BLOB_F).asData();
 
@@ -154,7 +161,11 @@ public class RPCSendV2 extends RPCSend {
         CompressionType compression = CompressionType.valueOf(args.get(3).asInt8());
         byte[] slimeBytes = compressor.decompress(args.get(5).asData(), compression, args.get(4).asInt32());
         Slime slime = BinaryFormat.decode(slimeBytes);
-        Inspector root = slime.get();
+        return toParams(slime.get());
+    }
+
+    /** Decodes the message and its sending parameters in the given slime object */
+    Params toParams(Inspector root) {
         Params p = new Params();
         p.version = new Version(root.field(VERSION_F).asString());
         p.route = root.field(ROUTE_F).asString();
@@ -175,8 +186,18 @@ public class RPCSendV2 extends RPCSend {
         ret.add(new DataValue(new byte[0]));
 
         Slime slime = new Slime();
-        Cursor root = slime.setObject();
+        createResponse(slime.setObject(), reply, version, payload);
+
+        byte[] serializedSlime = BinaryFormat.encode(slime);
+        Compressor.Compression compressionResult = compressor.compress(serializedSlime);
+
+        ret.add(new Int8Value(compressionResult.type().getCode()));
+        ret.add(new Int32Value(compressionResult.uncompressedSize()));
+        ret.add(new DataValue(compressionResult.data()));
+    }
 
+    /** Encodes the given reply into the given slime object */
+    void createResponse(Cursor root, Reply reply, Version version, byte [] payload) {
         root.setString(VERSION_F, version.toString());
         root.setDouble(RETRYDELAY_F, reply.getRetryDelay());
         root.setString(PROTOCOL_F, reply.getProtocol().toString());
@@ -197,13 +218,6 @@ public class RPCSendV2 extends RPCSend {
                 }
             }
         }
-
-        byte[] serializedSlime = BinaryFormat.encode(slime);
-        Compressor.Compression compressionResult = compressor.compress(serializedSlime);
-
-        ret.add(new Int8Value(compressionResult.type().getCode()));
-        ret.add(new Int32Value(compressionResult.uncompressedSize()));
-        ret.add(new DataValue(compressionResult.data()));
     }
 
 }
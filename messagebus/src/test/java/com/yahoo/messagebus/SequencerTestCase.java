@@ -4,8 +4,16 @@ package com.yahoo.messagebus;
 import com.yahoo.messagebus.test.SimpleMessage;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -104,6 +112,73 @@ public class SequencerTestCase {
         assertEquals(0, dst.size());
     }
 
+    @Test
+    public void testConcurrentSendersPreserveOrderPerId() throws InterruptedException {
+        int threads = 4;
+        int messagesPerThread = 20000;
+        int ids = 16;
+        AtomicInteger errors = new AtomicInteger(0);
+        AtomicLong[] lastSent = new AtomicLong[ids];
+        AtomicBoolean[] pending = new AtomicBoolean[ids];
+        for (int i = 0; i < ids; i++) {
+            lastSent[i] = new AtomicLong(-1);
+            pending[i] = new AtomicBoolean(false);
+        }
+        BlockingQueue<Message> sent = new LinkedBlockingQueue<>();
+        Sequencer seq = new Sequencer(msg -> {
+            int id = (int)msg.getSequenceId();
+            if ( ! pending[id].compareAndSet(false, true)) errors.incrementAndGet(); // Two pending messages with this id
+            sent.add(msg);
+        });
+
+        // Replies are given in random order by a separate thread
+        Thread replier = new Thread(() -> {
+            Random random = new Random(17);
+            List<Message> inFlight = new ArrayList<>();
+            try {
+                for (int replied = 0; replied < threads * messagesPerThread; replied++) {
+                    while (inFlight.isEmpty() || random.nextBoolean() && ! sent.isEmpty())
+                        inFlight.add(sent.take());
+                    Message msg = inFlight.remove(random.nextInt(inFlight.size()));
+                    pending[(int)msg.getSequenceId()].set(false);
+                    Reply reply = new EmptyReply();
+                    reply.swapState(msg);
+                    reply.setMessage(msg);
+                    reply.popHandler().handleReply(reply);
+                }
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        replier.start();
+
+        List<Thread> senders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            senders.add(new Thread(() -> {
+                for (int i = 0; i < messagesPerThread; i++) {
+                    // Each thread owns the ids congruent to its number, and sends increasing values for each id
+                    int id = thread + threads * (i % (ids / threads));
+                    long value = i;
+                    Message msg = new MyMessage(true, id);
+                    msg.pushHandler(reply -> {
+                        if (lastSent[id].getAndSet(value) >= value) errors.incrementAndGet(); // Out of order
+                    });
+                    seq.handleMessage(msg);
+                }
+            }));
+        }
+        senders.forEach(Thread::start);
+        for (Thread sender : senders)
+            sender.join();
+        replier.join();
+
+        assertEquals(0, errors.get());
+        assertTrue(sent.isEmpty());
+        assertTrue(seq.destroy());
+    }
+
     @SuppressWarnings("serial")
     private static class TestQueue extends LinkedList<Routable> implements ReplyHandler {
 
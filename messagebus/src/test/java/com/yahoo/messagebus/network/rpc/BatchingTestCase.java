@@ -0,0 +1,195 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus.network.rpc;
+
+import com.yahoo.component.Version;
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.slobrok.server.Slobrok;
+import com.yahoo.messagebus.DestinationSession;
+import com.yahoo.messagebus.DestinationSessionParams;
+import com.yahoo.messagebus.ErrorCode;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.Reply;
+import com.yahoo.messagebus.SourceSession;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.network.Identity;
+import com.yahoo.messagebus.network.rpc.test.TestServer;
+import com.yahoo.messagebus.routing.Route;
+import com.yahoo.messagebus.test.Receptor;
+import com.yahoo.messagebus.test.SimpleMessage;
+import com.yahoo.messagebus.test.SimpleProtocol;
+import com.yahoo.messagebus.test.SimpleReply;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests sending messages in batches.
+ *
+ * @author agent
+ */
+public class BatchingTestCase {
+
+    private static final int messageCount = 10;
+
+    private Slobrok slobrok;
+    private TestServer srcServer, dstServer;
+    private SourceSession srcSession;
+    private DestinationSession dstSession;
+
+    @Before
+    public void setUp() throws ListenFailedException {
+        slobrok = new Slobrok();
+        dstServer = new TestServer(new MessageBusParams().addProtocol(new SimpleProtocol()),
+                                   new RPCNetworkParams().setIdentity(new Identity("dst"))
+                                                         .setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok)));
+        dstSession = dstServer.mb.createDestinationSession(
+                new DestinationSessionParams().setName("session").setMessageHandler(new Receptor()));
+        srcServer = new TestServer(new MessageBusParams().addProtocol(new SimpleProtocol()),
+                                   new RPCNetworkParams().setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok))
+                                                         .setMaxBatchDelaySecs(0.5)
+                                                         .setMaxBatchSize(1024 * 1024));
+        srcSession = srcServer.mb.createSourceSession(
+                new SourceSessionParams().setTimeout(600.0).setThrottlePolicy(null).setReplyHandler(new Receptor()));
+        assertTrue(srcServer.waitSlobrok("dst/session", 1));
+    }
+
+    @After
+    public void tearDown() {
+        slobrok.stop();
+        dstSession.destroy();
+        dstServer.destroy();
+        srcSession.destroy();
+        srcServer.destroy();
+    }
+
+    @Test
+    public void requireThatBatchAdapterIsUsedWhenBatchingIsEnabled() {
+        assertTrue(srcServer.net.getSendAdapter(new Version(6,149)) instanceof RPCSendBatch);
+        assertTrue(dstServer.net.getSendAdapter(new Version(6,149)) instanceof RPCSendV2);
+    }
+
+    @Test
+    public void requireThatMessagesAreSentAndRepliedToInBatches() {
+        sendAndReply(") in a batch of " + messageCount + " to 'dst/session'");
+    }
+
+    @Test
+    public void requireThatTargetsNotSupportingBatchesAreSentToOneByOne() {
+        ((RPCNetwork)dstServer.net).getSupervisor().removeMethod("mbus.slime.batch");
+        sendAndReply(") from client to 'dst/session'");
+        sendAndReply(") from client to 'dst/session'");
+    }
+
+    @Test
+    public void requireThatMessagesInABatchTimeOutIndividually() {
+        Message expiring = new SimpleMessage("expiring");
+        expiring.setTimeRemaining(1000);
+        expiring.setRetryEnabled(false);
+        assertTrue(srcSession.send(expiring, Route.parse("dst/session")).isAccepted());
+        for (int i = 0; i < messageCount - 1; i++) {
+            assertTrue(srcSession.send(new SimpleMessage("message" + i), Route.parse("dst/session")).isAccepted());
+        }
+
+        List<Message> received = new ArrayList<>();
+        for (int i = 0; i < messageCount; i++) {
+            Message msg = ((Receptor)dstSession.getMessageHandler()).getMessage(60);
+            assertNotNull(msg);
+            received.add(msg);
+        }
+
+        Reply timedOut = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+        assertNotNull(timedOut);
+        assertEquals(ErrorCode.TIMEOUT, timedOut.getError(0).getCode());
+        assertEquals("expiring", ((SimpleMessage)timedOut.getMessage()).getValue());
+
+        for (Message msg : received) {
+            Reply reply = new SimpleReply("reply to " + ((SimpleMessage)msg).getValue());
+            reply.swapState(msg);
+            dstSession.reply(reply);
+        }
+        Set<String> replies = new HashSet<>();
+        for (int i = 0; i < messageCount - 1; i++) {
+            Reply reply = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+            assertNotNull(reply);
+            assertFalse(reply.getTrace().toString(), reply.hasErrors());
+            replies.add(((SimpleReply)reply).getValue());
+        }
+        assertEquals(messageCount - 1, replies.size());
+        assertFalse(replies.contains("reply to expiring"));
+    }
+
+    @Test
+    public void requireThatBatchDelaysBelowTheTransportTickAreHonored() throws ListenFailedException {
+        RPCNetworkParams params = new RPCNetworkParams().setSlobrokConfigId(TestServer.getSlobrokConfig(slobrok))
+                                                        .setMaxBatchDelaySecs(0.001)
+                                                        .setMaxBatchSize(1024 * 1024);
+        TestServer fastServer = new TestServer(new MessageBusParams().addProtocol(new SimpleProtocol()), params);
+        SourceSession fastSession = fastServer.mb.createSourceSession(
+                new SourceSessionParams().setTimeout(600.0).setThrottlePolicy(null).setReplyHandler(new Receptor()));
+        try {
+            assertTrue(fastServer.waitSlobrok("dst/session", 1));
+            assertTrue(fastServer.net.getSendAdapter(new Version(6,149)) instanceof RPCSendBatch);
+
+            // Each message is alone in its batch, and waits for the batch delay before it is sent
+            int roundTrips = 20;
+            long start = System.nanoTime();
+            for (int i = 0; i < roundTrips; i++) {
+                assertTrue(fastSession.send(new SimpleMessage("message" + i), Route.parse("dst/session")).isAccepted());
+                Message msg = ((Receptor)dstSession.getMessageHandler()).getMessage(60);
+                assertNotNull(msg);
+                Reply reply = new SimpleReply("reply");
+                reply.swapState(msg);
+                dstSession.reply(reply);
+                assertNotNull(((Receptor)fastSession.getReplyHandler()).getReply(60));
+            }
+            long averageMillis = (System.nanoTime() - start) / roundTrips / 1_000_000;
+            assertTrue("Average round trip of " + averageMillis + " ms should be well below the 100 ms transport tick",
+                       averageMillis < 40);
+        }
+        finally {
+            fastSession.destroy();
+            fastServer.destroy();
+        }
+    }
+
+    private void sendAndReply(String expectedTrace) {
+        for (int i = 0; i < messageCount; i++) {
+            Message msg = new SimpleMessage("message" + i);
+            msg.getTrace().setLevel(9);
+            assertTrue(srcSession.send(msg, Route.parse("dst/session")).isAccepted());
+        }
+
+        Set<String> received = new HashSet<>();
+        for (int i = 0; i < messageCount; i++) {
+            Message msg = ((Receptor)dstSession.getMessageHandler()).getMessage(60);
+            assertNotNull(msg);
+            received.add(((SimpleMessage)msg).getValue());
+            Reply reply = new SimpleReply("reply to " + ((SimpleMessage)msg).getValue());
+            reply.swapState(msg);
+            dstSession.reply(reply);
+        }
+        assertEquals(messageCount, received.size());
+
+        Set<String> replies = new HashSet<>();
+        for (int i = 0; i < messageCount; i++) {
+            Reply reply = ((Receptor)srcSession.getReplyHandler()).getReply(60);
+            assertNotNull(reply);
+            assertFalse(reply.getTrace().toString(), reply.hasErrors());
+            assertTrue(reply.getTrace().toString(), reply.getTrace().toString().contains(expectedTrace));
+            replies.add(((SimpleReply)reply).getValue());
+        }
+        assertEquals(messageCount, replies.size());
+    }
+
+}
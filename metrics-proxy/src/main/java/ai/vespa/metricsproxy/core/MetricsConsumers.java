@@ -9,6 +9,7 @@ import ai.vespa.metricsproxy.metric.model.ConsumerId;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +19,8 @@ import java.util.stream.Collector;
 
 import static ai.vespa.metricsproxy.metric.model.ConsumerId.toConsumerId;
 import static com.yahoo.stream.CustomCollectors.toLinkedMap;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
 import static java.util.Collections.unmodifiableSet;
 import static java.util.stream.Collectors.collectingAndThen;
 
@@ -35,11 +38,19 @@ public class MetricsConsumers {
     // All consumers for each metric (more useful than the opposite map).
     private final Map<Consumer.Metric, List<ConsumerId>> consumersByMetric;
 
+    // All configured metrics for each metric name, to avoid searching all configured metrics for each metric.
+    private final Map<String, List<Consumer.Metric>> metricsByName;
+
+    // The metric for each metric name for each consumer. If a consumer has the same metric more than once, the last wins.
+    private final Map<ConsumerId, Map<String, Consumer.Metric>> consumerMetricsByName;
+
     public MetricsConsumers(ConsumersConfig config) {
         consumerMetrics = config.consumer().stream().collect(
                 toUnmodifiableLinkedMap(consumer -> toConsumerId(consumer.name()), Consumer::metric));
 
         consumersByMetric = createConsumersByMetric(consumerMetrics);
+        metricsByName = createMetricsByName(consumersByMetric.keySet());
+        consumerMetricsByName = createConsumerMetricsByName(consumerMetrics);
     }
 
     /**
@@ -54,6 +65,23 @@ public class MetricsConsumers {
         return consumersByMetric;
     }
 
+    /**
+     * @param metricName The name of a metric
+     * @return The metrics configured for any consumer with the given name, or an empty list if there are none.
+     */
+    public List<Consumer.Metric> getConfiguredMetrics(String metricName) {
+        return metricsByName.getOrDefault(metricName, emptyList());
+    }
+
+    /**
+     * @param consumer The consumer
+     * @param metricName The name of a metric
+     * @return The given consumer's metric with the given name, or null if the consumer does not have it.
+     */
+    public Consumer.Metric getMetricDefinition(ConsumerId consumer, String metricName) {
+        return consumerMetricsByName.getOrDefault(consumer, emptyMap()).get(metricName);
+    }
+
     public Set<ConsumerId> getAllConsumers() {
         return unmodifiableSet(consumerMetrics.keySet());
     }
@@ -72,6 +100,24 @@ public class MetricsConsumers {
         return Collections.unmodifiableMap(consumersByMetric);
     }
 
+    private static Map<String, List<Consumer.Metric>> createMetricsByName(Set<Consumer.Metric> metrics) {
+        Map<String, List<Consumer.Metric>> metricsByName = new HashMap<>();
+        metrics.forEach(metric -> metricsByName.computeIfAbsent(metric.name(), unused -> new ArrayList<>())
+                .add(metric));
+        return Collections.unmodifiableMap(metricsByName);
+    }
+
+    private static Map<ConsumerId, Map<String, Consumer.Metric>>
+    createConsumerMetricsByName(Map<ConsumerId, List<Consumer.Metric>> metricsByConsumer) {
+        Map<ConsumerId, Map<String, Consumer.Metric>> consumerMetricsByName = new HashMap<>();
+        metricsByConsumer.forEach((consumer, metrics) -> {
+            Map<String, Consumer.Metric> byName = new HashMap<>();
+            metrics.forEach(metric -> byName.put(metric.name(), metric));
+            consumerMetricsByName.put(consumer, Collections.unmodifiableMap(byName));
+        });
+        return Collections.unmodifiableMap(consumerMetricsByName);
+    }
+
     public static <T, K, U> Collector<T, ?, Map<K, U>> toUnmodifiableLinkedMap(Function<? super T, ? extends K> keyMapper,
                                                                                 Function<? super T, ? extends U> valueMapper) {
         return collectingAndThen(toLinkedMap(keyMapper, valueMapper), Collections::unmodifiableMap);
@@ -26,7 +26,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import static ai.vespa.metricsproxy.metric.model.ConsumerId.toConsumerId;
 import static ai.vespa.metricsproxy.metric.model.DimensionId.toDimensionId;
@@ -120,9 +119,8 @@ public class VespaMetrics {
         Metrics allServiceMetrics = service.getMetrics();
         serviceMetrics.setTimeStamp(getMostRecentTimestamp(allServiceMetrics));
         for (Metric candidate : allServiceMetrics.getMetrics()) {
-            getConfiguredMetrics(candidate.getName(), consumersByMetric.keySet()).forEach(
-                    configuredMetric -> serviceMetrics.add(
-                            metricWithConfigProperties(candidate, configuredMetric, consumersByMetric)));
+            for (ConsumersConfig.Consumer.Metric configuredMetric : metricsConsumers.getConfiguredMetrics(candidate.getName()))
+                serviceMetrics.add(metricWithConfigProperties(candidate, configuredMetric, consumersByMetric));
         }
         return serviceMetrics;
     }
@@ -162,16 +160,6 @@ public class VespaMetrics {
         return metric;
     }
 
-    /**
-     * Returns all configured metrics (for any consumer) that have the given id as 'name'.
-     */
-    private static Set<ConsumersConfig.Consumer.Metric> getConfiguredMetrics(String id,
-                                                                             Set<ConsumersConfig.Consumer.Metric> configuredMetrics) {
-        return configuredMetrics.stream()
-                .filter(m -> m.name().equals(id))
-                .collect(Collectors.toSet());
-    }
-
     private Optional<MetricsPacket.Builder> getSystemMetrics(VespaService service) {
         Metrics systemMetrics = service.getSystemMetrics();
         if (systemMetrics.size() == 0) return Optional.empty();
@@ -219,11 +207,10 @@ public class VespaMetrics {
         return aggregatedMetrics;
     }
 
-    private List<ConsumersConfig.Consumer.Metric> getMetricDefinitions(ConsumerId consumer) {
-        if (metricsConsumers == null) return Collections.emptyList();
+    private ConsumersConfig.Consumer.Metric getMetricDefinition(ConsumerId consumer, String metricName) {
+        if (metricsConsumers == null) return null;
 
-        List<ConsumersConfig.Consumer.Metric> definitions = metricsConsumers.getMetricDefinitions(consumer);
-        return definitions == null ? Collections.emptyList() : definitions;
+        return metricsConsumers.getMetricDefinition(consumer, metricName);
     }
 
     private static void setMetaInfo(MetricsPacket.Builder builder, long timestamp) {
@@ -240,18 +227,9 @@ public class VespaMetrics {
         StringBuilder b = new StringBuilder();
         for (VespaService s : services) {
             for (Metric metric : s.getMetrics().getMetrics()) {
-                String key = metric.getName();
-                String alias = key;
-
-                boolean isForwarded = false;
-                for (ConsumersConfig.Consumer.Metric metricConsumer : getMetricDefinitions(VESPA_CONSUMER_ID)) {
-                    if (metricConsumer.name().equals(key)) {
-                        alias = metricConsumer.outputname();
-                        isForwarded = true;
-                    }
-                }
-                if (isForwarded) {
-                    b.append(formatter.format(s, alias, metric.getValue()))
+                ConsumersConfig.Consumer.Metric metricConsumer = getMetricDefinition(VESPA_CONSUMER_ID, metric.getName());
+                if (metricConsumer != null) {
+                    b.append(formatter.format(s, metricConsumer.outputname(), metric.getValue()))
                             .append(" ");
                 }
             }
@@ -274,13 +252,12 @@ public class VespaMetrics {
                 String alias = "";
                 boolean isForwarded = false;
 
-                for (ConsumersConfig.Consumer.Metric metric : getMetricDefinitions(consumer)) {
-                    if (metric.name().equals(m.getName())) {
-                        alias = metric.outputname();
-                        isForwarded = true;
-                        if (description.isEmpty()) {
-                            description = metric.description();
-                        }
+                ConsumersConfig.Consumer.Metric metric = getMetricDefinition(consumer, m.getName());
+                if (metric != null) {
+                    alias = metric.outputname();
+                    isForwarded = true;
+                    if (description.isEmpty()) {
+                        description = metric.description();
                     }
                 }
 
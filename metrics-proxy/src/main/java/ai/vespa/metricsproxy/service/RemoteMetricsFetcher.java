@@ -7,14 +7,15 @@ package ai.vespa.metricsproxy.service;
 import ai.vespa.metricsproxy.metric.Metric;
 import ai.vespa.metricsproxy.metric.Metrics;
 import ai.vespa.metricsproxy.metric.model.DimensionId;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static ai.vespa.metricsproxy.metric.model.DimensionId.toDimensionId;
@@ -25,6 +26,9 @@ import static ai.vespa.metricsproxy.metric.model.DimensionId.toDimensionId;
  * @author Jo Kristian Bergum
  */
 public class RemoteMetricsFetcher extends HttpMetricFetcher {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
     /**
      * @param service The service to fetch metrics from
      * @param port    The port to use
@@ -61,69 +65,141 @@ public class RemoteMetricsFetcher extends HttpMetricFetcher {
         return remoteMetrics;
     }
 
-    Metrics parse(String data) throws JSONException {
-        JSONObject o = new JSONObject(data);
-        if (!(o.has("metrics"))) {
-            return new Metrics(); //empty
+    /**
+     * Parses the given metrics snapshot in the state api format with a streaming parser, creating a metric
+     * for each aggregate of each metric value directly. The snapshot is expected before the values,
+     * which are buffered until the end of the metrics object otherwise.
+     */
+    Metrics parse(String data) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                throw new IOException("Expected a json object");
+
+            Metrics metrics = new Metrics(); // empty
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals("metrics"))
+                    metrics = parseMetrics(parser);
+                else
+                    parser.skipChildren();
+            }
+            return metrics;
         }
+    }
 
-        JSONObject metrics = o.getJSONObject("metrics");
-        JSONArray values;
-        long timestamp;
+    private static Metrics parseMetrics(JsonParser parser) throws IOException {
+        expect(JsonToken.START_OBJECT, parser, "metrics");
+        Long timestamp = null;
+        Metrics metrics = null;
+        TokenBuffer bufferedValues = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals("snapshot")) {
+                timestamp = parseSnapshotTime(parser);
+            } else if (field.equals("values") && timestamp != null) {
+                metrics = parseValues(parser, timestamp);
+            } else if (field.equals("values")) {
+                bufferedValues = new TokenBuffer(parser);
+                bufferedValues.copyCurrentStructure(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (metrics == null && bufferedValues != null && timestamp != null) {
+            JsonParser valuesParser = bufferedValues.asParser();
+            valuesParser.nextToken();
+            metrics = parseValues(valuesParser, timestamp);
+        }
+        // snapshot might not have been produced. Do not throw exception into log
+        return metrics != null ? metrics : new Metrics();
+    }
 
-        try {
-            JSONObject snapshot = metrics.getJSONObject("snapshot");
-            timestamp = (long) snapshot.getDouble("to");
-            values = metrics.getJSONArray("values");
-        } catch (JSONException e) {
-            // snapshot might not have been produced. Do not throw exception into log
-            return new Metrics();
+    /** Returns the adjusted end time of the snapshot, or null if it is missing */
+    private static Long parseSnapshotTime(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        Long timestamp = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (field.equals("to") && token.isNumeric())
+                timestamp = Metric.adjustTime((long) parser.getDoubleValue(), System.currentTimeMillis() / 1000);
+            else
+                parser.skipChildren();
         }
-        long now = System.currentTimeMillis() / 1000;
-        timestamp = Metric.adjustTime(timestamp, now);
-        Metrics m = new Metrics(timestamp);
+        return timestamp;
+    }
 
-        Map<DimensionId, String> noDims = Collections.emptyMap();
+    private static Metrics parseValues(JsonParser parser, long timestamp) throws IOException {
+        expect(JsonToken.START_ARRAY, parser, "values");
+        Metrics metrics = new Metrics(timestamp);
         Map<String, Map<DimensionId, String>> uniqueDimensions = new HashMap<>();
-        for (int i = 0; i < values.length(); i++) {
-            JSONObject metric = values.getJSONObject(i);
-            String name = metric.getString("name");
-            String description = "";
+        while (parser.nextToken() != JsonToken.END_ARRAY)
+            parseValue(parser, timestamp, uniqueDimensions, metrics);
+        return metrics;
+    }
 
-            if (metric.has("description")) {
-                description = metric.getString("description");
+    /** Parses a single metric value object, and adds a metric for each of its aggregates to the given metrics */
+    private static void parseValue(JsonParser parser, long timestamp,
+                                   Map<String, Map<DimensionId, String>> uniqueDimensions, Metrics metrics) throws IOException {
+        expect(JsonToken.START_OBJECT, parser, "metric value");
+        String name = null;
+        String description = "";
+        Map<String, Number> aggregates = null;
+        Map<DimensionId, String> dimensions = Collections.emptyMap();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "name": name = parser.getText(); break;
+                case "description": description = parser.getText(); break;
+                case "values": aggregates = parseAggregates(parser); break;
+                case "dimensions": dimensions = parseDimensions(parser, uniqueDimensions); break;
+                default: parser.skipChildren();
             }
+        }
+        if (name == null) throw new IOException("Metric value without 'name'");
+        if (aggregates == null) throw new IOException("Metric '" + name + "' without 'values'");
 
-            Map<DimensionId, String> dim = noDims;
-            if (metric.has("dimensions")) {
-                JSONObject dimensions = metric.getJSONObject("dimensions");
-                StringBuilder sb = new StringBuilder();
-                for (Iterator<?> it = dimensions.keys(); it.hasNext(); ) {
-                    String k = (String) it.next();
-                    String v = dimensions.getString(k);
-                    sb.append(toDimensionId(k)).append(v);
-                }
-                if ( ! uniqueDimensions.containsKey(sb.toString())) {
-                    dim = new HashMap<>();
-                    for (Iterator<?> it = dimensions.keys(); it.hasNext(); ) {
-                        String k = (String) it.next();
-                        String v = dimensions.getString(k);
-                        dim.put(toDimensionId(k), v);
-                    }
-                    uniqueDimensions.put(sb.toString(), Collections.unmodifiableMap(dim));
-                }
-                dim = uniqueDimensions.get(sb.toString());
-            }
+        for (Map.Entry<String, Number> aggregate : aggregates.entrySet())
+            metrics.add(new Metric(name + "." + aggregate.getKey(), aggregate.getValue(), timestamp, dimensions, description));
+    }
 
-            JSONObject aggregates = metric.getJSONObject("values");
-            for (Iterator<?> it = aggregates.keys(); it.hasNext(); ) {
-                String aggregator = (String) it.next();
-                Number value = (Number) aggregates.get(aggregator);
-                StringBuilder metricName = (new StringBuilder()).append(name).append(".").append(aggregator);
-                m.add(new Metric(metricName.toString(), value, timestamp, dim, description));
-            }
+    private static Map<String, Number> parseAggregates(JsonParser parser) throws IOException {
+        expect(JsonToken.START_OBJECT, parser, "values");
+        Map<String, Number> aggregates = new LinkedHashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String aggregator = parser.getCurrentName();
+            if ( ! parser.nextToken().isNumeric())
+                throw new IOException("Value of '" + aggregator + "' is not a number");
+            aggregates.put(aggregator, parser.getNumberValue());
         }
+        return aggregates;
+    }
 
-        return m;
+    /** Returns the given dimensions, shared with all other metric values having the same dimensions */
+    private static Map<DimensionId, String> parseDimensions(JsonParser parser,
+                                                           Map<String, Map<DimensionId, String>> uniqueDimensions) throws IOException {
+        expect(JsonToken.START_OBJECT, parser, "dimensions");
+        Map<DimensionId, String> dimensions = new LinkedHashMap<>();
+        StringBuilder key = new StringBuilder();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String dimension = parser.getCurrentName();
+            parser.nextToken();
+            String value = parser.getText();
+            key.append(dimension).append('\0').append(value).append('\0');
+            dimensions.put(toDimensionId(dimension), value);
+        }
+        return uniqueDimensions.computeIfAbsent(key.toString(), unused -> Collections.unmodifiableMap(dimensions));
     }
+
+    private static void expect(JsonToken expected, JsonParser parser, String field) throws IOException {
+        if (parser.currentToken() != expected)
+            throw new IOException("Expected " + expected + " for '" + field + "', got " + parser.currentToken());
+    }
+
 }
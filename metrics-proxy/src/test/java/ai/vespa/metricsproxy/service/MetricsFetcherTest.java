@@ -11,6 +11,7 @@ import org.junit.Test;
 import java.io.File;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -30,6 +31,35 @@ public class MetricsFetcherTest {
         assertThat("Wrong timestamp", metrics.getTimeStamp(), is(1334134700L));
     }
 
+    @Test
+    public void testValuesBeforeSnapshotAreParsed() {
+        String jsonData = "{\n" +
+                "\"metrics\" : {\n" +
+                "  \"values\" : [\n" +
+                "   {\n" +
+                "     \"values\" : { \"count\" : 3, \"rate\" : 0.05 },\n" +
+                "     \"dimensions\" : { \"searcherid\" : \"x\" },\n" +
+                "     \"name\" : \"queries\"\n" +
+                "   },\n" +
+                "   {\n" +
+                "     \"name\" : \"query_hits\",\n" +
+                "     \"values\" : { \"count\" : 28 },\n" +
+                "     \"dimensions\" : { \"searcherid\" : \"x\" }\n" +
+                "   }\n" +
+                "  ],\n" +
+                "  \"snapshot\" : { \"from\" : 1334134640.089, \"to\" : 1334134700.088 }\n" +
+                "}\n" +
+                "}";
+        RemoteMetricsFetcher fetcher = new RemoteMetricsFetcher(new DummyService(0, "dummy/id/0"), port);
+        Metrics metrics = fetcher.createMetrics(jsonData, 0);
+        assertThat("Wrong number of metrics", metrics.size(), is(3));
+        assertThat("Wrong value for metric", metrics.get("queries.count").intValue(), is(3));
+        assertThat("Wrong value for metric", metrics.get("query_hits.count").intValue(), is(28));
+        assertThat("Wrong timestamp", metrics.getTimeStamp(), is(1334134700L));
+        assertSame("Equal dimensions are shared", metrics.getMetric("queries.count").getDimensions(),
+                   metrics.getMetric("query_hits.count").getDimensions());
+    }
+
     @Test
     public void testEmptyJson() {
         String  jsonData = "{}";
@@ -8,6 +8,7 @@ import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 
+import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
@@ -22,11 +23,16 @@ public class FunctionEvaluator {
 
     private final ExpressionFunction function;
     private final LazyArrayContext context;
+
+    /** The bytecode compiled version of the function, or null if it must be interpreted */
+    private final ScalarFunction compiled;
+
     private boolean evaluated = false;
 
-    FunctionEvaluator(ExpressionFunction function, LazyArrayContext context) {
+    FunctionEvaluator(ExpressionFunction function, LazyArrayContext context, ScalarFunction compiled) {
         this.function = function;
         this.context = context;
+        this.compiled = compiled;
     }
 
     /**
@@ -71,9 +77,22 @@ public class FunctionEvaluator {
                                                 "': Must be bound to a value of type " + argument.getValue());
         }
         evaluated = true;
+        if (compiled != null)
+            return Tensor.Builder.of(TensorType.empty).cell(compiled.evaluate(scalarArguments())).build();
         return function.getBody().evaluate(context).asTensor();
     }
 
+    /** Returns the values bound to the arguments of the compiled function, in argument order */
+    private double[] scalarArguments() {
+        List<String> names = compiled.arguments();
+        double[] arguments = new double[names.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            if (context.names().contains(names.get(i)))
+                arguments[i] = context.get(names.get(i)).asDouble();
+        }
+        return arguments;
+    }
+
     /** Returns the function evaluated by this */
     public ExpressionFunction function() { return function; }
 
@@ -0,0 +1,44 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+
+import java.util.List;
+
+/**
+ * A scalar function which evaluates an expression by interpreting it in a copy of a context prototype.
+ * This is used for functions, and parts of compiled functions, which cannot be compiled.
+ *
+ * @author agent
+ */
+class InterpretedScalarFunction extends ScalarFunction {
+
+    private final ExpressionNode expression;
+    private final LazyArrayContext contextPrototype;
+
+    /** The index in the context of each argument, or -1 if the argument is not used by the expression */
+    private final int[] argumentIndexes;
+
+    InterpretedScalarFunction(List<String> arguments, ExpressionNode expression, LazyArrayContext contextPrototype) {
+        super(arguments);
+        this.expression = expression;
+        this.contextPrototype = contextPrototype;
+        this.argumentIndexes = new int[arguments.size()];
+        for (int i = 0; i < arguments.size(); i++)
+            argumentIndexes[i] = contextPrototype.names().contains(arguments.get(i)) ? contextPrototype.getIndex(arguments.get(i)) : -1;
+    }
+
+    @Override
+    public double evaluate(double[] arguments) {
+        LazyArrayContext context = contextPrototype.copy();
+        for (int i = 0; i < argumentIndexes.length; i++) {
+            if (argumentIndexes[i] >= 0)
+                context.put(argumentIndexes[i], arguments[i]);
+        }
+        return expression.evaluate(context).asDouble();
+    }
+
+    @Override
+    public String toString() { return "interpreted function " + expression; }
+
+}
@@ -41,6 +41,9 @@ public class Model {
     /** Context prototypes, indexed by function name (as all invocations of the same function share the same context prototype) */
     private final ImmutableMap<String, LazyArrayContext> contextPrototypes;
 
+    /** The functions which could be compiled to bytecode, indexed by function name */
+    private final ImmutableMap<String, ScalarFunction> compiledFunctions;
+
     private final ExpressionOptimizer expressionOptimizer = new ExpressionOptimizer();
 
     /** Programmatically create a model containing functions without constant of function references only */
@@ -90,6 +93,13 @@ public class Model {
                                                                       .filter(f ->  ! f.getName().startsWith(INTERMEDIATE_OPERATION_FUNCTION_PREFIX))
                                                                       .collect(Collectors.toList()));
 
+        // Compile scalar functions. This must be done before optimization, which replaces expressions in place
+        ImmutableMap.Builder<String, ScalarFunction> compiledBuilder = new ImmutableMap.Builder<>();
+        for (ExpressionFunction function : this.functions)
+            ScalarFunctionCompiler.compile(function, referencedFunctions, constants, contextPrototypes.get(function.getName()))
+                                  .ifPresent(compiled -> compiledBuilder.put(function.getName(), compiled));
+        this.compiledFunctions = compiledBuilder.build();
+
         // Optimize functions
         ImmutableMap.Builder<FunctionReference, ExpressionFunction> functionsBuilder = new ImmutableMap.Builder<>();
         for (Map.Entry<FunctionReference, ExpressionFunction> function : referencedFunctions.entrySet()) {
@@ -171,22 +181,54 @@ public class Model {
      * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given
      */
     public FunctionEvaluator evaluatorOf(String ... names) {  // TODO: Parameter overloading?
+        return evaluatorOf(functionOf(names));
+    }
+
+    /**
+     * Returns a function which can be used to evaluate the given function with scalar arguments repeatedly,
+     * from multiple threads. This is compiled to bytecode when possible, otherwise the function is interpreted.
+     *
+     * Usage:
+     * <code>
+     * ScalarFunction function = model.scalarFunctionOf("myFunction"); // once
+     * double result = function.evaluate(new double[] { foo, bar }); // with arguments in the order of function.arguments()
+     * </code>
+     *
+     * @param names the names identifying the function, as in {@link #evaluatorOf}
+     * @throws IllegalArgumentException if the function is not present, or not uniquely identified by the names given,
+     *         or if it has tensor arguments or a tensor return value
+     */
+    public ScalarFunction scalarFunctionOf(String ... names) {
+        ExpressionFunction function = functionOf(names);
+        ScalarFunction compiled = compiledFunctions.get(function.getName());
+        if (compiled != null) return compiled;
+
+        if ( ! ScalarFunctionCompiler.isScalar(function))
+            throw new IllegalArgumentException(function + " is not a scalar function: Arguments " +
+                                               function.argumentTypes() + ", return type " +
+                                               function.returnType().map(TensorType::toString).orElse("unspecified"));
+        return new InterpretedScalarFunction(function.arguments(),
+                                             function.getBody().getRoot(),
+                                             requireContextProprotype(function.getName()));
+    }
+
+    private ExpressionFunction functionOf(String ... names) {
         if (names.length == 0) {
             if (functions.size() > 1)
                 throwUndeterminedFunction("More than one function is available in " + this + ", but no name is given");
-            return evaluatorOf(functions.get(0));
+            return functions.get(0);
         }
         else if (names.length == 1) {
             String name = names[0];
             ExpressionFunction function = function(name);
-            if (function != null) return evaluatorOf(function);
+            if (function != null) return function;
 
             List<ExpressionFunction> functionsStartingByName =
                     functions.stream().filter(f -> f.getName().startsWith(name + ".")).collect(Collectors.toList());
             if (functionsStartingByName.size() == 0)
                 throwUndeterminedFunction("No function '" + name + "' in " + this);
             else if (functionsStartingByName.size() == 1)
-                return evaluatorOf(functionsStartingByName.get(0));
+                return functionsStartingByName.get(0);
             else
                 throwUndeterminedFunction("Multiple functions start by '" + name + "' in " + this);
 
@@ -195,7 +237,7 @@ public class Model {
             String name = names[0] + "." + names[1];
             ExpressionFunction function = function(name);
             if (function == null) throwUndeterminedFunction("No function '" + name + "' in " + this);
-            return evaluatorOf(function);
+            return function;
         }
         throw new IllegalArgumentException("No more than 2 names can be given when choosing a function, got " +
                                            Arrays.toString(names));
@@ -203,7 +245,9 @@ public class Model {
 
     /** Returns a single-use evaluator of a function */
     private FunctionEvaluator evaluatorOf(ExpressionFunction function) {
-        return new FunctionEvaluator(function, requireContextProprotype(function.getName()).copy());
+        return new FunctionEvaluator(function,
+                                     requireContextProprotype(function.getName()).copy(),
+                                     compiledFunctions.get(function.getName()));
     }
 
     private void throwUndeterminedFunction(String message) {
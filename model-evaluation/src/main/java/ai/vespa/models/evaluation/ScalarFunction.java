@@ -0,0 +1,38 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * A function of scalar arguments to a scalar value. Instances are usually classes generated
+ * from a ranking expression at the time the model is created (see {@link Model#scalarFunctionOf}),
+ * which avoids allocating intermediate values during evaluation.
+ *
+ * Instances are immutable and multithread safe.
+ *
+ * @author agent
+ */
+@Beta
+public abstract class ScalarFunction {
+
+    private final ImmutableList<String> arguments;
+
+    protected ScalarFunction(List<String> arguments) {
+        this.arguments = ImmutableList.copyOf(arguments);
+    }
+
+    /** Returns the names of the arguments of this, in the order they must be given to {@link #evaluate} */
+    public List<String> arguments() { return arguments; }
+
+    /**
+     * Evaluates this function.
+     *
+     * @param arguments the argument values, in the order given by {@link #arguments()}
+     * @return the value of this function for the given arguments
+     */
+    public abstract double evaluate(double[] arguments);
+
+}
@@ -0,0 +1,788 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.Reference;
+import com.yahoo.searchlib.rankingexpression.evaluation.BooleanValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
+import com.yahoo.searchlib.rankingexpression.rule.BooleanNode;
+import com.yahoo.searchlib.rankingexpression.rule.ComparisonNode;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+import com.yahoo.searchlib.rankingexpression.rule.FunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.IfNode;
+import com.yahoo.searchlib.rankingexpression.rule.NegativeNode;
+import com.yahoo.searchlib.rankingexpression.rule.NotNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.SetMembershipNode;
+import com.yahoo.searchlib.rankingexpression.rule.TruthOperator;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.TypeContext;
+import org.objectweb.asm.ClassTooLargeException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.DADD;
+import static org.objectweb.asm.Opcodes.DALOAD;
+import static org.objectweb.asm.Opcodes.DASTORE;
+import static org.objectweb.asm.Opcodes.DCMPL;
+import static org.objectweb.asm.Opcodes.DCONST_0;
+import static org.objectweb.asm.Opcodes.DCONST_1;
+import static org.objectweb.asm.Opcodes.DDIV;
+import static org.objectweb.asm.Opcodes.DLOAD;
+import static org.objectweb.asm.Opcodes.DMUL;
+import static org.objectweb.asm.Opcodes.DNEG;
+import static org.objectweb.asm.Opcodes.DREM;
+import static org.objectweb.asm.Opcodes.DRETURN;
+import static org.objectweb.asm.Opcodes.DSTORE;
+import static org.objectweb.asm.Opcodes.DSUB;
+import static org.objectweb.asm.Opcodes.DUP2;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.I2D;
+import static org.objectweb.asm.Opcodes.IAND;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IOR;
+import static org.objectweb.asm.Opcodes.NEWARRAY;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.T_DOUBLE;
+import static org.objectweb.asm.Opcodes.V11;
+
+/**
+ * Compiles a function of scalar arguments to a subclass of {@link ScalarFunction} generated as JVM bytecode,
+ * so that evaluation works directly on doubles without allocating a value for each expression node.
+ *
+ * Expression nodes which cannot be compiled but which produce a scalar (such as a reduce over a tensor constant)
+ * are evaluated by invoking the interpreter from the generated code. Referenced functions are compiled to
+ * separate methods whose results are cached during a single evaluation, as with lazy values in the interpreter.
+ * Arithmetic is evaluated in the same order as the interpreter does, so compiled and interpreted evaluation
+ * produce the same result.
+ *
+ * This is not multithread safe. Create a new instance for each function to compile.
+ *
+ * @author agent
+ */
+class ScalarFunctionCompiler {
+
+    private static final Logger log = Logger.getLogger(ScalarFunctionCompiler.class.getName());
+
+    /** The approximate max number of expression nodes to emit in a single generated method */
+    private static final int methodNodeBudget = 1000;
+
+    /** Subexpressions smaller than this are never moved to a separate method */
+    private static final int minMethodNodes = 16;
+
+    /** The max number of distinct constants to put in the constant pool, remaining constants are read from an array */
+    private static final int maxPooledConstants = 8192;
+
+    private static final AtomicLong classCounter = new AtomicLong();
+
+    private static final String superClass = Type.getInternalName(ScalarFunction.class);
+    private static final String scalarFunctionArray = Type.getDescriptor(ScalarFunction[].class);
+    private static final String functionClass = Type.getInternalName(Function.class);
+    private static final String truthOperatorClass = Type.getInternalName(TruthOperator.class);
+    private static final String methodDescriptor = "([D[D)D";
+
+    private final ExpressionFunction function;
+    private final Map<FunctionReference, ExpressionFunction> referencedFunctions;
+    private final Map<String, Constant> constants = new LinkedHashMap<>();
+    private final LazyArrayContext contextPrototype;
+    private final TypeContext<Reference> typeContext;
+    private final String className = "ai/vespa/models/evaluation/compiled/ScalarFunction" + classCounter.incrementAndGet();
+
+    private final Map<ExpressionNode, Boolean> compilable = new IdentityHashMap<>();
+    private final Map<ExpressionNode, Integer> sizes = new IdentityHashMap<>();
+    private final Map<FunctionReference, ExpressionNode> functionBodies = new LinkedHashMap<>();
+    private final Set<FunctionReference> functionsInProgress = new HashSet<>();
+
+    // Generation state
+    private ClassWriter classWriter;
+    private final Map<FunctionReference, Integer> functionMethods = new LinkedHashMap<>();
+    private final Deque<PendingMethod> pendingMethods = new ArrayDeque<>();
+    private final List<ScalarFunction> fallbacks = new ArrayList<>();
+    private final Set<Double> pooledConstants = new HashSet<>();
+    private final Map<Double, Integer> arrayConstants = new LinkedHashMap<>();
+    private int expressionMethodCount = 0;
+
+    private ScalarFunctionCompiler(ExpressionFunction function,
+                                   Map<FunctionReference, ExpressionFunction> referencedFunctions,
+                                   List<Constant> constants,
+                                   LazyArrayContext contextPrototype) {
+        this.function = function;
+        this.referencedFunctions = referencedFunctions;
+        for (Constant constant : constants)
+            this.constants.put("constant(" + constant.name() + ")", constant);
+        this.contextPrototype = contextPrototype;
+        this.typeContext = new FunctionTypeContext();
+    }
+
+    /**
+     * Compiles the given function if it has scalar arguments and a scalar return value,
+     * and at least its top-level expression can be compiled.
+     *
+     * @param function the function to compile
+     * @param referencedFunctions the functions which may be referenced from the function
+     * @param constants the constants which may be referenced from the function
+     * @param contextPrototype a context for the function, used to interpret the parts of it which cannot be compiled
+     * @return the compiled function, or empty if it should be evaluated by the interpreter
+     */
+    static Optional<ScalarFunction> compile(ExpressionFunction function,
+                                            Map<FunctionReference, ExpressionFunction> referencedFunctions,
+                                            List<Constant> constants,
+                                            LazyArrayContext contextPrototype) {
+        if ( ! isScalar(function)) return Optional.empty();
+        try {
+            return new ScalarFunctionCompiler(function, referencedFunctions, constants, contextPrototype).compile();
+        }
+        catch (RuntimeException | VerifyError e) { // Not expected, but interpreting is always an option
+            log.log(Level.WARNING, "Could not compile " + function + ", it will be interpreted", e);
+            return Optional.empty();
+        }
+    }
+
+    /** Returns whether the given function has scalar arguments and a scalar (or unspecified) return type */
+    static boolean isScalar(ExpressionFunction function) {
+        if (function.returnType().isPresent() && function.returnType().get().rank() > 0) return false;
+        for (String argument : function.arguments()) {
+            TensorType type = function.argumentTypes().get(argument);
+            if (type != null && type.rank() > 0) return false;
+        }
+        return true;
+    }
+
+    private Optional<ScalarFunction> compile() {
+        ExpressionNode root = normalize(function.getBody().getRoot());
+        if ( ! canCompile(root)) return Optional.empty(); // No gain over interpreting all of it
+
+        classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(V11, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, superClass, null);
+        classWriter.visitField(ACC_PRIVATE | ACC_FINAL, "fallbacks", scalarFunctionArray, null, null).visitEnd();
+        classWriter.visitField(ACC_PRIVATE | ACC_FINAL, "constants", "[D", null, null).visitEnd();
+        generateConstructor();
+
+        String rootMethod = expressionMethod(root);
+        while ( ! pendingMethods.isEmpty())
+            generateMethod(pendingMethods.removeFirst());
+        generateEvaluate(rootMethod);
+        classWriter.visitEnd();
+
+        byte[] bytecode;
+        try {
+            bytecode = classWriter.toByteArray();
+        }
+        catch (ClassTooLargeException | MethodTooLargeException e) {
+            log.log(Level.FINE, () -> "Not compiling " + function + ": " + e.getMessage());
+            return Optional.empty();
+        }
+
+        double[] constantArray = new double[arrayConstants.size()];
+        for (Map.Entry<Double, Integer> constant : arrayConstants.entrySet())
+            constantArray[constant.getValue()] = constant.getKey();
+        try {
+            Class<?> generatedClass = new GeneratedClassLoader(ScalarFunction.class.getClassLoader())
+                                              .define(className.replace('/', '.'), bytecode);
+            return Optional.of((ScalarFunction)generatedClass.getConstructor(List.class, ScalarFunction[].class, double[].class)
+                                                             .newInstance(function.arguments(),
+                                                                          fallbacks.toArray(new ScalarFunction[0]),
+                                                                          constantArray));
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not instantiate the class compiled from " + function, e);
+        }
+    }
+
+    // ------------------- Analysis
+
+    /**
+     * Returns a copy of the given expression where arithmetic nodes are binary, with the structure
+     * given by the operator precedence used by the interpreter, and embraced nodes are removed.
+     */
+    private ExpressionNode normalize(ExpressionNode node) {
+        if (node instanceof EmbracedNode)
+            return normalize(((EmbracedNode)node).getValue());
+        if (node instanceof ArithmeticNode)
+            return normalizeArithmetic((ArithmeticNode)node);
+        if (node instanceof NegativeNode || node instanceof NotNode || node instanceof IfNode ||
+            node instanceof ComparisonNode || node instanceof FunctionNode || node instanceof SetMembershipNode) {
+            CompositeNode composite = (CompositeNode)node;
+            List<ExpressionNode> children = new ArrayList<>(composite.children().size());
+            for (ExpressionNode child : composite.children())
+                children.add(normalize(child));
+            return composite.setChildren(children);
+        }
+        return node;
+    }
+
+    /** Resolves operator precedence the same way as ArithmeticNode.evaluate */
+    private ExpressionNode normalizeArithmetic(ArithmeticNode node) {
+        Deque<OperandItem> stack = new ArrayDeque<>();
+        List<ExpressionNode> children = node.children();
+        stack.push(new OperandItem(ArithmeticOperator.OR, normalize(children.get(0))));
+        for (int i = 0; i < node.operators().size() && i + 1 < children.size(); i++) {
+            ArithmeticOperator operator = node.operators().get(i);
+            while (stack.peek().operator.hasPrecedenceOver(operator))
+                popOperand(stack);
+            stack.push(new OperandItem(operator, normalize(children.get(i + 1))));
+        }
+        while (stack.size() > 1)
+            popOperand(stack);
+        return stack.getFirst().node;
+    }
+
+    private void popOperand(Deque<OperandItem> stack) {
+        OperandItem right = stack.pop();
+        OperandItem left = stack.peek();
+        left.node = new ArithmeticNode(left.node, right.operator, right.node);
+    }
+
+    /** Returns whether this node can be emitted, either compiled or as a call to the interpreter */
+    private boolean canEmit(ExpressionNode node) {
+        return canCompile(node) || isScalar(node);
+    }
+
+    /** Returns whether this node can be compiled to bytecode */
+    private boolean canCompile(ExpressionNode node) {
+        Boolean result = compilable.get(node);
+        if (result == null) {
+            result = resolveCanCompile(node);
+            compilable.put(node, result);
+        }
+        return result;
+    }
+
+    private boolean resolveCanCompile(ExpressionNode node) {
+        if (node instanceof ConstantNode) {
+            ConstantNode constant = (ConstantNode)node;
+            return constant.getValue() instanceof DoubleValue || constant.getValue() instanceof BooleanValue;
+        }
+        if (node instanceof ReferenceNode)
+            return canCompileReference((ReferenceNode)node);
+        if (node instanceof SetMembershipNode) {
+            SetMembershipNode membership = (SetMembershipNode)node;
+            if (membership.getTestValue() instanceof BooleanNode) return false; // booleans are never equal to numbers here
+            for (ExpressionNode setValue : membership.getSetValues()) {
+                if ( ! (setValue instanceof ConstantNode)) return false;
+                if ( ! (((ConstantNode)setValue).getValue() instanceof DoubleValue)) return false;
+            }
+            return canEmit(membership.getTestValue());
+        }
+        if (node instanceof NegativeNode || node instanceof NotNode || node instanceof IfNode ||
+            node instanceof ComparisonNode || node instanceof FunctionNode || node instanceof ArithmeticNode) {
+            for (ExpressionNode child : ((CompositeNode)node).children())
+                if ( ! canEmit(child)) return false;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean canCompileReference(ReferenceNode node) {
+        if (isFunctionReference(node)) {
+            Optional<FunctionReference> reference = FunctionReference.fromSerial(node.toString());
+            if ( ! reference.isPresent()) return false;
+            ExpressionFunction referenced = referencedFunctions.get(reference.get());
+            if (referenced == null) return false;
+            if (referenced.returnType().isPresent() && referenced.returnType().get().rank() > 0) return false;
+            if ( ! functionsInProgress.add(reference.get())) return false; // recursive
+            try {
+                return canEmit(functionBody(reference.get()));
+            }
+            finally {
+                functionsInProgress.remove(reference.get());
+            }
+        }
+        if (isConstant(node)) {
+            Constant constant = constants.get(node.toString());
+            return constant != null && constant.value().type().rank() == 0;
+        }
+        String name = node.toString();
+        if ( ! function.arguments().contains(name)) return false;
+        TensorType type = function.argumentTypes().get(name);
+        return type == null || type.rank() == 0;
+    }
+
+    private boolean isScalar(ExpressionNode node) {
+        try {
+            TensorType type = node.type(typeContext);
+            return type != null && type.rank() == 0;
+        }
+        catch (RuntimeException e) { // Not resolvable: Leave it to the interpreter
+            return false;
+        }
+    }
+
+    private ExpressionNode functionBody(FunctionReference reference) {
+        return functionBodies.computeIfAbsent(reference,
+                                              r -> normalize(referencedFunctions.get(r).getBody().getRoot()));
+    }
+
+    /** Returns the number of nodes emitted inline for this node */
+    private int size(ExpressionNode node) {
+        Integer size = sizes.get(node);
+        if (size == null) {
+            size = 1;
+            if (canCompile(node) && node instanceof CompositeNode && ! (node instanceof ReferenceNode)) {
+                for (ExpressionNode child : ((CompositeNode)node).children())
+                    size += size(child);
+            }
+            sizes.put(node, size);
+        }
+        return size;
+    }
+
+    private static boolean isFunctionReference(ReferenceNode node) {
+        return node.getName().equals("rankingExpression") && node.getArguments().size() == 1;
+    }
+
+    private static boolean isConstant(ReferenceNode node) {
+        return node.getName().equals("constant") && node.getArguments().size() == 1;
+    }
+
+    // ------------------- Generation
+
+    private void generateConstructor() {
+        MethodVisitor mv = classWriter.visitMethod(ACC_PUBLIC, "<init>", "(Ljava/util/List;" + scalarFunctionArray + "[D)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKESPECIAL, superClass, "<init>", "(Ljava/util/List;)V", false);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitFieldInsn(PUTFIELD, className, "fallbacks", scalarFunctionArray);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitFieldInsn(PUTFIELD, className, "constants", "[D");
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /** Generates evaluate(double[]), which calls the root method with an empty cache of referenced function values */
+    private void generateEvaluate(String rootMethod) {
+        MethodVisitor mv = classWriter.visitMethod(ACC_PUBLIC, "evaluate", "([D)D", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        if (functionMethods.isEmpty()) {
+            mv.visitInsn(ACONST_NULL);
+        }
+        else {
+            pushInt(mv, functionMethods.size() * 2); // value and "is set" flag for each function
+            mv.visitIntInsn(NEWARRAY, T_DOUBLE);
+        }
+        mv.visitMethodInsn(INVOKESPECIAL, className, rootMethod, methodDescriptor, false);
+        mv.visitInsn(DRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Adds a method to be generated.
+     *
+     * @param name the name of the method
+     * @param root the expression the method should evaluate
+     * @param cacheIndex the index of the cached value of this in the cache array, or -1 if it should not be cached
+     * @return the name of the method
+     */
+    private String addMethod(String name, ExpressionNode root, int cacheIndex) {
+        pendingMethods.add(new PendingMethod(name, root, cacheIndex));
+        return name;
+    }
+
+    private String expressionMethod(ExpressionNode root) {
+        return addMethod("expression" + (expressionMethodCount++), root, -1);
+    }
+
+    private String functionMethod(FunctionReference reference) {
+        Integer index = functionMethods.get(reference);
+        if (index == null) {
+            index = functionMethods.size();
+            functionMethods.put(reference, index);
+            addMethod("function" + index, functionBody(reference), index);
+        }
+        return "function" + index;
+    }
+
+    /** Generates a method taking the argument array and cache array as arguments and returning a double */
+    private void generateMethod(PendingMethod method) {
+        MethodVisitor mv = classWriter.visitMethod(ACC_PRIVATE, method.name, methodDescriptor, null, null);
+        mv.visitCode();
+        MethodEmitter emitter = new MethodEmitter(mv, method.root);
+        if (method.cacheIndex >= 0) {
+            Label compute = new Label();
+            mv.visitVarInsn(ALOAD, 2);
+            pushInt(mv, method.cacheIndex * 2 + 1);
+            mv.visitInsn(DALOAD);
+            mv.visitInsn(DCONST_0);
+            mv.visitInsn(DCMPL);
+            mv.visitJumpInsn(IFEQ, compute);
+            mv.visitVarInsn(ALOAD, 2);
+            pushInt(mv, method.cacheIndex * 2);
+            mv.visitInsn(DALOAD);
+            mv.visitInsn(DRETURN);
+            mv.visitLabel(compute);
+            emitter.emit(method.root);
+            int result = emitter.allocateLocal();
+            mv.visitInsn(DUP2);
+            mv.visitVarInsn(DSTORE, result);
+            mv.visitVarInsn(ALOAD, 2);
+            pushInt(mv, method.cacheIndex * 2);
+            mv.visitVarInsn(DLOAD, result);
+            mv.visitInsn(DASTORE);
+            mv.visitVarInsn(ALOAD, 2);
+            pushInt(mv, method.cacheIndex * 2 + 1);
+            mv.visitInsn(DCONST_1);
+            mv.visitInsn(DASTORE);
+        }
+        else {
+            emitter.emit(method.root);
+        }
+        mv.visitInsn(DRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void emitConstant(MethodVisitor mv, double value) {
+        if (pooledConstants.contains(value) || pooledConstants.size() < maxPooledConstants) {
+            pooledConstants.add(value);
+            mv.visitLdcInsn(value);
+        }
+        else {
+            Integer index = arrayConstants.computeIfAbsent(value, v -> arrayConstants.size());
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, className, "constants", "[D");
+            pushInt(mv, index);
+            mv.visitInsn(DALOAD);
+        }
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value >= 0 && value <= 5)
+            mv.visitInsn(ICONST_0 + value);
+        else if (value <= Byte.MAX_VALUE)
+            mv.visitIntInsn(BIPUSH, value);
+        else if (value <= Short.MAX_VALUE)
+            mv.visitIntInsn(SIPUSH, value);
+        else
+            mv.visitLdcInsn(value);
+    }
+
+    /** Emits the bytecode of the expressions of a single method */
+    private class MethodEmitter {
+
+        private final MethodVisitor mv;
+        private final ExpressionNode root;
+
+        /** The number of nodes which can still be emitted in this method before moving subexpressions to new methods */
+        private int remaining = methodNodeBudget;
+
+        /** The next free local variable: 0 is this, 1 the arguments and 2 the function value cache */
+        private int nextLocal = 3;
+
+        MethodEmitter(MethodVisitor mv, ExpressionNode root) {
+            this.mv = mv;
+            this.root = root;
+        }
+
+        /** Emits code which leaves the value of the given node on the stack */
+        void emit(ExpressionNode node) {
+            if ( ! canCompile(node)) {
+                emitFallback(node);
+                return;
+            }
+            int size = size(node);
+            if (node != root && size > remaining && size > minMethodNodes && remaining < methodNodeBudget / 4) {
+                emitCall(expressionMethod(node));
+                return;
+            }
+            remaining--;
+
+            if (node instanceof ConstantNode)
+                emitConstant(mv, ((ConstantNode)node).getValue().asDouble());
+            else if (node instanceof ReferenceNode)
+                emitReference((ReferenceNode)node);
+            else if (node instanceof NegativeNode)
+                emitNegative((NegativeNode)node);
+            else if (node instanceof NotNode)
+                emitNot((NotNode)node);
+            else if (node instanceof ArithmeticNode)
+                emitArithmetic((ArithmeticNode)node);
+            else if (node instanceof ComparisonNode)
+                emitComparison((ComparisonNode)node);
+            else if (node instanceof FunctionNode)
+                emitFunction((FunctionNode)node);
+            else if (node instanceof IfNode)
+                emitIf((IfNode)node);
+            else if (node instanceof SetMembershipNode)
+                emitSetMembership((SetMembershipNode)node);
+            else
+                throw new IllegalStateException("Cannot compile " + node); // Should have been rejected by canCompile
+        }
+
+        private void emitReference(ReferenceNode node) {
+            if (isFunctionReference(node)) {
+                emitCall(functionMethod(FunctionReference.fromSerial(node.toString()).get()));
+            }
+            else if (isConstant(node)) {
+                emitConstant(mv, constants.get(node.toString()).value().asDouble());
+            }
+            else {
+                mv.visitVarInsn(ALOAD, 1);
+                pushInt(mv, function.arguments().indexOf(node.toString()));
+                mv.visitInsn(DALOAD);
+            }
+        }
+
+        private void emitNegative(NegativeNode node) {
+            emit(node.getValue());
+            mv.visitInsn(DNEG);
+        }
+
+        private void emitNot(NotNode node) {
+            emit(node.getValue());
+            Label nonZero = new Label();
+            Label end = new Label();
+            mv.visitInsn(DCONST_0);
+            mv.visitInsn(DCMPL);
+            mv.visitJumpInsn(IFNE, nonZero);
+            mv.visitInsn(DCONST_1);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(nonZero);
+            mv.visitInsn(DCONST_0);
+            mv.visitLabel(end);
+        }
+
+        private void emitArithmetic(ArithmeticNode node) {
+            ArithmeticOperator operator = node.operators().get(0);
+            emit(node.children().get(0));
+            if (operator == ArithmeticOperator.AND || operator == ArithmeticOperator.OR)
+                emitToBoolean();
+            emit(node.children().get(1));
+            switch (operator) {
+                case PLUS: mv.visitInsn(DADD); break;
+                case MINUS: mv.visitInsn(DSUB); break;
+                case MULTIPLY: mv.visitInsn(DMUL); break;
+                case DIVIDE: mv.visitInsn(DDIV); break;
+                case MODULO: mv.visitInsn(DREM); break;
+                case POWER: mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "pow", "(DD)D", false); break;
+                case AND:
+                    emitToBoolean();
+                    mv.visitInsn(IAND);
+                    mv.visitInsn(I2D);
+                    break;
+                case OR:
+                    emitToBoolean();
+                    mv.visitInsn(IOR);
+                    mv.visitInsn(I2D);
+                    break;
+                default: throw new IllegalStateException("Unknown operator " + operator);
+            }
+        }
+
+        /** Replaces the double on the top of the stack by 1 if it is non-zero and 0 otherwise */
+        private void emitToBoolean() {
+            Label zero = new Label();
+            Label end = new Label();
+            mv.visitInsn(DCONST_0);
+            mv.visitInsn(DCMPL);
+            mv.visitJumpInsn(IFEQ, zero);
+            mv.visitInsn(ICONST_1);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(zero);
+            mv.visitInsn(ICONST_0);
+            mv.visitLabel(end);
+        }
+
+        private void emitComparison(ComparisonNode node) {
+            mv.visitFieldInsn(GETSTATIC, truthOperatorClass, node.getOperator().name(), "L" + truthOperatorClass + ";");
+            emit(node.getLeftCondition());
+            emit(node.getRightCondition());
+            mv.visitMethodInsn(INVOKEVIRTUAL, truthOperatorClass, "evaluate", "(DD)Z", false);
+            mv.visitInsn(I2D);
+        }
+
+        private void emitFunction(FunctionNode node) {
+            mv.visitFieldInsn(GETSTATIC, functionClass, node.getFunction().name(), "L" + functionClass + ";");
+            List<ExpressionNode> arguments = node.children();
+            for (int i = 0; i < 2; i++) {
+                if (i < arguments.size())
+                    emit(arguments.get(i));
+                else
+                    mv.visitInsn(DCONST_0);
+            }
+            mv.visitMethodInsn(INVOKEVIRTUAL, functionClass, "evaluate", "(DD)D", false);
+        }
+
+        private void emitIf(IfNode node) {
+            Label falseBranch = new Label();
+            Label end = new Label();
+            emit(node.getCondition());
+            mv.visitInsn(DCONST_0);
+            mv.visitInsn(DCMPL);
+            mv.visitJumpInsn(IFEQ, falseBranch);
+            emit(node.getTrueExpression());
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(falseBranch);
+            emit(node.getFalseExpression());
+            mv.visitLabel(end);
+        }
+
+        private void emitSetMembership(SetMembershipNode node) {
+            Label member = new Label();
+            Label end = new Label();
+            emit(node.getTestValue());
+            int testValue = allocateLocal();
+            mv.visitVarInsn(DSTORE, testValue);
+            for (ExpressionNode setValue : node.getSetValues()) {
+                mv.visitVarInsn(DLOAD, testValue);
+                emit(setValue);
+                mv.visitInsn(DCMPL);
+                mv.visitJumpInsn(IFEQ, member);
+            }
+            mv.visitInsn(DCONST_0);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(member);
+            mv.visitInsn(DCONST_1);
+            mv.visitLabel(end);
+        }
+
+        /** Emits a call to the interpreter evaluating this node */
+        private void emitFallback(ExpressionNode node) {
+            int index = fallbacks.size();
+            fallbacks.add(new InterpretedScalarFunction(function.arguments(), node, contextPrototype));
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, className, "fallbacks", scalarFunctionArray);
+            pushInt(mv, index);
+            mv.visitInsn(AALOAD);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitMethodInsn(INVOKEVIRTUAL, superClass, "evaluate", "([D)D", false);
+        }
+
+        private void emitCall(String method) {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitMethodInsn(INVOKESPECIAL, className, method, methodDescriptor, false);
+        }
+
+        /** Returns the index of a new local variable holding a double */
+        int allocateLocal() {
+            int local = nextLocal;
+            nextLocal += 2;
+            return local;
+        }
+
+    }
+
+    /** Resolves the types of the references in the function being compiled */
+    private class FunctionTypeContext implements TypeContext<Reference> {
+
+        @Override
+        public TensorType getType(Reference reference) {
+            return getType(reference.toString());
+        }
+
+        @Override
+        public TensorType getType(String name) {
+            Optional<FunctionReference> functionReference = FunctionReference.fromSerial(name);
+            if (functionReference.isPresent()) {
+                ExpressionFunction referenced = referencedFunctions.get(functionReference.get());
+                if (referenced == null)
+                    throw new IllegalArgumentException("Unknown function " + name);
+                if (referenced.returnType().isPresent())
+                    return referenced.returnType().get();
+                if ( ! functionsInProgress.add(functionReference.get()))
+                    throw new IllegalArgumentException("Recursive reference to " + name);
+                try {
+                    return referenced.getBody().getRoot().type(this);
+                }
+                finally {
+                    functionsInProgress.remove(functionReference.get());
+                }
+            }
+            Constant constant = constants.get(name);
+            if (constant != null)
+                return constant.value().type();
+            TensorType argumentType = function.argumentTypes().get(name);
+            return argumentType != null ? argumentType : TensorType.empty;
+        }
+
+    }
+
+    private static class PendingMethod {
+
+        final String name;
+        final ExpressionNode root;
+        final int cacheIndex;
+
+        PendingMethod(String name, ExpressionNode root, int cacheIndex) {
+            this.name = name;
+            this.root = root;
+            this.cacheIndex = cacheIndex;
+        }
+
+    }
+
+    private static class OperandItem {
+
+        final ArithmeticOperator operator;
+        ExpressionNode node;
+
+        OperandItem(ArithmeticOperator operator, ExpressionNode node) {
+            this.operator = operator;
+            this.node = node;
+        }
+
+    }
+
+    private static class GeneratedClassLoader extends ClassLoader {
+
+        GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytecode) {
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+
+    }
+
+}
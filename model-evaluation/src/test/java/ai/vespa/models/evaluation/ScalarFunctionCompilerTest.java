@@ -0,0 +1,143 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package ai.vespa.models.evaluation;
+
+import com.yahoo.config.subscription.ConfigGetter;
+import com.yahoo.config.subscription.FileSource;
+import com.yahoo.filedistribution.fileacquirer.MockFileAcquirer;
+import com.yahoo.path.Path;
+import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.MapContext;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.vespa.config.search.RankProfilesConfig;
+import com.yahoo.vespa.config.search.core.RankingConstantsConfig;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that compiled scalar functions produce the same values as the interpreter.
+ *
+ * @author agent
+ */
+public class ScalarFunctionCompilerTest {
+
+    private static final double delta = 0.00000000001;
+
+    @Test
+    public void testCompiledExpressionsEvaluateAsInterpreted() {
+        assertCompiledAsInterpreted("x + y * z");
+        assertCompiledAsInterpreted("10 - x - y");
+        assertCompiledAsInterpreted("x / y / z");
+        assertCompiledAsInterpreted("x ^ 2 ^ y");
+        assertCompiledAsInterpreted("x % 3 % y + z * x - y / z ^ 2");
+        assertCompiledAsInterpreted("(x + y) * (z - x)");
+        assertCompiledAsInterpreted("-x + -(y * z)");
+        assertCompiledAsInterpreted("x && y || !z");
+        assertCompiledAsInterpreted("if (x < y, z, x * 2)");
+        assertCompiledAsInterpreted("if (x >= 0.5 && y != z, if (z ~= 0.3, 1, 2), 3) + (x == x)");
+        assertCompiledAsInterpreted("if (x in [0, 1, 2], y, z) + if (y in [0.25, 0.5], 1, 0)");
+        assertCompiledAsInterpreted("max(x, y) + min(y, z) + pow(x, 1.5) + sqrt(y) + log(z + 1) + exp(x)");
+        assertCompiledAsInterpreted("tanh(x) + sigmoid(y) + relu(x - 0.5) + fmod(z, 0.3) + atan2(x, y) + isNan(x)");
+        assertCompiledAsInterpreted("if (x > 0.5, 1.0 / 0, 0 / 0.0)");
+    }
+
+    @Test
+    public void testLargeExpressionsAreSplitIntoMultipleMethods() {
+        Random random = new Random(7);
+        StringBuilder expression = new StringBuilder();
+        for (int tree = 0; tree < 2000; tree++) {
+            if (tree > 0) expression.append(" + ");
+            expression.append("if (x < ").append(random.nextDouble())
+                      .append(", if (y < ").append(random.nextDouble()).append(", ").append(random.nextDouble())
+                      .append(", ").append(random.nextDouble()).append("), if (z in [")
+                      .append(tree % 3).append(", ").append(tree % 5).append("], ").append(random.nextDouble())
+                      .append(", ").append(random.nextDouble()).append("))");
+        }
+        assertCompiledAsInterpreted(expression.toString());
+    }
+
+    @Test
+    public void testScalarSubexpressionsWhichCannotBeCompiledAreInterpreted() {
+        assertCompiledAsInterpreted("x * reduce(tensor(d0[3])(d0 + 1), sum) + y");
+        assertCompiledAsInterpreted("if (x < 0.5, sum(tensor(d0[3])(d0)), reduce(tensor(d0[2])(d0 * 2), max)) + z");
+    }
+
+    @Test
+    public void testFunctionsWithReferences() {
+        ModelsEvaluator models = createModels("src/test/resources/config/rankexpression/");
+        Model model = models.requireModel("macros2");
+        ScalarFunction function = model.scalarFunctionOf("secondphase");
+        assertFalse("Compiled", function instanceof InterpretedScalarFunction);
+
+        double[] arguments = new double[function.arguments().size()];
+        Random random = new Random(3);
+        for (int i = 0; i < 10; i++) {
+            FunctionEvaluator evaluator = model.evaluatorOf("secondphase");
+            for (int j = 0; j < arguments.length; j++) {
+                arguments[j] = random.nextDouble();
+                evaluator.bind(function.arguments().get(j), arguments[j]);
+            }
+            double interpreted = model.function("secondphase").getBody().evaluate(evaluator.context()).asDouble();
+            assertEquals(interpreted, function.evaluate(arguments), delta);
+            assertEquals(interpreted, evaluator.evaluate().asDouble(), delta);
+        }
+    }
+
+    @Test
+    public void testTensorFunctionsAreNotScalarFunctions() {
+        ExpressionFunction function = new ExpressionFunction("test", RankingExpression.from("sum(arg1 * 2)"))
+                                              .withArgument("arg1", TensorType.fromSpec("tensor(d0[2])"));
+        Model model = new Model("test-model", List.of(function));
+        try {
+            model.scalarFunctionOf("test");
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("function 'test' is not a scalar function"));
+        }
+    }
+
+    private void assertCompiledAsInterpreted(String expression) {
+        RankingExpression body = RankingExpression.from(expression);
+        ExpressionFunction function = new ExpressionFunction("test", List.of("x", "y", "z"), body);
+        Model model = new Model("test-model", List.of(function));
+        ScalarFunction compiled = model.scalarFunctionOf("test");
+        assertFalse("Compiled " + expression, compiled instanceof InterpretedScalarFunction);
+        assertEquals(List.of("x", "y", "z"), compiled.arguments());
+
+        Random random = new Random(expression.hashCode());
+        double[][] argumentSets = { {0, 0, 0}, {1, 2, 0.3}, {0.5, 0.25, 1}, {Double.NaN, -1, 0} };
+        for (double[] arguments : argumentSets)
+            assertEvaluatesAsInterpreted(expression, body, compiled, arguments);
+        for (int i = 0; i < 20; i++)
+            assertEvaluatesAsInterpreted(expression, body, compiled,
+                                         new double[] { random.nextDouble(), random.nextDouble(), random.nextInt(4) });
+    }
+
+    private void assertEvaluatesAsInterpreted(String expression, RankingExpression body, ScalarFunction compiled,
+                                              double[] arguments) {
+        MapContext context = new MapContext();
+        context.put("x", arguments[0]);
+        context.put("y", arguments[1]);
+        context.put("z", arguments[2]);
+        assertEquals(expression + " with x=" + arguments[0] + ", y=" + arguments[1] + ", z=" + arguments[2],
+                     body.evaluate(context).asDouble(), compiled.evaluate(arguments), delta);
+    }
+
+    private ModelsEvaluator createModels(String path) {
+        Path configDir = Path.fromString(path);
+        RankProfilesConfig config = new ConfigGetter<>(new FileSource(configDir.append("rank-profiles.cfg").toFile()),
+                                                       RankProfilesConfig.class).getConfig("");
+        RankingConstantsConfig constantsConfig = new ConfigGetter<>(new FileSource(configDir.append("ranking-constants.cfg").toFile()),
+                                                                    RankingConstantsConfig.class).getConfig("");
+        return new ModelsEvaluator(config, constantsConfig, MockFileAcquirer.returnFile(null));
+    }
+
+}
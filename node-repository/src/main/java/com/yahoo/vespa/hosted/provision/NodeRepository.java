@@ -176,7 +176,12 @@ public class NodeRepository extends AbstractComponent {
      * @return the node, or empty if it was not found in any of the given states
      */
     public List<Node> getNodes(NodeType type, Node.State ... inState) {
-        return db.getNodes(inState).stream().filter(node -> node.type().equals(type)).collect(Collectors.toList());
+        return db.getNodes(type, inState);
+    }
+
+    /** Returns the child nodes of the host with the given hostname */
+    public List<Node> getChildNodes(String hostname) {
+        return db.getChildNodes(hostname);
     }
 
     /** Returns a filterable list of all nodes in this repository */
@@ -439,7 +444,7 @@ public class NodeRepository extends AbstractComponent {
 
         List<Node> nodesToDirty =
                 (nodeToDirty.type().isDockerHost() ?
-                        Stream.concat(list().childrenOf(hostname).asList().stream(), Stream.of(nodeToDirty)) :
+                        Stream.concat(getChildNodes(hostname).stream(), Stream.of(nodeToDirty)) :
                         Stream.of(nodeToDirty))
                 .filter(node -> node.state() != Node.State.dirty)
                 .collect(Collectors.toList());
@@ -509,7 +514,7 @@ public class NodeRepository extends AbstractComponent {
     }
 
     private List<Node> moveRecursively(String hostname, Node.State toState, Agent agent, Optional<String> reason) {
-        List<Node> moved = list().childrenOf(hostname).asList().stream()
+        List<Node> moved = getChildNodes(hostname).stream()
                                          .map(child -> move(child, toState, agent, reason))
                                          .collect(Collectors.toList());
 
@@ -578,7 +583,7 @@ public class NodeRepository extends AbstractComponent {
             List<Node> removed = new ArrayList<>();
 
              if (node.type().isDockerHost()) {
-                 list().childrenOf(node).asList().stream()
+                 getChildNodes(node.hostname()).stream()
                        .filter(child -> force || canRemove(child, true))
                        .forEach(removed::add);
              }
@@ -37,6 +37,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -72,6 +73,10 @@ public class CuratorDatabaseClient {
     private final Zone zone;
     private final CuratorCounter provisionIndexCounter;
 
+    /** The deserialized nodes at the last generation they were read */
+    private final AtomicReference<NodeCache> nodeCache = new AtomicReference<>(NodeCache.empty());
+    private final Object nodeCacheLock = new Object();
+
     public CuratorDatabaseClient(NodeFlavors flavors, Curator curator, Clock clock, Zone zone, boolean useCache) {
         this.nodeSerializer = new NodeSerializer(flavors);
         this.zone = zone;
@@ -246,17 +251,7 @@ public class CuratorDatabaseClient {
      * If no states are given this returns all nodes.
      */
     public List<Node> getNodes(Node.State ... states) {
-        List<Node> nodes = new ArrayList<>();
-        if (states.length == 0)
-            states = Node.State.values();
-        CuratorDatabase.Session session = curatorDatabase.getSession();
-        for (Node.State state : states) {
-            for (String hostname : session.getChildren(toPath(state))) {
-                Optional<Node> node = getNode(session, hostname, state);
-                node.ifPresent(nodes::add); // node might disappear between getChildren and getNode
-            }
-        }
-        return nodes;
+        return nodeCache().nodes(states);
     }
 
     /** 
@@ -264,9 +259,48 @@ public class CuratorDatabaseClient {
      * If no states are given this returns all nodes.
      */
     public List<Node> getNodes(ApplicationId applicationId, Node.State ... states) {
-        List<Node> nodes = getNodes(states);
-        nodes.removeIf(node -> ! node.allocation().isPresent() || ! node.allocation().get().owner().equals(applicationId));
-        return nodes;
+        return nodeCache().nodes(applicationId, states);
+    }
+
+    /**
+     * Returns all nodes of the given type which are in one of the given states.
+     * If no states are given this returns all nodes of the given type.
+     */
+    public List<Node> getNodes(NodeType type, Node.State ... states) {
+        return nodeCache().nodes(type, states);
+    }
+
+    /** Returns all nodes which have the given parent hostname */
+    public List<Node> getChildNodes(String parentHostname) {
+        return nodeCache().children(parentHostname);
+    }
+
+    /**
+     * Returns the nodes at the current generation of the curator database. When the generation has changed,
+     * the nodes are read again, but only those whose serialized data has changed are deserialized.
+     * This is independent of whether the curator database caches the serialized data.
+     */
+    private NodeCache nodeCache() {
+        CuratorDatabase.Session session = curatorDatabase.getSession();
+        NodeCache cache = nodeCache.get();
+        if (cache.generation() == session.generation()) return cache;
+
+        synchronized (nodeCacheLock) {
+            cache = nodeCache.get();
+            if (cache.generation() == session.generation()) return cache;
+
+            NodeCache.Builder builder = cache.next(session.generation());
+            for (Node.State state : Node.State.values()) {
+                for (String hostname : session.getChildren(toPath(state))) {
+                    // node might disappear between getChildren and getData
+                    session.getData(toPath(state, hostname)).ifPresent(data -> builder.add(state, hostname, data, nodeSerializer));
+                }
+            }
+            NodeCache newCache = builder.build();
+            if (newCache.generation() >= nodeCache.get().generation())
+                nodeCache.set(newCache);
+            return newCache;
+        }
     }
 
     /**
@@ -287,9 +321,14 @@ public class CuratorDatabaseClient {
     /** 
      * Returns a particular node, or empty if this noe is not in any of the given states.
      * If no states are given this returns the node if it is present in any state.
+     * The node is read from the node cache only if that is current, as rebuilding it after each write
+     * would make callers which look up and write one node at the time read all nodes each time.
      */
     public Optional<Node> getNode(String hostname, Node.State ... states) {
-        return getNode(curatorDatabase.getSession(), hostname, states);
+        CuratorDatabase.Session session = curatorDatabase.getSession();
+        NodeCache cache = nodeCache.get();
+        if (cache.generation() == session.generation()) return cache.node(hostname, states);
+        return getNode(session, hostname, states);
     }
 
     private Path toPath(Node.State nodeState) { return root.append(toDir(nodeState)); }
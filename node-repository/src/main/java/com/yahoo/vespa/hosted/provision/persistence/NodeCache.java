@@ -0,0 +1,147 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.hosted.provision.persistence;
+
+import com.yahoo.config.provision.ApplicationId;
+import com.yahoo.config.provision.NodeType;
+import com.yahoo.vespa.hosted.provision.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An immutable snapshot of all deserialized nodes at a given generation of the curator database,
+ * indexed by hostname, state, type, owner application and parent hostname.
+ *
+ * A snapshot for a new generation is created from the previous one, such that only the nodes whose
+ * serialized data has changed since the previous generation are deserialized again.
+ *
+ * @author agent
+ */
+class NodeCache {
+
+    private final long generation;
+
+    /** The serialized data of each node, used to detect which nodes have changed in the next generation */
+    private final Map<String, byte[]> data;
+    private final Map<String, Node> byHostname;
+    private final Map<Node.State, List<Node>> byState;
+    private final Map<NodeType, List<Node>> byType;
+    private final Map<ApplicationId, List<Node>> byOwner;
+    private final Map<String, List<Node>> byParentHostname;
+
+    private NodeCache(long generation, Map<String, byte[]> data, Map<String, Node> byHostname,
+                      Map<Node.State, List<Node>> byState) {
+        this.generation = generation;
+        this.data = data;
+        this.byHostname = byHostname;
+        this.byState = byState;
+        this.byType = new EnumMap<>(NodeType.class);
+        this.byOwner = new HashMap<>();
+        this.byParentHostname = new HashMap<>();
+        for (List<Node> nodes : byState.values()) {
+            for (Node node : nodes) {
+                byType.computeIfAbsent(node.type(), k -> new ArrayList<>()).add(node);
+                node.allocation().ifPresent(allocation -> byOwner.computeIfAbsent(allocation.owner(), k -> new ArrayList<>()).add(node));
+                node.parentHostname().ifPresent(parent -> byParentHostname.computeIfAbsent(parent, k -> new ArrayList<>()).add(node));
+            }
+        }
+    }
+
+    /** Returns an empty snapshot which is older than any generation */
+    static NodeCache empty() {
+        return new NodeCache(-1, Map.of(), Map.of(), Map.of());
+    }
+
+    long generation() { return generation; }
+
+    /** Returns the node with the given hostname, if it is present in any of the given states, or any state if none */
+    Optional<Node> node(String hostname, Node.State ... states) {
+        Node node = byHostname.get(hostname);
+        if (node == null || (states.length > 0 && ! Arrays.asList(states).contains(node.state())))
+            return Optional.empty();
+        return Optional.of(node);
+    }
+
+    /** Returns a new, modifiable list of the nodes in the given states, or all nodes if no states are given */
+    List<Node> nodes(Node.State ... states) {
+        if (states.length == 0)
+            states = Node.State.values();
+        List<Node> nodes = new ArrayList<>();
+        for (Node.State state : states)
+            nodes.addAll(byState.getOrDefault(state, List.of()));
+        return nodes;
+    }
+
+    /** Returns a new, modifiable list of the nodes of the given type in the given states, or in any state if none */
+    List<Node> nodes(NodeType type, Node.State ... states) {
+        return inStates(byType.getOrDefault(type, List.of()), states);
+    }
+
+    /** Returns a new, modifiable list of the nodes allocated to the given application in the given states, or in any state if none */
+    List<Node> nodes(ApplicationId owner, Node.State ... states) {
+        return inStates(byOwner.getOrDefault(owner, List.of()), states);
+    }
+
+    /** Returns a new, modifiable list of the nodes which have the given parent hostname */
+    List<Node> children(String parentHostname) {
+        return new ArrayList<>(byParentHostname.getOrDefault(parentHostname, List.of()));
+    }
+
+    /** Returns the given nodes which are in the given states, in the order of the states */
+    private static List<Node> inStates(List<Node> nodes, Node.State ... states) {
+        if (states.length == 0)
+            states = Node.State.values();
+        List<Node> result = new ArrayList<>();
+        for (Node.State state : states)
+            for (Node node : nodes)
+                if (node.state() == state)
+                    result.add(node);
+        return result;
+    }
+
+    /** Returns a builder of the snapshot following this at the given generation */
+    Builder next(long generation) {
+        return new Builder(generation, this);
+    }
+
+    static class Builder {
+
+        private final long generation;
+        private final NodeCache previous;
+        private final Map<String, byte[]> data = new HashMap<>();
+        private final Map<String, Node> byHostname = new HashMap<>();
+        private final Map<Node.State, List<Node>> byState = new EnumMap<>(Node.State.class);
+
+        private Builder(long generation, NodeCache previous) {
+            this.generation = generation;
+            this.previous = previous;
+        }
+
+        /**
+         * Adds the node with the given serialized data, which is deserialized by the given serializer
+         * unless the node had the same state and data in the previous snapshot.
+         */
+        Builder add(Node.State state, String hostname, byte[] nodeData, NodeSerializer serializer) {
+            Node node = previous.byHostname.get(hostname);
+            if (node == null || node.state() != state || ! Arrays.equals(nodeData, previous.data.get(hostname)))
+                node = serializer.fromJson(state, nodeData);
+            data.put(hostname, nodeData);
+            byHostname.put(hostname, node);
+            byState.computeIfAbsent(state, k -> new ArrayList<>()).add(node);
+            return this;
+        }
+
+        NodeCache build() {
+            byState.replaceAll((state, nodes) -> Collections.unmodifiableList(nodes));
+            return new NodeCache(generation, data, byHostname, byState);
+        }
+
+    }
+
+}
@@ -1,9 +1,12 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.hosted.provision.persistence;
 
+import com.yahoo.component.Version;
 import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.config.provision.ApplicationName;
+import com.yahoo.config.provision.ClusterMembership;
 import com.yahoo.config.provision.InstanceName;
+import com.yahoo.config.provision.NodeFlavors;
 import com.yahoo.config.provision.NodeType;
 import com.yahoo.config.provision.TenantName;
 import com.yahoo.config.provision.Zone;
@@ -11,13 +14,21 @@ import com.yahoo.vespa.curator.Curator;
 import com.yahoo.vespa.curator.Lock;
 import com.yahoo.vespa.curator.mock.MockCurator;
 import com.yahoo.vespa.hosted.provision.Node;
+import com.yahoo.vespa.hosted.provision.node.Agent;
 import com.yahoo.vespa.hosted.provision.provisioning.FlavorConfigBuilder;
 import org.junit.Test;
 
 import java.time.Clock;
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 /**
  * @author mpolden
@@ -25,8 +36,9 @@ import static org.junit.Assert.assertEquals;
 public class CuratorDatabaseClientTest {
 
     private final Curator curator = new MockCurator();
+    private final NodeFlavors flavors = FlavorConfigBuilder.createDummies("default");
     private final CuratorDatabaseClient zkClient = new CuratorDatabaseClient(
-            FlavorConfigBuilder.createDummies("default"), curator, Clock.systemUTC(), Zone.defaultZone(), true);
+            flavors, curator, Clock.systemUTC(), Zone.defaultZone(), true);
 
     @Test
     public void can_read_stored_host_information() throws Exception {
@@ -59,4 +71,46 @@ public class CuratorDatabaseClientTest {
 
     }
 
- }
+    @Test
+    public void nodes_are_indexed_and_only_deserialized_again_when_changed() {
+        ApplicationId app = ApplicationId.from(TenantName.from("testTenant"), ApplicationName.from("testApp"), InstanceName.from("testInstance"));
+        zkClient.addNodesInState(List.of(node("host1", Optional.empty(), NodeType.host),
+                                         node("node1", Optional.of("host1"), NodeType.tenant),
+                                         node("node2", Optional.of("host1"), NodeType.tenant)),
+                                 Node.State.provisioned);
+        Node node2 = zkClient.getNode("node2").get();
+        zkClient.writeTo(Node.State.reserved,
+                         node2.allocate(app, ClusterMembership.from("content/myId/0/0", Version.fromString("7.1")), Instant.now()),
+                         Agent.system, Optional.empty());
+
+        assertEquals(List.of("host1"), hostnames(zkClient.getNodes(NodeType.host)));
+        assertEquals(List.of("node2"), hostnames(zkClient.getNodes(NodeType.tenant, Node.State.reserved)));
+        assertEquals(List.of("node2"), hostnames(zkClient.getNodes(app)));
+        assertEquals(List.of(), hostnames(zkClient.getNodes(app, Node.State.active)));
+        assertEquals(Set.of("node1", "node2"), Set.copyOf(hostnames(zkClient.getChildNodes("host1"))));
+        assertEquals(List.of(), zkClient.getChildNodes("node1"));
+        assertFalse(zkClient.getNode("node2", Node.State.provisioned).isPresent());
+
+        Node node1 = zkClient.getNode("node1").get();
+        Node host1 = zkClient.getNode("host1").get();
+        zkClient.writeTo(Node.State.parked, host1, Agent.system, Optional.empty());
+        assertEquals("Single nodes are read without rebuilding the cache",
+                     Node.State.parked, zkClient.getNode("host1").get().state());
+        assertNotSame(node1, zkClient.getNode("node1").get());
+
+        assertEquals(List.of("host1"), hostnames(zkClient.getNodes(NodeType.host, Node.State.parked)));
+        assertSame("Unchanged nodes are reused", node1, zkClient.getNode("node1").get());
+        assertNotSame(host1, zkClient.getNode("host1").get());
+        assertEquals(Node.State.parked, zkClient.getNode("host1").get().state());
+    }
+
+    private Node node(String hostname, Optional<String> parentHostname, NodeType type) {
+        return Node.create(hostname, Set.of(), Set.of(), hostname, parentHostname, Optional.empty(),
+                           flavors.getFlavorOrThrow("default"), type);
+    }
+
+    private static List<String> hostnames(List<Node> nodes) {
+        return nodes.stream().map(Node::hostname).collect(Collectors.toList());
+    }
+
+}
@@ -6,14 +6,23 @@ import com.yahoo.document.predicate.Predicate;
 import com.yahoo.search.predicate.index.*;
 import com.yahoo.search.predicate.index.conjunction.ConjunctionHit;
 import com.yahoo.search.predicate.index.conjunction.ConjunctionIndex;
+import com.yahoo.search.predicate.serialization.MappedIndexReader;
+import com.yahoo.search.predicate.serialization.MappedIndexWriter;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
@@ -28,9 +37,13 @@ import java.util.stream.Stream;
  * To perform a search, create a {@link Searcher} and call its {@link Searcher#search(PredicateQuery)}
  * method, which returns a stream of {@link Hit} objects,
  * each of which contains a document id and a 64-bit bitmap specifying which subqueries the hit is for.
+ * The stream may be made parallel to evaluate a single query on multiple threads.
  * </p><p>
  * Note that the {@link PredicateIndex} is thread-safe, but a {@link Searcher} is not.
  * Each thread <strong>must</strong> use its own searcher.
+ * </p><p>
+ * An index written with {@link #writeToMappedFile(Path)} can be loaded with {@link #fromMappedFile(Path)},
+ * which memory-maps the file and searches it in place instead of deserializing it to the heap.
  * </p>
  * @author Magnar Nedland
  * @author bjorncs
@@ -39,18 +52,19 @@ import java.util.stream.Stream;
 public class PredicateIndex {
 
     private static final int SERIALIZATION_FORMAT_VERSION = 3;
+    private static final int MAPPED_FORMAT_VERSION = 4;
 
     private final PredicateRangeTermExpander expander;
-    private final int[] internalToExternalIdMapping;
-    private final byte[] minFeatureIndex;
-    private final short[] intervalEnds;
+    private final IntBuffer internalToExternalIdMapping;
+    private final ByteBuffer minFeatureIndex;
+    private final ShortBuffer intervalEnds;
     private final int highestIntervalEnd;
     private final SimpleIndex intervalIndex;
     private final SimpleIndex boundsIndex;
     private final SimpleIndex conjunctionIntervalIndex;
     private final PredicateIntervalStore intervalStore;
     private final ConjunctionIndex conjunctionIndex;
-    private final int[] zeroConstraintDocuments;
+    private final IntBuffer zeroConstraintDocuments;
     private final Config config;
     private final AtomicReference<CachedPostingListCounter> postingListCounter;
 
@@ -60,16 +74,16 @@ public class PredicateIndex {
      */
     PredicateIndex(
             Config config,
-            int[] internalToExternalIdMapping,
-            byte[] minFeatureIndex,
-            short[] intervalEnds,
+            IntBuffer internalToExternalIdMapping,
+            ByteBuffer minFeatureIndex,
+            ShortBuffer intervalEnds,
             int highestIntervalEnd,
             SimpleIndex intervalIndex,
             SimpleIndex boundsIndex,
             SimpleIndex conjunctionIntervalIndex,
             PredicateIntervalStore intervalStore,
             ConjunctionIndex conjunctionIndex,
-            int[] zeroConstraintDocuments) {
+            IntBuffer zeroConstraintDocuments) {
         this.internalToExternalIdMapping = internalToExternalIdMapping;
         this.minFeatureIndex = minFeatureIndex;
         this.intervalEnds = intervalEnds;
@@ -82,7 +96,7 @@ public class PredicateIndex {
         this.zeroConstraintDocuments = zeroConstraintDocuments;
         this.expander = new PredicateRangeTermExpander(config.arity, config.lowerBound, config.upperBound);
         this.config = config;
-        this.postingListCounter = new AtomicReference<>(new CachedPostingListCounter(internalToExternalIdMapping.length));
+        this.postingListCounter = new AtomicReference<>(new CachedPostingListCounter(internalToExternalIdMapping.limit()));
     }
 
     public void rebuildPostingListCache() {
@@ -99,11 +113,11 @@ public class PredicateIndex {
     public void writeToOutputStream(DataOutputStream out) throws IOException {
         out.writeInt(SERIALIZATION_FORMAT_VERSION);
         config.writeToOutputStream(out);
-        SerializationHelper.writeIntArray(internalToExternalIdMapping, out);
-        SerializationHelper.writeByteArray(minFeatureIndex, out);
-        SerializationHelper.writeShortArray(intervalEnds, out);
+        SerializationHelper.writeIntBuffer(internalToExternalIdMapping, out);
+        SerializationHelper.writeByteBuffer(minFeatureIndex, out);
+        SerializationHelper.writeShortBuffer(intervalEnds, out);
         out.writeInt(highestIntervalEnd);
-        SerializationHelper.writeIntArray(zeroConstraintDocuments, out);
+        SerializationHelper.writeIntBuffer(zeroConstraintDocuments, out);
         intervalIndex.writeToOutputStream(out);
         boundsIndex.writeToOutputStream(out);
         conjunctionIntervalIndex.writeToOutputStream(out);
@@ -130,26 +144,91 @@ public class PredicateIndex {
         ConjunctionIndex conjunctionIndex = ConjunctionIndex.fromInputStream(in);
         return new PredicateIndex(
                 config,
-                internalToExternalIdMapping,
-                minFeatureIndex,
-                intervalEnds,
+                IntBuffer.wrap(internalToExternalIdMapping),
+                ByteBuffer.wrap(minFeatureIndex),
+                ShortBuffer.wrap(intervalEnds),
                 highestIntervalEnd,
                 intervalIndex,
                 boundsIndex,
                 conjunctionIntervalIndex,
                 intervalStore,
                 conjunctionIndex,
-                zeroConstraintDocuments
+                IntBuffer.wrap(zeroConstraintDocuments)
         );
     }
 
+    /**
+     * Writes this index to a file in a format which can be memory-mapped and searched in place,
+     * see {@link #fromMappedFile(Path)}.
+     */
+    public void writeToMappedFile(Path file) throws IOException {
+        ByteArrayOutputStream configBytes = new ByteArrayOutputStream();
+        config.writeToOutputStream(new DataOutputStream(configBytes));
+        try (MappedIndexWriter out = new MappedIndexWriter(file)) {
+            out.writeInt(MAPPED_FORMAT_VERSION);
+            out.writeBytes(ByteBuffer.wrap(configBytes.toByteArray()));
+            out.writeInts(internalToExternalIdMapping);
+            out.writeBytes(minFeatureIndex);
+            out.writeShorts(intervalEnds);
+            out.writeInt(highestIntervalEnd);
+            out.writeInts(zeroConstraintDocuments);
+            intervalIndex.writeToMappedIndex(out);
+            boundsIndex.writeToMappedIndex(out);
+            conjunctionIntervalIndex.writeToMappedIndex(out);
+            intervalStore.writeToMappedIndex(out);
+            conjunctionIndex.writeToMappedIndex(out);
+        }
+    }
+
+    /**
+     * Loads an index written by {@link #writeToMappedFile(Path)}. The file is memory-mapped and searched in place,
+     * so loading does not deserialize the index, and its size does not count towards the heap.
+     * The file must not be modified while the index is in use.
+     */
+    public static PredicateIndex fromMappedFile(Path file) throws IOException {
+        try (MappedIndexReader in = new MappedIndexReader(file)) {
+            int version = in.readInt();
+            if (version != MAPPED_FORMAT_VERSION) {
+                throw new IllegalArgumentException(String.format(
+                        "Invalid mapped format version. Expected %d, was %d.", MAPPED_FORMAT_VERSION, version));
+            }
+            ByteBuffer configBuffer = in.readBytes();
+            byte[] configBytes = new byte[configBuffer.remaining()];
+            configBuffer.get(configBytes);
+            Config config = Config.fromInputStream(new DataInputStream(new ByteArrayInputStream(configBytes)));
+            IntBuffer internalToExternalIdMapping = in.readInts();
+            ByteBuffer minFeatureIndex = in.readBytes();
+            ShortBuffer intervalEnds = in.readShorts();
+            int highestIntervalEnd = in.readInt();
+            IntBuffer zeroConstraintDocuments = in.readInts();
+            SimpleIndex intervalIndex = SimpleIndex.fromMappedIndex(in);
+            SimpleIndex boundsIndex = SimpleIndex.fromMappedIndex(in);
+            SimpleIndex conjunctionIntervalIndex = SimpleIndex.fromMappedIndex(in);
+            PredicateIntervalStore intervalStore = PredicateIntervalStore.fromMappedIndex(in);
+            ConjunctionIndex conjunctionIndex = ConjunctionIndex.fromMappedIndex(in);
+            return new PredicateIndex(
+                    config,
+                    internalToExternalIdMapping,
+                    minFeatureIndex,
+                    intervalEnds,
+                    highestIntervalEnd,
+                    intervalIndex,
+                    boundsIndex,
+                    conjunctionIntervalIndex,
+                    intervalStore,
+                    conjunctionIndex,
+                    zeroConstraintDocuments
+            );
+        }
+    }
+
     @Beta
     public class Searcher {
         private final byte[] nPostingListsForDocument;
         private final ConjunctionIndex.Searcher conjunctionIndexSearcher;
 
         private Searcher() {
-            this.nPostingListsForDocument = new byte[internalToExternalIdMapping.length];
+            this.nPostingListsForDocument = new byte[internalToExternalIdMapping.limit()];
             this.conjunctionIndexSearcher = conjunctionIndex.searcher();
         }
 
@@ -160,6 +239,22 @@ public class PredicateIndex {
          * @return A stream of hits.
          */
         public Stream<Hit> search(PredicateQuery query) {
+            List<ConjunctionHit> conjunctionHits = conjunctionIndexSearcher.search(query);
+            List<PostingList> postingLists = createPostingLists(query, conjunctionHits);
+
+            CachedPostingListCounter counter = postingListCounter.get();
+            counter.registerUsage(postingLists);
+            counter.countPostingListsPerDocument(postingLists, nPostingListsForDocument);
+            // Parallel evaluation splits the search into searches which each need their own posting lists
+            Supplier<List<PostingList>> postingListFactory = () -> createPostingLists(query, conjunctionHits);
+            return new PredicateSearch(
+                    postingLists, postingListFactory,
+                    nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream()
+                    // Map to external id. Note that internal id for first document is 1.
+                    .map(hit -> new Hit(internalToExternalIdMapping.get(hit.getDocId()), hit.getSubquery()));
+        }
+
+        private List<PostingList> createPostingLists(PredicateQuery query, List<ConjunctionHit> conjunctionHits) {
             ArrayList<PostingList> postingLists = new ArrayList<>();
             for (PredicateQuery.Feature feature : query.getFeatures()) {
                 addIntervalPostingList(feature.featureHash, feature.subqueryBitmap, postingLists);
@@ -172,16 +267,9 @@ public class PredicateIndex {
                         (featureHash, value) -> addBoundsPostingList(featureHash, value, feature.subqueryBitmap, postingLists));
             }
             addCompressedZStarPostingList(postingLists);
-            addConjunctionPostingLists(query, postingLists);
+            addConjunctionPostingLists(conjunctionHits, postingLists);
             addZeroConstraintPostingList(postingLists);
-
-            CachedPostingListCounter counter = postingListCounter.get();
-            counter.registerUsage(postingLists);
-            counter.countPostingListsPerDocument(postingLists, nPostingListsForDocument);
-            return new PredicateSearch(
-                    postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream()
-                    // Map to external id. Note that internal id for first document is 1.
-                    .map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()));
+            return postingLists;
         }
 
         private void addCompressedZStarPostingList(List<PostingList> postingLists) {
@@ -206,8 +294,7 @@ public class PredicateIndex {
             }
         }
 
-        private void addConjunctionPostingLists(PredicateQuery query, List<PostingList> postingLists) {
-            List<ConjunctionHit> hits = conjunctionIndexSearcher.search(query);
+        private void addConjunctionPostingLists(List<ConjunctionHit> hits, List<PostingList> postingLists) {
             for (ConjunctionHit hit : hits) {
                 SimpleIndex.Entry e = conjunctionIntervalIndex.getPostingList(hit.conjunctionId);
                 if (e != null) {
@@ -216,8 +303,8 @@ public class PredicateIndex {
             }
         }
 
-        private void addZeroConstraintPostingList(ArrayList<PostingList> postingLists) {
-            if (zeroConstraintDocuments.length > 0) {
+        private void addZeroConstraintPostingList(List<PostingList> postingLists) {
+            if (zeroConstraintDocuments.limit() > 0) {
                 postingLists.add(new ZeroConstraintPostingList(zeroConstraintDocuments));
             }
         }
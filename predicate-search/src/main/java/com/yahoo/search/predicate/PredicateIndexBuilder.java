@@ -20,6 +20,9 @@ import com.yahoo.search.predicate.index.SimpleIndex;
 import com.yahoo.search.predicate.index.conjunction.ConjunctionIndexBuilder;
 import com.yahoo.search.predicate.index.conjunction.IndexableFeatureConjunction;
 
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -195,16 +198,16 @@ public class PredicateIndexBuilder {
     public PredicateIndex build() {
         return new PredicateIndex(
                 config,
-                Ints.toArray(seenIds),
-                Bytes.toArray(minFeatureIndexBuilder),
-                Shorts.toArray(intervalEndsBuilder),
+                IntBuffer.wrap(Ints.toArray(seenIds)),
+                ByteBuffer.wrap(Bytes.toArray(minFeatureIndexBuilder)),
+                ShortBuffer.wrap(Shorts.toArray(intervalEndsBuilder)),
                 highestIntervalEnd,
                 intervalIndexBuilder.build(),
                 boundsIndexBuilder.build(),
                 conjunctionIntervalIndexBuilder.build(),
                 intervalStoreBuilder.build(),
                 conjunctionIndexBuilder.build(),
-                Ints.toArray(zeroConstraintDocuments)
+                IntBuffer.wrap(Ints.toArray(zeroConstraintDocuments))
         );
     }
 
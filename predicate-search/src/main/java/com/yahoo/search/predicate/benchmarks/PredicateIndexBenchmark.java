@@ -24,6 +24,7 @@ import java.io.DataOutputStream;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -37,6 +38,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -68,7 +70,7 @@ public class PredicateIndexBenchmark {
                 .build();
         PredicateIndex index = getIndex(args, config);
         if (args.indexOutputFile != null) {
-            writeIndexToFile(index, args.indexOutputFile);
+            writeIndexToFile(index, args.indexOutputFile, args.mappedIndex);
         }
         if (args.queryFile != null) {
             runQueries(args, index);
@@ -105,6 +107,11 @@ public class PredicateIndexBenchmark {
             PredicateIndex index = builder.build();
             output.put("Time prepare index", System.currentTimeMillis() - start);
             return index;
+        } else if (args.mappedIndex) {
+            long start = System.currentTimeMillis();
+            PredicateIndex index = PredicateIndex.fromMappedFile(Paths.get(args.indexFile));
+            output.put("Time map index", System.currentTimeMillis() - start);
+            return index;
         } else {
             try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args.indexFile)))) {
                 long start = System.currentTimeMillis();
@@ -115,7 +122,13 @@ public class PredicateIndexBenchmark {
         }
     }
 
-    private static void writeIndexToFile(PredicateIndex index, String indexOutputFile) throws IOException {
+    private static void writeIndexToFile(PredicateIndex index, String indexOutputFile, boolean mapped) throws IOException {
+        if (mapped) {
+            long start = System.currentTimeMillis();
+            index.writeToMappedFile(Paths.get(indexOutputFile));
+            output.put("Time write index", System.currentTimeMillis() - start);
+            return;
+        }
         try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexOutputFile)))) {
             long start = System.currentTimeMillis();
             index.writeToOutputStream(out);
@@ -136,16 +149,36 @@ public class PredicateIndexBenchmark {
         output.put("Index file", args.indexFile);
         output.put("Query format", args.format);
         output.put("Warmup", args.warmup);
+        output.put("Query parallelism", args.queryParallelism);
+        output.put("Parallel scaling", args.parallelScaling);
     }
 
     private static void runQueries(BenchmarkArguments args, PredicateIndex index) throws IOException {
         List<PredicateQuery> queries = parseQueries(args.queryFile, args.maxQueries, args.format);
-        long warmup1 = warmup(queries, index, args.nThreads, args.warmup / 2);
+        long warmup1 = warmup(queries, index, args.nThreads, args.queryParallelism, args.warmup / 2);
         output.put("Time warmup before building posting cache", warmup1);
         rebuildPostingListCache(index);
-        long warmup2 = warmup(queries, index, args.nThreads, args.warmup / 2);
+        long warmup2 = warmup(queries, index, args.nThreads, args.queryParallelism, args.warmup / 2);
         output.put("Time warmup after building posting cache", warmup2);
-        searchIndex(queries, index, args.nThreads, args.runtime);
+        searchIndex(queries, index, args.nThreads, args.queryParallelism, args.runtime, output);
+        if (args.parallelScaling) {
+            measureParallelScaling(queries, index, args.queryParallelism, args.runtime);
+        }
+    }
+
+    /**
+     * Runs the queries in a single thread, with each query evaluated by 1, 2, 4, ... up to
+     * the given max number of threads, to show how latency scales with query parallelism.
+     */
+    private static void measureParallelScaling(List<PredicateQuery> queries, PredicateIndex index,
+                                               int maxParallelism, int runtime) {
+        Map<String, Object> scaling = new TreeMap<>();
+        for (int parallelism = 1; parallelism <= maxParallelism; parallelism *= 2) {
+            Map<String, Object> result = new TreeMap<>();
+            searchIndex(queries, index, 1, parallelism, runtime, result);
+            scaling.put(String.format("Parallelism %03d", parallelism), result);
+        }
+        output.put("Parallel scaling results", scaling);
     }
 
     private static void rebuildPostingListCache(PredicateIndex index) {
@@ -164,33 +197,50 @@ public class PredicateIndexBenchmark {
         return queries;
     }
 
-    private static long warmup(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int warmup) {
+    private static long warmup(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int queryParallelism,
+                               int warmup) {
         ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        ForkJoinPool queryPool = createQueryPool(queryParallelism);
         Random random = new Random(42);
         for (int i = 0; i < nThreads; i++) {
             List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
             Collections.shuffle(shuffledQueries, random);
-            executor.submit(new QueryRunner(shuffledQueries, index.searcher()));
+            executor.submit(new QueryRunner(shuffledQueries, index.searcher(), queryPool));
         }
         long start = System.currentTimeMillis();
         waitAndShutdown(warmup, executor);
+        shutdown(queryPool);
         return System.currentTimeMillis() - start;
     }
 
-    private static void searchIndex(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int runtime) {
+    private static void searchIndex(List<PredicateQuery> queries, PredicateIndex index, int nThreads,
+                                    int queryParallelism, int runtime, Map<String, Object> result) {
         ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        ForkJoinPool queryPool = createQueryPool(queryParallelism);
         Random random = new Random(42);
         List<QueryRunner> runners = new ArrayList<>();
         for (int i = 0; i < nThreads; i++) {
             List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
             Collections.shuffle(shuffledQueries, random);
-            runners.add(new QueryRunner(shuffledQueries, index.searcher()));
+            runners.add(new QueryRunner(shuffledQueries, index.searcher(), queryPool));
         }
         long start = System.currentTimeMillis();
         List<Future<ResultMetrics>> futureResults = runners.stream().map(executor::submit).collect(toList());
         waitAndShutdown(runtime, executor);
         long searchTime = System.currentTimeMillis() - start;
-        getResult(futureResults).writeMetrics(output, searchTime);
+        shutdown(queryPool);
+        getResult(futureResults).writeMetrics(result, searchTime);
+    }
+
+    /** Returns the pool evaluating each query in parallel, or null to evaluate queries in the calling thread */
+    private static ForkJoinPool createQueryPool(int queryParallelism) {
+        return queryParallelism > 1 ? new ForkJoinPool(queryParallelism) : null;
+    }
+
+    private static void shutdown(ForkJoinPool queryPool) {
+        if (queryPool != null) {
+            queryPool.shutdownNow();
+        }
     }
 
     private static void waitAndShutdown(int warmup, ExecutorService executor) {
@@ -218,10 +268,12 @@ public class PredicateIndexBenchmark {
     private static class QueryRunner implements Callable<ResultMetrics> {
         private final List<PredicateQuery> queries;
         private final PredicateIndex.Searcher searcher;
+        private final ForkJoinPool queryPool;
 
-        public QueryRunner(List<PredicateQuery> queries, PredicateIndex.Searcher seacher) {
+        public QueryRunner(List<PredicateQuery> queries, PredicateIndex.Searcher seacher, ForkJoinPool queryPool) {
             this.queries = queries;
             this.searcher = seacher;
+            this.queryPool = queryPool;
         }
 
         @Override
@@ -230,12 +282,24 @@ public class PredicateIndexBenchmark {
             ResultMetrics result = new ResultMetrics();
             while (!Thread.interrupted()) {
                 long start = System.nanoTime();
-                long hits = searcher.search(iterator.next()).count();
+                long hits;
+                try {
+                    hits = search(iterator.next());
+                } catch (InterruptedException e) {
+                    break; // Interrupted while waiting for a parallel query: The run is over
+                }
                 double latencyMilliseconds = (System.nanoTime() - start) / 1_000_000d;
                 result.registerResult(hits, latencyMilliseconds);
             }
             return result;
         }
+
+        private long search(PredicateQuery query) throws Exception {
+            if (queryPool == null) {
+                return searcher.search(query).count();
+            }
+            return queryPool.submit(() -> searcher.search(query).parallel().count()).get();
+        }
     }
 
     private static void writeOutputToStandardOut() {
@@ -275,6 +339,15 @@ public class PredicateIndexBenchmark {
         @Option(name = {"-w", "--warmup"}, description = "Warmup in seconds.")
         public int warmup = 30;
 
+        @Option(name = {"-qp", "--query-parallelism"},
+                description = "Number of threads evaluating each query, using a parallel stream of hits")
+        public int queryParallelism = 1;
+
+        @Option(name = {"-ps", "--parallel-scaling"},
+                description = "Measure query latency for each power of two query parallelism up to --query-parallelism, " +
+                              "using a single search thread")
+        public boolean parallelScaling = false;
+
         @Option(name = {"-qf", "--query-format"},
         description = "Query format. Valid formats are either 'VESPA' (obsolete query property format) or 'JSON'.")
         public Format format = Format.VESPA;
@@ -288,6 +361,10 @@ public class PredicateIndexBenchmark {
         @Option(name = {"-wi", "--write-index"}, description = "Serialize index to the given file")
         public String indexOutputFile;
 
+        @Option(name = {"-mi", "--mapped-index"},
+                description = "Use the memory-mapped index format for --index-file and --write-index")
+        public boolean mappedIndex = false;
+
         @Option(name = {"-quf", "--query-file"}, description = "File path to a query file")
         public String queryFile;
 
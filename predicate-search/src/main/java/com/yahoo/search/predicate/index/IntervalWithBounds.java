@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.predicate.index;
 
+import java.nio.IntBuffer;
 import java.util.stream.Stream;
 
 /**
@@ -11,29 +12,38 @@ import java.util.stream.Stream;
  */
 public class IntervalWithBounds {
 
-    private int[] intervalBoundsArray;
-    private int arrayIndex;
+    private IntBuffer intervalBounds;
+    private int index;
+    private int end;
 
     public IntervalWithBounds() {
-        setIntervalArray(null, 0);
+        setIntervals(null, 0, 0);
     }
     public IntervalWithBounds(int interval, int bounds) {
         setIntervalArray(new int[] {interval, bounds}, 0);
     }
 
     public void setIntervalArray(int[] intervalBoundsArray, int arrayIndex) {
-        this.intervalBoundsArray = intervalBoundsArray;
-        this.arrayIndex = arrayIndex;
+        setIntervals(IntBuffer.wrap(intervalBoundsArray), arrayIndex, intervalBoundsArray.length);
     }
-    public boolean hasValue() { return arrayIndex < intervalBoundsArray.length - 1; }
-    public void nextValue() { arrayIndex += 2; }
+
+    /**
+     * Sets the interval and bounds pairs to iterate to those in [begin, end) of the given buffer.
+     */
+    public void setIntervals(IntBuffer intervalBounds, int begin, int end) {
+        this.intervalBounds = intervalBounds;
+        this.index = begin;
+        this.end = end;
+    }
+    public boolean hasValue() { return index < end - 1; }
+    public void nextValue() { index += 2; }
 
     public Stream<Integer> stream() { return Stream.of(getInterval(), getBounds()); }
     /**
      * 16 MSB represents interval begin, 16 LSB represents interval end.
      */
     public int getInterval() {
-        return intervalBoundsArray[arrayIndex];
+        return intervalBounds.get(index);
     }
     /*
      * 2 MSB determines mode for remaining 30 bits.
@@ -42,7 +52,7 @@ public class IntervalWithBounds {
      *  00 => 16 LSB > X >= 16 MSB
      */
     public int getBounds() {
-        return intervalBoundsArray[arrayIndex + 1];
+        return intervalBounds.get(index + 1);
     }
 
     /**
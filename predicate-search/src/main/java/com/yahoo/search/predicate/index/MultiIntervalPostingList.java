@@ -3,6 +3,8 @@ package com.yahoo.search.predicate.index;
 
 import com.yahoo.search.predicate.utils.PostingListSearch;
 
+import java.nio.IntBuffer;
+
 /**
  * Shared implementation for posting lists that may have multiple intervals.
  *
@@ -11,18 +13,22 @@ import com.yahoo.search.predicate.utils.PostingListSearch;
  */
 public abstract class MultiIntervalPostingList implements PostingList {
 
-    private final int[] docIds;
-    private final int[] dataRefs;
+    private final IntBuffer docIds;
+    private final IntBuffer dataRefs;
     private final long subquery;
     private final int length;
     private int currentIndex;
     private int currentDocId;
 
     public MultiIntervalPostingList(int[] docIds, int[] dataRefs, long subquery) {
+        this(IntBuffer.wrap(docIds), IntBuffer.wrap(dataRefs), subquery);
+    }
+
+    public MultiIntervalPostingList(IntBuffer docIds, IntBuffer dataRefs, long subquery) {
         this.docIds = docIds;
         this.dataRefs = dataRefs;
         this.subquery = subquery;
-        this.length = docIds.length;
+        this.length = docIds.limit();
         this.currentIndex = 0;
         this.currentDocId = -1;
     }
@@ -34,7 +40,7 @@ public abstract class MultiIntervalPostingList implements PostingList {
         if (index == length) {
             return false;
         }
-        this.currentDocId = docIds[index];
+        this.currentDocId = docIds.get(index);
         this.currentIndex = index;
         assert currentDocId > docId;
         return true;
@@ -42,7 +48,7 @@ public abstract class MultiIntervalPostingList implements PostingList {
 
     @Override
     public final boolean prepareIntervals() {
-        return prepareIntervals(dataRefs[currentIndex]);
+        return prepareIntervals(dataRefs.get(currentIndex));
     }
 
     protected abstract boolean prepareIntervals(int dataRef);
@@ -58,7 +64,7 @@ public abstract class MultiIntervalPostingList implements PostingList {
     }
 
     @Override
-    public final int[] getDocIds() {
+    public final IntBuffer getDocIds() {
         return docIds;
     }
 
@@ -1,6 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.predicate.index;
 
+import java.nio.IntBuffer;
+
 /**
  * Interface for posting lists to be used by the algorithm implemented in PredicateSearch.
  *
@@ -50,6 +52,6 @@ public interface PostingList {
     /**
      * @return The document ids
      */
-    int[] getDocIds();
+    IntBuffer getDocIds();
 
 }
@@ -2,11 +2,14 @@
 package com.yahoo.search.predicate.index;
 
 import com.google.common.primitives.Ints;
+import com.yahoo.search.predicate.serialization.MappedIndexReader;
+import com.yahoo.search.predicate.serialization.MappedIndexWriter;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -14,25 +17,78 @@ import java.util.List;
 import java.util.Map;
 
 /**
+ * Stores the interval lists of all documents in two flat int buffers, such that the store
+ * can be searched in place when memory-mapped.
+ *
  * @author bjorncs
  */
 public class PredicateIntervalStore {
 
-    private final int[][] intervalsList;
+    // The interval list for a reference is stored at [offsets[ref], offsets[ref + 1]) in intervals
+    private final IntBuffer offsets;
+    private final IntBuffer intervals;
 
     public PredicateIntervalStore(int[][] intervalsList) {
-        this.intervalsList = intervalsList;
+        int[] offsets = new int[intervalsList.length + 1];
+        for (int i = 0; i < intervalsList.length; i++) {
+            offsets[i + 1] = offsets[i] + intervalsList[i].length;
+        }
+        int[] intervals = new int[offsets[intervalsList.length]];
+        for (int i = 0; i < intervalsList.length; i++) {
+            System.arraycopy(intervalsList[i], 0, intervals, offsets[i], intervalsList[i].length);
+        }
+        this.offsets = IntBuffer.wrap(offsets);
+        this.intervals = IntBuffer.wrap(intervals);
     }
 
+    public PredicateIntervalStore(IntBuffer offsets, IntBuffer intervals) {
+        this.offsets = offsets;
+        this.intervals = intervals;
+    }
+
+    /**
+     * @return a copy of the intervals for the given reference
+     */
     public int[] get(int intervalRef) {
-        assert intervalRef < intervalsList.length;
-        return intervalsList[intervalRef];
+        int begin = getBegin(intervalRef);
+        int[] result = new int[getEnd(intervalRef) - begin];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = intervals.get(begin + i);
+        }
+        return result;
+    }
+
+    /**
+     * @return the position of the first interval for the given reference
+     */
+    public int getBegin(int intervalRef) {
+        assert intervalRef < offsets.limit() - 1;
+        return offsets.get(intervalRef);
+    }
+
+    /**
+     * @return the position after the last interval for the given reference
+     */
+    public int getEnd(int intervalRef) {
+        return offsets.get(intervalRef + 1);
+    }
+
+    /**
+     * @return the interval at the given position
+     */
+    public int getInterval(int position) {
+        return intervals.get(position);
+    }
+
+    IntBuffer getIntervals() {
+        return intervals;
     }
 
     public void writeToOutputStream(DataOutputStream out) throws IOException {
-        out.writeInt(intervalsList.length);
-        for (int[] intervals : intervalsList) {
-            SerializationHelper.writeIntArray(intervals, out);
+        int length = offsets.limit() - 1;
+        out.writeInt(length);
+        for (int ref = 0; ref < length; ref++) {
+            SerializationHelper.writeIntArray(get(ref), out);
         }
     }
 
@@ -45,6 +101,17 @@ public class PredicateIntervalStore {
         return new PredicateIntervalStore(intervalsList);
     }
 
+    public void writeToMappedIndex(MappedIndexWriter out) throws IOException {
+        out.writeInts(offsets);
+        out.writeInts(intervals);
+    }
+
+    public static PredicateIntervalStore fromMappedIndex(MappedIndexReader in) throws IOException {
+        IntBuffer offsets = in.readInts();
+        IntBuffer intervals = in.readInts();
+        return new PredicateIntervalStore(offsets, intervals);
+    }
+
     public static class Builder {
         private final List<int[]> intervalsListBuilder = new ArrayList<>();
         private final Map<Entry, Integer> intervalsListIndexes = new HashMap<>();
@@ -5,12 +5,15 @@ import com.yahoo.search.predicate.Hit;
 import com.yahoo.search.predicate.SubqueryBitmap;
 import com.yahoo.search.predicate.utils.PrimitiveArraySorter;
 
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Spliterator;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -22,15 +25,20 @@ import java.util.stream.StreamSupport;
  */
 public class PredicateSearch {
 
+    /** The smallest range of document ids which will be split for parallel search */
+    private static final int MIN_SPLIT_SIZE = 1 << 12;
+
+    private final Supplier<List<PostingList>> postingListFactory;
+    private final int highestIntervalEnd;
     private final PostingList[] postingLists;
     private final byte[] nPostingListsForDocument;
-    private final byte[] minFeatureIndex;
+    private final ByteBuffer minFeatureIndex;
     private final int[] docIds;
     private final int[] intervals;
     private final long[] subqueries;
     private final long[] subqueryMarkers;
     private final boolean[] visited;
-    private final short[] intervalEnds;
+    private final ShortBuffer intervalEnds;
 
     private short[] sortedIndexes;
     private short[] sortedIndexesMergeBuffer;
@@ -48,7 +56,46 @@ public class PredicateSearch {
     public PredicateSearch(
             List<PostingList> postingLists, byte[] nPostingListsForDocument,
             byte[] minFeatureIndex, short[] intervalEnds, int  highestIntervalEnd) {
+        this(postingLists, null, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd);
+    }
+
+    /**
+     * Creates a search which can be split into searches over ranges of document ids,
+     * such that the stream of hits can be evaluated in parallel.
+     *
+     * @param postingLists Posting lists for the boolean variables that evaluate to true
+     * @param postingListFactory Creates new posting lists, equal to postingLists, for each split, or null
+     *                           if this search should not be split.
+     * @param nPostingListsForDocument The number of posting list for each docId
+     * @param minFeatureIndex Index from docId to min-feature value.
+     * @param intervalEnds The interval end for each document.
+     * @param highestIntervalEnd The highest end value.
+     */
+    public PredicateSearch(
+            List<PostingList> postingLists, Supplier<List<PostingList>> postingListFactory,
+            byte[] nPostingListsForDocument, byte[] minFeatureIndex, short[] intervalEnds, int highestIntervalEnd) {
+        this(postingLists, postingListFactory, nPostingListsForDocument,
+             ByteBuffer.wrap(minFeatureIndex), ShortBuffer.wrap(intervalEnds), highestIntervalEnd);
+    }
+
+    /**
+     * Creates a search over an index which may be stored outside the heap, e.g. in a memory-mapped file.
+     *
+     * @param postingLists Posting lists for the boolean variables that evaluate to true
+     * @param postingListFactory Creates new posting lists, equal to postingLists, for each split, or null
+     *                           if this search should not be split.
+     * @param nPostingListsForDocument The number of posting list for each docId
+     * @param minFeatureIndex Index from docId to min-feature value.
+     * @param intervalEnds The interval end for each document.
+     * @param highestIntervalEnd The highest end value.
+     */
+    public PredicateSearch(
+            List<PostingList> postingLists, Supplier<List<PostingList>> postingListFactory,
+            byte[] nPostingListsForDocument, ByteBuffer minFeatureIndex, ShortBuffer intervalEnds,
+            int highestIntervalEnd) {
         int size = postingLists.size();
+        this.postingListFactory = postingListFactory;
+        this.highestIntervalEnd = highestIntervalEnd;
         this.nPostingListsForDocument = nPostingListsForDocument;
         this.minFeatureIndex = minFeatureIndex;
         this.nPostingLists = size;
@@ -76,35 +123,70 @@ public class PredicateSearch {
 
     /**
      * @return A stream of Hit-objects from a lazy evaluation of the boolean search algorithm.
+     * The stream can be evaluated in parallel if this search was created with a posting list factory.
      */
     public Stream<Hit> stream() {
         if (nPostingLists == 0) {
             return Stream.empty();
         }
-        return StreamSupport.stream(new PredicateSpliterator(), false);
+        return StreamSupport.stream(new PredicateSpliterator(0, nPostingListsForDocument.length), false);
     }
 
+    /** Iterates over the hits in a range of document ids */
     private class PredicateSpliterator implements java.util.Spliterator<Hit> {
-        private int lastHit = -1;
+        private int lastHit;
+        private final int end;
+
+        /**
+         * @param begin The first document id of the range, inclusive.
+         * @param end The last document id of the range, exclusive.
+         */
+        PredicateSpliterator(int begin, int end) {
+            this.lastHit = begin - 1;
+            this.end = end;
+        }
 
         @Override
         public boolean tryAdvance(Consumer<? super Hit> action) {
-            Optional<Hit> optionalHit = seek(lastHit + 1);
-            optionalHit.ifPresent(hit -> {
-                lastHit = hit.getDocId();
-                action.accept(hit);
-            });
-            return optionalHit.isPresent();
+            if (lastHit + 1 >= end) {
+                return false;
+            }
+            Optional<Hit> optionalHit = seek(lastHit + 1, end);
+            if (!optionalHit.isPresent()) {
+                lastHit = end - 1;
+                return false;
+            }
+            Hit hit = optionalHit.get();
+            lastHit = hit.getDocId();
+            action.accept(hit);
+            return true;
         }
 
+        /**
+         * Splits off the first half of the remaining document id range to a new search,
+         * which has its own posting lists, so that the two can be evaluated concurrently.
+         */
         @Override
         public Spliterator<Hit> trySplit() {
-            return null;
+            int begin = lastHit + 1;
+            if (postingListFactory == null || end - begin < MIN_SPLIT_SIZE) {
+                return null;
+            }
+            int middle = begin + (end - begin) / 2;
+            PredicateSearch prefixSearch = new PredicateSearch(
+                    postingListFactory.get(), postingListFactory,
+                    nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd);
+            if (prefixSearch.nPostingLists == 0) {
+                return null;
+            }
+            lastHit = middle - 1;
+            return prefixSearch.new PredicateSpliterator(begin, middle);
         }
 
+        /** Returns the number of documents in the remaining range, which is an upper bound on the number of hits */
         @Override
         public long estimateSize() {
-            return Long.MAX_VALUE;
+            return Math.max(0, end - (lastHit + 1));
         }
 
         @Override
@@ -118,13 +200,17 @@ public class PredicateSearch {
         }
     }
 
-    private Optional<Hit> seek(int docId) {
-        boolean skippedToEnd = skipMinFeature(docId);
+    // Returns the first hit in the range [docId, end), if any.
+    private Optional<Hit> seek(int docId, int end) {
+        boolean skippedToEnd = skipMinFeature(docId, end);
         while (nPostingLists > 0 && !skippedToEnd) {
             int docId0 = docIds[sortedIndexes[0]];
-            int minFeature = minFeatureIndex[docId0];
+            if (docId0 >= end) {
+                break;
+            }
+            int minFeature = minFeatureIndex.get(docId0);
             int k = minFeature > 0 ? minFeature - 1 : 0;
-            int intervalEnd = Short.toUnsignedInt(intervalEnds[docId0]);
+            int intervalEnd = Short.toUnsignedInt(intervalEnds.get(docId0));
             if (k < nPostingLists) {
                 int docIdK = docIds[sortedIndexes[k]];
                 if (docId0 == docIdK) {
@@ -133,17 +219,16 @@ public class PredicateSearch {
                     }
                 }
             }
-            skippedToEnd = skipMinFeature(docId0 + 1);
+            skippedToEnd = skipMinFeature(docId0 + 1, end);
         }
         return Optional.empty();
     }
 
-    private boolean skipMinFeature(int docId) {
-        int nDocuments = nPostingListsForDocument.length;
-        while (docId < nDocuments && minFeatureIndex[docId] > nPostingListsForDocument[docId]) {
+    private boolean skipMinFeature(int docId, int end) {
+        while (docId < end && minFeatureIndex.get(docId) > nPostingListsForDocument[docId]) {
             ++docId;
         }
-        if (docId < nDocuments) {
+        if (docId < end) {
             advanceAllTo(docId);
             return false;
         }
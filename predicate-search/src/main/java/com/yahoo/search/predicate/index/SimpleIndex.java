@@ -2,31 +2,48 @@
 package com.yahoo.search.predicate.index;
 
 import com.gs.collections.api.map.primitive.LongObjectMap;
-import com.gs.collections.api.tuple.primitive.LongObjectPair;
 import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
+import com.yahoo.search.predicate.serialization.MappedIndexReader;
+import com.yahoo.search.predicate.serialization.MappedIndexWriter;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
+import com.yahoo.search.predicate.utils.PostingListSearch;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * An index mapping keys of type Long to lists of postings of generic data.
+ * The keys are kept sorted and the postings of all keys are kept in flat buffers,
+ * such that the index can be searched in place when memory-mapped.
  *
  * @author Magnar Nedland
  * @author bjorncs
  */
 public class SimpleIndex {
 
-    private final LongObjectMap<Entry> dictionary;
+    private final LongBuffer keys;
+    // The postings of the key at index i are at [offsets[i], offsets[i + 1]) in docIds and dataRefs
+    private final IntBuffer offsets;
+    private final IntBuffer docIds;
+    private final IntBuffer dataRefs;
+    // Entries are created on first lookup and reused, such that each posting list has a single identity
+    private final AtomicReferenceArray<Entry> entries;
 
-    public SimpleIndex(LongObjectMap<Entry> dictionary) {
-        this.dictionary = dictionary;
+    public SimpleIndex(LongBuffer keys, IntBuffer offsets, IntBuffer docIds, IntBuffer dataRefs) {
+        this.keys = keys;
+        this.offsets = offsets;
+        this.docIds = docIds;
+        this.dataRefs = dataRefs;
+        this.entries = new AtomicReferenceArray<>(keys.limit());
     }
 
     /**
@@ -36,37 +53,88 @@ public class SimpleIndex {
      * @return list of postings
      */
     public Entry getPostingList(long key) {
-        return dictionary.get(key);
+        int index = PostingListSearch.findKey(keys, key);
+        if (index < 0) {
+            return null;
+        }
+        Entry entry = entries.get(index);
+        if (entry == null) {
+            int begin = offsets.get(index);
+            int end = offsets.get(index + 1);
+            entries.compareAndSet(index, null, new Entry(slice(docIds, begin, end), slice(dataRefs, begin, end)));
+            entry = entries.get(index);
+        }
+        return entry;
     }
 
     public void writeToOutputStream(DataOutputStream out) throws IOException {
-        out.writeInt(dictionary.size());
-        for (LongObjectPair<Entry> pair : dictionary.keyValuesView()) {
-            out.writeLong(pair.getOne());
-            Entry entry = pair.getTwo();
-            SerializationHelper.writeIntArray(entry.docIds, out);
-            SerializationHelper.writeIntArray(entry.dataRefs, out);
+        int nEntries = keys.limit();
+        out.writeInt(nEntries);
+        for (int i = 0; i < nEntries; i++) {
+            int begin = offsets.get(i);
+            int end = offsets.get(i + 1);
+            out.writeLong(keys.get(i));
+            SerializationHelper.writeIntBuffer(slice(docIds, begin, end), out);
+            SerializationHelper.writeIntBuffer(slice(dataRefs, begin, end), out);
         }
     }
 
     public static SimpleIndex fromInputStream(DataInputStream in) throws IOException {
         int nEntries = in.readInt();
-        LongObjectHashMap<Entry> dictionary = new LongObjectHashMap<>(nEntries);
+        LongObjectHashMap<int[][]> dictionary = new LongObjectHashMap<>(nEntries);
         for (int i = 0; i < nEntries; i++) {
             long key = in.readLong();
             int[] docIds = SerializationHelper.readIntArray(in);
             int[] dataRefs = SerializationHelper.readIntArray(in);
-            dictionary.put(key, new Entry(docIds, dataRefs));
+            dictionary.put(key, new int[][] {docIds, dataRefs});
         }
-        dictionary.compact();
-        return new SimpleIndex(dictionary);
+        return fromDictionary(dictionary);
+    }
+
+    public void writeToMappedIndex(MappedIndexWriter out) throws IOException {
+        out.writeLongs(keys);
+        out.writeInts(offsets);
+        out.writeInts(docIds);
+        out.writeInts(dataRefs);
+    }
+
+    public static SimpleIndex fromMappedIndex(MappedIndexReader in) throws IOException {
+        LongBuffer keys = in.readLongs();
+        IntBuffer offsets = in.readInts();
+        IntBuffer docIds = in.readInts();
+        IntBuffer dataRefs = in.readInts();
+        return new SimpleIndex(keys, offsets, docIds, dataRefs);
+    }
+
+    /** Creates an index from a map from key to a pair of doc id and data ref arrays */
+    private static SimpleIndex fromDictionary(LongObjectMap<int[][]> dictionary) {
+        long[] keys = dictionary.keysView().toSortedArray();
+        int[] offsets = new int[keys.length + 1];
+        for (int i = 0; i < keys.length; i++) {
+            offsets[i + 1] = offsets[i] + dictionary.get(keys[i])[0].length;
+        }
+        int[] docIds = new int[offsets[keys.length]];
+        int[] dataRefs = new int[offsets[keys.length]];
+        for (int i = 0; i < keys.length; i++) {
+            int[][] postings = dictionary.get(keys[i]);
+            System.arraycopy(postings[0], 0, docIds, offsets[i], postings[0].length);
+            System.arraycopy(postings[1], 0, dataRefs, offsets[i], postings[1].length);
+        }
+        return new SimpleIndex(LongBuffer.wrap(keys), IntBuffer.wrap(offsets), IntBuffer.wrap(docIds), IntBuffer.wrap(dataRefs));
+    }
+
+    private static IntBuffer slice(IntBuffer buffer, int begin, int end) {
+        IntBuffer slice = buffer.duplicate();
+        slice.position(begin);
+        slice.limit(end);
+        return slice.slice();
     }
 
     public static class Entry {
-        public final int[] docIds;
-        public final int[] dataRefs;
+        public final IntBuffer docIds;
+        public final IntBuffer dataRefs;
 
-        private Entry(int[] docIds, int[] dataRefs) {
+        private Entry(IntBuffer docIds, IntBuffer dataRefs) {
             this.docIds = docIds;
             this.dataRefs = dataRefs;
         }
@@ -87,7 +155,7 @@ public class SimpleIndex {
         }
 
         public SimpleIndex build() {
-            LongObjectHashMap<Entry> dictionary = new LongObjectHashMap<>();
+            LongObjectHashMap<int[][]> dictionary = new LongObjectHashMap<>();
             for (Map.Entry<Long, List<Posting>> entry : dictionaryBuilder.entrySet()) {
                 List<Posting> postings = entry.getValue();
                 Collections.sort(postings);
@@ -99,10 +167,9 @@ public class SimpleIndex {
                     docIds[i] = posting.getId();
                     dataRefs[i] = posting.getDataRef();
                 }
-                dictionary.put(entry.getKey(), new Entry(docIds, dataRefs));
+                dictionary.put(entry.getKey(), new int[][] {docIds, dataRefs});
             }
-            dictionary.compact();
-            return new SimpleIndex(dictionary);
+            return fromDictionary(dictionary);
         }
 
         public int getEntryCount() { return entryCount; }
@@ -4,18 +4,22 @@ package com.yahoo.search.predicate.index.conjunction;
 import com.gs.collections.api.map.primitive.IntObjectMap;
 import com.gs.collections.api.map.primitive.LongObjectMap;
 import com.gs.collections.api.tuple.primitive.IntObjectPair;
-import com.gs.collections.api.tuple.primitive.LongObjectPair;
 import com.gs.collections.impl.map.mutable.primitive.IntObjectHashMap;
 import com.gs.collections.impl.map.mutable.primitive.LongObjectHashMap;
 import com.yahoo.document.predicate.FeatureConjunction;
 import com.yahoo.search.predicate.PredicateQuery;
 import com.yahoo.search.predicate.SubqueryBitmap;
+import com.yahoo.search.predicate.serialization.MappedIndexReader;
+import com.yahoo.search.predicate.serialization.MappedIndexWriter;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
+import com.yahoo.search.predicate.utils.PostingListSearch;
 import com.yahoo.search.predicate.utils.PrimitiveArraySorter;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -33,10 +37,14 @@ public class ConjunctionIndex {
 
     // A map from K value to FeatureIndex
     private final IntObjectMap<FeatureIndex> kIndex;
-    private final int[] zList;
-    private final long[] idMapping;
+    private final IntBuffer zList;
+    private final LongBuffer idMapping;
 
     public ConjunctionIndex(IntObjectMap<FeatureIndex> kIndex, int[] zList, long[] idMapping) {
+        this(kIndex, IntBuffer.wrap(zList), LongBuffer.wrap(idMapping));
+    }
+
+    public ConjunctionIndex(IntObjectMap<FeatureIndex> kIndex, IntBuffer zList, LongBuffer idMapping) {
         this.kIndex = kIndex;
         this.zList = zList;
         this.idMapping = idMapping;
@@ -47,8 +55,8 @@ public class ConjunctionIndex {
     }
 
     public void writeToOutputStream(DataOutputStream out) throws IOException {
-        SerializationHelper.writeIntArray(zList, out);
-        SerializationHelper.writeLongArray(idMapping, out);
+        SerializationHelper.writeIntBuffer(zList, out);
+        SerializationHelper.writeLongBuffer(idMapping, out);
         out.writeInt(kIndex.size());
         for (IntObjectPair<FeatureIndex> p : kIndex.keyValuesView()) {
             out.writeInt(p.getOne());
@@ -69,26 +77,94 @@ public class ConjunctionIndex {
         return new ConjunctionIndex(kIndex, zList, idMapping);
     }
 
+    public void writeToMappedIndex(MappedIndexWriter out) throws IOException {
+        out.writeInts(zList);
+        out.writeLongs(idMapping);
+        out.writeInt(kIndex.size());
+        for (IntObjectPair<FeatureIndex> p : kIndex.keyValuesView()) {
+            out.writeInt(p.getOne());
+            p.getTwo().writeToMappedIndex(out);
+        }
+    }
+
+    public static ConjunctionIndex fromMappedIndex(MappedIndexReader in) throws IOException {
+        IntBuffer zList = in.readInts();
+        LongBuffer idMapping = in.readLongs();
+        int kIndexSize = in.readInt();
+        IntObjectHashMap<FeatureIndex> kIndex = new IntObjectHashMap<>(kIndexSize);
+        for (int i = 0; i < kIndexSize; i++) {
+            int key = in.readInt();
+            kIndex.put(key, FeatureIndex.fromMappedIndex(in));
+        }
+        kIndex.compact();
+        return new ConjunctionIndex(kIndex, zList, idMapping);
+    }
+
     public static class FeatureIndex {
-        // Maps a feature id to conjunction id
-        private final LongObjectMap<int[]> map;
+        // Sorted feature ids. The conjunction ids of the feature at index i are at [offsets[i], offsets[i + 1]) in ids
+        private final LongBuffer keys;
+        private final IntBuffer offsets;
+        private final IntBuffer ids;
 
         public FeatureIndex(LongObjectMap<int[]> map) {
-            this.map = map;
+            long[] keys = map.keysView().toSortedArray();
+            int[] offsets = new int[keys.length + 1];
+            for (int i = 0; i < keys.length; i++) {
+                offsets[i + 1] = offsets[i] + map.get(keys[i]).length;
+            }
+            int[] ids = new int[offsets[keys.length]];
+            for (int i = 0; i < keys.length; i++) {
+                int[] conjunctionIds = map.get(keys[i]);
+                System.arraycopy(conjunctionIds, 0, ids, offsets[i], conjunctionIds.length);
+            }
+            this.keys = LongBuffer.wrap(keys);
+            this.offsets = IntBuffer.wrap(offsets);
+            this.ids = IntBuffer.wrap(ids);
+        }
+
+        public FeatureIndex(LongBuffer keys, IntBuffer offsets, IntBuffer ids) {
+            this.keys = keys;
+            this.offsets = offsets;
+            this.ids = ids;
         }
 
-        public Optional<int[]> getConjunctionIdsForFeature(long featureId) {
-            return Optional.ofNullable(map.get(featureId));
+        public Optional<IntBuffer> getConjunctionIdsForFeature(long featureId) {
+            int index = PostingListSearch.findKey(keys, featureId);
+            if (index < 0) {
+                return Optional.empty();
+            }
+            return Optional.of(conjunctionIds(index));
+        }
+
+        private IntBuffer conjunctionIds(int index) {
+            IntBuffer slice = ids.duplicate();
+            slice.position(offsets.get(index));
+            slice.limit(offsets.get(index + 1));
+            return slice.slice();
         }
 
         public void writeToOutputStream(DataOutputStream out) throws IOException {
-            out.writeInt(map.size());
-            for (LongObjectPair<int[]> p : map.keyValuesView()) {
-                out.writeLong(p.getOne());
-                SerializationHelper.writeIntArray(p.getTwo(), out);
+            int size = keys.limit();
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeLong(keys.get(i));
+                SerializationHelper.writeIntBuffer(conjunctionIds(i), out);
             }
         }
 
+        public void writeToMappedIndex(MappedIndexWriter out) throws IOException {
+            out.writeLongs(keys);
+            out.writeInts(offsets);
+            out.writeInts(ids);
+        }
+
+        public static FeatureIndex fromMappedIndex(MappedIndexReader in) throws IOException {
+            LongBuffer keys = in.readLongs();
+            IntBuffer offsets = in.readInts();
+            IntBuffer ids = in.readInts();
+            return new FeatureIndex(keys, offsets, ids);
+        }
+
         public static FeatureIndex fromInputStream(DataInputStream in) throws IOException {
             int mapSize = in.readInt();
             LongObjectHashMap<int[]> map = new LongObjectHashMap<>(mapSize);
@@ -96,7 +172,6 @@ public class ConjunctionIndex {
                 long key = in.readLong();
                 map.put(key, SerializationHelper.readIntArray(in));
             }
-            map.compact();
             return new FeatureIndex(map);
         }
     }
@@ -105,7 +180,7 @@ public class ConjunctionIndex {
         private final byte[] iteratorsPerConjunction;
 
         private Searcher() {
-            this.iteratorsPerConjunction = new byte[idMapping.length];
+            this.iteratorsPerConjunction = new byte[idMapping.limit()];
         }
 
         /**
@@ -121,7 +196,7 @@ public class ConjunctionIndex {
                 List<ConjunctionIdIterator> iterators = new ArrayList<>();
                 getFeatureIndex(k)
                         .ifPresent(featureIndex -> addFeatureIterators(query, featureIndex, iterators));
-                if (k == 0 && zList.length > 0) {
+                if (k == 0 && zList.limit() > 0) {
                     iterators.add(new ConjunctionIdIterator(SubqueryBitmap.ALL_SUBQUERIES, zList));
                 }
                 if (!iterators.isEmpty()) {
@@ -135,7 +210,9 @@ public class ConjunctionIndex {
         private void calculateIteratorsPerConjunction(List<ConjunctionIdIterator> iterators) {
             Arrays.fill(iteratorsPerConjunction, (byte)0);
             for (ConjunctionIdIterator iterator : iterators) {
-                for (int id : iterator.getConjunctionIds()) {
+                IntBuffer conjunctionIds = iterator.getConjunctionIds();
+                for (int i = 0; i < conjunctionIds.limit(); i++) {
+                    int id = conjunctionIds.get(i);
                     if (ConjunctionId.isPositive(id)) {
                         ++iteratorsPerConjunction[id >>> 1];
                     }
@@ -275,7 +352,7 @@ public class ConjunctionIndex {
         }
 
         private long toExternalId(int internalId) {
-            return idMapping[internalId >>> 1];
+            return idMapping.get(internalId >>> 1);
         }
     }
 
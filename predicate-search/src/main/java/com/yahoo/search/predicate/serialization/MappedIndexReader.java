@@ -0,0 +1,101 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.serialization;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file written by {@link MappedIndexWriter}. Arrays are not copied, but returned as read-only
+ * slices of a memory mapping of the file, which stay valid after this is closed.
+ * The file is mapped once if it is smaller than 2 GB, and otherwise as a few regions of up to 2 GB each,
+ * where each region holds whole arrays. A single array must therefore be smaller than 2 GB.
+ *
+ * @author agent
+ */
+public class MappedIndexReader implements Closeable {
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long maxRegionSize;
+    private ByteBuffer region = ByteBuffer.allocate(0);
+    private long regionStart = 0;
+    private long position = 0;
+
+    public MappedIndexReader(Path file) throws IOException {
+        this(file, MappedIndexWriter.MAX_ARRAY_BYTES);
+    }
+
+    MappedIndexReader(Path file, long maxRegionSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.maxRegionSize = maxRegionSize;
+    }
+
+    public int readInt() throws IOException {
+        int value = slice(position, Integer.BYTES).getInt(0);
+        position += Integer.BYTES;
+        return value;
+    }
+
+    public long readLong() throws IOException {
+        long value = slice(position, Long.BYTES).getLong(0);
+        position += Long.BYTES;
+        return value;
+    }
+
+    public ByteBuffer readBytes() throws IOException {
+        return readArray(Byte.BYTES);
+    }
+
+    public ShortBuffer readShorts() throws IOException {
+        return readArray(Short.BYTES).asShortBuffer();
+    }
+
+    public IntBuffer readInts() throws IOException {
+        return readArray(Integer.BYTES).asIntBuffer();
+    }
+
+    public LongBuffer readLongs() throws IOException {
+        return readArray(Long.BYTES).asLongBuffer();
+    }
+
+    private ByteBuffer readArray(int elementSize) throws IOException {
+        long length = readLong();
+        position = (position + MappedIndexWriter.ALIGNMENT - 1) / MappedIndexWriter.ALIGNMENT * MappedIndexWriter.ALIGNMENT;
+        if (length < 0 || length > maxRegionSize / elementSize) {
+            throw new IOException(String.format("Invalid array of %d elements at offset %d", length, position));
+        }
+        long size = length * elementSize;
+        ByteBuffer array = slice(position, size);
+        position += size;
+        return array;
+    }
+
+    /** Returns a read-only buffer of the given part of the file, mapping a new region if it is outside the current one */
+    private ByteBuffer slice(long offset, long size) throws IOException {
+        if (offset + size > fileSize) {
+            throw new EOFException(String.format("Unexpected end of file reading %d bytes at offset %d", size, offset));
+        }
+        if (offset < regionStart || offset + size > regionStart + region.capacity()) {
+            regionStart = offset;
+            region = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(fileSize - offset, maxRegionSize));
+        }
+        ByteBuffer slice = region.duplicate();
+        slice.position((int) (offset - regionStart)).limit((int) (offset - regionStart + size));
+        return slice.slice().order(MappedIndexWriter.BYTE_ORDER);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
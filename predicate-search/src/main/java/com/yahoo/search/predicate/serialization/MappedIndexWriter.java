@@ -0,0 +1,127 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.serialization;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a file which can be memory-mapped and used in place by {@link MappedIndexReader}.
+ * Values are stored little-endian. Each array is stored as its length followed by its elements,
+ * which start at an 8-byte aligned file offset. Each array must be smaller than 2 GB, the largest
+ * region which can be mapped into a single buffer.
+ *
+ * @author agent
+ */
+public class MappedIndexWriter implements Closeable {
+
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    static final int ALIGNMENT = 8;
+    static final long MAX_ARRAY_BYTES = Integer.MAX_VALUE / ALIGNMENT * ALIGNMENT;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024).order(BYTE_ORDER);
+    private long position = 0;
+
+    public MappedIndexWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public void writeInt(int value) throws IOException {
+        ensureSpace(Integer.BYTES);
+        buffer.putInt(value);
+        position += Integer.BYTES;
+    }
+
+    public void writeLong(long value) throws IOException {
+        ensureSpace(Long.BYTES);
+        buffer.putLong(value);
+        position += Long.BYTES;
+    }
+
+    /** Writes the remaining bytes of the given buffer */
+    public void writeBytes(ByteBuffer values) throws IOException {
+        writeLength(values.remaining(), Byte.BYTES);
+        for (int i = values.position(); i < values.limit(); i++) {
+            ensureSpace(Byte.BYTES);
+            buffer.put(values.get(i));
+        }
+        position += values.remaining();
+    }
+
+    /** Writes the remaining shorts of the given buffer */
+    public void writeShorts(ShortBuffer values) throws IOException {
+        writeLength(values.remaining(), Short.BYTES);
+        for (int i = values.position(); i < values.limit(); i++) {
+            ensureSpace(Short.BYTES);
+            buffer.putShort(values.get(i));
+        }
+        position += (long) values.remaining() * Short.BYTES;
+    }
+
+    /** Writes the remaining ints of the given buffer */
+    public void writeInts(IntBuffer values) throws IOException {
+        writeLength(values.remaining(), Integer.BYTES);
+        for (int i = values.position(); i < values.limit(); i++) {
+            ensureSpace(Integer.BYTES);
+            buffer.putInt(values.get(i));
+        }
+        position += (long) values.remaining() * Integer.BYTES;
+    }
+
+    /** Writes the remaining longs of the given buffer */
+    public void writeLongs(LongBuffer values) throws IOException {
+        writeLength(values.remaining(), Long.BYTES);
+        for (int i = values.position(); i < values.limit(); i++) {
+            ensureSpace(Long.BYTES);
+            buffer.putLong(values.get(i));
+        }
+        position += (long) values.remaining() * Long.BYTES;
+    }
+
+    private void writeLength(int length, int elementSize) throws IOException {
+        if ((long) length * elementSize > MAX_ARRAY_BYTES) {
+            throw new IllegalArgumentException(String.format(
+                    "Array of %d elements of %d bytes is too large to be mapped", length, elementSize));
+        }
+        writeLong(length);
+        while (position % ALIGNMENT != 0) {
+            ensureSpace(Byte.BYTES);
+            buffer.put((byte) 0);
+            ++position;
+        }
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+}
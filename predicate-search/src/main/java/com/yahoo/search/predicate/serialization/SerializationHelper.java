@@ -6,6 +6,10 @@ import com.yahoo.search.predicate.PredicateIndex;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 
 /**
  * Misc utility functions to help serialization of {@link PredicateIndex}.
@@ -21,6 +25,13 @@ public class SerializationHelper {
         }
     }
 
+    public static void writeIntBuffer(IntBuffer buffer, DataOutputStream out) throws IOException {
+        out.writeInt(buffer.remaining());
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            out.writeInt(buffer.get(i));
+        }
+    }
+
     public static int[] readIntArray(DataInputStream in) throws IOException {
         int length = in.readInt();
         int[] array = new int[length];
@@ -37,6 +48,13 @@ public class SerializationHelper {
         }
     }
 
+    public static void writeByteBuffer(ByteBuffer buffer, DataOutputStream out) throws IOException {
+        out.writeInt(buffer.remaining());
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            out.writeByte(buffer.get(i));
+        }
+    }
+
     public static byte[] readByteArray(DataInputStream in) throws IOException {
         int length = in.readInt();
         byte[] array = new byte[length];
@@ -53,6 +71,13 @@ public class SerializationHelper {
         }
     }
 
+    public static void writeLongBuffer(LongBuffer buffer, DataOutputStream out) throws IOException {
+        out.writeInt(buffer.remaining());
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            out.writeLong(buffer.get(i));
+        }
+    }
+
     public static long[] readLongArray(DataInputStream in) throws IOException {
         int length = in.readInt();
         long[] array = new long[length];
@@ -69,6 +94,13 @@ public class SerializationHelper {
         }
     }
 
+    public static void writeShortBuffer(ShortBuffer buffer, DataOutputStream out) throws IOException {
+        out.writeInt(buffer.remaining());
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            out.writeShort(buffer.get(i));
+        }
+    }
+
     public static short[] readShortArray(DataInputStream in) throws IOException {
         int length = in.readInt();
         short[] array = new short[length];
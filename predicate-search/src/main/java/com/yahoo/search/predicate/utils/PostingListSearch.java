@@ -1,6 +1,9 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.predicate.utils;
 
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
 /**
  * Algorithms for searching in the docId arrays in posting lists.
  *
@@ -16,8 +19,12 @@ public class PostingListSearch {
     public static final int BINARY_SEARCH_THRESHOLD = 32768;
 
     public static int interpolationSearch(int[] a, int fromIndex, int toIndex, int key) {
+        return interpolationSearch(IntBuffer.wrap(a), fromIndex, toIndex, key);
+    }
+
+    public static int interpolationSearch(IntBuffer a, int fromIndex, int toIndex, int key) {
         int low = fromIndex;
-        int lowVal = a[low];
+        int lowVal = a.get(low);
         if (key - lowVal < LINEAR_SEARCH_THRESHOLD_2) {
             return linearSearch(a, low, toIndex, key);
         }
@@ -26,7 +33,7 @@ public class PostingListSearch {
         if (diff <= BINARY_SEARCH_THRESHOLD) {
             return binarySearch(a, low, toIndex, key);
         }
-        int highVal = a[high];
+        int highVal = a.get(high);
         do {
             if (key == lowVal) {
                 return low + 1;
@@ -42,17 +49,17 @@ public class PostingListSearch {
             assert lowMid >= low;
             assert highMid <= high;
 
-            if (a[lowMid] > key) {
+            if (a.get(lowMid) > key) {
                 high = lowMid;
-                highVal = a[lowMid];
-            } else if (a[highMid] <= key) {
+                highVal = a.get(lowMid);
+            } else if (a.get(highMid) <= key) {
                 low = highMid;
-                lowVal = a[highMid];
+                lowVal = a.get(highMid);
             } else {
                 low = lowMid;
-                lowVal = a[lowMid];
+                lowVal = a.get(lowMid);
                 high = highMid;
-                highVal = a[highMid];
+                highVal = a.get(highMid);
             }
             assert low <= high;
             diff = high - low;
@@ -64,14 +71,14 @@ public class PostingListSearch {
      * Modified binary search:
      *  - Returns the first index where a[index] is larger then key
      */
-    private static int binarySearch(int[] a, int fromIndex, int toIndex, int key) {
+    private static int binarySearch(IntBuffer a, int fromIndex, int toIndex, int key) {
         assert fromIndex < toIndex;
         int low = fromIndex;
         int high = toIndex - 1;
         while (high - low > LINEAR_SEARCH_THRESHOLD) {
             int mid = (low + high) >>> 1;
             assert mid < high;
-            if (a[mid] < key) {
+            if (a.get(mid) < key) {
                 low = mid + 1;
             } else {
                 high = mid;
@@ -80,12 +87,32 @@ public class PostingListSearch {
         return linearSearch(a, low, high + 1, key);
     }
 
-    private static int linearSearch(int[] a, int low, int high, int key) {
+    private static int linearSearch(IntBuffer a, int low, int high, int key) {
         assert low < high;
-        while (low < high && a[low] <= key) {
+        while (low < high && a.get(low) <= key) {
             ++low;
         }
         return low;
     }
 
+    /**
+     * Returns the index of a key in a buffer of keys sorted in ascending order, or -1 if the key is not present.
+     */
+    public static int findKey(LongBuffer keys, long key) {
+        int low = 0;
+        int high = keys.limit() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = keys.get(mid);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
 }
@@ -2,13 +2,21 @@
 package com.yahoo.search.predicate;
 
 import com.yahoo.document.predicate.Predicate;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
 import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author <a href="mailto:magnarn@yahoo-inc.com">Magnar Nedland</a>
@@ -18,6 +26,9 @@ public class PredicateIndexTest {
 
     private static final int DOC_ID = 42;
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Test
     public void requireThatPredicateIndexCanSearch() {
         PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
@@ -33,6 +44,32 @@ public class PredicateIndexTest {
         assertEquals("[1, 67108862]", searcher.search(query).collect(toList()).toString());
     }
 
+    @Test
+    public void requireThatParallelSearchGivesSameHitsInSameOrder() {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
+        String[] countries = {"no", "se", "dk", "fi"};
+        for (int i = 0; i < 50000; i++) {
+            String country = countries[i % countries.length];
+            if (i % 3 == 0) {
+                builder.indexDocument(i, Predicate.fromString("country in ['" + country + "'] and age in [20..40]"));
+            } else if (i % 3 == 1) {
+                builder.indexDocument(i, Predicate.fromString("country not in ['" + country + "']"));
+            } else {
+                builder.indexDocument(i, Predicate.fromString("country in ['" + country + "', 'no'] and gender in ['female']"));
+            }
+        }
+        PredicateIndex index = builder.build();
+        PredicateQuery query = new PredicateQuery();
+        query.addFeature("country", "no");
+        query.addFeature("gender", "female");
+        query.addRangeFeature("age", 30);
+
+        List<Hit> expected = index.searcher().search(query).collect(toList());
+        assertTrue(expected.size() > 10000);
+        assertEquals(expected, index.searcher().search(query).parallel().collect(toList()));
+        assertEquals(expected.size(), index.searcher().search(query).parallel().count());
+    }
+
     @Test
     public void requireThatPredicateIndexCanSearchWithNotExpression() {
         {
@@ -138,4 +175,46 @@ public class PredicateIndexTest {
         assertSerializationDeserializationMatches(
                 index, PredicateIndex::writeToOutputStream, PredicateIndex::fromInputStream);
     }
+
+    @Test
+    public void requireThatMappedIndexIsSearchedAsHeapIndex() throws IOException {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(
+                new Config.Builder().setArity(8).setUseConjunctionAlgorithm(true).build());
+        builder.indexDocument(1, Predicate.fromString("country in ['no', 'se'] and gender in ['male']"));
+        builder.indexDocument(2, Predicate.fromString("country not in ['no'] and age in [20..40]"));
+        builder.indexDocument(3, Predicate.fromString("true"));
+        builder.indexDocument(4, Predicate.fromString("age in [30..]"));
+        builder.indexDocument(5, Predicate.fromString("(a in ['b'] and c in ['d']) or x in ['y']"));
+        builder.indexDocument(0x3fffffe, Predicate.fromString("country in ['no'] and gender in ['female']"));
+        PredicateIndex index = builder.build();
+        Path file = tempFolder.newFile().toPath();
+        index.writeToMappedFile(file);
+        PredicateIndex mapped = PredicateIndex.fromMappedFile(file);
+
+        PredicateQuery query = new PredicateQuery();
+        assertEquals("[3]", mapped.searcher().search(query).collect(toList()).toString());
+        query.addFeature("country", "no");
+        query.addFeature("gender", "male");
+        query.addRangeFeature("age", 36);
+        assertSameHits(index, mapped, query);
+        query.addFeature("gender", "female");
+        query.addFeature("a", "b");
+        query.addFeature("c", "d");
+        assertSameHits(index, mapped, query);
+        assertEquals(serialize(index).length, serialize(mapped).length);
+        assertArrayEquals(serialize(index), serialize(mapped));
+    }
+
+    private static void assertSameHits(PredicateIndex expected, PredicateIndex actual, PredicateQuery query) {
+        List<Hit> expectedHits = expected.searcher().search(query).collect(toList());
+        assertTrue(expectedHits.size() > 1);
+        assertEquals(expectedHits, actual.searcher().search(query).collect(toList()));
+    }
+
+    private static byte[] serialize(PredicateIndex index) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeToOutputStream(new DataOutputStream(out));
+        return out.toByteArray();
+    }
+
 }
@@ -1,13 +1,14 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.predicate.index;
 
-import com.gs.collections.impl.map.mutable.primitive.ObjectIntHashMap;
 import org.apache.commons.lang.ArrayUtils;
 import org.junit.Test;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -49,11 +50,11 @@ public class CachedPostingListCounterTest {
         }
         c.registerUsage(list);
         CachedPostingListCounter newC = c.rebuildCache();
-        ObjectIntHashMap<int[]> mapping = newC.getPostingListMapping();
-        assertEquals(0, mapping.getIfAbsent(p2.getDocIds(), -1));
-        assertEquals(1, mapping.getIfAbsent(p3.getDocIds(), -1));
-        assertEquals(2, mapping.getIfAbsent(p1.getDocIds(), -1));
-        assertEquals(3, mapping.getIfAbsent(p4.getDocIds(), -1));
+        Map<IntBuffer, Integer> mapping = newC.getPostingListMapping();
+        assertEquals(0, (int) mapping.get(p2.getDocIds()));
+        assertEquals(1, (int) mapping.get(p3.getDocIds()));
+        assertEquals(2, (int) mapping.get(p1.getDocIds()));
+        assertEquals(3, (int) mapping.get(p4.getDocIds()));
 
         int[] bitVector = newC.getBitVector();
         assertEquals(0b0001, bitVector[0] & 0b1111);
@@ -109,7 +110,7 @@ public class CachedPostingListCounterTest {
 
     private static PostingList postingList(Integer... docIds) {
         PostingList postingList = mock(PostingList.class);
-        when(postingList.getDocIds()).thenReturn(ArrayUtils.toPrimitive(docIds));
+        when(postingList.getDocIds()).thenReturn(IntBuffer.wrap(ArrayUtils.toPrimitive(docIds)));
         return postingList;
     }
 
@@ -5,12 +5,17 @@ import com.yahoo.search.predicate.Hit;
 import com.yahoo.search.predicate.SubqueryBitmap;
 import org.junit.Test;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Supplier;
 
 import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  * @author <a href="mailto:magnarn@yahoo-inc.com">Magnar Nedland</a>
@@ -206,14 +211,52 @@ public class PredicateSearchTest {
         assertEquals(Arrays.asList(new Hit(0)).toString(), search.stream().collect(toList()).toString());
     }
 
+    @Test
+    public void requireThatSearchWithPostingListFactoryIsSplitIntoOrderedRanges() {
+        int nDocuments = 20000;
+        byte[] minFeatures = new byte[nDocuments];
+        byte[] nPostingListsForDocument = new byte[nDocuments];
+        short[] intervalEnds = new short[nDocuments];
+        Arrays.fill(intervalEnds, (short) 0xFF);
+        List<SimplePostingList.Entry> entries = new ArrayList<>();
+        for (int docId = 0; docId < nDocuments; docId += 7) {
+            minFeatures[docId] = 1;
+            nPostingListsForDocument[docId] = 1;
+            entries.add(entry(docId, 0x000100ff));
+        }
+        SimplePostingList.Entry[] entryArray = entries.toArray(new SimplePostingList.Entry[0]);
+        Supplier<List<PostingList>> factory =
+                () -> Arrays.asList(postingList(SubqueryBitmap.ALL_SUBQUERIES, entryArray));
+        PredicateSearch search = new PredicateSearch(
+                factory.get(), factory, nPostingListsForDocument, minFeatures, intervalEnds, 0xFF);
+
+        Spliterator<Hit> suffix = search.stream().spliterator();
+        Spliterator<Hit> prefix = suffix.trySplit();
+        assertNotNull(prefix);
+        assertEquals(nDocuments / 2, prefix.estimateSize());
+        assertEquals(nDocuments / 2, suffix.estimateSize());
+        List<Hit> hits = new ArrayList<>();
+        prefix.forEachRemaining(hits::add);
+        suffix.forEachRemaining(hits::add);
+        assertEquals(entries.size(), hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            assertEquals(entries.get(i).docId, hits.get(i).getDocId());
+        }
+
+        PredicateSearch unsplittable = new PredicateSearch(
+                factory.get(), nPostingListsForDocument, minFeatures, intervalEnds, 0xFF);
+        assertNull(unsplittable.stream().spliterator().trySplit());
+    }
+
     private static PredicateSearch createPredicateSearch(byte[] minFeatures, PostingList... postingLists) {
         byte[] nPostingListsForDocument = new byte[minFeatures.length];
         short[] intervalEnds = new short[minFeatures.length];
         Arrays.fill(intervalEnds, (short) 0xFF);
         List<PostingList> list = Arrays.asList(postingLists);
         for (PostingList postingList : postingLists) {
-            for (int id : postingList.getDocIds()) {
-                nPostingListsForDocument[id]++;
+            IntBuffer docIds = postingList.getDocIds();
+            for (int i = 0; i < docIds.limit(); i++) {
+                nPostingListsForDocument[docIds.get(i)]++;
             }
         }
         return new PredicateSearch(list, nPostingListsForDocument, minFeatures, intervalEnds, 0xFF);
@@ -280,8 +323,8 @@ public class PredicateSearchTest {
         }
 
         @Override
-        public int[] getDocIds() {
-            return Arrays.stream(entries).mapToInt(e -> e.docId).toArray();
+        public IntBuffer getDocIds() {
+            return IntBuffer.wrap(Arrays.stream(entries).mapToInt(e -> e.docId).toArray());
         }
 
         public static class Entry {
@@ -0,0 +1,76 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate.serialization;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class MappedIndexReaderTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void require_that_arrays_are_read_from_a_single_mapping() throws IOException {
+        Path file = writeFile();
+        try (MappedIndexReader in = new MappedIndexReader(file)) {
+            assertFileContent(in);
+        }
+    }
+
+    @Test
+    public void require_that_arrays_are_read_across_several_regions() throws IOException {
+        Path file = writeFile();
+        try (MappedIndexReader in = new MappedIndexReader(file, 40)) {
+            assertFileContent(in);
+        }
+    }
+
+    @Test
+    public void require_that_arrays_larger_than_a_region_are_rejected() throws IOException {
+        Path file = writeFile();
+        try (MappedIndexReader in = new MappedIndexReader(file, 16)) {
+            assertEquals(42, in.readInt());
+            in.readInts();
+            fail();
+        } catch (IOException e) {
+            assertEquals("Invalid array of 5 elements at offset 16", e.getMessage());
+        }
+    }
+
+    private Path writeFile() throws IOException {
+        Path file = tempFolder.newFile().toPath();
+        try (MappedIndexWriter out = new MappedIndexWriter(file)) {
+            out.writeInt(42);
+            out.writeInts(IntBuffer.wrap(new int[]{1, 2, 3, 4, 5}));
+            out.writeBytes(ByteBuffer.wrap(new byte[]{6, 7, 8}));
+            out.writeShorts(ShortBuffer.wrap(new short[]{9, 10}));
+            out.writeLong(11);
+            out.writeLongs(LongBuffer.wrap(new long[]{12, 13, 14}));
+        }
+        return file;
+    }
+
+    private static void assertFileContent(MappedIndexReader in) throws IOException {
+        assertEquals(42, in.readInt());
+        assertEquals(IntBuffer.wrap(new int[]{1, 2, 3, 4, 5}), in.readInts());
+        assertEquals(ByteBuffer.wrap(new byte[]{6, 7, 8}), in.readBytes());
+        assertEquals(ShortBuffer.wrap(new short[]{9, 10}), in.readShorts());
+        assertEquals(11, in.readLong());
+        assertEquals(LongBuffer.wrap(new long[]{12, 13, 14}), in.readLongs());
+    }
+
+}
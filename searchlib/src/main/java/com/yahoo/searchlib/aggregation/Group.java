@@ -7,6 +7,7 @@ import com.yahoo.searchlib.expression.ResultNode;
 import com.yahoo.vespa.objects.*;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class Group extends Identifiable {
 
@@ -85,6 +86,93 @@ public class Group extends Identifiable {
         children = merged;
     }
 
+    /**
+     * <p>Merges the content of all the given groups <b>into</b> this. This is equivalent to merging each of the given
+     * groups into this in order, but the children of all groups are merged in a single pass on each level, instead of
+     * creating a new list of children for each pair. When this function returns, make sure to call {@link
+     * #postMerge(java.util.List, int, int)}.</p>
+     *
+     * @param firstLevel   The first level to merge.
+     * @param currentLevel The current level.
+     * @param others       The groups to merge with.
+     */
+    public void merge(int firstLevel, int currentLevel, List<Group> others) {
+        for (List<Group> sameId : mergeAll(firstLevel, currentLevel, others)) {
+            mergeChildren(firstLevel, currentLevel + 1, sameId);
+        }
+    }
+
+    /**
+     * <p>Merges the content of all the given groups <b>into</b> this, like {@link #merge(int, int, java.util.List)},
+     * but merges the subtrees of the children of this in parallel in the given pool.</p>
+     *
+     * @param firstLevel   The first level to merge.
+     * @param currentLevel The current level.
+     * @param others       The groups to merge with.
+     * @param pool         The pool to merge the children of this in.
+     */
+    public void merge(int firstLevel, int currentLevel, List<Group> others, ForkJoinPool pool) {
+        List<List<Group>> mergeable = mergeAll(firstLevel, currentLevel, others);
+        pool.submit(() -> mergeable.parallelStream().forEach(sameId -> mergeChildren(firstLevel, currentLevel + 1, sameId)))
+            .join();
+    }
+
+    /** Merges the given groups, which have the same id, into the first of them */
+    private static void mergeChildren(int firstLevel, int currentLevel, List<Group> sameId) {
+        sameId.get(0).merge(firstLevel, currentLevel, sameId.subList(1, sameId.size()));
+    }
+
+    /**
+     * Merges the rank and aggregation results of the given groups into this, and replaces the children of this by
+     * the union of the children of this and the given groups, keeping the first group of each id.
+     *
+     * @return The lists of children having the same id, which must be merged into the first of each list.
+     */
+    private List<List<Group>> mergeAll(int firstLevel, int currentLevel, List<Group> others) {
+        for (Group rhs : others) {
+            if (rhs.rank > rank) {
+                rank = rhs.rank; // keep highest rank
+            }
+            if (currentLevel >= firstLevel) {
+                for (int i = 0, len = aggregationResults.size(); i < len; ++i) {
+                    aggregationResults.get(i).merge(rhs.aggregationResults.get(i));
+                }
+            }
+        }
+
+        PriorityQueue<ChildCursor> cursors = new PriorityQueue<>(others.size() + 1);
+        int numChildren = children.size();
+        ChildCursor.addIfNotEmpty(cursors, children, 0);
+        for (int i = 0; i < others.size(); i++) {
+            numChildren = Math.max(numChildren, others.get(i).children.size());
+            ChildCursor.addIfNotEmpty(cursors, others.get(i).children, i + 1);
+        }
+        ArrayList<Group> merged = new ArrayList<>(numChildren);
+        List<List<Group>> mergeable = new ArrayList<>();
+        List<ChildCursor> current = new ArrayList<>(others.size() + 1);
+        while ( ! cursors.isEmpty()) {
+            current.add(cursors.poll());
+            Group group = current.get(0).current();
+            while ( ! cursors.isEmpty() && cursors.peek().current().getId().compareTo(group.getId()) == 0) {
+                current.add(cursors.poll());
+            }
+            merged.add(group);
+            if (current.size() > 1) {
+                List<Group> sameId = new ArrayList<>(current.size());
+                for (ChildCursor cursor : current) {
+                    sameId.add(cursor.current());
+                }
+                mergeable.add(sameId);
+            }
+            for (ChildCursor cursor : current) {
+                cursor.advanceInto(cursors);
+            }
+            current.clear();
+        }
+        children = merged;
+        return mergeable;
+    }
+
     private void executeOrderBy() {
         for (ExpressionNode node : orderByExp) {
             node.prepare();
@@ -463,6 +551,42 @@ public class Group extends Identifiable {
         }
     }
 
+    /** A position in a list of child groups sorted by id, ordered by the current id and then by source */
+    private static class ChildCursor implements Comparable<ChildCursor> {
+
+        private final List<Group> groups;
+        private final int source;
+        private int index = 0;
+
+        private ChildCursor(List<Group> groups, int source) {
+            this.groups = groups;
+            this.source = source;
+        }
+
+        static void addIfNotEmpty(PriorityQueue<ChildCursor> cursors, List<Group> groups, int source) {
+            if ( ! groups.isEmpty()) {
+                cursors.add(new ChildCursor(groups, source));
+            }
+        }
+
+        /** Moves to the next group and adds this to the given cursors, unless there are no more groups */
+        void advanceInto(PriorityQueue<ChildCursor> cursors) {
+            if (++index < groups.size()) {
+                cursors.add(this);
+            }
+        }
+
+        Group current() {
+            return groups.get(index);
+        }
+
+        @Override
+        public int compareTo(ChildCursor rhs) {
+            int cmp = current().getId().compareTo(rhs.current().getId());
+            return cmp != 0 ? cmp : Integer.compare(source, rhs.source);
+        }
+    }
+
     private static enum SortType {
         UNSORTED,
         BYRANK,
@@ -8,6 +8,7 @@ import com.yahoo.vespa.objects.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 public class Grouping extends Identifiable {
 
@@ -73,6 +74,35 @@ public class Grouping extends Identifiable {
         root.merge(firstLevel, 0, rhs.root);
     }
 
+    /**
+     * <p>Merges the content of all the given groupings <b>into</b> this. This is equivalent to, but cheaper than,
+     * merging each of them into this in order.</p>
+     *
+     * @param others The groupings to merge with.
+     */
+    public void merge(List<Grouping> others) {
+        root.merge(firstLevel, 0, roots(others));
+    }
+
+    /**
+     * <p>Merges the content of all the given groupings <b>into</b> this, merging the subtrees of each top level group
+     * in parallel in the given pool.</p>
+     *
+     * @param others The groupings to merge with.
+     * @param pool   The pool to merge in.
+     */
+    public void merge(List<Grouping> others, ForkJoinPool pool) {
+        root.merge(firstLevel, 0, roots(others), pool);
+    }
+
+    private static List<Group> roots(List<Grouping> groupings) {
+        List<Group> roots = new ArrayList<>(groupings.size());
+        for (Grouping grouping : groupings) {
+            roots.add(grouping.root);
+        }
+        return roots;
+    }
+
     /**
      * <p>This method is invoked after merging is done. It is intended used for resolving any dependencies or derivates
      * that might have changes due to the merge.</p>
@@ -0,0 +1,95 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.aggregation;
+
+import com.yahoo.searchlib.expression.AttributeNode;
+import com.yahoo.searchlib.expression.IntegerResultNode;
+import com.yahoo.searchlib.expression.StringResultNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares merging the partial grouping results of many content nodes pairwise, in a single k-way merge,
+ * and in a k-way merge which merges each top level group in parallel.
+ *
+ * @author agent
+ */
+public class GroupingMergeBenchmark {
+
+    private static final int NODES = 60;
+    private static final int TOP_LEVEL_GROUPS = 2000;
+    private static final int SECOND_LEVEL_GROUPS = 50;
+    private static final double GROUP_PRESENCE = 0.5;
+    private static final int ITERATIONS = 20;
+
+    private static final Random random = new Random(424242);
+
+    public static void main(String[] args) {
+        List<Grouping> partials = new ArrayList<>();
+        for (int node = 0; node < NODES; node++) {
+            partials.add(createPartialResult());
+        }
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            System.out.println("Merge; Average time (ms)");
+            for (int round = 0; round < 2; round++) { // First round is warmup
+                System.out.printf("pairwise; %.2f\n", benchmark(partials, 0, null));
+                System.out.printf("k-way; %.2f\n", benchmark(partials, 1, null));
+                System.out.printf("parallel k-way (%d threads); %.2f\n", pool.getParallelism(), benchmark(partials, 2, pool));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static double benchmark(List<Grouping> partials, int mode, ForkJoinPool pool) {
+        long totalNanos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            List<Grouping> copies = new ArrayList<>();
+            for (Grouping partial : partials) {
+                copies.add(partial.clone());
+            }
+            Grouping merged = copies.get(0);
+            List<Grouping> others = copies.subList(1, copies.size());
+            long start = System.nanoTime();
+            if (mode == 0) {
+                for (Grouping other : others) {
+                    merged.merge(other);
+                }
+            } else if (mode == 1) {
+                merged.merge(others);
+            } else {
+                merged.merge(others, pool);
+            }
+            merged.postMerge();
+            totalNanos += System.nanoTime() - start;
+        }
+        return totalNanos / 1_000_000.0 / ITERATIONS;
+    }
+
+    private static Grouping createPartialResult() {
+        Grouping grouping = new Grouping()
+                .addLevel(new GroupingLevel().setMaxGroups(-1))
+                .addLevel(new GroupingLevel().setMaxGroups(-1));
+        Group root = new Group().addAggregationResult(count(random.nextInt(1000)));
+        for (int i = 0; i < TOP_LEVEL_GROUPS; i++) {
+            if (random.nextDouble() > GROUP_PRESENCE) continue;
+            Group top = new Group().setId(new StringResultNode(String.format("top%05d", i)))
+                                   .addAggregationResult(count(random.nextInt(1000)));
+            for (int j = 0; j < SECOND_LEVEL_GROUPS; j++) {
+                if (random.nextDouble() > GROUP_PRESENCE) continue;
+                top.addChild(new Group().setId(new IntegerResultNode(j))
+                                        .addAggregationResult(count(random.nextInt(100))));
+            }
+            root.addChild(top);
+        }
+        return grouping.setRoot(root);
+    }
+
+    private static AggregationResult count(int value) {
+        return new SumAggregationResult().setSum(new IntegerResultNode(value)).setExpression(new AttributeNode("foo"));
+    }
+
+}
@@ -13,8 +13,10 @@ import com.yahoo.searchlib.expression.MultiplyFunctionNode;
 import com.yahoo.searchlib.expression.StringResultNode;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.assertEquals;
 
@@ -744,11 +746,35 @@ public class MergeTestCase {
     private static void assertMerge(List<Grouping> groupingList, Group expect) {
         Grouping tmp = groupingList.get(0).clone();
         for (int i = 1; i < groupingList.size(); ++i) {
-            tmp.merge(groupingList.get(i));
+            tmp.merge(groupingList.get(i).clone());
         }
         tmp.postMerge();
         assertEquals(expect.toString(), tmp.getRoot().toString());
         assertEquals(expect, tmp.getRoot());
+
+        tmp = groupingList.get(0).clone();
+        tmp.merge(cloneAll(groupingList.subList(1, groupingList.size())));
+        tmp.postMerge();
+        assertEquals(expect.toString(), tmp.getRoot().toString());
+        assertEquals(expect, tmp.getRoot());
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            tmp = groupingList.get(0).clone();
+            tmp.merge(cloneAll(groupingList.subList(1, groupingList.size())), pool);
+            tmp.postMerge();
+            assertEquals(expect, tmp.getRoot());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<Grouping> cloneAll(List<Grouping> groupingList) {
+        List<Grouping> clones = new ArrayList<>();
+        for (Grouping grouping : groupingList) {
+            clones.add(grouping.clone());
+        }
+        return clones;
     }
 
 }
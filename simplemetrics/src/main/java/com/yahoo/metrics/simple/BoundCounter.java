@@ -0,0 +1,43 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A counter bound to a single point in the metric space. The name and point are resolved once, when the
+ * counter is bound with {@link MetricReceiver#bindCounter(String, Point)}, so adding to a bound counter
+ * does not allocate any objects. Prefer this to {@link Counter} for metrics updated on every request.
+ *
+ * @author agent
+ */
+@Beta
+public class BoundCounter {
+
+    private final int index;
+    private final Identifier identifier;
+    private final MetricReceiver receiver;
+
+    BoundCounter(int index, Identifier identifier, MetricReceiver receiver) {
+        this.index = index;
+        this.identifier = identifier;
+        this.receiver = receiver;
+    }
+
+    /** Increases this counter by 1 */
+    public void add() {
+        add(1L);
+    }
+
+    /**
+     * Adds to this counter.
+     *
+     * @param n the amount by which to increase this counter
+     */
+    public void add(long n) {
+        receiver.updateBoundCounter(index, identifier, n);
+    }
+
+    /** Returns the name and point of this counter */
+    public Identifier getIdentifier() { return identifier; }
+
+}
@@ -0,0 +1,39 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * A gauge bound to a single point in the metric space. The name and point are resolved once, when the
+ * gauge is bound with {@link MetricReceiver#bindGauge(String, Point)}, so sampling a bound gauge
+ * does not allocate any objects (apart from histogram internals, if a histogram is configured for the metric).
+ * Prefer this to {@link Gauge} for metrics sampled on every request.
+ *
+ * @author agent
+ */
+@Beta
+public class BoundGauge {
+
+    private final int index;
+    private final Identifier identifier;
+    private final MetricReceiver receiver;
+
+    BoundGauge(int index, Identifier identifier, MetricReceiver receiver) {
+        this.index = index;
+        this.identifier = identifier;
+        this.receiver = receiver;
+    }
+
+    /**
+     * Records a sample.
+     *
+     * @param x sample value
+     */
+    public void sample(double x) {
+        receiver.updateBoundGauge(index, identifier, x);
+    }
+
+    /** Returns the name and point of this gauge */
+    public Identifier getIdentifier() { return identifier; }
+
+}
@@ -0,0 +1,62 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple;
+
+import com.yahoo.concurrent.LocalInstance;
+import com.yahoo.metrics.simple.UntypedMetric.AssumedType;
+
+/**
+ * A sample of a bound metric. There is one instance of this per thread which is reused for every update
+ * of a {@link BoundCounter} or {@link BoundGauge} from that thread, so updating bound metrics does not allocate.
+ * The value is written into the slot of the bound metric in the thread's current {@link Bucket}.
+ *
+ * @author agent
+ */
+final class BoundSample extends Sample {
+
+    /** The local instance of the thread owning this, which is fixed for the life time of the thread */
+    private final LocalInstance<Bucket, Sample> localInstance;
+
+    private int index;
+    private Identifier identifier;
+    private AssumedType metricType;
+    private long count;
+    private double value;
+
+    BoundSample(MetricReceiver receiver, LocalInstance<Bucket, Sample> localInstance) {
+        super(null, null, null);
+        this.localInstance = localInstance;
+        setReceiver(receiver);
+    }
+
+    BoundSample setCount(int index, Identifier identifier, long count) {
+        this.index = index;
+        this.identifier = identifier;
+        this.metricType = AssumedType.COUNTER;
+        this.count = count;
+        return this;
+    }
+
+    BoundSample setValue(int index, Identifier identifier, double value) {
+        this.index = index;
+        this.identifier = identifier;
+        this.metricType = AssumedType.GAUGE;
+        this.value = value;
+        return this;
+    }
+
+    LocalInstance<Bucket, Sample> getLocalInstance() { return localInstance; }
+
+    /** Returns the slot index of the bound metric this is a sample of */
+    int getIndex() { return index; }
+
+    long getCount() { return count; }
+
+    double getValue() { return value; }
+
+    @Override
+    Identifier getIdentifier() { return identifier; }
+
+    @Override
+    AssumedType getMetricType() { return metricType; }
+
+}
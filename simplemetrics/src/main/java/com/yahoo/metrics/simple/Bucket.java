@@ -3,6 +3,7 @@ package com.yahoo.metrics.simple;
 
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -26,8 +27,15 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 public class Bucket {
 
     private static final Logger log = Logger.getLogger(Bucket.class.getName());
+    private static final UntypedMetric[] noBoundValues = new UntypedMetric[0];
+    private static final Identifier[] noBoundIdentifiers = new Identifier[0];
+
     private final Map<Identifier, UntypedMetric> values = LazyMap.newHashMap();
 
+    /** Values of bound metrics, indexed by the slot of the bound metric, and the identifiers of the same slots */
+    private UntypedMetric[] boundValues = noBoundValues;
+    private Identifier[] boundIdentifiers = noBoundIdentifiers;
+
     boolean gotTimeStamps;
     long fromMillis;
     long toMillis;
@@ -49,6 +57,10 @@ public class Bucket {
     }
 
     void put(Sample x) {
+        if (x instanceof BoundSample) {
+            put((BoundSample) x);
+            return;
+        }
         UntypedMetric value = get(x);
         Measurement m = x.getMeasurement();
         switch (x.getMetricType()) {
@@ -63,6 +75,20 @@ public class Bucket {
         }
     }
 
+    private void put(BoundSample x) {
+        UntypedMetric value = getBound(x);
+        switch (x.getMetricType()) {
+            case GAUGE:
+                value.put(x.getValue());
+                break;
+            case COUNTER:
+                value.add(x.getCount());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported metric type: " + x.getMetricType());
+        }
+    }
+
     void put(Identifier id, UntypedMetric value) {
         values.put(id, value);
     }
@@ -73,18 +99,27 @@ public class Bucket {
 
     void merge(Bucket other, boolean otherIsNewer) {
         LazySet<String> malformedMetrics = LazySet.newHashSet();
+        for (int i = 0; i < other.boundValues.length; i++) {
+            if (other.boundValues[i] != null) {
+                merge(other.boundIdentifiers[i], other.boundValues[i], otherIsNewer, malformedMetrics);
+            }
+        }
         for (Map.Entry<Identifier, UntypedMetric> entry : other.values.entrySet()) {
-            String metricName = entry.getKey().getName();
-            try {
-                if (!malformedMetrics.contains(metricName)) {
-                    get(entry.getKey(), entry.getValue()).merge(entry.getValue(), otherIsNewer);
-                }
-            } catch (IllegalArgumentException e) {
-                log.log(LogLevel.WARNING, "Problems merging metric " + metricName + ", possibly ignoring data.");
-                // avoid spamming the log if there are a lot of mismatching
-                // threads
-                malformedMetrics.add(metricName);
+            merge(entry.getKey(), entry.getValue(), otherIsNewer, malformedMetrics);
+        }
+    }
+
+    private void merge(Identifier id, UntypedMetric value, boolean otherIsNewer, LazySet<String> malformedMetrics) {
+        String metricName = id.getName();
+        try {
+            if (!malformedMetrics.contains(metricName)) {
+                get(id, value).merge(value, otherIsNewer);
             }
+        } catch (IllegalArgumentException e) {
+            log.log(LogLevel.WARNING, "Problems merging metric " + metricName + ", possibly ignoring data.");
+            // avoid spamming the log if there are a lot of mismatching
+            // threads
+            malformedMetrics.add(metricName);
         }
     }
 
@@ -118,6 +153,25 @@ public class Bucket {
         return v;
     }
 
+    private UntypedMetric getBound(BoundSample sample) {
+        int index = sample.getIndex();
+        if (index >= boundValues.length) {
+            int length = Math.max(index + 1, Math.max(8, 2 * boundValues.length));
+            boundValues = Arrays.copyOf(boundValues, length);
+            boundIdentifiers = Arrays.copyOf(boundIdentifiers, length);
+        }
+        UntypedMetric v = boundValues[index];
+
+        if (v == null) {
+            Identifier dim = sample.getIdentifier();
+            // please keep inside guard, as sample.getHistogramDefinition(String) touches a volatile
+            v = new UntypedMetric(sample.getHistogramDefinition(dim.getName()));
+            boundValues[index] = v;
+            boundIdentifiers[index] = dim;
+        }
+        return v;
+    }
+
     private UntypedMetric get(Identifier dim, UntypedMetric other) {
         UntypedMetric v = values.get(dim);
 
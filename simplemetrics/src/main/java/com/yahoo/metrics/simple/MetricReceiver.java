@@ -4,6 +4,9 @@ package com.yahoo.metrics.simple;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.google.common.annotations.Beta;
@@ -28,6 +31,12 @@ public class MetricReceiver {
     private final Object histogramDefinitionsLock = new Object();
     private volatile Map<String, MetricSettings> metricSettings;
 
+    // bound metrics are kept to give each name and point a single slot in the thread local buckets
+    private final AtomicInteger boundMetricCount = new AtomicInteger();
+    private final ConcurrentMap<Identifier, BoundCounter> boundCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Identifier, BoundGauge> boundGauges = new ConcurrentHashMap<>();
+    private final ThreadLocal<BoundSample> boundSamples;
+
     private static final class NullCounter extends Counter {
         NullCounter() {
             super(null, null, null);
@@ -55,6 +64,26 @@ public class MetricReceiver {
         }
     }
 
+    private static final class NullBoundCounter extends BoundCounter {
+        NullBoundCounter(Identifier identifier) {
+            super(0, identifier, null);
+        }
+
+        @Override
+        public void add(long n) {
+        }
+    }
+
+    private static final class NullBoundGauge extends BoundGauge {
+        NullBoundGauge(Identifier identifier) {
+            super(0, identifier, null);
+        }
+
+        @Override
+        public void sample(double x) {
+        }
+    }
+
     private static final class NullGauge extends Gauge {
         NullGauge() {
             super(null, null, null);
@@ -116,6 +145,11 @@ public class MetricReceiver {
             return new NullCounter();
         }
 
+        @Override
+        public BoundCounter bindCounter(String name, Point point) {
+            return new NullBoundCounter(new Identifier(name, point));
+        }
+
         @Override
         public Gauge declareGauge(String name) {
             return new NullGauge();
@@ -131,6 +165,11 @@ public class MetricReceiver {
             return null;
         }
 
+        @Override
+        public BoundGauge bindGauge(String name, Point point) {
+            return new NullBoundGauge(new Identifier(name, point));
+        }
+
         @Override
         public PointBuilder pointBuilder() {
             return null;
@@ -155,6 +194,7 @@ public class MetricReceiver {
         this.metricsCollection = metricsCollection;
         this.currentSnapshot = currentSnapshot;
         metricSettings = new ImmutableMap.Builder<String, MetricSettings>().build();
+        boundSamples = ThreadLocal.withInitial(() -> new BoundSample(this, metricsCollection.getLocalInstance()));
     }
 
     /**
@@ -174,6 +214,16 @@ public class MetricReceiver {
         metricsCollection.update(s);
     }
 
+    void updateBoundCounter(int index, Identifier identifier, long n) {
+        BoundSample sample = boundSamples.get();
+        metricsCollection.update(sample.setCount(index, identifier, n), sample.getLocalInstance());
+    }
+
+    void updateBoundGauge(int index, Identifier identifier, double x) {
+        BoundSample sample = boundSamples.get();
+        metricsCollection.update(sample.setValue(index, identifier, x), sample.getLocalInstance());
+    }
+
     /**
      * Declare a counter metric without setting any default position.
      *
@@ -200,6 +250,24 @@ public class MetricReceiver {
         return new Counter(name, boundDimensions, this);
     }
 
+    /**
+     * Bind a counter metric to a single point. Adding to the returned counter
+     * does not allocate, so this should be preferred to a {@link Counter} for
+     * metrics which are updated very frequently. Binding the same name and point
+     * again returns the same instance.
+     *
+     * @param name
+     *            the name of the metric
+     * @param point
+     *            the point in the metric space to update, or null for the
+     *            dimension-less/zero-point value
+     * @return a thread-safe counter which always updates the given point
+     */
+    public BoundCounter bindCounter(String name, Point point) {
+        return boundCounters.computeIfAbsent(new Identifier(name, point),
+                                             id -> new BoundCounter(boundMetricCount.getAndIncrement(), id, this));
+    }
+
     /**
      * Declare a gauge metric with any default position.
      *
@@ -258,6 +326,25 @@ public class MetricReceiver {
         return new Gauge(name, defaultDimensions, this);
     }
 
+    /**
+     * Bind a gauge metric to a single point. Sampling the returned gauge does
+     * not allocate, so this should be preferred to a {@link Gauge} for metrics
+     * which are sampled very frequently. Settings for the metric are taken
+     * from any gauge declared with the same name. Binding the same name and
+     * point again returns the same instance.
+     *
+     * @param name
+     *            the name of the metric
+     * @param point
+     *            the point in the metric space to sample, or null for the
+     *            dimension-less/zero-point value
+     * @return a thread-safe gauge which always samples the given point
+     */
+    public BoundGauge bindGauge(String name, Point point) {
+        return boundGauges.computeIfAbsent(new Identifier(name, point),
+                                           id -> new BoundGauge(boundMetricCount.getAndIncrement(), id, this));
+    }
+
     /**
      * Create a PointBuilder instance with no default settings. PointBuilder
      * instances are not thread-safe.
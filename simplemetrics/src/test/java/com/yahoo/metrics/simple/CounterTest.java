@@ -3,6 +3,7 @@ package com.yahoo.metrics.simple;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -108,4 +109,42 @@ public class CounterTest {
         assertEquals(twoToThePowerOfFourtyeight, x.get(0).getValue().getCount());
     }
 
+    @Test
+    public final void testBoundCounter() throws InterruptedException {
+        final String metricName = "unitTestCounter";
+        Point p = receiver.pointBuilder().set("x", 2L).set("z", "5").build();
+        BoundCounter c = receiver.bindCounter(metricName, p);
+        assertSame(c, receiver.bindCounter(metricName, receiver.pointBuilder().set("x", 2L).set("z", "5").build()));
+        c.add();
+        c.add(5L);
+        receiver.declareCounter(metricName, p).add(3L);
+        receiver.bindCounter(metricName, null).add();
+        Bucket b = receiver.getSnapshot();
+        Map<Point, UntypedMetric> values = b.getMapForMetric(metricName);
+        assertEquals(2, values.size());
+        assertTrue(values.get(p).isCounter());
+        assertEquals(9L, values.get(p).getCount());
+        assertEquals(1L, values.get(Point.emptyPoint()).getCount());
+    }
+
+    @Test
+    public final void testBoundCounterInManyThreads() throws InterruptedException {
+        final String metricName = "unitTestCounter";
+        BoundCounter c = receiver.bindCounter(metricName, null);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    c.add();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) {
+            t.join();
+        }
+        Bucket b = receiver.getSnapshot();
+        assertEquals(4000L, b.getMapForMetric(metricName).get(Point.emptyPoint()).getCount());
+    }
+
 }
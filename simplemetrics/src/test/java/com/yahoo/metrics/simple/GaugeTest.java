@@ -80,4 +80,23 @@ public class GaugeTest {
         assertEquals(Math.E, x.get(0).getValue().getLast(), 1e-15);
     }
 
+    @Test
+    public final void testBoundGauge() throws InterruptedException {
+        final String metricName = "unitTestGauge";
+        Point p = receiver.pointBuilder().set("x", 2L).build();
+        BoundGauge g = receiver.bindGauge(metricName, p);
+        g.sample(1.0d);
+        g.sample(3.0d);
+        receiver.declareGauge(metricName, p).sample(2.0d);
+        Bucket b = receiver.getSnapshot();
+        Map<Point, UntypedMetric> values = b.getMapForMetric(metricName);
+        assertEquals(1, values.size());
+        UntypedMetric value = values.get(p);
+        assertFalse(value.isCounter());
+        assertEquals(3L, value.getCount());
+        assertEquals(1.0d, value.getMin(), 0.0d);
+        assertEquals(3.0d, value.getMax(), 0.0d);
+        assertEquals(6.0d, value.getSum(), 0.0d);
+    }
+
 }
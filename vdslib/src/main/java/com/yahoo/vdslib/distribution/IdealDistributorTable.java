@@ -0,0 +1,97 @@
+// Copyright 2019 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vdslib.distribution;
+
+import com.yahoo.document.BucketId;
+import com.yahoo.vdslib.state.ClusterState;
+
+/**
+ * A lookup table from superbucket to the ideal distributor of the superbucket, for a given cluster state and
+ * distribution config. The ideal distributor of a bucket only depends on the distribution bits of the bucket
+ * (its superbucket), so this can be used instead of calculating the ideal distributor of each bucket
+ * with {@link Distribution#getIdealDistributorNode}.
+ * <p>
+ * The entry of each superbucket is calculated on first lookup and reused after that.
+ * Tables are immutable apart from this, and cheap to create, so a new table should be created
+ * when the cluster state or distribution config changes, see {@link #isValidFor}.
+ * When the cluster state uses more than {@link #maxTableBits} distribution bits this falls back to calculating the
+ * ideal distributor on each lookup. This is thread safe.
+ *
+ * @author agent
+ */
+public class IdealDistributorTable {
+
+    /** The max number of distribution bits for which we create a table, which limits the table to 4Mb */
+    static final int maxTableBits = 20;
+
+    /** Table value of entries which are not calculated yet. Other entries are 1 + the distributor index, or noDistributor */
+    private static final int notCalculated = 0;
+    private static final int noDistributor = -1;
+
+    private final Distribution distribution;
+    private final Group rootGroup;
+    private final ClusterState state;
+    private final int distributionBits;
+    private final String upStates;
+
+    /** The distributors by superbucket, or null if the cluster state has too many distribution bits */
+    private final int[] distributors;
+
+    /**
+     * Creates a table of ideal distributors
+     *
+     * @param distribution the distribution to look up ideal distributors in
+     * @param state the cluster state to look up ideal distributors in
+     * @param upStates the distributor states which are considered available, see {@link Distribution#getIdealDistributorNode}
+     */
+    public IdealDistributorTable(Distribution distribution, ClusterState state, String upStates) {
+        this.distribution = distribution;
+        this.rootGroup = distribution.getRootGroup();
+        this.state = state;
+        this.distributionBits = state.getDistributionBitCount();
+        this.upStates = upStates;
+        this.distributors = distributionBits <= maxTableBits ? new int[1 << distributionBits] : null;
+    }
+
+    /** Returns whether this is a table for the given cluster state and the current config of the given distribution */
+    public boolean isValidFor(Distribution distribution, ClusterState state) {
+        return this.state == state &&
+               this.distribution == distribution &&
+               rootGroup == distribution.getRootGroup() &&
+               distributionBits == state.getDistributionBitCount();
+    }
+
+    public ClusterState getClusterState() { return state; }
+
+    /** Returns the ideal distributor of the given bucket, as {@link Distribution#getIdealDistributorNode} */
+    public int getIdealDistributorNode(BucketId bucket) throws Distribution.TooFewBucketBitsInUseException,
+                                                               Distribution.NoDistributorsAvailableException {
+        if (distributors == null)
+            return distribution.getIdealDistributorNode(state, bucket, upStates);
+
+        if (bucket.getUsedBits() < distributionBits)
+            throw new Distribution.TooFewBucketBitsInUseException("Cannot get ideal state for bucket " + bucket + " using " +
+                                                                  bucket.getUsedBits() + " bits when cluster uses " +
+                                                                  distributionBits + " distribution bits.");
+
+        int superbucket = (int)(bucket.getRawId() & ((1L << distributionBits) - 1));
+        int entry = distributors[superbucket];
+        if (entry == notCalculated) {
+            entry = calculate(superbucket);
+            distributors[superbucket] = entry; // Racing writers store the same value
+        }
+        if (entry == noDistributor)
+            throw new Distribution.NoDistributorsAvailableException("No distributors available in cluster state version " +
+                                                                    state.getVersion());
+        return entry - 1;
+    }
+
+    private int calculate(int superbucket) throws Distribution.TooFewBucketBitsInUseException {
+        try {
+            return 1 + distribution.getIdealDistributorNode(state, new BucketId(distributionBits, superbucket), upStates);
+        }
+        catch (Distribution.NoDistributorsAvailableException e) {
+            return noDistributor;
+        }
+    }
+
+}
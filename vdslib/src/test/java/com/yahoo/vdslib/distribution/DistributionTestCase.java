@@ -27,6 +27,7 @@ import java.util.Set;
 import java.util.Stack;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class DistributionTestCase {
@@ -418,4 +419,43 @@ public class DistributionTestCase {
         Distribution distr = new Distribution(new StorDistributionConfig(config));
         distr.getIdealDistributorNode(clusterState, new BucketId(16, 0), "uim");
     }
+
+    @Test
+    public void idealDistributorTableGivesSameDistributorsAsDistribution() throws Exception {
+        Distribution distribution = new Distribution(new StorDistributionConfig(buildHierarchicalConfig(6, 3, 1, "1|2|*", 3)));
+        for (String state : new String[] { "distributor:9 storage:9", "bits:8 distributor:9 .1.s:d .4.s:m .7.s:r storage:9",
+                                           "bits:21 distributor:9 .2.s:d storage:9" }) {
+            ClusterState clusterState = new ClusterState(state);
+            IdealDistributorTable table = new IdealDistributorTable(distribution, clusterState, "uim");
+            assertTrue(table.isValidFor(distribution, clusterState));
+            assertFalse(table.isValidFor(distribution, new ClusterState(state)));
+            for (int pass = 0; pass < 2; pass++) { // Second pass looks up calculated entries
+                for (BucketId bucket : getTestBuckets()) {
+                    if (bucket.getUsedBits() < clusterState.getDistributionBitCount()) continue;
+                    assertEquals(bucket + " in " + state,
+                                 distribution.getIdealDistributorNode(clusterState, bucket, "uim"),
+                                 table.getIdealDistributorNode(bucket));
+                }
+            }
+        }
+    }
+
+    @Test(expected = Distribution.TooFewBucketBitsInUseException.class)
+    public void idealDistributorTableThrowsTooFewBucketBitsInUseException() throws Exception {
+        Distribution distribution = new Distribution(new StorDistributionConfig(buildHierarchicalConfig(6, 3, 1, "1|2|*", 3)));
+        new IdealDistributorTable(distribution, new ClusterState("distributor:9"), "uim").getIdealDistributorNode(new BucketId(8, 0));
+    }
+
+    @Test(expected = Distribution.NoDistributorsAvailableException.class)
+    public void idealDistributorTableThrowsNoDistributorsAvailableException() throws Exception {
+        Distribution distribution = new Distribution(new StorDistributionConfig(buildHierarchicalConfig(4, 4, 1, "1|1|1|*", 1)));
+        IdealDistributorTable table = new IdealDistributorTable(distribution, new ClusterState("cluster:d"), "uim");
+        try {
+            table.getIdealDistributorNode(new BucketId(16, 0));
+        }
+        catch (Distribution.NoDistributorsAvailableException e) { // Thrown also when the entry is already calculated
+            table.getIdealDistributorNode(new BucketId(16, 0));
+        }
+    }
+
 }
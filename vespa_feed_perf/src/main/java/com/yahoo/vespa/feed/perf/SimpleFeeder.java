@@ -315,7 +315,8 @@ public class SimpleFeeder implements ReplyHandler {
             }
             GrowableByteBuffer buf = GrowableByteBuffer.wrap(blob);
             String condition = buf.getUtf8String();
-            DocumentDeserializer deser = DocumentDeserializerFactory.createHead(mgr, buf);
+            // Documents are usually sent on unchanged, so fields are only deserialized if they are accessed
+            DocumentDeserializer deser = DocumentDeserializerFactory.createLazyHead(mgr, buf);
             TestAndSetCondition testAndSetCondition = condition.isEmpty()
                     ? TestAndSetCondition.NOT_PRESENT_CONDITION
                     : new TestAndSetCondition(condition);
@@ -25,8 +25,14 @@ import java.io.InputStream;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
@@ -39,6 +45,14 @@ import static com.yahoo.messagebus.ErrorCode.SEND_QUEUE_FULL;
  * avoid using a threadpool that has no effect with all the extra that comes with it. V2 has one instance per thread
  * on the client, while this is one instance for all threads.
  *
+ * When given a sender executor, feeding is pipelined: The request thread parses operations into a bounded queue
+ * which is consumed by a sender task running on the executor, so parsing of the next operations proceeds while
+ * the sender is blocked waiting for capacity in message bus. The parser blocks when the queue is full.
+ * If the executor has no thread available for a request, that request is parsed and sent by the request thread.
+ *
+ * When message bus rejects a message because its send queue is full, the message is resent as soon as a reply
+ * to an earlier message returns the capacity it held, instead of after a fixed delay.
+ *
  * @author dybis
  */
 class ClientFeederV3 {
@@ -46,7 +60,7 @@ class ClientFeederV3 {
     protected static final Logger log = Logger.getLogger(ClientFeederV3.class.getName());
     // This is for all clients on this gateway, for load balancing from client.
     private final static AtomicInteger outstandingOperations = new AtomicInteger(0);
-    private final BlockingQueue<OperationStatus> feedReplies = new LinkedBlockingQueue<>();
+    private final ReplyQueue feedReplies = new ReplyQueue();
     private final ReferencedResource<SharedSourceSession> sourceSession;
     private final String clientId;
     private final ReplyHandler feedReplyHandler;
@@ -60,6 +74,12 @@ class ClientFeederV3 {
     private String hostName;
     private AtomicInteger threadsAvailableForFeeding;
 
+    /** The executor running senders when pipelining, or null to parse and send in the request thread */
+    private final ExecutorService senderExecutor;
+
+    /** The max number of parsed operations waiting to be sent, per request, when pipelining */
+    private final int pipelineCapacity;
+
     ClientFeederV3(
             ReferencedResource<SharedSourceSession> sourceSession,
             FeedReaderFactory feedReaderFactory,
@@ -68,6 +88,22 @@ class ClientFeederV3 {
             Metric metric,
             ReplyHandler feedReplyHandler,
             AtomicInteger threadsAvailableForFeeding) {
+        this(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler,
+             threadsAvailableForFeeding, null, 0);
+    }
+
+    ClientFeederV3(
+            ReferencedResource<SharedSourceSession> sourceSession,
+            FeedReaderFactory feedReaderFactory,
+            DocumentTypeManager docTypeManager,
+            String clientId,
+            Metric metric,
+            ReplyHandler feedReplyHandler,
+            AtomicInteger threadsAvailableForFeeding,
+            ExecutorService senderExecutor,
+            int pipelineCapacity) {
+        if (senderExecutor != null && pipelineCapacity < 1)
+            throw new IllegalArgumentException("Pipeline capacity must be positive, was " + pipelineCapacity);
         this.sourceSession = sourceSession;
         this.clientId = clientId;
         this.feedReplyHandler = feedReplyHandler;
@@ -75,6 +111,8 @@ class ClientFeederV3 {
         this.threadsAvailableForFeeding = threadsAvailableForFeeding;
         this.streamReaderV3 = new StreamReaderV3(feedReaderFactory, docTypeManager);
         this.hostName = HostName.getLocalhost();
+        this.senderExecutor = senderExecutor;
+        this.pipelineCapacity = pipelineCapacity;
     }
 
     public boolean timedOut() {
@@ -207,6 +245,7 @@ class ClientFeederV3 {
         Result result = null;
         while (result == null || result.getError().getCode() == SEND_QUEUE_FULL) {
             msg.getMessage().pushHandler(feedReplyHandler);
+            feedReplies.clearReplySignals();
 
             if (settings.denyIfBusy && threadsAvailableForFeeding.get() < 1) {
                 return sourceSession.getResource().sendMessage(msg.getMessage());
@@ -216,7 +255,7 @@ class ClientFeederV3 {
             if (result.isAccepted()) {
                 return result;
             }
-            Thread.sleep(100);
+            feedReplies.awaitReply(100, TimeUnit.MILLISECONDS);
         }
         return result;
     }
@@ -226,41 +265,187 @@ class ClientFeederV3 {
             InputStream requestInputStream,
             BlockingQueue<OperationStatus> repliesFromOldMessages,
             AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
-        while (true) {
+        if (senderExecutor != null) {
+            Sender sender = new Sender(settings, repliesFromOldMessages, threadsAvailableForFeeding);
+            if (start(sender)) {
+                feedPipelined(settings, requestInputStream, repliesFromOldMessages, sender);
+                return;
+            }
+        }
 
+        while (true) {
             Optional<DocumentOperationMessageV3> msg = pullMessageFromRequest(settings, requestInputStream, repliesFromOldMessages);
 
             if (! msg.isPresent()) {
                 break;
             }
             setMessageParameters(msg.get(), settings);
+            send(settings, msg.get(), repliesFromOldMessages, threadsAvailableForFeeding);
+        }
+    }
+
+    /** Starts the given sender, or returns false if all senders are busy or the executor is shut down */
+    private boolean start(Sender sender) {
+        try {
+            senderExecutor.execute(sender);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
 
-            Result result;
+    /** Parses operations in this thread while the given, running sender sends them. Returns when the sender is done. */
+    private void feedPipelined(
+            FeederSettings settings,
+            InputStream requestInputStream,
+            BlockingQueue<OperationStatus> repliesFromOldMessages,
+            Sender sender) throws InterruptedException {
+        boolean completed = false;
+        try {
+            while (true) {
+                Optional<DocumentOperationMessageV3> msg = pullMessageFromRequest(settings, requestInputStream, repliesFromOldMessages);
+                if (! msg.isPresent()) {
+                    break;
+                }
+                setMessageParameters(msg.get(), settings);
+                if ( ! sender.enqueue(msg)) {
+                    break;
+                }
+            }
+            completed = sender.enqueue(Optional.empty());
+        } finally {
+            if ( ! completed) {
+                sender.stop();
+            }
+            sender.join();
+        }
+        sender.rethrowFailure();
+    }
+
+    /**
+     * Sends the messages parsed by a request thread, until an empty message is received or it is stopped.
+     * The request thread must always wait for this to terminate using {@link #join}, which also fails the
+     * messages which were parsed but not sent.
+     */
+    private class Sender implements Runnable {
+
+        private final FeederSettings settings;
+        private final BlockingQueue<OperationStatus> repliesFromOldMessages;
+        private final AtomicInteger threadsAvailableForFeeding;
+        private final BlockingQueue<Optional<DocumentOperationMessageV3>> parsed = new ArrayBlockingQueue<>(pipelineCapacity);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean stopped = false;
+        private volatile Throwable failure = null;
+
+        Sender(FeederSettings settings,
+               BlockingQueue<OperationStatus> repliesFromOldMessages,
+               AtomicInteger threadsAvailableForFeeding) {
+            this.settings = settings;
+            this.repliesFromOldMessages = repliesFromOldMessages;
+            this.threadsAvailableForFeeding = threadsAvailableForFeeding;
+        }
+
+        @Override
+        public void run() {
             try {
-                result = sendMessage(settings, msg.get(), threadsAvailableForFeeding);
+                while ( ! stopped) {
+                    Optional<DocumentOperationMessageV3> msg = parsed.poll(100, TimeUnit.MILLISECONDS);
+                    if (msg == null) {
+                        continue;
+                    }
+                    if (! msg.isPresent()) {
+                        return;
+                    }
+                    send(settings, msg.get(), repliesFromOldMessages, threadsAvailableForFeeding);
+                }
+            } catch (InterruptedException | RuntimeException | Error e) {
+                failure = e;
+            } finally {
+                done.countDown();
+            }
+        }
 
-            } catch  (RuntimeException e) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), Exceptions.toMessageString(e),
-                        ErrorCode.ERROR, false, msg.get().getMessage()));
-                continue;
+        /**
+         * Puts a message in the queue, waiting for space as long as this is running.
+         *
+         * @return true if the message was added, false if this has terminated
+         */
+        boolean enqueue(Optional<DocumentOperationMessageV3> msg) throws InterruptedException {
+            while ( ! parsed.offer(msg, 100, TimeUnit.MILLISECONDS)) {
+                if (done.getCount() == 0) {
+                    return false;
+                }
             }
+            return true;
+        }
 
-            if (result.isAccepted()) {
-                outstandingOperations.incrementAndGet();
-                updateOpsPerSec();
-                log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.get().getOperationId());
-            } else if (!result.getError().isFatal()) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), result.getError().getMessage(),
-                        ErrorCode.TRANSIENT_ERROR, false, msg.get().getMessage()));
-                continue;
-            } else {
-                // should probably not happen, but everybody knows stuff that
-                // shouldn't happen, happens all the time
-                boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), result.getError().getMessage(),
-                        ErrorCode.ERROR, isConditionNotMet, msg.get().getMessage()));
-                continue;
+        /** Makes this terminate without sending the messages remaining in the queue */
+        void stop() {
+            stopped = true;
+        }
+
+        /** Waits for this to terminate, stopping it if the calling thread is interrupted, and fails the unsent messages */
+        void join() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    stop();
+                }
             }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            String reason = failure != null ? Exceptions.toMessageString(failure) : "Feeding was aborted";
+            for (Optional<DocumentOperationMessageV3> msg = parsed.poll(); msg != null; msg = parsed.poll()) {
+                if (msg.isPresent()) {
+                    repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(), reason,
+                            ErrorCode.ERROR, false, msg.get().getMessage()));
+                }
+            }
+        }
+
+        /** Rethrows the failure which terminated this, if any */
+        void rethrowFailure() throws InterruptedException {
+            if (failure == null) return;
+            if (failure instanceof InterruptedException) throw (InterruptedException) failure;
+            if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+            throw (Error) failure;
+        }
+
+    }
+
+    private void send(
+            FeederSettings settings,
+            DocumentOperationMessageV3 msg,
+            BlockingQueue<OperationStatus> repliesFromOldMessages,
+            AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        Result result;
+        try {
+            result = sendMessage(settings, msg, threadsAvailableForFeeding);
+
+        } catch  (RuntimeException e) {
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(), Exceptions.toMessageString(e),
+                    ErrorCode.ERROR, false, msg.getMessage()));
+            return;
+        }
+
+        if (result.isAccepted()) {
+            outstandingOperations.incrementAndGet();
+            updateOpsPerSec();
+            log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.getOperationId());
+        } else if (!result.getError().isFatal()) {
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(), result.getError().getMessage(),
+                    ErrorCode.TRANSIENT_ERROR, false, msg.getMessage()));
+        } else {
+            // should probably not happen, but everybody knows stuff that
+            // shouldn't happen, happens all the time
+            boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(), result.getError().getMessage(),
+                    ErrorCode.ERROR, isConditionNotMet, msg.getMessage()));
         }
     }
 
@@ -350,4 +535,37 @@ class ClientFeederV3 {
         }
     }
 
+    /**
+     * The queue of replies to the messages sent by this. A reply returns the message bus capacity held by
+     * its message, so threads waiting to resend a message rejected for lack of capacity wait for replies here.
+     */
+    private static class ReplyQueue extends LinkedBlockingQueue<OperationStatus> {
+
+        private final Semaphore replySignals = new Semaphore(0);
+
+        @Override
+        public void put(OperationStatus status) throws InterruptedException {
+            super.put(status);
+            replySignals.release();
+        }
+
+        @Override
+        public boolean offer(OperationStatus status) {
+            boolean added = super.offer(status);
+            replySignals.release();
+            return added;
+        }
+
+        /** Forgets replies signalled so far, such that {@link #awaitReply} waits for the next one */
+        void clearReplySignals() {
+            replySignals.drainPermits();
+        }
+
+        /** Waits until a reply is added after the last call to {@link #clearReplySignals}, or the given timeout */
+        void awaitReply(long timeout, TimeUnit unit) throws InterruptedException {
+            replySignals.tryAcquire(timeout, unit);
+        }
+
+    }
+
 }
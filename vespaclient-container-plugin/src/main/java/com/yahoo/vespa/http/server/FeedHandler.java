@@ -12,6 +12,7 @@ import com.yahoo.documentapi.metrics.DocumentApiMetrics;
 import com.yahoo.messagebus.ReplyHandler;
 import com.yahoo.metrics.simple.MetricReceiver;
 import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.vespaclient.config.FeederConfig;
 
 import javax.inject.Inject;
 import java.io.IOException;
@@ -44,10 +45,11 @@ public class FeedHandler extends LoggingRequestHandler {
             DocumentmanagerConfig documentManagerConfig,
             SessionCache sessionCache,
             ThreadpoolConfig threadpoolConfig,
+            FeederConfig feederConfig,
             MetricReceiver metricReceiver) throws Exception {
         super(parentCtx);
         metricsHelper = new DocumentApiMetrics(metricReceiver, "vespa.http.server");
-        feedHandlerV3 = new FeedHandlerV3(parentCtx, documentManagerConfig, sessionCache, threadpoolConfig, metricsHelper);
+        feedHandlerV3 = new FeedHandlerV3(parentCtx, documentManagerConfig, sessionCache, threadpoolConfig, feederConfig, metricsHelper);
         feedReplyHandler = new FeedReplyReader(parentCtx.getMetric(), metricsHelper);
     }
 
@@ -17,12 +17,16 @@ import com.yahoo.messagebus.ReplyHandler;
 import com.yahoo.messagebus.SourceSessionParams;
 import com.yahoo.messagebus.shared.SharedSourceSession;
 import com.yahoo.vespa.http.client.core.Headers;
+import com.yahoo.vespaclient.config.FeederConfig;
 import com.yahoo.yolean.Exceptions;
 
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
@@ -39,6 +43,7 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
     private DocumentTypeManager docTypeManager;
     private final Map<String, ClientFeederV3> clientFeederByClientId = new HashMap<>();
     private final ScheduledThreadPoolExecutor cron;
+    private final ExecutorService senderExecutor;
     private final SessionCache sessionCache;
     protected final ReplyHandler feedReplyHandler;
     private final Metric metric;
@@ -46,13 +51,23 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
     private final AtomicInteger threadsAvailableForFeeding;
     private static final Logger log = Logger.getLogger(FeedHandlerV3.class.getName());
 
+    /**
+     * The max number of parsed operations per request which may wait to be sent when parsing and sending
+     * of operations are pipelined. If this is 0, each operation is sent from the request thread after parsing it.
+     */
+    private final int pipelineCapacity;
+
     public FeedHandlerV3(
             LoggingRequestHandler.Context parentCtx,
             DocumentmanagerConfig documentManagerConfig,
             SessionCache sessionCache,
             ThreadpoolConfig threadpoolConfig,
+            FeederConfig feederConfig,
             DocumentApiMetrics metricsHelper) throws Exception {
         super(parentCtx);
+        if (feederConfig.pipelinecapacity() < 0)
+            throw new IllegalArgumentException("Pipeline capacity cannot be negative, was " + feederConfig.pipelinecapacity());
+        this.pipelineCapacity = feederConfig.pipelinecapacity();
         docTypeManager = new DocumentTypeManager(documentManagerConfig);
         this.sessionCache = sessionCache;
         feedReplyHandler = new FeedReplyReader(parentCtx.getMetric(), metricsHelper);
@@ -66,6 +81,11 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
             log.warning("No config for threadpool, using 200 for max blocking threads for feeding.");
             threadsAvailableForFeeding = new AtomicInteger(200);
         }
+        // At most one sender per request allowed to feed. Requests beyond that send from the request thread.
+        senderExecutor = pipelineCapacity == 0
+                ? null
+                : new ThreadPoolExecutor(0, threadsAvailableForFeeding.get(), 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                                         ThreadFactoryFactory.getDaemonThreadFactory("feedhandlerv3.sender"));
     }
 
     public void injectDocumentManangerForTests(DocumentTypeManager docTypeManager) {
@@ -90,7 +110,9 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
                                 clientId,
                                 metric,
                                 feedReplyHandler,
-                                threadsAvailableForFeeding));
+                                threadsAvailableForFeeding,
+                                senderExecutor,
+                                pipelineCapacity));
             }
             clientFeederV3 = clientFeederByClientId.get(clientId);
         }
@@ -120,12 +142,18 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
         Thread destroyer = new Thread(() -> {
             super.destroy();
             cron.shutdown();
+            if (senderExecutor != null) {
+                senderExecutor.shutdown();
+            }
             synchronized (monitor) {
                 for (ClientFeederV3 client : clientFeederByClientId.values()) {
                     client.kill();
                 }
                 clientFeederByClientId.clear();
             }
+            if (senderExecutor != null) {
+                senderExecutor.shutdownNow();
+            }
         });
         destroyer.setDaemon(true);
         destroyer.start();
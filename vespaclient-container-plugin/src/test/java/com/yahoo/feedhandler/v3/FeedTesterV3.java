@@ -25,6 +25,7 @@ import com.yahoo.vespa.http.client.core.OperationStatus;
 import com.yahoo.vespa.http.server.FeedHandlerV3;
 import com.yahoo.vespa.http.server.MetricNames;
 import com.yahoo.vespa.http.server.ReplyContext;
+import com.yahoo.vespaclient.config.FeederConfig;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.stubbing.Answer;
@@ -77,6 +78,17 @@ public class FeedTesterV3 {
         assertThat(Splitter.on("\n").splitToList(result).size(), is(101));
     }
 
+    @Test
+    public void feedManyDocumentsWithPipelining() throws Exception {
+        final FeedHandlerV3 feedHandlerV3 = setupFeederHandler(16);
+        HttpResponse httpResponse = feedHandlerV3.handle(createRequest(100));
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        httpResponse.render(outStream);
+        assertThat(httpResponse.getContentType(), is("text/plain"));
+        String result = Utf8.toString(outStream.toByteArray());
+        assertThat(Splitter.on("\n").splitToList(result).size(), is(101));
+    }
+
     private static DocumentTypeManager createDoctypeManager() {
         DocumentTypeManager docTypeManager = new DocumentTypeManager();
         DocumentType documentType = new DocumentType("testdocument");
@@ -117,6 +129,10 @@ public class FeedTesterV3 {
     }
 
     private FeedHandlerV3 setupFeederHandler() throws Exception {
+        return setupFeederHandler(0);
+    }
+
+    private FeedHandlerV3 setupFeederHandler(int pipelineCapacity) throws Exception {
         Executor threadPool = Executors.newCachedThreadPool();
         DocumentmanagerConfig docMan = new DocumentmanagerConfig(new DocumentmanagerConfig.Builder().enablecompression(true));
         FeedHandlerV3 feedHandlerV3 = new FeedHandlerV3(
@@ -124,6 +140,7 @@ public class FeedTesterV3 {
                 docMan,
                 null /* session cache */,
                 null /* thread pool config */,
+                new FeederConfig(new FeederConfig.Builder().pipelinecapacity(pipelineCapacity)),
                 new DocumentApiMetrics(MetricReceiver.nullImplementation, "test")) {
             @Override
             protected ReferencedResource<SharedSourceSession> retainSource(
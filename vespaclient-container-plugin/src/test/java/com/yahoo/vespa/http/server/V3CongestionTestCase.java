@@ -28,6 +28,10 @@ import java.io.IOException;
 import java.io.InputStream;
 
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertTrue;
@@ -43,7 +47,11 @@ public class V3CongestionTestCase {
         private final DocumentOperationMessageV3 docOp;
 
         ClientFeederWithMocks(ReferencedResource<SharedSourceSession> sourceSession, FeedReaderFactory feedReaderFactory, DocumentTypeManager docTypeManager, String clientId, Metric metric, ReplyHandler feedReplyHandler, AtomicInteger threadsAvailableForFeeding) {
-            super(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler, threadsAvailableForFeeding);
+            this(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler, threadsAvailableForFeeding, null, 0);
+        }
+
+        ClientFeederWithMocks(ReferencedResource<SharedSourceSession> sourceSession, FeedReaderFactory feedReaderFactory, DocumentTypeManager docTypeManager, String clientId, Metric metric, ReplyHandler feedReplyHandler, AtomicInteger threadsAvailableForFeeding, ExecutorService senderExecutor, int pipelineCapacity) {
+            super(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler, threadsAvailableForFeeding, senderExecutor, pipelineCapacity);
             // The operation to return from the client feeder.
             docOp = DocumentOperationMessageV3.newRemoveMessage(FeedOperation.INVALID, "operation id");
 
@@ -158,4 +166,114 @@ public class V3CongestionTestCase {
         clientFeederV3.handleRequest(request);
         assertTrue(requests.get() == NUMBER_OF_QUEUE_FULL_RESPONSES);
     }
+
+    @Test
+    public void testRetriesWhenPipelined() throws IOException {
+        ExecutorService senderExecutor = Executors.newCachedThreadPool();
+        try {
+            ClientFeederV3 pipelinedFeeder = new ClientFeederWithMocks(
+                    retainMockSession(new SourceSessionParams(), requests),
+                    new MockFeedReaderFactory(),
+                    null /*DocTypeManager*/,
+                    "clientID",
+                    null/*metric*/,
+                    new FeedReplyReader(null/*metric*/, new DocumentApiMetrics(MetricReceiver.nullImplementation, "tester")),
+                    threadsAvail,
+                    senderExecutor,
+                    1);
+            request.getJDiscRequest().headers().add(Headers.DENY_IF_BUSY, "true");
+            threadsAvail.set(10);
+
+            pipelinedFeeder.handleRequest(request);
+            assertTrue(requests.get() == NUMBER_OF_QUEUE_FULL_RESPONSES);
+        }
+        finally {
+            senderExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSendsFromRequestThreadWhenNoSenderIsAvailable() throws IOException {
+        ExecutorService senderExecutor = Executors.newCachedThreadPool();
+        senderExecutor.shutdown();
+        ClientFeederV3 pipelinedFeeder = new ClientFeederWithMocks(
+                retainMockSession(new SourceSessionParams(), requests),
+                new MockFeedReaderFactory(),
+                null /*DocTypeManager*/,
+                "clientID",
+                null/*metric*/,
+                new FeedReplyReader(null/*metric*/, new DocumentApiMetrics(MetricReceiver.nullImplementation, "tester")),
+                threadsAvail,
+                senderExecutor,
+                1);
+        request.getJDiscRequest().headers().add(Headers.DENY_IF_BUSY, "true");
+        threadsAvail.set(10);
+
+        pipelinedFeeder.handleRequest(request);
+        assertTrue(requests.get() == NUMBER_OF_QUEUE_FULL_RESPONSES);
+    }
+
+    @Test
+    public void testRequestWaitsForSenderWhenParsingFails() throws IOException {
+        ExecutorService senderExecutor = Executors.newCachedThreadPool();
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch sendAllowed = new CountDownLatch(1);
+        AtomicBoolean sendAllowedSet = new AtomicBoolean(false);
+        try {
+            SharedSourceSession session = new MockSharedSession(new SourceSessionParams(), requests) {
+                @Override
+                public Result sendMessageBlocking(Message msg) throws InterruptedException {
+                    sending.countDown();
+                    sendAllowed.await();
+                    queuFull = false;
+                    return sendMessage(msg);
+                }
+            };
+            ClientFeederV3 pipelinedFeeder = new ClientFeederWithMocks(
+                    new ReferencedResource<>(session, References.fromResource(session)),
+                    new MockFeedReaderFactory(),
+                    null /*DocTypeManager*/,
+                    "clientID",
+                    null/*metric*/,
+                    new FeedReplyReader(null/*metric*/, new DocumentApiMetrics(MetricReceiver.nullImplementation, "tester")),
+                    threadsAvail,
+                    senderExecutor,
+                    1) {
+                private int parsed = 0;
+                @Override
+                protected DocumentOperationMessageV3 getNextMessage(
+                        String operationId, InputStream requestInputStream, FeederSettings settings) throws Exception {
+                    if (++parsed > 1) {
+                        sending.await();
+                        throw new AssertionError("Parsing failed");
+                    }
+                    return super.getNextMessage(operationId, requestInputStream, settings);
+                }
+            };
+            new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    // Allow sending now
+                }
+                sendAllowedSet.set(true);
+                sendAllowed.countDown();
+            }).start();
+
+            pipelinedFeeder.handleRequest(createRequest(2));
+            assertTrue("Request returned before its sender", sendAllowedSet.get());
+        }
+        finally {
+            senderExecutor.shutdown();
+        }
+    }
+
+    private static HttpRequest createRequest(int numOperations) {
+        InputStream in = new MetaStream(new byte[numOperations]);
+        HttpRequest request = HttpRequest.createTestRequest("http://foo.bar:19020/reserved-for-internal-use/feedapi",
+                                                            com.yahoo.jdisc.http.HttpRequest.Method.POST, in);
+        request.getJDiscRequest().headers().add(Headers.VERSION, "3");
+        request.getJDiscRequest().headers().add(Headers.CLIENT_ID, "clientId");
+        return request;
+    }
 }
@@ -1,15 +1,25 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.tensor;
 
-import com.google.common.collect.ImmutableMap;
+import com.yahoo.tensor.functions.Reduce;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 
 /**
- * A sparse implementation of a tensor backed by a Map of cells to values.
+ * A sparse implementation of a tensor backed by primitive arrays.
+ * <p>
+ * The labels of each cell are stored as codes into a dictionary of the distinct labels of this tensor,
+ * values are stored in a double array, and cells are located by an open addressing hash index over the codes,
+ * such that no objects are allocated per cell until the cells are accessed as {@link Tensor.Cell}s.
+ * Cells are returned in the order they were added.
  *
  * @author bratseth
  */
@@ -17,31 +27,65 @@ public class MappedTensor implements Tensor {
 
     private final TensorType type;
 
-    private final ImmutableMap<TensorAddress, Double> cells;
+    /** The number of dimensions (labels per cell) of this */
+    private final int rank;
 
-    /** Creates a sparse tensor. The cell addresses must match the type. */
-    private MappedTensor(TensorType type, Map<TensorAddress, Double> cells) {
+    /** The distinct labels of this. Shared between tensors created from each other. */
+    private final String[] labels;
+
+    /** The label codes of each cell, in consecutive runs of rank codes */
+    private final int[] codes;
+
+    /** The value of each cell */
+    private final double[] values;
+
+    /** Open addressing index from label hash to cell index + 1, where 0 marks an empty slot */
+    private final int[] index;
+
+    /** Creates a sparse tensor. The cell labels must match the type. */
+    private MappedTensor(TensorType type, String[] labels, int[] codes, double[] values) {
+        this.type = type;
+        this.rank = type.dimensions().size();
+        this.labels = labels;
+        this.codes = codes;
+        this.values = values;
+        this.index = createIndex();
+    }
+
+    /** Creates a tensor sharing all storage with another */
+    private MappedTensor(TensorType type, MappedTensor other) {
         this.type = type;
-        this.cells = ImmutableMap.copyOf(cells);
+        this.rank = other.rank;
+        this.labels = other.labels;
+        this.codes = other.codes;
+        this.values = other.values;
+        this.index = other.index;
     }
 
     @Override
     public TensorType type() { return type; }
 
     @Override
-    public long size() { return cells.size(); }
+    public long size() { return values.length; }
 
     @Override
-    public double get(TensorAddress address) { return cells.getOrDefault(address, Double.NaN); }
+    public double get(TensorAddress address) {
+        int cellIndex = indexOf(address);
+        return cellIndex < 0 ? Double.NaN : values[cellIndex];
+    }
 
     @Override
-    public Iterator<Cell> cellIterator() { return new CellIteratorAdaptor(cells.entrySet().iterator()); }
+    public Iterator<Cell> cellIterator() { return new CellIterator(); }
 
     @Override
-    public Iterator<Double> valueIterator() { return cells.values().iterator(); }
+    public Iterator<Double> valueIterator() { return new ValueIterator(); }
 
+    /**
+     * Returns a read-only view of the cells of this, backed by this.
+     * This creates an address object per cell iterated over - avoid when possible.
+     */
     @Override
-    public Map<TensorAddress, Double> cells() { return cells; }
+    public Map<TensorAddress, Double> cells() { return new CellMap(); }
 
     @Override
     public Tensor withType(TensorType other) {
@@ -49,7 +93,7 @@ public class MappedTensor implements Tensor {
             throw new IllegalArgumentException("MappedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new MappedTensor(other, cells);
+        return new MappedTensor(other, this);
     }
 
     @Override
@@ -58,13 +102,13 @@ public class MappedTensor implements Tensor {
         // currently, underlying implementation disallows multiple entries with the same key
 
         Tensor.Builder builder = Tensor.Builder.of(type());
-        for (Map.Entry<TensorAddress, Double> cell  : cells.entrySet()) {
-            TensorAddress address = cell.getKey();
-            double value = cell.getValue();
+        for (int i = 0; i < values.length; i++) {
+            TensorAddress address = addressOf(i);
+            double value = values[i];
             builder.cell(address, addCells.containsKey(address) ? op.applyAsDouble(value, addCells.get(address)) : value);
         }
         for (Map.Entry<TensorAddress, Double> addCell : addCells.entrySet()) {
-            if ( ! cells.containsKey(addCell.getKey())) {
+            if (indexOf(addCell.getKey()) < 0) {
                 builder.cell(addCell.getKey(), addCell.getValue());
             }
         }
@@ -74,18 +118,110 @@ public class MappedTensor implements Tensor {
     @Override
     public Tensor remove(Set<TensorAddress> addresses) {
         Tensor.Builder builder = Tensor.Builder.of(type());
-        for (Iterator<Tensor.Cell> i = cellIterator(); i.hasNext(); ) {
-            Tensor.Cell cell = i.next();
-            TensorAddress address = cell.getKey();
+        for (int i = 0; i < values.length; i++) {
+            TensorAddress address = addressOf(i);
             if ( ! addresses.contains(address)) {
-                builder.cell(address, cell.getValue());
+                builder.cell(address, values[i]);
             }
         }
         return builder.build();
     }
 
+    /**
+     * Joins this with a mapped tensor having the same dimensions, without creating any cell addresses.
+     * The result shares the label dictionary of this.
+     */
+    public MappedTensor joinSingleSpace(MappedTensor other, TensorType joinedType, DoubleBinaryOperator combinator) {
+        int[] joinedCodes = new int[codes.length];
+        double[] joinedValues = new double[values.length];
+        int joinedCells = 0;
+        for (int i = 0; i < values.length; i++) {
+            int otherIndex = other.indexOf(labels, codes, i * rank);
+            if (otherIndex < 0) continue; // no match
+            System.arraycopy(codes, i * rank, joinedCodes, joinedCells * rank, rank);
+            joinedValues[joinedCells++] = combinator.applyAsDouble(values[i], other.values[otherIndex]);
+        }
+        return new MappedTensor(joinedType,
+                                labels,
+                                Arrays.copyOf(joinedCodes, joinedCells * rank),
+                                Arrays.copyOf(joinedValues, joinedCells));
+    }
+
+    /**
+     * Returns this reduced over all dimensions not present in the given type, without creating any cell addresses.
+     * The result shares the label dictionary of this.
+     *
+     * @param reducedType the type of the result, which must contain a non-empty subset of the dimensions of this
+     * @param aggregator the aggregator to apply to the cells having the same labels in the retained dimensions
+     */
+    public MappedTensor reduce(TensorType reducedType, Reduce.Aggregator aggregator) {
+        int reducedRank = reducedType.dimensions().size();
+        int[] retained = new int[reducedRank];
+        for (int i = 0; i < reducedRank; i++)
+            retained[i] = type.indexOfDimension(reducedType.dimensions().get(i).name()).get();
+
+        int[] reducedCodes = new int[values.length * reducedRank];
+        int[] groupOfCell = new int[values.length];
+        int[] groupIndex = new int[indexCapacity(values.length)];
+        int groups = 0;
+        for (int i = 0; i < values.length; i++) {
+            for (int d = 0; d < reducedRank; d++)
+                reducedCodes[groups * reducedRank + d] = codes[i * rank + retained[d]];
+            int hash = hashOf(labels, reducedCodes, groups * reducedRank, reducedRank);
+            int mask = groupIndex.length - 1;
+            int slot = hash & mask;
+            while (true) {
+                int group = groupIndex[slot] - 1;
+                if (group < 0) { // new group
+                    groupIndex[slot] = groups + 1;
+                    groupOfCell[i] = groups++;
+                    break;
+                }
+                if (Arrays.equals(reducedCodes, group * reducedRank, (group + 1) * reducedRank,
+                                  reducedCodes, groups * reducedRank, (groups + 1) * reducedRank)) {
+                    groupOfCell[i] = group;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        double[] reducedValues = new double[groups];
+        Reduce.ValueAggregator[] aggregators = new Reduce.ValueAggregator[groups];
+        for (int i = 0; i < values.length; i++) {
+            int group = groupOfCell[i];
+            if (aggregators[group] == null)
+                aggregators[group] = Reduce.ValueAggregator.ofType(aggregator);
+            aggregators[group].aggregate(values[i]);
+        }
+        for (int group = 0; group < groups; group++)
+            reducedValues[group] = aggregators[group].aggregatedValue();
+        return new MappedTensor(reducedType, labels, Arrays.copyOf(reducedCodes, groups * reducedRank), reducedValues);
+    }
+
+    /**
+     * Returns this with the labels of each cell reordered to the given type, without creating any cell addresses.
+     * The result shares the label dictionary and values of this.
+     *
+     * @param renamedType the type of the result
+     * @param toIndexes the index in the renamed type of each dimension in this
+     */
+    public MappedTensor rename(TensorType renamedType, int[] toIndexes) {
+        int[] renamedCodes = new int[codes.length];
+        for (int i = 0; i < values.length; i++)
+            for (int d = 0; d < rank; d++)
+                renamedCodes[i * rank + toIndexes[d]] = codes[i * rank + d];
+        return new MappedTensor(renamedType, labels, renamedCodes, values);
+    }
+
     @Override
-    public int hashCode() { return cells.hashCode(); }
+    public int hashCode() {
+        // Same as the hash code of the map returned by cells()
+        int hashCode = 0;
+        for (int i = 0; i < values.length; i++)
+            hashCode += hashOf(labels, codes, i * rank, rank) ^ Double.hashCode(values[i]);
+        return hashCode;
+    }
 
     @Override
     public String toString() { return Tensor.toStandardString(this); }
@@ -96,15 +232,101 @@ public class MappedTensor implements Tensor {
         return Tensor.equals(this, ((Tensor)other));
     }
 
+    private TensorAddress addressOf(int cellIndex) {
+        return new CellAddress(labels, codes, cellIndex * rank, rank);
+    }
+
+    /** Returns the index of the cell having the given address, or -1 if there is no such cell */
+    private int indexOf(TensorAddress address) {
+        if (address.size() != rank) return -1;
+        if (address instanceof CellAddress) {
+            CellAddress cellAddress = (CellAddress)address;
+            return indexOf(cellAddress.labels, cellAddress.codes, cellAddress.offset);
+        }
+
+        int hash = address.hashCode();
+        int mask = index.length - 1;
+        for (int slot = hash & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+            int cellIndex = index[slot] - 1;
+            if (labelsEqual(cellIndex, address))
+                return cellIndex;
+        }
+        return -1;
+    }
+
+    /** Returns the index of the cell having the labels given by codes into the given dictionary, or -1 if none */
+    private int indexOf(String[] otherLabels, int[] otherCodes, int offset) {
+        int hash = hashOf(otherLabels, otherCodes, offset, rank);
+        int mask = index.length - 1;
+        for (int slot = hash & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+            int cellIndex = index[slot] - 1;
+            if (labelsEqual(cellIndex, otherLabels, otherCodes, offset))
+                return cellIndex;
+        }
+        return -1;
+    }
+
+    private boolean labelsEqual(int cellIndex, TensorAddress address) {
+        for (int d = 0; d < rank; d++)
+            if ( ! labels[codes[cellIndex * rank + d]].equals(address.label(d)))
+                return false;
+        return true;
+    }
+
+    private boolean labelsEqual(int cellIndex, String[] otherLabels, int[] otherCodes, int offset) {
+        if (otherLabels == labels)
+            return Arrays.equals(codes, cellIndex * rank, (cellIndex + 1) * rank, otherCodes, offset, offset + rank);
+        for (int d = 0; d < rank; d++)
+            if ( ! labels[codes[cellIndex * rank + d]].equals(otherLabels[otherCodes[offset + d]]))
+                return false;
+        return true;
+    }
+
+    private int[] createIndex() {
+        int[] index = new int[indexCapacity(values.length)];
+        int mask = index.length - 1;
+        for (int i = 0; i < values.length; i++) {
+            int slot = hashOf(labels, codes, i * rank, rank) & mask;
+            while (index[slot] != 0) {
+                if (labelsEqual(index[slot] - 1, labels, codes, i * rank))
+                    throw new IllegalArgumentException("Multiple cells with the same address " + addressOf(i) +
+                                                       " in tensor of type " + type);
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = i + 1;
+        }
+        return index;
+    }
+
+    /** Returns a power of two capacity keeping the load factor of an index of the given size at or below 0.5 */
+    private static int indexCapacity(int size) {
+        return Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+    }
+
+    /** Returns the same hash as {@link TensorAddress#hashCode} for the given labels */
+    private static int hashOf(String[] labels, int[] codes, int offset, int rank) {
+        int result = 1;
+        for (int d = 0; d < rank; d++)
+            result = 31 * result + labels[codes[offset + d]].hashCode();
+        return result;
+    }
+
     public static class Builder implements Tensor.Builder {
 
         private final TensorType type;
-        private final ImmutableMap.Builder<TensorAddress, Double> cells = new ImmutableMap.Builder<>();
+        private final int rank;
+        private final Map<String, Integer> labelCodes = new HashMap<>();
+        private String[] labels = new String[16];
+        private int[] codes;
+        private double[] values = new double[16];
+        private int size = 0;
 
         public static Builder of(TensorType type) { return new Builder(type); }
 
         private Builder(TensorType type) {
             this.type = type;
+            this.rank = type.dimensions().size();
+            this.codes = new int[16 * rank];
         }
 
         public CellBuilder cell() {
@@ -121,7 +343,12 @@ public class MappedTensor implements Tensor {
 
         @Override
         public Builder cell(TensorAddress address, double value) {
-            cells.put(address, value);
+            if (address.size() != rank)
+                throw new IllegalArgumentException("Address " + address + " does not match " + type);
+            ensureCapacity();
+            for (int d = 0; d < rank; d++)
+                codes[size * rank + d] = codeOf(address.label(d));
+            values[size++] = value;
             return this;
         }
 
@@ -132,32 +359,165 @@ public class MappedTensor implements Tensor {
 
         @Override
         public Builder cell(double value, long... labels) {
-            cells.put(TensorAddress.of(labels), value);
-            return this;
+            return cell(TensorAddress.of(labels), value);
         }
 
         @Override
         public MappedTensor build() {
-            return new MappedTensor(type, cells.build());
+            return new MappedTensor(type,
+                                    Arrays.copyOf(labels, labelCodes.size()),
+                                    Arrays.copyOf(codes, size * rank),
+                                    Arrays.copyOf(values, size));
+        }
+
+        private int codeOf(String label) {
+            Integer code = labelCodes.get(label);
+            if (code != null) return code;
+
+            code = labelCodes.size();
+            if (code == labels.length)
+                labels = Arrays.copyOf(labels, labels.length * 2);
+            labels[code] = label;
+            labelCodes.put(label, code);
+            return code;
+        }
+
+        private void ensureCapacity() {
+            if (size < values.length) return;
+            values = Arrays.copyOf(values, values.length * 2);
+            codes = Arrays.copyOf(codes, values.length * rank);
         }
 
     }
 
-    private static class CellIteratorAdaptor implements Iterator<Cell> {
+    /** An address backed by the label codes of a cell in a mapped tensor */
+    private static final class CellAddress extends TensorAddress {
+
+        private final String[] labels;
+        private final int[] codes;
+        private final int offset;
+        private final int size;
 
-        private final Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator;
+        private CellAddress(String[] labels, int[] codes, int offset, int size) {
+            this.labels = labels;
+            this.codes = codes;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public int size() { return size; }
 
-        private CellIteratorAdaptor(Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator) {
-            this.adaptedIterator = adaptedIterator;
+        @Override
+        public String label(int i) {
+            if (i < 0 || i >= size)
+                throw new IllegalArgumentException("No label at position " + i + " in " + this);
+            return labels[codes[offset + i]];
         }
 
         @Override
-        public boolean hasNext() { return adaptedIterator.hasNext(); }
+        public long numericLabel(int i) {
+            try {
+                return Long.parseLong(label(i));
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expected a long label in " + this + " at position " + i);
+            }
+        }
+
+        @Override
+        public TensorAddress withLabel(int labelIndex, long label) {
+            String[] labels = new String[size];
+            for (int i = 0; i < size; i++)
+                labels[i] = label(i);
+            labels[labelIndex] = String.valueOf(label);
+            return TensorAddress.of(labels);
+        }
+
+        @Override
+        public int hashCode() { return hashOf(labels, codes, offset, size); }
+
+        @Override
+        public String toString() {
+            StringBuilder b = new StringBuilder("[");
+            for (int i = 0; i < size; i++) {
+                if (i > 0) b.append(", ");
+                b.append(label(i));
+            }
+            return b.append("]").toString();
+        }
+
+    }
+
+    private class CellIterator implements Iterator<Cell> {
+
+        private int next = 0;
+
+        @Override
+        public boolean hasNext() { return next < values.length; }
 
         @Override
         public Cell next() {
-            Map.Entry<TensorAddress, Double> entry = adaptedIterator.next();
-            return new Cell(entry.getKey(), entry.getValue());
+            if ( ! hasNext()) throw new NoSuchElementException();
+            Cell cell = new Cell(addressOf(next), values[next]);
+            next++;
+            return cell;
+        }
+
+    }
+
+    private class CellMap extends AbstractMap<TensorAddress, Double> {
+
+        @Override
+        public int size() { return values.length; }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof TensorAddress && indexOf((TensorAddress)key) >= 0;
+        }
+
+        @Override
+        public Double get(Object key) {
+            if ( ! (key instanceof TensorAddress)) return null;
+            int cellIndex = indexOf((TensorAddress)key);
+            return cellIndex < 0 ? null : values[cellIndex];
+        }
+
+        @Override
+        public Set<Map.Entry<TensorAddress, Double>> entrySet() {
+            return new AbstractSet<>() {
+
+                @Override
+                public int size() { return values.length; }
+
+                @Override
+                public Iterator<Map.Entry<TensorAddress, Double>> iterator() {
+                    Iterator<Cell> cells = new CellIterator();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() { return cells.hasNext(); }
+
+                        @Override
+                        public Map.Entry<TensorAddress, Double> next() { return cells.next(); }
+                    };
+                }
+
+            };
+        }
+
+    }
+
+    private class ValueIterator implements Iterator<Double> {
+
+        private int next = 0;
+
+        @Override
+        public boolean hasNext() { return next < values.length; }
+
+        @Override
+        public Double next() {
+            if ( ! hasNext()) throw new NoSuchElementException();
+            return values[next++];
         }
 
     }
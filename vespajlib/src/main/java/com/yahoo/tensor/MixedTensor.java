@@ -2,13 +2,13 @@
 
 package com.yahoo.tensor;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 import java.util.stream.Collectors;
@@ -29,15 +29,15 @@ public class MixedTensor implements Tensor {
     /** The dimension specification for this tensor */
     private final TensorType type;
 
-    /** The list of cells in the tensor */
-    private final ImmutableList<Cell> cells;
+    /** The values of the cells in the tensor, as consecutive dense subspaces in index order */
+    private final double[] values;
 
-    /** An index structure over the cell list */
+    /** An index structure over the cell values */
     private final Index index;
 
-    private MixedTensor(TensorType type, ImmutableList<Cell> cells, Index index) {
+    private MixedTensor(TensorType type, double[] values, Index index) {
         this.type = type;
-        this.cells = ImmutableList.copyOf(cells);
+        this.values = values;
         this.index = index;
     }
 
@@ -47,17 +47,13 @@ public class MixedTensor implements Tensor {
 
     /** Returns the size of the tensor measured in number of cells */
     @Override
-    public long size() { return cells.size(); }
+    public long size() { return values.length; }
 
-    /** Returns the value at the given address */
+    /** Returns the value at the given address, or NaN if there is no cell with this address */
     @Override
     public double get(TensorAddress address) {
         long cellIndex = index.indexOf(address);
-        Cell cell = cells.get((int)cellIndex);
-        if (!address.equals(cell.getKey())) {
-            throw new IllegalStateException("Unable to find correct cell by direct index.");
-        }
-        return cell.getValue();
+        return cellIndex < 0 ? Double.NaN : values[(int)cellIndex];
     }
 
     /**
@@ -69,7 +65,7 @@ public class MixedTensor implements Tensor {
      */
     @Override
     public Iterator<Cell> cellIterator() {
-        return cells.iterator();
+        return new CellIterator();
     }
 
     private Iterable<Cell> cellIterable() {
@@ -83,14 +79,15 @@ public class MixedTensor implements Tensor {
     @Override
     public Iterator<Double> valueIterator() {
         return new Iterator<>() {
-            Iterator<Cell> cellIterator = cellIterator();
+            int next = 0;
             @Override
             public boolean hasNext() {
-                return cellIterator.hasNext();
+                return next < values.length;
             }
             @Override
             public Double next() {
-                return cellIterator.next().getValue();
+                if ( ! hasNext()) throw new NoSuchElementException();
+                return values[next++];
             }
         };
     }
@@ -98,7 +95,7 @@ public class MixedTensor implements Tensor {
     @Override
     public Map<TensorAddress, Double> cells() {
         ImmutableMap.Builder<TensorAddress, Double> builder = new ImmutableMap.Builder<>();
-        for (Cell cell : cells) {
+        for (Cell cell : cellIterable()) {
             builder.put(cell.getKey(), cell.getValue());
         }
         return builder.build();
@@ -110,7 +107,7 @@ public class MixedTensor implements Tensor {
             throw new IllegalArgumentException("MixedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new MixedTensor(other, cells, index);
+        return new MixedTensor(other, values, index);
     }
 
     @Override
@@ -137,8 +134,7 @@ public class MixedTensor implements Tensor {
             if ( ! addresses.contains(sparsePartialAddress)) {  // assumption: addresses only contain the sparse part
                 long offset = entry.getValue();
                 for (int i = 0; i < index.denseSubspaceSize; ++i) {
-                    Cell cell = cells.get((int)offset + i);
-                    builder.cell(cell.getKey(), cell.getValue());
+                    builder.cell(index.addressOf(sparsePartialAddress, i), values[(int)offset + i]);
                 }
             }
         }
@@ -146,7 +142,13 @@ public class MixedTensor implements Tensor {
     }
 
     @Override
-    public int hashCode() { return cells.hashCode(); }
+    public int hashCode() {
+        // Same as the hash code of the map returned by cells()
+        int hashCode = 0;
+        for (Cell cell : cellIterable())
+            hashCode += cell.hashCode();
+        return hashCode;
+    }
 
     @Override
     public String toString() { return Tensor.toStandardString(this); }
@@ -163,6 +165,36 @@ public class MixedTensor implements Tensor {
     }
 
 
+    /** Iterates over the cells in index order, creating the cell addresses on the fly */
+    private class CellIterator implements Iterator<Cell> {
+
+        private final Iterator<Map.Entry<TensorAddress, Long>> subspaces = index.sparseMap.entrySet().iterator();
+        private TensorAddress sparsePart = null;
+        private int subspaceOffset = 0;
+        private int denseOffset = 0;
+
+        @Override
+        public boolean hasNext() {
+            while (sparsePart == null || denseOffset >= index.denseSubspaceSize()) {
+                if ( ! subspaces.hasNext()) return false;
+                Map.Entry<TensorAddress, Long> subspace = subspaces.next();
+                sparsePart = subspace.getKey();
+                subspaceOffset = subspace.getValue().intValue();
+                denseOffset = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public Cell next() {
+            if ( ! hasNext()) throw new NoSuchElementException();
+            Cell cell = new Cell(index.addressOf(sparsePart, denseOffset), values[subspaceOffset + denseOffset]);
+            denseOffset++;
+            return cell;
+        }
+
+    }
+
     /**
      * Base class for building mixed tensors.
      */
@@ -262,22 +294,18 @@ public class MixedTensor implements Tensor {
 
         @Override
         public MixedTensor build() {
-            long count = 0;
-            ImmutableList.Builder<Cell> builder = new ImmutableList.Builder<>();
+            int count = 0;
+            double[] values = new double[denseSubspaceMap.size() * (int)denseSubspaceSize()];
 
             for (Map.Entry<TensorAddress, double[]> entry : denseSubspaceMap.entrySet()) {
                 TensorAddress sparsePart = entry.getKey();
                 indexBuilder.put(sparsePart, count);
 
                 double[] denseSubspace = entry.getValue();
-                for (long offset = 0; offset < denseSubspace.length; ++offset) {
-                    TensorAddress cellAddress = index.addressOf(sparsePart, offset);
-                    double value = denseSubspace[(int)offset];
-                    builder.add(new Cell(cellAddress, value));
-                    count++;
-                }
+                System.arraycopy(denseSubspace, 0, values, count, denseSubspace.length);
+                count += denseSubspace.length;
             }
-            return new MixedTensor(type, builder.build(), indexBuilder.build());
+            return new MixedTensor(type, values, indexBuilder.build());
         }
 
     }
@@ -374,14 +402,28 @@ public class MixedTensor implements Tensor {
             this.denseType = createPartialType(type.valueType(), indexedDimensions);
         }
 
+        /** Returns the index of the cell with the given address, or -1 if there is no such cell */
         public long indexOf(TensorAddress address) {
             TensorAddress sparsePart = sparsePartialAddress(address);
-            if ( ! sparseMap.containsKey(sparsePart)) {
-                throw new IllegalArgumentException("Address not found");
+            Long base = sparseMap.get(sparsePart);
+            if (base == null || ! hasDenseLabelsInBounds(address)) {
+                return -1;
+            }
+            return base + denseOffset(address);
+        }
+
+        private boolean hasDenseLabelsInBounds(TensorAddress address) {
+            for (int i = 0; i < type.dimensions().size(); ++i) {
+                TensorType.Dimension dimension = type.dimensions().get(i);
+                if (dimension.isIndexed()) {
+                    long label = address.numericLabel(i);
+                    if (label < 0 || label >= dimension.size().orElseThrow(() ->
+                            new IllegalArgumentException("Unknown size of indexed dimension."))) {
+                        return false;
+                    }
+                }
             }
-            long base = sparseMap.get(sparsePart);
-            long offset = denseOffset(address);
-            return base + offset;
+            return true;
         }
 
         public static class Builder {
@@ -3,6 +3,7 @@ package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
 import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.MappedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
@@ -136,6 +137,9 @@ public class Reduce extends PrimitiveTensorFunction {
 
         TensorType reducedType = type(argument.type(), dimensions);
 
+        if (argument instanceof MappedTensor)
+            return ((MappedTensor)argument).reduce(reducedType, aggregator);
+
         // Reduce cells
         Map<TensorAddress, ValueAggregator> aggregatingCells = new HashMap<>();
         for (Iterator<Tensor.Cell> i = argument.cellIterator(); i.hasNext(); ) {
@@ -179,9 +183,9 @@ public class Reduce extends PrimitiveTensorFunction {
         return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
     }
 
-    static abstract class ValueAggregator {
+    public static abstract class ValueAggregator {
 
-        static ValueAggregator ofType(Aggregator aggregator) {
+        public static ValueAggregator ofType(Aggregator aggregator) {
             switch (aggregator) {
                 case avg : return new AvgAggregator();
                 case count : return new CountAggregator();
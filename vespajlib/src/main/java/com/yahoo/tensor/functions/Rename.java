@@ -2,6 +2,7 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.MappedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
@@ -100,6 +101,10 @@ public class Rename extends PrimitiveTensorFunction {
             return tensor.withType(renamedType);
         }
 
+        if (tensor instanceof MappedTensor) {
+            return ((MappedTensor)tensor).rename(renamedType, toIndexes);
+        }
+
         Tensor.Builder builder = Tensor.Builder.of(renamedType);
         for (Iterator<Tensor.Cell> i = tensor.cellIterator(); i.hasNext(); ) {
             Map.Entry<TensorAddress, Double> cell = i.next();
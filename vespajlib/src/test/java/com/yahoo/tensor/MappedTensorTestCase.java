@@ -2,10 +2,16 @@
 package com.yahoo.tensor;
 
 import com.google.common.collect.Sets;
+import com.yahoo.tensor.functions.Reduce;
 import org.junit.Test;
 
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Basic tensor tests. Tensor operations are tested in EvaluationTestCase
@@ -48,4 +54,77 @@ public class MappedTensorTestCase {
         assertEquals("tensor(x{},y{}):{{x:0,y:0}:1.0,{x:1,y:0}:2.0}", tensor.toString());
     }
 
+    @Test
+    public void testCellAccess() {
+        TensorType type = new TensorType.Builder().mapped("x").mapped("y").build();
+        Tensor tensor = Tensor.from(type, "{{x:a,y:0}:1.0,{x:b,y:0}:2.0,{x:a,y:1}:3.0}");
+        assertEquals(3, tensor.size());
+        assertEquals(2.0, tensor.get(TensorAddress.of(new String[] { "b", "0" })), 0.0);
+        assertEquals(3.0, tensor.get(TensorAddress.of(new String[] { "a", "1" })), 0.0);
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.of(new String[] { "b", "1" }))));
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.of(new String[] { "b" }))));
+        for (Map.Entry<TensorAddress, Double> cell : tensor.cells().entrySet()) {
+            assertEquals(cell.getValue(), tensor.get(cell.getKey()), 0.0);
+            assertEquals(cell.getKey(), TensorAddress.of(new String[] { cell.getKey().label(0), cell.getKey().label(1) }));
+            assertEquals(cell.getKey().hashCode(), TensorAddress.of(new String[] { cell.getKey().label(0), cell.getKey().label(1) }).hashCode());
+        }
+        assertEquals(tensor.cells().hashCode(), tensor.hashCode());
+        assertEquals(tensor, Tensor.from(type, "{{x:a,y:1}:3.0,{x:b,y:0}:2.0,{x:a,y:0}:1.0}"));
+    }
+
+    @Test
+    public void testCellMapView() {
+        TensorType type = new TensorType.Builder().mapped("x").mapped("y").build();
+        Tensor tensor = Tensor.from(type, "{{x:a,y:0}:1.0,{x:b,y:0}:2.0,{x:a,y:1}:3.0}");
+        Map<TensorAddress, Double> cells = tensor.cells();
+        assertEquals(3, cells.size());
+        assertEquals(2.0, cells.get(TensorAddress.of(new String[] { "b", "0" })), 0.0);
+        assertNull(cells.get(TensorAddress.of(new String[] { "b", "1" })));
+        assertNull(cells.get("not an address"));
+        assertTrue(cells.containsKey(TensorAddress.of(new String[] { "a", "1" })));
+        assertFalse(cells.containsKey(TensorAddress.of(new String[] { "b", "1" })));
+        assertEquals(Map.of(TensorAddress.of(new String[] { "a", "0" }), 1.0,
+                            TensorAddress.of(new String[] { "b", "0" }), 2.0,
+                            TensorAddress.of(new String[] { "a", "1" }), 3.0),
+                     cells);
+        try {
+            cells.put(TensorAddress.of(new String[] { "c", "0" }), 4.0);
+            fail("Expected the cells to be read-only");
+        }
+        catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void testDuplicateAddressesAreRejected() {
+        TensorType type = new TensorType.Builder().mapped("x").build();
+        try {
+            Tensor.Builder.of(type).cell(1.0, 0).cell(2.0, 0).build();
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException expected) {
+            assertEquals("Multiple cells with the same address [0] in tensor of type tensor(x{})", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void testJoinReduceAndRenameOnMappedTensors() {
+        TensorType type = new TensorType.Builder().mapped("x").mapped("y").build();
+        Tensor a = Tensor.from(type, "{{x:a,y:0}:1.0,{x:b,y:0}:2.0,{x:a,y:1}:3.0}");
+        Tensor b = Tensor.from(type, "{{x:a,y:1}:5.0,{x:b,y:0}:7.0,{x:c,y:0}:11.0}");
+
+        Tensor product = a.multiply(b);
+        assertTrue(product instanceof MappedTensor);
+        assertEquals(Tensor.from(type, "{{x:b,y:0}:14.0,{x:a,y:1}:15.0}"), product);
+
+        assertEquals(Tensor.from("tensor(x{}):{{x:a}:4.0,{x:b}:2.0}"), a.reduce(Reduce.Aggregator.sum, "y"));
+        assertEquals(Tensor.from("tensor(y{}):{{y:0}:2.0,{y:1}:1.0}"), a.reduce(Reduce.Aggregator.count, "x"));
+        assertEquals(Tensor.from("tensor():{6.0}"), a.reduce(Reduce.Aggregator.sum));
+
+        Tensor renamed = a.rename("x", "z");
+        assertTrue(renamed instanceof MappedTensor);
+        assertEquals(Tensor.from("tensor(y{},z{}):{{y:0,z:a}:1.0,{y:0,z:b}:2.0,{y:1,z:a}:3.0}"), renamed);
+        assertEquals(3.0, renamed.get(TensorAddress.of(new String[] { "1", "a" })), 0.0);
+    }
+
 }
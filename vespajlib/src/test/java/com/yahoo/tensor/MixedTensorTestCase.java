@@ -32,6 +32,22 @@ public class MixedTensorTestCase {
         assertEquals(scalar.asDouble(), 42.0, 1e-6);
     }
 
+    @Test
+    public void testGetOfMissingAddressIsNaN() {
+        TensorType type = new TensorType.Builder().mapped("x").indexed("y", 2).build();
+        Tensor tensor = MixedTensor.Builder.of(type).
+                cell().label("x", "a").label("y", 0).value(1).
+                cell().label("x", "a").label("y", 1).value(2).
+                cell().label("x", "b").label("y", 0).value(3).
+                cell().label("x", "b").label("y", 1).value(4).
+                build();
+        assertEquals(2.0, tensor.get(TensorAddress.of(new String[] {"a", "1"})), 0.0);
+        assertEquals(3.0, tensor.get(TensorAddress.of(new String[] {"b", "0"})), 0.0);
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.of(new String[] {"a", "2"}))));
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.of(new String[] {"b", "2"}))));
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.of(new String[] {"c", "0"}))));
+    }
+
     @Test
     public void testOneIndexedBuilding() {
         TensorType type = new TensorType.Builder().indexed("y", 3).build();